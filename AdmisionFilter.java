@@ -0,0 +1,182 @@
+package com.hrk.tienda_b2b.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Control de admisión de los endpoints que usan la base.
+ *
+ * Deja pasar a la vez tantos requests como conexiones tiene el pool de Hikari; el resto espera
+ * en el semáforo (con hilos virtuales esperar es barato) hasta espera-maxima-ms. Si se vence la
+ * espera, o ya hay max-en-espera requests esperando, responde 503 con Retry-After en lugar de
+ * dejar que el request se trabe adentro de PedidoService esperando una conexión.
+ *
+ * Corre después de la cadena de Spring Security para que el 503 ya tenga los headers de CORS.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 10)
+public class AdmisionFilter extends OncePerRequestFilter {
+    
+    private final Semaphore permisos;
+    private final int cantidadPermisos;
+    
+    @Value("${hrk.admision.habilitada:true}")
+    private boolean habilitada;
+    
+    @Value("${hrk.admision.espera-maxima-ms:2000}")
+    private long esperaMaximaMs;
+    
+    @Value("${hrk.admision.max-en-espera:500}")
+    private int maxEnEspera;
+    
+    private final AtomicInteger enEspera = new AtomicInteger();
+    private final LongAccumulator maxEnEsperaObservado = new LongAccumulator(Math::max, 0);
+    private final LongAdder admitidos = new LongAdder();
+    private final LongAdder rechazadosPorCola = new LongAdder();
+    private final LongAdder rechazadosPorEspera = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final LongAccumulator esperaMaximaNanos = new LongAccumulator(Math::max, 0);
+    
+    // Por defecto, un permiso por conexión del pool (mismo default que Hikari)
+    public AdmisionFilter(@Value("${hrk.admision.permisos:${spring.datasource.hikari.maximum-pool-size:10}}") int permisos) {
+        this.cantidadPermisos = permisos;
+        this.permisos = new Semaphore(permisos, true);
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        // El catálogo se sirve desde memoria y las métricas tienen que responder aunque haya saturación
+        return !habilitada
+                || !uri.startsWith("/api/")
+                || uri.startsWith("/api/catalogo")
+                || uri.startsWith("/api/metricas");
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        if (!entrar()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", "1");
+            return;
+        }
+        
+        AtomicBoolean liberado = new AtomicBoolean();
+        Runnable liberar = () -> {
+            if (liberado.compareAndSet(false, true)) {
+                permisos.release();
+            }
+        };
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Respuestas en streaming (/api/pedidos/stream): el permiso se libera al terminar de escribir
+                request.getAsyncContext().addListener(new LiberarAlTerminar(liberar));
+            } else {
+                liberar.run();
+            }
+        }
+    }
+    
+    private boolean entrar() {
+        if (permisos.tryAcquire()) {
+            admitidos.increment();
+            return true;
+        }
+        
+        int esperando = enEspera.incrementAndGet();
+        maxEnEsperaObservado.accumulate(esperando);
+        long inicio = System.nanoTime();
+        try {
+            if (esperando > maxEnEspera) {
+                rechazadosPorCola.increment();
+                return false;
+            }
+            if (permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                admitidos.increment();
+                return true;
+            }
+            rechazadosPorEspera.increment();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rechazadosPorEspera.increment();
+            return false;
+        } finally {
+            enEspera.decrementAndGet();
+            long espera = System.nanoTime() - inicio;
+            esperaTotalNanos.add(espera);
+            esperaMaximaNanos.accumulate(espera);
+        }
+    }
+    
+    // Permisos en uso más requests esperando, sobre el total (puede pasar de 1). Lo usan los jobs para cederle el paso al tráfico
+    public double ocupacion() {
+        return (double) (cantidadPermisos - permisos.availablePermits() + enEspera.get()) / cantidadPermisos;
+    }
+
+    public Map<String, Object> estadisticas() {
+        long admitidosTotal = admitidos.sum();
+        long solicitudes = admitidosTotal + rechazadosPorCola.sum() + rechazadosPorEspera.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("habilitada", habilitada);
+        stats.put("permisos", cantidadPermisos);
+        stats.put("enUso", cantidadPermisos - permisos.availablePermits());
+        stats.put("enEspera", enEspera.get());
+        stats.put("maxEnEsperaObservado", maxEnEsperaObservado.get());
+        stats.put("admitidos", admitidosTotal);
+        stats.put("rechazadosPorCola", rechazadosPorCola.sum());
+        stats.put("rechazadosPorEspera", rechazadosPorEspera.sum());
+        // Promedio sobre todas las solicitudes (las que entran sin esperar cuentan como 0)
+        stats.put("esperaPromedioMs", solicitudes == 0 ? 0.0 : esperaTotalNanos.sum() / 1_000_000.0 / solicitudes);
+        stats.put("esperaMaximaMs", esperaMaximaNanos.get() / 1_000_000.0);
+        return stats;
+    }
+    
+    private record LiberarAlTerminar(Runnable liberar) implements AsyncListener {
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            liberar.run();
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            liberar.run();
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            liberar.run();
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Si el request vuelve a pasar a async, el listener se registra de nuevo
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
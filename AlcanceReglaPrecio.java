@@ -0,0 +1,13 @@
+package com.hrk.tienda_b2b.model;
+
+/**
+ * A qué variantes aplica una regla de precio. Ordenado de más específico a más general:
+ * si para un cliente y una cantidad aplican reglas de varios alcances, gana la de menor ordinal.
+ */
+public enum AlcanceReglaPrecio {
+    VARIANTE,
+    PRODUCTO,
+    CATEGORIA,
+    TIPO,
+    TODOS
+}
@@ -0,0 +1,177 @@
+package com.hrk.tienda_b2b.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Claves de idempotencia ya usadas y sus respuestas.
+ *
+ * Solo se guardan respuestas 2xx. Las terminadas quedan en un LRU en memoria (hasta max-en-memoria) para responder repeticiones
+ * sin ir a la base, y en claves_idempotencia para que sobrevivan a un reinicio y se vean entre instancias.
+ * La fila se inserta EN_CURSO antes de ejecutar: la clave primaria decide quién ejecuta cuando dos
+ * instancias reciben la misma clave a la vez.
+ */
+@Slf4j
+@Service
+public class AlmacenIdempotencia {
+
+    private static final String EN_CURSO = "EN_CURSO";
+    private static final String COMPLETA = "COMPLETA";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMinutos;
+    private final long enCursoMaxSegundos;
+    private final int tamanoLotePurga;
+    private final Map<String, RespuestaGuardada> memoria;
+
+    public AlmacenIdempotencia(JdbcTemplate jdbcTemplate,
+                               @Value("${hrk.idempotencia.ttl-minutos:1440}") long ttlMinutos,
+                               @Value("${hrk.idempotencia.en-curso-max-segundos:60}") long enCursoMaxSegundos,
+                               @Value("${hrk.idempotencia.max-en-memoria:10000}") int maxEnMemoria,
+                               @Value("${hrk.idempotencia.purga.tamano-lote:1000}") int tamanoLotePurga) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMinutos = ttlMinutos;
+        this.enCursoMaxSegundos = enCursoMaxSegundos;
+        this.tamanoLotePurga = tamanoLotePurga;
+        // LRU por acceso: al pasarse del máximo sale la clave usada hace más tiempo (sigue en la base)
+        this.memoria = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RespuestaGuardada> mayor) {
+                return size() > maxEnMemoria;
+            }
+        };
+    }
+
+    public record RespuestaGuardada(String huella, int status, String contentType, byte[] cuerpo, LocalDateTime expiraEn) {
+    }
+
+    public enum Estado {
+        NUEVA,      // este request reservó la clave y tiene que ejecutarse
+        REPETIDA,   // ya hay respuesta guardada
+        EN_CURSO    // otra instancia la está ejecutando
+    }
+
+    public record Reserva(Estado estado, RespuestaGuardada respuesta) {
+    }
+
+    /** Intenta quedarse con la clave. Si ya tiene respuesta la devuelve, sea cual sea la huella. */
+    public Reserva reservar(String clave, String huella) {
+        LocalDateTime ahora = LocalDateTime.now();
+        RespuestaGuardada enMemoria = desdeMemoria(clave, ahora);
+        if (enMemoria != null) {
+            return new Reserva(Estado.REPETIDA, enMemoria);
+        }
+
+        try {
+            jdbcTemplate.update("INSERT INTO claves_idempotencia (clave, huella, estado, creada_en, expira_en) VALUES (?, ?, ?, ?, ?)",
+                    clave, huella, EN_CURSO, Timestamp.valueOf(ahora), Timestamp.valueOf(ahora.plusMinutes(ttlMinutos)));
+            return new Reserva(Estado.NUEVA, null);
+        } catch (DuplicateKeyException e) {
+            // Ya existe: ver si está terminada, vencida o si quedó EN_CURSO de una ejecución que se cortó
+        }
+
+        List<Map<String, Object>> filas = jdbcTemplate.queryForList(
+                "SELECT huella, estado, status, content_type, cuerpo, creada_en, expira_en FROM claves_idempotencia WHERE clave = ?", clave);
+        if (filas.isEmpty()) {
+            // Se purgó entre el INSERT y el SELECT: se vuelve a intentar una vez
+            return reservarDeNuevo(clave, huella, ahora);
+        }
+        Map<String, Object> fila = filas.get(0);
+        LocalDateTime expiraEn = ((Timestamp) fila.get("expira_en")).toLocalDateTime();
+        LocalDateTime creadaEn = ((Timestamp) fila.get("creada_en")).toLocalDateTime();
+
+        if (expiraEn.isBefore(ahora) || (EN_CURSO.equals(fila.get("estado")) && creadaEn.isBefore(ahora.minusSeconds(enCursoMaxSegundos)))) {
+            // Vencida o abandonada: la toma el primero que logre el UPDATE condicional
+            int tomadas = jdbcTemplate.update("UPDATE claves_idempotencia SET huella = ?, estado = ?, status = NULL, content_type = NULL, " +
+                            "cuerpo = NULL, creada_en = ?, expira_en = ? WHERE clave = ? AND creada_en = ?",
+                    huella, EN_CURSO, Timestamp.valueOf(ahora), Timestamp.valueOf(ahora.plusMinutes(ttlMinutos)),
+                    clave, fila.get("creada_en"));
+            return tomadas == 1 ? new Reserva(Estado.NUEVA, null) : new Reserva(Estado.EN_CURSO, null);
+        }
+        if (EN_CURSO.equals(fila.get("estado"))) {
+            return new Reserva(Estado.EN_CURSO, null);
+        }
+
+        RespuestaGuardada respuesta = new RespuestaGuardada((String) fila.get("huella"), ((Number) fila.get("status")).intValue(),
+                (String) fila.get("content_type"), (byte[]) fila.get("cuerpo"), expiraEn);
+        guardarEnMemoria(clave, respuesta);
+        return new Reserva(Estado.REPETIDA, respuesta);
+    }
+
+    private Reserva reservarDeNuevo(String clave, String huella, LocalDateTime ahora) {
+        try {
+            jdbcTemplate.update("INSERT INTO claves_idempotencia (clave, huella, estado, creada_en, expira_en) VALUES (?, ?, ?, ?, ?)",
+                    clave, huella, EN_CURSO, Timestamp.valueOf(ahora), Timestamp.valueOf(ahora.plusMinutes(ttlMinutos)));
+            return new Reserva(Estado.NUEVA, null);
+        } catch (DuplicateKeyException e) {
+            return new Reserva(Estado.EN_CURSO, null);
+        }
+    }
+
+    public RespuestaGuardada completar(String clave, String huella, int status, String contentType, byte[] cuerpo) {
+        LocalDateTime expiraEn = LocalDateTime.now().plusMinutes(ttlMinutos);
+        RespuestaGuardada respuesta = new RespuestaGuardada(huella, status, contentType, cuerpo, expiraEn);
+        jdbcTemplate.update("UPDATE claves_idempotencia SET estado = ?, status = ?, content_type = ?, cuerpo = ?, expira_en = ? WHERE clave = ?",
+                COMPLETA, status, contentType, cuerpo, Timestamp.valueOf(expiraEn), clave);
+        guardarEnMemoria(clave, respuesta);
+        return respuesta;
+    }
+
+    // La ejecución no terminó en 2xx (4xx, 5xx o excepción): se borra la reserva para que un reintento pueda ejecutarse
+    public void liberar(String clave) {
+        try {
+            jdbcTemplate.update("DELETE FROM claves_idempotencia WHERE clave = ? AND estado = ?", clave, EN_CURSO);
+        } catch (RuntimeException e) {
+            // Si no se pudo borrar, la fila vence sola a los en-curso-max-segundos
+            log.warn("No se pudo liberar la clave de idempotencia {}: {}", clave, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hrk.idempotencia.purga.intervalo-ms:600000}")
+    public void purgarVencidas() {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        int total = 0;
+        int borradas;
+        do {
+            // Por lotes: un DELETE grande traba la tabla mientras llegan requests con clave
+            borradas = jdbcTemplate.update("DELETE FROM claves_idempotencia WHERE expira_en < ? LIMIT " + tamanoLotePurga, ahora);
+            total += borradas;
+        } while (borradas == tamanoLotePurga);
+        if (total > 0) {
+            log.info("Claves de idempotencia vencidas borradas: {}", total);
+        }
+    }
+
+    public int enMemoria() {
+        synchronized (memoria) {
+            return memoria.size();
+        }
+    }
+
+    private RespuestaGuardada desdeMemoria(String clave, LocalDateTime ahora) {
+        synchronized (memoria) {
+            RespuestaGuardada respuesta = memoria.get(clave);
+            if (respuesta != null && respuesta.expiraEn().isBefore(ahora)) {
+                memoria.remove(clave);
+                return null;
+            }
+            return respuesta;
+        }
+    }
+
+    private void guardarEnMemoria(String clave, RespuestaGuardada respuesta) {
+        synchronized (memoria) {
+            memoria.put(clave, respuesta);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.hrk.tienda_b2b.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Imágenes de productos guardadas por contenido: el nombre del archivo es el SHA-256 de sus bytes
+ * (ej: 3f7a...c1.jpg). Dos subidas del mismo archivo terminan en el mismo nombre y se guarda una sola copia;
+ * como el contenido de un nombre nunca cambia, se puede cachear para siempre.
+ *
+ * Por cada original se generan en segundo plano versiones reducidas (miniatura y mediana) con ImageIO,
+ * en un pool acotado de hilos, fuera del request que subió la imagen. Si todavía no están, quien las pide
+ * recibe el original y la generación se vuelve a encolar.
+ */
+@Slf4j
+@Service
+public class AlmacenImagenesService {
+
+    public static final String PREFIJO_URL = "/imagenes/";
+
+    private static final Pattern NOMBRE_VALIDO = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif)");
+
+    /** Versiones reducidas: lado mayor en píxeles. */
+    public enum Tamano {
+        MINIATURA, MEDIANA;
+
+        public String nombre() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Path directorio;
+    private final long maxBytes;
+    private final long maxPixeles;
+    private final Map<Tamano, Integer> ladoMaximo;
+    private final float calidadJpeg;
+    private final ThreadPoolExecutor ejecutor;
+    // Originales con la generación de versiones encolada o en curso (evita encolar dos veces la misma)
+    private final Set<String> enProceso = ConcurrentHashMap.newKeySet();
+
+    public AlmacenImagenesService(@Value("${hrk.imagenes.directorio:./uploads/imagenes}") String directorio,
+                                  @Value("${hrk.imagenes.max-bytes:10485760}") long maxBytes,
+                                  @Value("${hrk.imagenes.max-pixeles:25000000}") long maxPixeles,
+                                  @Value("${hrk.imagenes.miniatura-px:240}") int miniatura,
+                                  @Value("${hrk.imagenes.mediana-px:800}") int mediana,
+                                  @Value("${hrk.imagenes.calidad-jpeg:0.82}") float calidadJpeg,
+                                  @Value("${hrk.imagenes.hilos:2}") int hilos) throws IOException {
+        this.directorio = Path.of(directorio).toAbsolutePath().normalize();
+        Files.createDirectories(this.directorio);
+        this.maxBytes = maxBytes;
+        this.maxPixeles = maxPixeles;
+        this.ladoMaximo = Map.of(Tamano.MINIATURA, miniatura, Tamano.MEDIANA, mediana);
+        this.calidadJpeg = calidadJpeg;
+        AtomicInteger numero = new AtomicInteger();
+        // Cola finita y sin CallerRunsPolicy: si se llena, la versión se genera la próxima vez que alguien la pida
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "imagenes-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Guarda la imagen y devuelve su URL (/imagenes/<sha256>.<ext>). Lanza IllegalArgumentException
+     * si no es JPEG, PNG o GIF, si supera hrk.imagenes.max-bytes o si declara más de
+     * hrk.imagenes.max-pixeles (un PNG chico puede declarar un tamaño que no entra en memoria).
+     */
+    public String guardar(InputStream entrada) throws IOException {
+        Path temporal = Files.createTempFile(directorio, "subida-", ".tmp");
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] cabecera = new byte[12];
+            int leidosCabecera;
+            try (OutputStream salida = new DigestOutputStream(Files.newOutputStream(temporal), sha256)) {
+                leidosCabecera = entrada.readNBytes(cabecera, 0, cabecera.length);
+                salida.write(cabecera, 0, leidosCabecera);
+                long total = leidosCabecera;
+                byte[] buffer = new byte[64 * 1024];
+                int leidos;
+                while ((leidos = entrada.read(buffer)) != -1) {
+                    total += leidos;
+                    if (total > maxBytes) {
+                        throw new IllegalArgumentException("La imagen supera " + maxBytes + " bytes");
+                    }
+                    salida.write(buffer, 0, leidos);
+                }
+            }
+            String extension = extensionSegunContenido(cabecera, leidosCabecera)
+                    .orElseThrow(() -> new IllegalArgumentException("Solo se aceptan imágenes JPEG, PNG o GIF"));
+            try {
+                leer(temporal, false);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+
+            String nombre = HexFormat.of().formatHex(sha256.digest()) + "." + extension;
+            Path destino = directorio.resolve(nombre);
+            if (Files.exists(destino)) {
+                log.debug("Imagen {} ya existía, se reutiliza", nombre);
+            } else {
+                Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Imagen {} guardada ({} bytes)", nombre, Files.size(destino));
+            }
+            encolarVersiones(nombre);
+            return PREFIJO_URL + nombre;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    public boolean nombreValido(String nombre) {
+        return nombre != null && NOMBRE_VALIDO.matcher(nombre).matches();
+    }
+
+    public Optional<Path> original(String nombre) {
+        if (!nombreValido(nombre)) {
+            return Optional.empty();
+        }
+        Path archivo = directorio.resolve(nombre);
+        return Files.isRegularFile(archivo) ? Optional.of(archivo) : Optional.empty();
+    }
+
+    /** La versión reducida si ya existe; si no, encola su generación y devuelve vacío. */
+    public Optional<Path> version(String nombre, Tamano tamano) {
+        if (!nombreValido(nombre)) {
+            return Optional.empty();
+        }
+        Path archivo = directorio.resolve(nombreVersion(nombre, tamano));
+        if (Files.isRegularFile(archivo)) {
+            return Optional.of(archivo);
+        }
+        if (original(nombre).isPresent()) {
+            encolarVersiones(nombre);
+        }
+        return Optional.empty();
+    }
+
+    // Las versiones se guardan en JPEG, salvo los PNG y GIF (pueden tener transparencia), que van en PNG
+    private static String nombreVersion(String nombre, Tamano tamano) {
+        String hash = nombre.substring(0, nombre.indexOf('.'));
+        String extension = nombre.endsWith(".jpg") ? "jpg" : "png";
+        return hash + "-" + tamano.nombre() + "." + extension;
+    }
+
+    private void encolarVersiones(String nombre) {
+        if (!enProceso.add(nombre)) {
+            return;
+        }
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    generarVersiones(nombre);
+                } catch (Exception e) {
+                    log.warn("No se pudieron generar las versiones de {}: {}", nombre, e.getMessage());
+                } finally {
+                    enProceso.remove(nombre);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            enProceso.remove(nombre);
+            log.debug("Cola de imágenes llena, {} se genera cuando se vuelva a pedir", nombre);
+        }
+    }
+
+    /**
+     * Lee el ancho y alto de la cabecera y rechaza la imagen si pasa de maxPixeles antes de
+     * decodificarla. Con decodificar=false solo valida y devuelve null.
+     */
+    private BufferedImage leer(Path archivo, boolean decodificar) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(archivo.toFile())) {
+            Iterator<ImageReader> lectores = entrada == null ? null : ImageIO.getImageReaders(entrada);
+            if (lectores == null || !lectores.hasNext()) {
+                throw new IOException("ImageIO no pudo leer la imagen");
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                long pixeles = (long) lector.getWidth(0) * lector.getHeight(0);
+                if (pixeles > maxPixeles) {
+                    throw new IOException("La imagen tiene " + lector.getWidth(0) + "x" + lector.getHeight(0)
+                            + " píxeles, el máximo es " + maxPixeles);
+                }
+                return decodificar ? lector.read(0) : null;
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    private void generarVersiones(String nombre) throws IOException {
+        BufferedImage imagen = leer(directorio.resolve(nombre), true);
+        boolean conTransparencia = !nombre.endsWith(".jpg");
+        for (Tamano tamano : Tamano.values()) {
+            Path destino = directorio.resolve(nombreVersion(nombre, tamano));
+            if (Files.exists(destino)) {
+                continue;
+            }
+            BufferedImage reducida = reducir(imagen, ladoMaximo.get(tamano), conTransparencia);
+            // Se escribe en un temporal y se mueve: nadie puede servir una versión a medio escribir
+            Path temporal = Files.createTempFile(directorio, "version-", ".tmp");
+            try {
+                if (conTransparencia) {
+                    ImageIO.write(reducida, "png", temporal.toFile());
+                } else {
+                    escribirJpeg(reducida, temporal);
+                }
+                Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporal);
+            }
+        }
+        log.debug("Versiones de {} generadas", nombre);
+    }
+
+    /**
+     * Reduce hasta que el lado mayor mida como mucho ladoMaximo (nunca agranda). Baja a la mitad en pasos
+     * sucesivos con interpolación bilineal: con un solo paso grande la imagen queda con serrucho.
+     */
+    static BufferedImage reducir(BufferedImage original, int ladoMaximo, boolean conTransparencia) {
+        int tipo = conTransparencia ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int ancho = original.getWidth();
+        int alto = original.getHeight();
+        double escala = Math.min(1.0, (double) ladoMaximo / Math.max(ancho, alto));
+        int anchoFinal = Math.max(1, (int) Math.round(ancho * escala));
+        int altoFinal = Math.max(1, (int) Math.round(alto * escala));
+
+        BufferedImage actual = original;
+        do {
+            ancho = Math.max(anchoFinal, ancho / 2);
+            alto = Math.max(altoFinal, alto / 2);
+            BufferedImage paso = new BufferedImage(ancho, alto, tipo);
+            Graphics2D g = paso.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!conTransparencia) {
+                    // Un JPEG no tiene alfa: lo transparente queda blanco en lugar de negro
+                    g.setColor(java.awt.Color.WHITE);
+                    g.fillRect(0, 0, ancho, alto);
+                }
+                g.drawImage(actual, 0, 0, ancho, alto, null);
+            } finally {
+                g.dispose();
+            }
+            actual = paso;
+        } while (ancho != anchoFinal || alto != altoFinal);
+        return actual;
+    }
+
+    private void escribirJpeg(BufferedImage imagen, Path destino) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream salida = ImageIO.createImageOutputStream(destino.toFile())) {
+            writer.setOutput(salida);
+            ImageWriteParam parametros = writer.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(calidadJpeg);
+            writer.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Por los primeros bytes del archivo, no por el nombre ni el Content-Type que manda el navegador
+    static Optional<String> extensionSegunContenido(byte[] cabecera, int largo) {
+        if (largo >= 3 && (cabecera[0] & 0xFF) == 0xFF && (cabecera[1] & 0xFF) == 0xD8 && (cabecera[2] & 0xFF) == 0xFF) {
+            return Optional.of("jpg");
+        }
+        if (largo >= 8 && (cabecera[0] & 0xFF) == 0x89 && cabecera[1] == 'P' && cabecera[2] == 'N' && cabecera[3] == 'G') {
+            return Optional.of("png");
+        }
+        if (largo >= 6 && cabecera[0] == 'G' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == '8') {
+            return Optional.of("gif");
+        }
+        return Optional.empty();
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,106 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.config.AdmisionFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pasa al archivo los pedidos cerrados más viejos que retencion-dias, de a tamano-lote por transacción.
+ *
+ * No compite con el checkout: corre en la franja del cron (de madrugada por defecto), duerme pausa-ms
+ * entre lotes, y antes de cada lote mira la ocupación de AdmisionFilter; si el tráfico pasa de
+ * ocupacion-maxima espera pausa-carga-ms sin tocar la base. Cada corrida dura como mucho
+ * duracion-maxima-ms; lo que falte queda para la siguiente.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ArchivoPedidosJob {
+
+    private final ArchivoPedidosService archivoPedidosService;
+    private final AdmisionFilter admisionFilter;
+
+    @Value("${hrk.pedidos.archivo.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${hrk.pedidos.archivo.retencion-dias:365}")
+    private long retencionDias;
+
+    @Value("${hrk.pedidos.archivo.tamano-lote:200}")
+    private int tamanoLote;
+
+    @Value("${hrk.pedidos.archivo.pausa-ms:200}")
+    private long pausaMs;
+
+    @Value("${hrk.pedidos.archivo.ocupacion-maxima:0.5}")
+    private double ocupacionMaxima;
+
+    @Value("${hrk.pedidos.archivo.pausa-carga-ms:5000}")
+    private long pausaCargaMs;
+
+    @Value("${hrk.pedidos.archivo.duracion-maxima-ms:600000}")
+    private long duracionMaximaMs;
+
+    private final LongAdder corridas = new LongAdder();
+    private final LongAdder esperasPorCarga = new LongAdder();
+    private final LongAdder corridasCortadas = new LongAdder();
+
+    @Scheduled(cron = "${hrk.pedidos.archivo.cron:0 */15 2-5 * * *}")
+    public void archivar() {
+        if (!habilitado) {
+            return;
+        }
+        corridas.increment();
+        LocalDateTime limite = LocalDateTime.now().minusDays(retencionDias);
+        long fin = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duracionMaximaMs);
+        int archivados = 0;
+
+        try {
+            while (true) {
+                if (System.nanoTime() - fin > 0) {
+                    corridasCortadas.increment();
+                    break;
+                }
+                if (admisionFilter.ocupacion() > ocupacionMaxima) {
+                    esperasPorCarga.increment();
+                    Thread.sleep(pausaCargaMs);
+                    continue;
+                }
+                int lote = archivoPedidosService.archivarLote(limite, tamanoLote);
+                archivados += lote;
+                if (lote < tamanoLote) {
+                    break;
+                }
+                Thread.sleep(pausaMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Archivo de pedidos interrumpido después de {} pedidos: {}", archivados, e.getMessage());
+        }
+
+        if (archivados > 0) {
+            log.info("Pedidos cerrados archivados (anteriores a {}): {}", limite, archivados);
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("retencionDias", retencionDias);
+        estadisticas.put("corridas", corridas.sum());
+        estadisticas.put("corridasCortadas", corridasCortadas.sum());
+        estadisticas.put("esperasPorCarga", esperasPorCarga.sum());
+        estadisticas.putAll(archivoPedidosService.estadisticas());
+        return estadisticas;
+    }
+}
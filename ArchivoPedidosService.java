@@ -0,0 +1,314 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.DetalleHistorialFila;
+import com.hrk.tienda_b2b.model.EstadoEventoPedido;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.Usuario;
+import com.hrk.tienda_b2b.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivo de pedidos cerrados (tabla pedidos_archivo).
+ *
+ * - archivarLote mueve en una transacción un lote de pedidos ENTREGADO/CANCELADO anteriores a una fecha:
+ *   inserta cada pedido con sus líneas comprimidas en pedidos_archivo y lo borra de pedido_detalles y pedidos.
+ *   Lo llama ArchivoPedidosJob, que decide cuándo y a qué ritmo.
+ * - Las lecturas devuelven Pedido no administrados y DetalleHistorialFila, así PedidoHistorialService y
+ *   EscritorJsonRespuestas tratan a los pedidos archivados igual que a los de las tablas calientes.
+ *
+ * Formato de la columna detalles: gzip de [versión][cantidad de líneas] y, por línea, detalle, variante,
+ * cantidad, precio cobrado, precio de lista, regla, SKU, color, talle, precio de la variante, producto y
+ * nombre. Variante y producto quedan como estaban al archivar.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ArchivoPedidosService {
+
+    private static final byte VERSION_DETALLES = 1;
+    private static final long NULO = Long.MIN_VALUE;
+
+    private static final String ESTADOS_FINALES = Arrays.stream(EstadoPedido.values())
+            .filter(EstadoPedido::esFinal)
+            .map(e -> "'" + e.name() + "'")
+            .collect(Collectors.joining(", "));
+
+    // Un pedido con eventos sin procesar se deja para más adelante: ManejadorRollupVentas lee la fila de pedidos
+    private static final String CANDIDATOS =
+            "SELECT p.id, p.cliente_id, p.usuario_id, p.fecha, p.estado, p.total_centavos, p.cantidad_lineas " +
+            "FROM pedidos p WHERE p.estado IN (" + ESTADOS_FINALES + ") AND p.fecha < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM pedido_eventos e WHERE e.pedido_id = p.id AND e.estado <> '" +
+            EstadoEventoPedido.PROCESADO.name() + "') " +
+            "ORDER BY p.fecha, p.id LIMIT ? FOR UPDATE";
+
+    private static final String LINEAS =
+            "SELECT d.pedido_id, d.id, d.variante_id, d.cantidad, d.precio_unitario_centavos, d.precio_lista_centavos, " +
+            "d.regla_precio_id, v.sku, v.color, v.talle, v.precio_centavos, pr.id AS producto_id, pr.nombre " +
+            "FROM pedido_detalles d JOIN producto_variantes v ON v.id = d.variante_id " +
+            "JOIN productos pr ON pr.id = v.producto_id WHERE d.pedido_id IN (%s) ORDER BY d.pedido_id, d.id";
+
+    private static final String INSERTAR =
+            "INSERT INTO pedidos_archivo (id, cliente_id, usuario_id, fecha, estado, total_centavos, cantidad_lineas, " +
+            "detalles, archivado_en) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String COLUMNAS =
+            "SELECT id, cliente_id, usuario_id, fecha, estado, total_centavos, cantidad_lineas";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UsuarioRepository usuarioRepository;
+
+    private final LongAdder pedidosArchivados = new LongAdder();
+    private final LongAdder lineasArchivadas = new LongAdder();
+    private final LongAdder bytesComprimidos = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder lecturasArchivo = new LongAdder();
+
+    /** Cabecera de un pedido tal como está en pedidos (o en pedidos_archivo). */
+    private record Cabecera(long id, long clienteId, Long usuarioId, LocalDateTime fecha, EstadoPedido estado,
+                            long totalCentavos, int cantidadLineas) {
+
+        static Cabecera leer(ResultSet rs) throws SQLException {
+            long usuarioId = rs.getLong("usuario_id");
+            boolean sinUsuario = rs.wasNull();
+            return new Cabecera(rs.getLong("id"), rs.getLong("cliente_id"), sinUsuario ? null : usuarioId,
+                    rs.getTimestamp("fecha").toLocalDateTime(), EstadoPedido.valueOf(rs.getString("estado")),
+                    rs.getLong("total_centavos"), rs.getInt("cantidad_lineas"));
+        }
+    }
+
+    /** Pedidos archivados (sin administrar) y sus líneas, si se pidieron. */
+    public record Archivados(List<Pedido> pedidos, Map<Long, List<DetalleHistorialFila>> detalles) {
+    }
+
+    /**
+     * Archiva hasta tamanoLote pedidos cerrados anteriores a limite. Devuelve cuántos archivó;
+     * menos que tamanoLote quiere decir que no queda nada por archivar.
+     */
+    @Transactional
+    public int archivarLote(LocalDateTime limite, int tamanoLote) {
+        List<Cabecera> cabeceras = jdbcTemplate.query(CANDIDATOS, (rs, i) -> Cabecera.leer(rs),
+                Timestamp.valueOf(limite), tamanoLote);
+        if (cabeceras.isEmpty()) {
+            return 0;
+        }
+
+        List<Object> ids = cabeceras.stream().map(c -> (Object) c.id()).toList();
+        String marcadores = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Map<Long, List<DetalleHistorialFila>> lineasPorPedido = new HashMap<>(ids.size() * 2);
+        Map<Long, long[]> listaYReglaPorDetalle = new HashMap<>();
+        jdbcTemplate.query(LINEAS.formatted(marcadores), rs -> {
+            DetalleHistorialFila fila = new DetalleHistorialFila(rs.getLong("pedido_id"), rs.getLong("id"),
+                    rs.getInt("cantidad"), rs.getLong("precio_unitario_centavos"), rs.getLong("variante_id"),
+                    rs.getString("sku"), rs.getString("color"), rs.getString("talle"), rs.getLong("precio_centavos"),
+                    null, rs.getLong("producto_id"), rs.getString("nombre"));
+            long precioLista = rs.getLong("precio_lista_centavos");
+            precioLista = rs.wasNull() ? NULO : precioLista;
+            long regla = rs.getLong("regla_precio_id");
+            regla = rs.wasNull() ? NULO : regla;
+            lineasPorPedido.computeIfAbsent(fila.getPedidoId(), id -> new ArrayList<>()).add(fila);
+            listaYReglaPorDetalle.put(fila.getDetalleId(), new long[]{precioLista, regla});
+        }, ids.toArray());
+
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> filas = new ArrayList<>(cabeceras.size());
+        long bytes = 0;
+        for (Cabecera c : cabeceras) {
+            byte[] detalles = comprimir(lineasPorPedido.getOrDefault(c.id(), List.of()), listaYReglaPorDetalle);
+            bytes += detalles.length;
+            filas.add(new Object[]{c.id(), c.clienteId(), c.usuarioId(), Timestamp.valueOf(c.fecha()),
+                    c.estado().name(), c.totalCentavos(), c.cantidadLineas(), detalles, ahora});
+        }
+        jdbcTemplate.batchUpdate(INSERTAR, filas);
+        jdbcTemplate.update("DELETE FROM pedido_detalles WHERE pedido_id IN (" + marcadores + ")", ids.toArray());
+        jdbcTemplate.update("DELETE FROM pedidos WHERE id IN (" + marcadores + ")", ids.toArray());
+
+        pedidosArchivados.add(cabeceras.size());
+        lineasArchivadas.add(listaYReglaPorDetalle.size());
+        bytesComprimidos.add(bytes);
+        lotes.increment();
+        log.debug("Lote archivado: {} pedidos, {} líneas, {} bytes", cabeceras.size(), listaYReglaPorDetalle.size(), bytes);
+        return cabeceras.size();
+    }
+
+    /** Fecha del pedido archivado más nuevo del cliente (una lectura del índice), vacío si no tiene. */
+    @Transactional(readOnly = true)
+    public Optional<LocalDateTime> fechaMasNueva(Long clienteId) {
+        Timestamp fecha = jdbcTemplate.queryForObject(
+                "SELECT MAX(fecha) FROM pedidos_archivo WHERE cliente_id = ?", Timestamp.class, clienteId);
+        return Optional.ofNullable(fecha).map(Timestamp::toLocalDateTime);
+    }
+
+    /**
+     * Hasta limite pedidos archivados del cliente posteriores al cursor (null = desde el más nuevo),
+     * en el mismo orden que el historial: fecha DESC, id DESC.
+     */
+    @Transactional(readOnly = true)
+    public Archivados pagina(Long clienteId, CursorPedido desde, int limite, boolean conDetalles) {
+        String columnas = conDetalles ? COLUMNAS + ", detalles" : COLUMNAS;
+        if (desde == null) {
+            return leer(columnas + " FROM pedidos_archivo WHERE cliente_id = ? ORDER BY fecha DESC, id DESC LIMIT ?",
+                    conDetalles, clienteId, limite);
+        }
+        Timestamp fecha = Timestamp.valueOf(desde.fecha());
+        return leer(columnas + " FROM pedidos_archivo WHERE cliente_id = ? AND (fecha < ? OR (fecha = ? AND id < ?)) " +
+                        "ORDER BY fecha DESC, id DESC LIMIT ?",
+                conDetalles, clienteId, fecha, fecha, desde.id(), limite);
+    }
+
+    @Transactional(readOnly = true)
+    public Archivados todos(Long clienteId, boolean conDetalles) {
+        String columnas = conDetalles ? COLUMNAS + ", detalles" : COLUMNAS;
+        return leer(columnas + " FROM pedidos_archivo WHERE cliente_id = ? ORDER BY fecha DESC, id DESC",
+                conDetalles, clienteId);
+    }
+
+    private Archivados leer(String sql, boolean conDetalles, Object... parametros) {
+        lecturasArchivo.increment();
+        List<Cabecera> cabeceras = new ArrayList<>();
+        Map<Long, List<DetalleHistorialFila>> detalles = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            Cabecera cabecera = Cabecera.leer(rs);
+            cabeceras.add(cabecera);
+            if (conDetalles) {
+                detalles.put(cabecera.id(), descomprimir(cabecera.id(), rs.getBytes("detalles")));
+            }
+        }, parametros);
+
+        // Un solo SELECT para los usuarios (casi siempre es uno por cliente)
+        Map<Long, Usuario> usuarios = new HashMap<>();
+        List<Long> usuarioIds = cabeceras.stream().map(Cabecera::usuarioId).filter(id -> id != null).distinct().toList();
+        if (!usuarioIds.isEmpty()) {
+            usuarioRepository.findAllById(usuarioIds).forEach(u -> usuarios.put(u.getId(), u));
+        }
+
+        List<Pedido> pedidos = new ArrayList<>(cabeceras.size());
+        for (Cabecera c : cabeceras) {
+            Pedido pedido = new Pedido();
+            pedido.setId(c.id());
+            pedido.setClienteId(c.clienteId());
+            pedido.setUsuario(c.usuarioId() == null ? null : usuarios.get(c.usuarioId()));
+            pedido.setFecha(c.fecha());
+            pedido.setEstado(c.estado());
+            pedido.setTotalCentavos(c.totalCentavos());
+            pedido.setCantidadLineas(c.cantidadLineas());
+            pedidos.add(pedido);
+        }
+        return new Archivados(pedidos, detalles);
+    }
+
+    /** Corta la reconstrucción del rollup si el rango tiene pedidos archivados (sus líneas ya no están en pedido_detalles). */
+    @Transactional(readOnly = true)
+    public boolean hayArchivadosEntre(LocalDateTime desde, LocalDateTime hasta) {
+        List<Long> uno = jdbcTemplate.queryForList(
+                "SELECT id FROM pedidos_archivo WHERE fecha >= ? AND fecha < ? LIMIT 1", Long.class,
+                Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+        return !uno.isEmpty();
+    }
+
+    static byte[] comprimir(List<DetalleHistorialFila> lineas, Map<Long, long[]> listaYReglaPorDetalle) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + lineas.size() * 48);
+        try (DataOutputStream salida = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            salida.writeByte(VERSION_DETALLES);
+            salida.writeInt(lineas.size());
+            for (DetalleHistorialFila linea : lineas) {
+                long[] listaYRegla = listaYReglaPorDetalle.getOrDefault(linea.getDetalleId(), new long[]{NULO, NULO});
+                salida.writeLong(linea.getDetalleId());
+                salida.writeLong(linea.getVarianteId());
+                salida.writeInt(linea.getCantidad());
+                salida.writeLong(linea.getPrecioUnitarioCentavos());
+                salida.writeLong(listaYRegla[0]);
+                salida.writeLong(listaYRegla[1]);
+                escribirTexto(salida, linea.getSku());
+                escribirTexto(salida, linea.getColor());
+                escribirTexto(salida, linea.getTalle());
+                salida.writeLong(linea.getPrecioCentavos());
+                salida.writeLong(linea.getProductoId());
+                escribirTexto(salida, linea.getProductoNombre());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<DetalleHistorialFila> descomprimir(long pedidoId, byte[] detalles) {
+        try (DataInputStream entrada = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(detalles)))) {
+            byte version = entrada.readByte();
+            if (version != VERSION_DETALLES) {
+                throw new IllegalStateException("Versión de detalles archivados desconocida: " + version);
+            }
+            int cantidad = entrada.readInt();
+            List<DetalleHistorialFila> lineas = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                long detalleId = entrada.readLong();
+                long varianteId = entrada.readLong();
+                int unidades = entrada.readInt();
+                long precioUnitario = entrada.readLong();
+                entrada.readLong();  // precio de lista: solo para auditoría
+                entrada.readLong();  // regla de precio: ídem
+                String sku = leerTexto(entrada);
+                String color = leerTexto(entrada);
+                String talle = leerTexto(entrada);
+                long precioVariante = entrada.readLong();
+                long productoId = entrada.readLong();
+                String productoNombre = leerTexto(entrada);
+                // Sin stock: el de hoy no tiene sentido para un pedido cerrado
+                lineas.add(new DetalleHistorialFila(pedidoId, detalleId, unidades, precioUnitario, varianteId,
+                        sku, color, talle, precioVariante, null, productoId, productoNombre));
+            }
+            return lineas;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Detalles archivados ilegibles del pedido " + pedidoId, e);
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        salida.writeBoolean(texto != null);
+        if (texto != null) {
+            salida.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readUTF() : null;
+    }
+
+    public Map<String, Object> estadisticas() {
+        long archivados = pedidosArchivados.sum();
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("pedidosArchivados", archivados);
+        estadisticas.put("lineasArchivadas", lineasArchivadas.sum());
+        estadisticas.put("lotes", lotes.sum());
+        estadisticas.put("bytesPorPedido", archivados == 0 ? 0.0 : (double) bytesComprimidos.sum() / archivados);
+        estadisticas.put("lecturasArchivo", lecturasArchivo.sum());
+        return estadisticas;
+    }
+}
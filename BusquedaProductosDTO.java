@@ -0,0 +1,23 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusquedaProductosDTO {
+    
+    // Variantes que cumplen todos los filtros
+    private int totalVariantes;
+    private int totalProductos;
+    // Productos encontrados, cada uno solo con sus variantes que coinciden (hasta "limite" productos)
+    private List<CatalogoProductoDTO> productos;
+    // faceta (tipo/categoria/color/talle) → valor → cantidad de variantes dentro del resultado
+    private Map<String, Map<String, Integer>> facetas;
+    private long versionCatalogo;
+}
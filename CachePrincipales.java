@@ -0,0 +1,199 @@
+package com.hrk.tienda_b2b.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.model.Usuario;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache de tokens JWT ya verificados → usuario y authorities, para que JwtRequestFilter
+ * no consulte la base en cada request.
+ *
+ * - La clave es el SHA-256 del token (el token en sí no queda en memoria).
+ * - Cada entrada vence a los hrk.security.cache-principales.ttl-segundos o al vencer el token, lo que ocurra antes.
+ * - Tamaño acotado: al llenarse se descartan primero las vencidas y después entradas cualesquiera.
+ * - UsuarioService invalida todas las entradas de un usuario cuando cambia su rol, sus datos o se elimina.
+ */
+@Component
+public class CachePrincipales {
+
+    private final ConcurrentHashMap<String, Entrada> porToken = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> tokensPorUsuario = new ConcurrentHashMap<>();
+    // Se incrementa en cada invalidación: una carga que empezó antes no puede guardar datos viejos
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntradas;
+    private final long ttlMillis;
+
+    public CachePrincipales(ObjectMapper objectMapper,
+                            @Value("${hrk.security.cache-principales.max-entradas:10000}") int maxEntradas,
+                            @Value("${hrk.security.cache-principales.ttl-segundos:300}") long ttlSegundos) {
+        this.objectMapper = objectMapper;
+        this.maxEntradas = maxEntradas;
+        this.ttlMillis = ttlSegundos * 1000;
+    }
+
+    public static final class Entrada {
+        private final Usuario usuario;
+        private final List<GrantedAuthority> authorities;
+        private final long venceEnMillis;
+
+        private Entrada(Usuario usuario, List<GrantedAuthority> authorities, long venceEnMillis) {
+            this.usuario = usuario;
+            this.authorities = authorities;
+            this.venceEnMillis = venceEnMillis;
+        }
+
+        public Usuario getUsuario() {
+            return usuario;
+        }
+
+        public List<GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+    }
+
+    public String hashDe(String jwt) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(jwt.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long generacionActual() {
+        return generacion.get();
+    }
+
+    public Entrada obtener(String hashToken) {
+        Entrada entrada = porToken.get(hashToken);
+        if (entrada == null) {
+            fallos.increment();
+            return null;
+        }
+        if (entrada.venceEnMillis <= System.currentTimeMillis()) {
+            if (porToken.remove(hashToken, entrada)) {
+                desalojos.increment();
+                quitarDeUsuario(entrada.usuario.getId(), hashToken);
+            }
+            fallos.increment();
+            return null;
+        }
+        aciertos.increment();
+        return entrada;
+    }
+
+    /**
+     * Guarda el principal de un token recién verificado. Si entre la lectura del usuario
+     * (generacionLeida) y ahora hubo una invalidación, no se guarda nada.
+     */
+    public void guardar(String hashToken, String jwt, Usuario usuario, List<GrantedAuthority> authorities,
+                        long generacionLeida) {
+        long ahora = System.currentTimeMillis();
+        long vence = Math.min(ahora + ttlMillis, expiracionDelToken(jwt));
+        if (vence <= ahora) {
+            return;
+        }
+        if (porToken.size() >= maxEntradas) {
+            hacerLugar(ahora);
+        }
+
+        tokensPorUsuario.computeIfAbsent(usuario.getId(), id -> ConcurrentHashMap.newKeySet()).add(hashToken);
+        Entrada nueva = new Entrada(usuario, List.copyOf(authorities), vence);
+        porToken.put(hashToken, nueva);
+
+        // Si hubo una invalidación mientras tanto, deshacer: los datos cargados pueden ser viejos.
+        // También sale del índice por usuario, si no el hash queda ahí hasta la próxima invalidación
+        if (generacion.get() != generacionLeida && porToken.remove(hashToken, nueva)) {
+            quitarDeUsuario(usuario.getId(), hashToken);
+        }
+    }
+
+    public void invalidarUsuario(Long usuarioId) {
+        generacion.incrementAndGet();
+        Set<String> tokens = tokensPorUsuario.remove(usuarioId);
+        if (tokens != null) {
+            for (String hash : tokens) {
+                if (porToken.remove(hash) != null) {
+                    invalidaciones.increment();
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = aciertos.sum();
+        long misses = fallos.sum();
+        stats.put("entradas", porToken.size());
+        stats.put("aciertos", hits);
+        stats.put("fallos", misses);
+        stats.put("ratioAciertos", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("desalojos", desalojos.sum());
+        stats.put("invalidaciones", invalidaciones.sum());
+        return stats;
+    }
+
+    private void hacerLugar(long ahora) {
+        porToken.forEach((hash, entrada) -> {
+            if (entrada.venceEnMillis <= ahora && porToken.remove(hash, entrada)) {
+                desalojos.increment();
+                quitarDeUsuario(entrada.usuario.getId(), hash);
+            }
+        });
+        // Si sigue lleno, liberar un 10% sin orden particular
+        int aLiberar = porToken.size() - maxEntradas + Math.max(1, maxEntradas / 10);
+        for (Map.Entry<String, Entrada> e : porToken.entrySet()) {
+            if (aLiberar-- <= 0) {
+                break;
+            }
+            if (porToken.remove(e.getKey(), e.getValue())) {
+                desalojos.increment();
+                quitarDeUsuario(e.getValue().usuario.getId(), e.getKey());
+            }
+        }
+    }
+
+    // Si otra carga ya volvió a guardar el mismo token, el hash se queda: sigue haciendo falta para invalidarlo
+    private void quitarDeUsuario(Long usuarioId, String hashToken) {
+        tokensPorUsuario.computeIfPresent(usuarioId, (id, tokens) -> {
+            if (!porToken.containsKey(hashToken)) {
+                tokens.remove(hashToken);
+            }
+            return tokens.isEmpty() ? null : tokens;
+        });
+    }
+
+    // El token ya fue validado por JwtService: solo se lee el claim "exp" del payload
+    private long expiracionDelToken(String jwt) {
+        try {
+            String[] partes = jwt.split("\\.");
+            JsonNode payload = objectMapper.readTree(Base64.getUrlDecoder().decode(partes[1]));
+            return payload.has("exp") ? payload.get("exp").asLong() * 1000 : Long.MAX_VALUE;
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.hrk.tienda_b2b.service;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Campos pedidos con ?fields= (ej: "id,fecha,total,detalles.cantidad,detalles.variante.sku").
+ * Un campo objeto sin subcampos ("usuario") incluye el objeto completo; un subcampo
+ * ("usuario.email") incluye el objeto con solo ese campo. Sin fields se incluye todo.
+ */
+public final class CamposRespuesta {
+    
+    public static final CamposRespuesta TODOS = new CamposRespuesta(null, Set.of());
+    
+    private final Set<String> explicitos;
+    private final Set<String> ancestros;
+    
+    private CamposRespuesta(Set<String> explicitos, Set<String> ancestros) {
+        this.explicitos = explicitos;
+        this.ancestros = ancestros;
+    }
+    
+    // Valida contra las rutas que conoce el escritor; un campo desconocido es un 400
+    public static CamposRespuesta parsear(String fields, Set<String> rutasValidas) {
+        if (fields == null || fields.isBlank()) {
+            return TODOS;
+        }
+        Set<String> explicitos = new HashSet<>();
+        Set<String> ancestros = new HashSet<>();
+        for (String campo : fields.split(",")) {
+            String ruta = campo.trim();
+            if (ruta.isEmpty()) {
+                continue;
+            }
+            if (!rutasValidas.contains(ruta)) {
+                throw new IllegalArgumentException("Campo desconocido en fields: " + ruta);
+            }
+            explicitos.add(ruta);
+            for (int punto = ruta.indexOf('.'); punto > 0; punto = ruta.indexOf('.', punto + 1)) {
+                ancestros.add(ruta.substring(0, punto));
+            }
+        }
+        return new CamposRespuesta(Collections.unmodifiableSet(explicitos), Collections.unmodifiableSet(ancestros));
+    }
+    
+    public boolean incluye(String ruta) {
+        if (explicitos == null || explicitos.contains(ruta) || ancestros.contains(ruta)) {
+            return true;
+        }
+        // Algún objeto contenedor pedido completo
+        for (int punto = ruta.lastIndexOf('.'); punto > 0; punto = ruta.lastIndexOf('.', punto - 1)) {
+            if (explicitos.contains(ruta.substring(0, punto))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,173 @@
+package com.hrk.tienda_b2b.service;
+
+import java.util.Arrays;
+
+/**
+ * Líneas de un carrito (varianteId → cantidad) sin un objeto por línea.
+ *
+ * Las líneas están en dos arreglos paralelos en el orden en que se agregaron. Un índice de direccionamiento
+ * abierto con sondeo lineal lleva de la variante a su posición, así que agregar, cambiar o quitar una línea
+ * es O(1). Quitar deja un hueco (cantidad 0) que se compacta cuando los arreglos se llenan; el índice
+ * tiene el doble de lugares que los arreglos, así nunca pasa del 50% de ocupación.
+ *
+ * No es thread-safe: CarritoService sincroniza sobre la instancia.
+ */
+final class CarritoCompacto {
+
+    private static final int CAPACIDAD_INICIAL = 4;
+
+    private long[] variantes = new long[CAPACIDAD_INICIAL];
+    private int[] cantidades = new int[CAPACIDAD_INICIAL];
+    private int[] indice = new int[CAPACIDAD_INICIAL * 2];  // posición + 1; 0 = libre
+    private int usadas;
+    private int lineas;
+
+    long ultimoAccesoMillis;
+    boolean enCheckout;
+    boolean descartado;
+
+    CarritoCompacto(long ahoraMillis) {
+        this.ultimoAccesoMillis = ahoraMillis;
+    }
+
+    /** Copia de las líneas en orden de alta. */
+    record Lineas(long[] variantes, int[] cantidades) {
+
+        int cantidad() {
+            return variantes.length;
+        }
+    }
+
+    int cantidad(long varianteId) {
+        int posicion = indice[buscarSlot(varianteId)];
+        return posicion == 0 ? 0 : cantidades[posicion - 1];
+    }
+
+    /** Deja la línea con esa cantidad (0 la quita) y devuelve la cantidad anterior. */
+    int fijar(long varianteId, int cantidad) {
+        int slot = buscarSlot(varianteId);
+        int posicion = indice[slot];
+        if (posicion != 0) {
+            int anterior = cantidades[posicion - 1];
+            if (cantidad == 0) {
+                cantidades[posicion - 1] = 0;
+                liberarSlot(slot);
+                lineas--;
+            } else {
+                cantidades[posicion - 1] = cantidad;
+            }
+            return anterior;
+        }
+        if (cantidad == 0) {
+            return 0;
+        }
+        if (usadas == variantes.length) {
+            reorganizar();
+            slot = buscarSlot(varianteId);
+        }
+        variantes[usadas] = varianteId;
+        cantidades[usadas] = cantidad;
+        usadas++;
+        indice[slot] = usadas;
+        lineas++;
+        return 0;
+    }
+
+    int lineas() {
+        return lineas;
+    }
+
+    Lineas copiar() {
+        long[] copiaVariantes = new long[lineas];
+        int[] copiaCantidades = new int[lineas];
+        int j = 0;
+        for (int i = 0; i < usadas; i++) {
+            if (cantidades[i] > 0) {
+                copiaVariantes[j] = variantes[i];
+                copiaCantidades[j] = cantidades[i];
+                j++;
+            }
+        }
+        return new Lineas(copiaVariantes, copiaCantidades);
+    }
+
+    /** Resta lo que ya se pidió. Lo que se agregó durante el checkout queda en el carrito. */
+    void descontar(Lineas pedidas) {
+        for (int i = 0; i < pedidas.cantidad(); i++) {
+            int actual = cantidad(pedidas.variantes()[i]);
+            fijar(pedidas.variantes()[i], Math.max(0, actual - pedidas.cantidades()[i]));
+        }
+    }
+
+    void vaciar() {
+        variantes = new long[CAPACIDAD_INICIAL];
+        cantidades = new int[CAPACIDAD_INICIAL];
+        indice = new int[CAPACIDAD_INICIAL * 2];
+        usadas = 0;
+        lineas = 0;
+    }
+
+    // Slot de la variante, o el slot libre donde iría
+    private int buscarSlot(long varianteId) {
+        int mascara = indice.length - 1;
+        int slot = hash(varianteId) & mascara;
+        while (true) {
+            int posicion = indice[slot];
+            if (posicion == 0 || variantes[posicion - 1] == varianteId) {
+                return slot;
+            }
+            slot = (slot + 1) & mascara;
+        }
+    }
+
+    // Borrado sin marcas: corre hacia atrás las entradas que quedaron después del slot liberado
+    private void liberarSlot(int slot) {
+        int mascara = indice.length - 1;
+        int libre = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mascara;
+            int posicion = indice[i];
+            if (posicion == 0) {
+                break;
+            }
+            int ideal = hash(variantes[posicion - 1]) & mascara;
+            if (((i - ideal) & mascara) >= ((i - libre) & mascara)) {
+                indice[libre] = posicion;
+                libre = i;
+            }
+        }
+        indice[libre] = 0;
+    }
+
+    // Arreglos llenos: si la mitad son huecos se compacta en el lugar, si no se duplica
+    private void reorganizar() {
+        int capacidad = lineas * 2 <= variantes.length ? variantes.length : variantes.length * 2;
+        long[] nuevasVariantes = new long[capacidad];
+        int[] nuevasCantidades = new int[capacidad];
+        int j = 0;
+        for (int i = 0; i < usadas; i++) {
+            if (cantidades[i] > 0) {
+                nuevasVariantes[j] = variantes[i];
+                nuevasCantidades[j] = cantidades[i];
+                j++;
+            }
+        }
+        variantes = nuevasVariantes;
+        cantidades = nuevasCantidades;
+        usadas = j;
+        if (indice.length != capacidad * 2) {
+            indice = new int[capacidad * 2];
+        } else {
+            Arrays.fill(indice, 0);
+        }
+        for (int i = 0; i < usadas; i++) {
+            indice[buscarSlot(variantes[i])] = i + 1;
+        }
+    }
+
+    private static int hash(long varianteId) {
+        long h = varianteId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
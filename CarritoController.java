@@ -0,0 +1,98 @@
+package com.hrk.tienda_b2b.controller;
+
+import com.hrk.tienda_b2b.dto.CarritoDTO;
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.model.Usuario;
+import com.hrk.tienda_b2b.service.CarritoService;
+import com.hrk.tienda_b2b.service.StockInsuficienteException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+// Carrito del lado del servidor: las líneas viven en memoria hasta el checkout (ver CarritoService).
+// Cada usuario ve y modifica solo el suyo: el cliente sale del token (JwtRequestFilter), no de la URL.
+@Slf4j
+@RestController
+@RequestMapping("/api/carrito")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class CarritoController {
+
+    private final CarritoService carritoService;
+
+    @GetMapping
+    public ResponseEntity<CarritoDTO> obtener(@AuthenticationPrincipal Usuario usuario) {
+        return ResponseEntity.ok(carritoService.obtener(usuario.getId()));
+    }
+
+    // Ej: POST /api/carrito/items?varianteId=120&cantidad=6 (suma a lo que ya había)
+    @PostMapping("/items")
+    public ResponseEntity<?> agregar(@AuthenticationPrincipal Usuario usuario,
+                                     @RequestParam Long varianteId,
+                                     @RequestParam int cantidad) {
+        try {
+            return ResponseEntity.ok(carritoService.agregar(usuario.getId(), varianteId, cantidad));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Cantidad absoluta (0 quita la línea): repetir el mismo PUT no cambia nada
+    @PutMapping("/items/{varianteId}")
+    public ResponseEntity<?> fijarCantidad(@AuthenticationPrincipal Usuario usuario,
+                                           @PathVariable Long varianteId,
+                                           @RequestParam int cantidad) {
+        try {
+            return ResponseEntity.ok(carritoService.fijarCantidad(usuario.getId(), varianteId, cantidad));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/items/{varianteId}")
+    public ResponseEntity<?> quitar(@AuthenticationPrincipal Usuario usuario, @PathVariable Long varianteId) {
+        try {
+            return ResponseEntity.ok(carritoService.fijarCantidad(usuario.getId(), varianteId, 0));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> vaciar(@AuthenticationPrincipal Usuario usuario) {
+        carritoService.vaciar(usuario.getId());
+        return ResponseEntity.noContent().build();
+    }
+
+    // Envía el pedido (BORRADOR, "Pendiente" hasta que lo confirme un administrador) con todas las líneas del carrito
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(@AuthenticationPrincipal Usuario usuario) {
+        Long clienteId = usuario.getId();
+        try {
+            PedidoResponseDTO pedido = carritoService.checkout(clienteId);
+            return ResponseEntity.ok(pedido);
+        } catch (StockInsuficienteException e) {
+            log.warn("Sin stock en el checkout del carrito {}: {}", clienteId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Checkout del carrito {} rechazado: {}", clienteId, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error en el checkout del carrito {}", clienteId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
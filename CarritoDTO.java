@@ -0,0 +1,38 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Carrito de un cliente con los datos de cada variante tomados del catálogo en memoria
+ * (CarritoItemDTO en cart.service.ts). Los precios ya tienen aplicada la lista de precios del cliente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarritoDTO {
+
+    private Long clienteId;
+    private List<ItemDTO> items;
+    private Integer cantidadItems;
+    private Double total;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemDTO {
+        private Long varianteId;
+        private Integer cantidad;
+        private Double precioUnitario;
+        private Double subtotal;
+        private String sku;
+        private String color;
+        private String talle;
+        private String productoNombre;
+        // false si la variante ya no está en el catálogo: no se puede pedir
+        private Boolean disponible;
+    }
+}
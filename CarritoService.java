@@ -0,0 +1,403 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.CarritoDTO;
+import com.hrk.tienda_b2b.dto.CatalogoProductoDTO;
+import com.hrk.tienda_b2b.dto.CreatePedidoRequest;
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.model.Categoria;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.TipoProducto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Carritos de compra del lado del servidor, en memoria.
+ *
+ * Cada cliente tiene un CarritoCompacto (varianteId → cantidad en arreglos primitivos). Agregar o cambiar
+ * una línea no toca la base: recién el checkout crea el pedido con todas sus líneas en una transacción
+ * (PedidoService.crearPedidoCompleto). Así los carritos abandonados no dejan pedidos a medio armar ni reservas:
+ * el pedido nace ya enviado (BORRADOR, "Pendiente" para el frontend) y ExpiracionBorradoresJob no lo toca.
+ *
+ * Los carritos sin uso por ttl-minutos se descartan. Si hrk.carrito.snapshot.archivo está configurado,
+ * se guardan en disco cada snapshot.intervalo-ms (solo si hubo cambios) y al apagar, y se cargan al iniciar.
+ */
+@Slf4j
+@Service
+public class CarritoService {
+
+    private static final int MAGIA_SNAPSHOT = 0x48524B43; // "HRKC"
+    private static final int VERSION_SNAPSHOT = 1;
+
+    private final PedidoService pedidoService;
+    private final CatalogoSnapshotService catalogoSnapshotService;
+    private final MotorPrecios motorPrecios;
+    private final long ttlMillis;
+    private final int maxLineas;
+    private final int maxCantidad;
+    private final int maxCarritos;
+    private final Path archivoSnapshot;
+
+    private final Map<Long, CarritoCompacto> carritos = new ConcurrentHashMap<>();
+    private volatile VariantesCatalogo variantesCatalogo = new VariantesCatalogo(-1, Map.of());
+
+    private final AtomicLong cambios = new AtomicLong();
+    private volatile long cambiosGuardados;
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder vencidos = new LongAdder();
+    private final LongAdder snapshotsGuardados = new LongAdder();
+
+    public CarritoService(PedidoService pedidoService,
+                          CatalogoSnapshotService catalogoSnapshotService,
+                          MotorPrecios motorPrecios,
+                          @Value("${hrk.carrito.ttl-minutos:10080}") long ttlMinutos,
+                          @Value("${hrk.carrito.max-lineas:500}") int maxLineas,
+                          @Value("${hrk.carrito.max-cantidad:100000}") int maxCantidad,
+                          @Value("${hrk.carrito.max-carritos:20000}") int maxCarritos,
+                          @Value("${hrk.carrito.snapshot.archivo:}") String archivoSnapshot) {
+        this.pedidoService = pedidoService;
+        this.catalogoSnapshotService = catalogoSnapshotService;
+        this.motorPrecios = motorPrecios;
+        this.ttlMillis = ttlMinutos * 60_000;
+        this.maxLineas = maxLineas;
+        this.maxCantidad = maxCantidad;
+        this.maxCarritos = maxCarritos;
+        this.archivoSnapshot = archivoSnapshot.isBlank() ? null : Path.of(archivoSnapshot);
+    }
+
+    public CarritoDTO obtener(Long clienteId) {
+        CarritoCompacto carrito = carritos.get(clienteId);
+        if (carrito == null) {
+            return aDTO(clienteId, new CarritoCompacto.Lineas(new long[0], new int[0]));
+        }
+        CarritoCompacto.Lineas lineas;
+        synchronized (carrito) {
+            carrito.ultimoAccesoMillis = System.currentTimeMillis();
+            lineas = carrito.copiar();
+        }
+        return aDTO(clienteId, lineas);
+    }
+
+    /** Suma cantidad a la línea de la variante (la crea si no existe). */
+    public CarritoDTO agregar(Long clienteId, Long varianteId, int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+        }
+        validarVariante(varianteId);
+        return modificar(clienteId, carrito -> {
+            long nueva = (long) carrito.cantidad(varianteId) + cantidad;
+            fijarValidando(carrito, varianteId, (int) Math.min(nueva, (long) maxCantidad + 1));
+        });
+    }
+
+    /** Deja la línea con exactamente esa cantidad; 0 la quita. Repetirlo no cambia nada (sirve para reintentos). */
+    public CarritoDTO fijarCantidad(Long clienteId, Long varianteId, int cantidad) {
+        if (cantidad < 0) {
+            throw new IllegalArgumentException("La cantidad no puede ser negativa");
+        }
+        if (cantidad > 0) {
+            validarVariante(varianteId);
+        }
+        return modificar(clienteId, carrito -> fijarValidando(carrito, varianteId, cantidad));
+    }
+
+    public void vaciar(Long clienteId) {
+        CarritoCompacto carrito = carritos.get(clienteId);
+        if (carrito != null) {
+            synchronized (carrito) {
+                carrito.vaciar();
+                carrito.ultimoAccesoMillis = System.currentTimeMillis();
+            }
+            cambios.incrementAndGet();
+        }
+    }
+
+    /**
+     * Convierte el carrito en un pedido enviado (BORRADOR) con todas sus líneas (una transacción, con reserva de stock).
+     * Si sale bien se descuentan del carrito las cantidades pedidas; si falla el carrito queda como estaba.
+     */
+    public PedidoResponseDTO checkout(Long clienteId) {
+        CarritoCompacto carrito = carritos.get(clienteId);
+        if (carrito == null) {
+            throw new IllegalArgumentException("El carrito está vacío");
+        }
+        CarritoCompacto.Lineas lineas;
+        synchronized (carrito) {
+            if (carrito.descartado || carrito.lineas() == 0) {
+                throw new IllegalArgumentException("El carrito está vacío");
+            }
+            if (carrito.enCheckout) {
+                throw new IllegalStateException("Ya hay un checkout en curso para este carrito");
+            }
+            carrito.enCheckout = true;
+            lineas = carrito.copiar();
+        }
+        try {
+            CreatePedidoRequest request = new CreatePedidoRequest();
+            request.setClienteId(clienteId);
+            for (int i = 0; i < lineas.cantidad(); i++) {
+                request.getItems().add(new CreatePedidoRequest.ItemDTO(lineas.variantes()[i], lineas.cantidades()[i]));
+            }
+            PedidoResponseDTO pedido = pedidoService.crearPedidoCompleto(request);
+            synchronized (carrito) {
+                carrito.descontar(lineas);
+                carrito.ultimoAccesoMillis = System.currentTimeMillis();
+            }
+            cambios.incrementAndGet();
+            checkouts.increment();
+            log.info("Checkout del carrito del cliente {}: pedido {} con {} líneas", clienteId, pedido.getId(), lineas.cantidad());
+            return pedido;
+        } finally {
+            synchronized (carrito) {
+                carrito.enCheckout = false;
+            }
+        }
+    }
+
+    // Un carrito descartado por el barrido puede seguir en manos de un request: se reintenta con uno nuevo
+    private CarritoDTO modificar(Long clienteId, Consumer<CarritoCompacto> operacion) {
+        if (clienteId == null || clienteId <= 0) {
+            throw new IllegalArgumentException("Cliente inválido: " + clienteId);
+        }
+        while (true) {
+            CarritoCompacto carrito = carritos.get(clienteId);
+            if (carrito == null) {
+                if (carritos.size() >= maxCarritos) {
+                    throw new IllegalStateException("Se alcanzó el máximo de carritos activos");
+                }
+                carrito = carritos.computeIfAbsent(clienteId, id -> new CarritoCompacto(System.currentTimeMillis()));
+            }
+            CarritoCompacto.Lineas lineas;
+            synchronized (carrito) {
+                if (carrito.descartado) {
+                    continue;
+                }
+                operacion.accept(carrito);
+                carrito.ultimoAccesoMillis = System.currentTimeMillis();
+                lineas = carrito.copiar();
+            }
+            cambios.incrementAndGet();
+            return aDTO(clienteId, lineas);
+        }
+    }
+
+    private void fijarValidando(CarritoCompacto carrito, long varianteId, int cantidad) {
+        if (cantidad > maxCantidad) {
+            throw new IllegalArgumentException("La cantidad máxima por línea es " + maxCantidad);
+        }
+        if (cantidad > 0 && carrito.cantidad(varianteId) == 0 && carrito.lineas() >= maxLineas) {
+            throw new IllegalArgumentException("El carrito no puede tener más de " + maxLineas + " líneas");
+        }
+        carrito.fijar(varianteId, cantidad);
+    }
+
+    private void validarVariante(Long varianteId) {
+        if (varianteId == null || variantes().porId().get(varianteId) == null) {
+            throw new IllegalArgumentException("Variante no encontrada con ID: " + varianteId);
+        }
+    }
+
+    private CarritoDTO aDTO(Long clienteId, CarritoCompacto.Lineas lineas) {
+        Map<Long, VarianteEnCatalogo> porId = variantes().porId();
+        List<CarritoDTO.ItemDTO> items = new ArrayList<>(lineas.cantidad());
+        long totalCentavos = 0;
+        int unidades = 0;
+        for (int i = 0; i < lineas.cantidad(); i++) {
+            long varianteId = lineas.variantes()[i];
+            int cantidad = lineas.cantidades()[i];
+            unidades += cantidad;
+            VarianteEnCatalogo enCatalogo = porId.get(varianteId);
+            if (enCatalogo == null) {
+                items.add(new CarritoDTO.ItemDTO(varianteId, cantidad, null, null, null, null, null, null, false));
+                continue;
+            }
+            CatalogoProductoDTO.VarianteDTO variante = enCatalogo.variante();
+            long precio = motorPrecios.resolver(clienteId, varianteId, Dinero.aCentavos(variante.getPrecio()),
+                    enCatalogo.producto().getId(), enCatalogo.categoria(), enCatalogo.tipo(), cantidad).precioCentavos();
+            long subtotal = Dinero.subtotal(precio, cantidad);
+            totalCentavos += subtotal;
+            items.add(new CarritoDTO.ItemDTO(varianteId, cantidad, Dinero.aPesos(precio), Dinero.aPesos(subtotal),
+                    variante.getSku(), variante.getColor(), variante.getTalle(), enCatalogo.producto().getNombre(), true));
+        }
+        return new CarritoDTO(clienteId, items, unidades, Dinero.aPesos(totalCentavos));
+    }
+
+    private record VarianteEnCatalogo(CatalogoProductoDTO producto, CatalogoProductoDTO.VarianteDTO variante,
+                                      Categoria categoria, TipoProducto tipo) {
+    }
+
+    private record VariantesCatalogo(long version, Map<Long, VarianteEnCatalogo> porId) {
+    }
+
+    // Índice varianteId → datos del catálogo, rearmado cuando cambia la versión de la foto del catálogo
+    private VariantesCatalogo variantes() {
+        CatalogoSnapshot snapshot = catalogoSnapshotService.obtener();
+        VariantesCatalogo actual = variantesCatalogo;
+        if (actual.version() == snapshot.getVersion()) {
+            return actual;
+        }
+        Map<Long, VarianteEnCatalogo> porId = new HashMap<>();
+        for (CatalogoProductoDTO producto : snapshot.getProductos()) {
+            Categoria categoria = producto.getCategoria() != null ? Categoria.valueOf(producto.getCategoria()) : null;
+            TipoProducto tipo = producto.getTipo() != null ? TipoProducto.valueOf(producto.getTipo()) : null;
+            for (CatalogoProductoDTO.VarianteDTO variante : producto.getVariantes()) {
+                porId.put(variante.getId(), new VarianteEnCatalogo(producto, variante, categoria, tipo));
+            }
+        }
+        actual = new VariantesCatalogo(snapshot.getVersion(), Map.copyOf(porId));
+        variantesCatalogo = actual;
+        return actual;
+    }
+
+    @Scheduled(fixedDelayString = "${hrk.carrito.barrido-ms:60000}")
+    public void barrerVencidos() {
+        long limite = System.currentTimeMillis() - ttlMillis;
+        int antes = carritos.size();
+        carritos.values().removeIf(carrito -> {
+            synchronized (carrito) {
+                if (carrito.enCheckout || carrito.ultimoAccesoMillis >= limite) {
+                    return false;
+                }
+                carrito.descartado = true;
+                return true;
+            }
+        });
+        int borrados = antes - carritos.size();
+        if (borrados > 0) {
+            vencidos.add(borrados);
+            cambios.incrementAndGet();
+            log.info("Carritos vencidos descartados: {} (quedan {})", borrados, carritos.size());
+        }
+    }
+
+    @PostConstruct
+    public void cargarSnapshot() {
+        if (archivoSnapshot == null || !Files.exists(archivoSnapshot)) {
+            return;
+        }
+        long limite = System.currentTimeMillis() - ttlMillis;
+        int cargados = 0;
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(archivoSnapshot))))) {
+            if (entrada.readInt() != MAGIA_SNAPSHOT || entrada.readInt() != VERSION_SNAPSHOT) {
+                log.warn("{} no es un snapshot de carritos válido: se ignora", archivoSnapshot);
+                return;
+            }
+            int cantidad = entrada.readInt();
+            for (int i = 0; i < cantidad; i++) {
+                long clienteId = entrada.readLong();
+                long ultimoAcceso = entrada.readLong();
+                int lineas = entrada.readInt();
+                CarritoCompacto carrito = new CarritoCompacto(ultimoAcceso);
+                for (int j = 0; j < lineas; j++) {
+                    long varianteId = entrada.readLong();
+                    int cantidadLinea = entrada.readInt();
+                    if (cantidadLinea > 0) {
+                        carrito.fijar(varianteId, cantidadLinea);
+                    }
+                }
+                if (ultimoAcceso >= limite && carrito.lineas() > 0) {
+                    carritos.put(clienteId, carrito);
+                    cargados++;
+                }
+            }
+            log.info("Carritos cargados desde {}: {}", archivoSnapshot, cargados);
+        } catch (IOException e) {
+            // Un snapshot roto no impide arrancar: se pierden los carritos, no los pedidos
+            log.warn("No se pudo leer el snapshot de carritos {}: {}", archivoSnapshot, e.getMessage());
+            carritos.clear();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hrk.carrito.snapshot.intervalo-ms:60000}")
+    public void guardarSnapshotProgramado() {
+        if (archivoSnapshot != null && cambios.get() != cambiosGuardados) {
+            guardarSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void guardarSnapshot() {
+        if (archivoSnapshot == null) {
+            return;
+        }
+        long version = cambios.get();
+        Path temporal = archivoSnapshot.resolveSibling(archivoSnapshot.getFileName() + ".tmp");
+        int guardados = 0;
+        try {
+            if (archivoSnapshot.getParent() != null) {
+                Files.createDirectories(archivoSnapshot.getParent());
+            }
+            // Se escribe a un temporal y se renombra: un corte a mitad de camino deja el snapshot anterior entero
+            List<Map.Entry<Long, CarritoCompacto.Lineas>> copias = new ArrayList<>(carritos.size());
+            List<Long> accesos = new ArrayList<>(carritos.size());
+            for (Map.Entry<Long, CarritoCompacto> entrada : carritos.entrySet()) {
+                CarritoCompacto carrito = entrada.getValue();
+                synchronized (carrito) {
+                    if (carrito.descartado || carrito.lineas() == 0) {
+                        continue;
+                    }
+                    copias.add(Map.entry(entrada.getKey(), carrito.copiar()));
+                    accesos.add(carrito.ultimoAccesoMillis);
+                }
+            }
+            try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temporal))))) {
+                salida.writeInt(MAGIA_SNAPSHOT);
+                salida.writeInt(VERSION_SNAPSHOT);
+                salida.writeInt(copias.size());
+                for (int i = 0; i < copias.size(); i++) {
+                    CarritoCompacto.Lineas lineas = copias.get(i).getValue();
+                    salida.writeLong(copias.get(i).getKey());
+                    salida.writeLong(accesos.get(i));
+                    salida.writeInt(lineas.cantidad());
+                    for (int j = 0; j < lineas.cantidad(); j++) {
+                        salida.writeLong(lineas.variantes()[j]);
+                        salida.writeInt(lineas.cantidades()[j]);
+                    }
+                }
+                guardados = copias.size();
+            }
+            Files.move(temporal, archivoSnapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            cambiosGuardados = version;
+            snapshotsGuardados.increment();
+            log.debug("Snapshot de carritos guardado en {}: {} carritos", archivoSnapshot, guardados);
+        } catch (IOException e) {
+            log.warn("No se pudo guardar el snapshot de carritos en {}: {}", archivoSnapshot, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("activos", carritos.size());
+        estadisticas.put("cambios", cambios.get());
+        estadisticas.put("checkouts", checkouts.sum());
+        estadisticas.put("vencidos", vencidos.sum());
+        estadisticas.put("snapshot", archivoSnapshot != null ? archivoSnapshot.toString() : "deshabilitado");
+        estadisticas.put("snapshotsGuardados", snapshotsGuardados.sum());
+        return estadisticas;
+    }
+}
@@ -0,0 +1,102 @@
+package com.hrk.tienda_b2b.controller;
+
+import com.hrk.tienda_b2b.dto.BusquedaProductosDTO;
+import com.hrk.tienda_b2b.service.CatalogoSnapshot;
+import com.hrk.tienda_b2b.service.CatalogoSnapshotService;
+import com.hrk.tienda_b2b.service.IndiceBusquedaProductos;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/catalogo")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class CatalogoController {
+    
+    // Límite de precioMin/precioMax en pesos: Dinero.aCentavos tiene que entrar en un long
+    private static final double MAX_PRECIO = 1e15;
+
+    private final CatalogoSnapshotService catalogoSnapshotService;
+    private final IndiceBusquedaProductos indiceBusquedaProductos;
+
+    /**
+     * Mismo contenido que GET /api/productos, servido desde la foto en memoria.
+     * Si el cliente ya tiene la versión actual (If-None-Match) responde 304 sin cuerpo.
+     */
+    @GetMapping
+    public ResponseEntity<byte[]> obtenerCatalogo(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        
+        CatalogoSnapshot snapshot = catalogoSnapshotService.obtener();
+        // no-cache: el navegador guarda la respuesta pero revalida siempre con el ETag
+        CacheControl cacheControl = CacheControl.noCache();
+        
+        if (coincideEtag(ifNoneMatch, snapshot.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getEtag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(snapshot.getJson().length)
+                .body(snapshot.getJson());
+    }
+
+    /**
+     * Búsqueda sobre el índice en memoria. Todos los filtros son opcionales y se combinan con AND:
+     * q (palabras de nombre/descripción, sin importar acentos ni mayúsculas), sku (prefijo),
+     * tipo, categoria, color, talle, precioMin/precioMax (en pesos) y conStock.
+     * Un precio NaN, infinito o fuera de rango devuelve 400 (no se puede pasar a centavos).
+     */
+    @GetMapping("/buscar")
+    public ResponseEntity<BusquedaProductosDTO> buscar(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String sku,
+            @RequestParam(required = false) String tipo,
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) String talle,
+            @RequestParam(required = false) Double precioMin,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(defaultValue = "false") boolean conStock,
+            @RequestParam(defaultValue = "50") int limite) {
+        
+        if (limite < 1 || limite > 500 || !precioValido(precioMin) || !precioValido(precioMax)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        return ResponseEntity.ok(indiceBusquedaProductos.buscar(new IndiceBusquedaProductos.CriteriosBusqueda(
+                q, sku, tipo, categoria, color, talle, precioMin, precioMax, conStock, limite)));
+    }
+
+    // Spring convierte "NaN" e "Infinity" a Double sin error
+    private static boolean precioValido(Double precio) {
+        return precio == null || (Double.isFinite(precio) && Math.abs(precio) <= MAX_PRECIO);
+    }
+
+    // If-None-Match puede traer varios ETags separados por coma, débiles (W/"...") o "*"
+    private static boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
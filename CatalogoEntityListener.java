@@ -0,0 +1,24 @@
+package com.hrk.tienda_b2b.model;
+
+import com.hrk.tienda_b2b.service.CatalogoModificadoEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// Avisa que el catálogo cambió ante cualquier alta/baja/modificación de Producto o ProductoVariante
+@Component
+@RequiredArgsConstructor
+public class CatalogoEntityListener {
+    
+    private final ApplicationEventPublisher publisher;
+    
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void catalogoModificado(Object entidad) {
+        publisher.publishEvent(new CatalogoModificadoEvent(entidad.getClass().getSimpleName()));
+    }
+}
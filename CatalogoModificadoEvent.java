@@ -0,0 +1,18 @@
+package com.hrk.tienda_b2b.service;
+
+/**
+ * Se publica cuando cambia un producto, una variante o su stock.
+ * CatalogoSnapshotService lo escucha después del commit y reconstruye el catálogo en memoria.
+ */
+public class CatalogoModificadoEvent {
+    
+    private final String motivo;
+    
+    public CatalogoModificadoEvent(String motivo) {
+        this.motivo = motivo;
+    }
+    
+    public String getMotivo() {
+        return motivo;
+    }
+}
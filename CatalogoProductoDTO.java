@@ -0,0 +1,55 @@
+package com.hrk.tienda_b2b.dto;
+
+import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Producto del catálogo tal como lo consume el frontend (ProductoDTO en products.service.ts).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogoProductoDTO {
+    
+    private Long id;
+    private String nombre;
+    private String descripcion;
+    private String tipo;
+    private String imagenUrl;
+    private String categoria;
+    private List<VarianteDTO> variantes;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VarianteDTO {
+        private Long id;
+        private String sku;
+        private String color;
+        private String talle;
+        private Double precio;
+        private Integer stockDisponible;
+        
+        public static VarianteDTO fromEntity(ProductoVariante variante) {
+            return new VarianteDTO(variante.getId(), variante.getSku(), variante.getColor(), variante.getTalle(),
+                    variante.getPrecio(), variante.getStockDisponible());
+        }
+    }
+    
+    public static CatalogoProductoDTO fromEntity(Producto producto) {
+        List<VarianteDTO> variantes = producto.getVariantes().stream()
+                .map(VarianteDTO::fromEntity)
+                .toList();
+        
+        return new CatalogoProductoDTO(producto.getId(), producto.getNombre(), producto.getDescripcion(),
+                producto.getTipo() != null ? producto.getTipo().name() : null,
+                producto.getImagenUrl(),
+                producto.getCategoria() != null ? producto.getCategoria().name() : null,
+                variantes);
+    }
+}
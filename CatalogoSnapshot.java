@@ -0,0 +1,49 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.CatalogoProductoDTO;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Foto inmutable del catálogo: la lista de productos y su JSON ya serializado.
+ * Se reemplaza entera (nunca se modifica) cada vez que el catálogo cambia.
+ * También se publica como evento para los componentes que indexan el catálogo.
+ */
+public final class CatalogoSnapshot {
+    
+    private final long version;
+    private final String etag;
+    private final byte[] json;
+    private final List<CatalogoProductoDTO> productos;
+    private final Instant generadoEn;
+    
+    CatalogoSnapshot(long version, String etag, byte[] json, List<CatalogoProductoDTO> productos) {
+        this.version = version;
+        this.etag = etag;
+        this.json = json;
+        this.productos = List.copyOf(productos);
+        this.generadoEn = Instant.now();
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public String getEtag() {
+        return etag;
+    }
+    
+    // No copiar ni modificar: se escribe tal cual en la respuesta
+    public byte[] getJson() {
+        return json;
+    }
+    
+    public List<CatalogoProductoDTO> getProductos() {
+        return productos;
+    }
+    
+    public Instant getGeneradoEn() {
+        return generadoEn;
+    }
+}
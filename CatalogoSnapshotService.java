@@ -0,0 +1,140 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.config.DataSourceRuteado;
+import com.hrk.tienda_b2b.dto.CatalogoProductoDTO;
+import com.hrk.tienda_b2b.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantiene en memoria el catálogo completo (productos + variantes) ya serializado a JSON,
+ * con un ETag fuerte calculado sobre esos bytes.
+ *
+ * Cuando cambia un producto, una variante o el stock (CatalogoModificadoEvent, después del commit)
+ * se programa una reconstrucción en segundo plano. Los cambios que llegan dentro de la ventana de
+ * hrk.catalogo.demora-reconstruccion-ms se agrupan en una sola reconstrucción. La foto nueva
+ * reemplaza a la anterior de forma atómica: las lecturas nunca ven un catálogo a medio armar.
+ */
+@Slf4j
+@Service
+public class CatalogoSnapshotService {
+    
+    private final ProductoRepository productoRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher publisher;
+    private final TransactionTemplate soloLectura;
+    private final long demoraMillis;
+    
+    private final AtomicReference<CatalogoSnapshot> actual = new AtomicReference<>();
+    private final AtomicBoolean reconstruccionPendiente = new AtomicBoolean();
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "catalogo-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    public CatalogoSnapshotService(ProductoRepository productoRepository,
+                                   ObjectMapper objectMapper,
+                                   ApplicationEventPublisher publisher,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${hrk.catalogo.demora-reconstruccion-ms:500}") long demoraMillis) {
+        this.productoRepository = productoRepository;
+        this.objectMapper = objectMapper;
+        this.publisher = publisher;
+        this.soloLectura = new TransactionTemplate(transactionManager);
+        this.soloLectura.setReadOnly(true);
+        this.demoraMillis = demoraMillis;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlIniciar() {
+        reconstruir();
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogoModificado(CatalogoModificadoEvent evento) {
+        marcarDesactualizado();
+    }
+    
+    // Para cambios que no pasan por entidades (UPDATE masivos de stock, importaciones por JDBC)
+    public void marcarDesactualizado() {
+        if (reconstruccionPendiente.compareAndSet(false, true)) {
+            ejecutor.schedule(this::reconstruirProgramado, demoraMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public CatalogoSnapshot obtener() {
+        CatalogoSnapshot snapshot = actual.get();
+        return snapshot != null ? snapshot : reconstruir();
+    }
+    
+    private void reconstruirProgramado() {
+        // Se baja la marca antes de leer: un cambio que llegue durante la lectura programa otra pasada
+        reconstruccionPendiente.set(false);
+        try {
+            reconstruir();
+        } catch (RuntimeException e) {
+            log.error("Error al reconstruir el catálogo", e);
+            marcarDesactualizado();
+        }
+    }
+    
+    private synchronized CatalogoSnapshot reconstruir() {
+        // Desde la primaria: la reconstrucción sigue a un cambio y una réplica atrasada dejaría la foto vieja
+        List<CatalogoProductoDTO> productos = DataSourceRuteado.enPrimaria(() -> soloLectura.execute(status ->
+                productoRepository.findAllConVariantes().stream()
+                        .map(CatalogoProductoDTO::fromEntity)
+                        .toList()));
+        
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(productos);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el catálogo", e);
+        }
+        
+        CatalogoSnapshot anterior = actual.get();
+        long version = anterior != null ? anterior.getVersion() + 1 : 1;
+        CatalogoSnapshot nuevo = new CatalogoSnapshot(version, calcularEtag(json), json, productos);
+        actual.set(nuevo);
+        
+        log.info("Catálogo v{} listo: {} productos, {} bytes, ETag {}",
+                version, productos.size(), json.length, nuevo.getEtag());
+        publisher.publishEvent(nuevo);
+        return nuevo;
+    }
+    
+    private static String calcularEtag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,49 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency-Key ya usada y la respuesta que se devolvió. Mientras el primer request se está ejecutando
+ * la fila queda EN_CURSO y sin respuesta. La lee y escribe AlmacenIdempotencia con JDBC; la entidad
+ * está para que ddl-auto cree la tabla.
+ */
+@Entity
+@Table(name = "claves_idempotencia", indexes = @Index(name = "idx_claves_idempotencia_expira", columnList = "expira_en"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClaveIdempotencia {
+    
+    // "<usuario o anon>:<Idempotency-Key>"
+    @Id
+    @Column(name = "clave", length = 320)
+    private String clave;
+    
+    // SHA-256 de método, ruta y cuerpo: la misma clave con otro request es un error del cliente
+    @Column(name = "huella", nullable = false, length = 64)
+    private String huella;
+    
+    @Column(name = "estado", nullable = false, length = 10)
+    private String estado;
+    
+    @Column(name = "status")
+    private Integer status;
+    
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+    
+    @Lob
+    @Column(name = "cuerpo", columnDefinition = "MEDIUMBLOB")
+    private byte[] cuerpo;
+    
+    @Column(name = "creada_en", nullable = false)
+    private LocalDateTime creadaEn;
+    
+    @Column(name = "expira_en", nullable = false)
+    private LocalDateTime expiraEn;
+}
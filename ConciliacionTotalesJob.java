@@ -0,0 +1,68 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.DiferenciaTotalDTO;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifica en bloque que el total acumulado de cada pedido coincida con la suma de sus líneas.
+ * Recorre la tabla por rangos de ID (una consulta agrupada por rango) y, si
+ * hrk.conciliacion.corregir=true, deja el total igual a la suma real. La corrección se recalcula
+ * en un único UPDATE contra pedido_detalles (no se escribe el valor leído en la consulta agrupada),
+ * así una línea agregada entre la lectura y la escritura no se pierde.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConciliacionTotalesJob {
+    
+    private final PedidoRepository pedidoRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${hrk.conciliacion.tamano-rango:5000}")
+    private long tamanoRango;
+    
+    @Value("${hrk.conciliacion.corregir:false}")
+    private boolean corregir;
+    
+    @Scheduled(cron = "${hrk.conciliacion.cron:0 30 3 * * *}")
+    public void ejecutarProgramado() {
+        conciliar();
+    }
+    
+    public List<DiferenciaTotalDTO> conciliar() {
+        long maxId = pedidoRepository.findMaxId();
+        List<DiferenciaTotalDTO> diferencias = new ArrayList<>();
+        
+        for (long inicio = 0; inicio < maxId; inicio += tamanoRango) {
+            long desde = inicio;
+            long hasta = inicio + tamanoRango;
+            List<DiferenciaTotalDTO> delRango = transactionTemplate.execute(status -> {
+                List<DiferenciaTotalDTO> encontradas = pedidoRepository.findDiferenciasDeTotal(desde, hasta);
+                if (corregir) {
+                    for (DiferenciaTotalDTO d : encontradas) {
+                        pedidoRepository.corregirTotal(d.getPedidoId());
+                    }
+                }
+                return encontradas;
+            });
+            diferencias.addAll(delRango);
+        }
+        
+        if (diferencias.isEmpty()) {
+            log.info("Totales de pedidos OK (hasta ID {})", maxId);
+        } else {
+            log.warn("{} pedidos con total distinto a la suma de sus líneas{}: {}",
+                    diferencias.size(), corregir ? " (corregidos)" : "", diferencias);
+        }
+        return diferencias;
+    }
+}
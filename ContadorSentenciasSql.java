@@ -0,0 +1,32 @@
+package com.hrk.tienda_b2b.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Cuenta las sentencias SQL que prepara Hibernate en el hilo actual. Solo se registra en el perfil
+ * "carga" (hibernate.session_factory.statement_inspector); lo leen SentenciasSqlFilter y los tests.
+ * Los hilos que no iniciaron un conteo (jobs, despachador de eventos) no se cuentan.
+ */
+public class ContadorSentenciasSql implements StatementInspector {
+    
+    private static final ThreadLocal<int[]> CONTADOR = new ThreadLocal<>();
+    
+    @Override
+    public String inspect(String sql) {
+        int[] contador = CONTADOR.get();
+        if (contador != null) {
+            contador[0]++;
+        }
+        return sql;
+    }
+    
+    public static void iniciar() {
+        CONTADOR.set(new int[1]);
+    }
+    
+    public static int terminar() {
+        int[] contador = CONTADOR.get();
+        CONTADOR.remove();
+        return contador != null ? contador[0] : 0;
+    }
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -12,6 +15,9 @@ public class CreatePedidoRequest {
     private Long clienteId;
     private UsuarioInfoDTO usuario;
     
+    // Líneas del pedido (solo se usan en POST /api/pedidos/crear-completo)
+    private List<ItemDTO> items = new ArrayList<>();
+    
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -19,4 +25,12 @@ public class CreatePedidoRequest {
         private String nombreRazonSocial;
         private String email;
     }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemDTO {
+        private Long varianteId;
+        private Integer cantidad;
+    }
 }
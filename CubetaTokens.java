@@ -0,0 +1,81 @@
+package com.hrk.tienda_b2b.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket sin locks. Todo el estado entra en un long para poder actualizarlo con un solo CAS:
+ *   bits 63..40: tokens disponibles en milésimos de token (hasta ~16.700 tokens)
+ *   bits 39..0:  último instante en que se sumaron tokens, en ms desde el arranque (~34 años)
+ * La recarga se calcula en cada intento de tomar un token; no hay hilo que recargue.
+ */
+final class CubetaTokens {
+
+    static final int MAX_CAPACIDAD = ((1 << 24) - 1) / 1000;
+
+    private static final int BITS_TIEMPO = 40;
+    private static final long MASCARA_TIEMPO = (1L << BITS_TIEMPO) - 1;
+    private static final long MILI_TOKEN = 1000;
+
+    private final long capacidadMili;
+    private final long porMinuto;
+    private final long llenadoMillis;
+    private final AtomicLong estado;
+    private final LongAdder rechazos = new LongAdder();
+    private volatile long ultimoUsoMillis;
+
+    CubetaTokens(int capacidad, int porMinuto, long ahoraMillis) {
+        if (capacidad < 1 || capacidad > MAX_CAPACIDAD || porMinuto < 1) {
+            throw new IllegalArgumentException("Cubeta inválida: capacidad " + capacidad + ", por minuto " + porMinuto);
+        }
+        this.capacidadMili = capacidad * MILI_TOKEN;
+        this.porMinuto = porMinuto;
+        this.llenadoMillis = capacidad * 60_000L / porMinuto;
+        this.estado = new AtomicLong(empaquetar(capacidadMili, ahoraMillis));
+        this.ultimoUsoMillis = ahoraMillis;
+    }
+
+    /** 0 si tomó un token; si no, los milisegundos que faltan para que haya uno. */
+    long tomar(long ahoraMillis) {
+        ultimoUsoMillis = ahoraMillis;
+        while (true) {
+            long actual = estado.get();
+            long tokens = actual >>> BITS_TIEMPO;
+            long instante = actual & MASCARA_TIEMPO;
+
+            // porMinuto tokens cada 60.000 ms = porMinuto milésimos de token cada 60 ms
+            long transcurrido = Math.max(0, ahoraMillis - instante);
+            long ganados = transcurrido * porMinuto / 60;
+            if (tokens + ganados >= capacidadMili) {
+                tokens = capacidadMili;
+                instante = ahoraMillis;
+            } else if (ganados > 0) {
+                tokens += ganados;
+                // Solo se avanza el tiempo que se convirtió en tokens: el resto se acumula para la próxima
+                instante += ganados * 60 / porMinuto;
+            }
+
+            if (tokens < MILI_TOKEN) {
+                rechazos.increment();
+                long faltan = MILI_TOKEN - tokens;
+                return Math.max(1, (faltan * 60 + porMinuto - 1) / porMinuto);
+            }
+            if (estado.compareAndSet(actual, empaquetar(tokens - MILI_TOKEN, instante))) {
+                return 0;
+            }
+        }
+    }
+
+    // Sin uso reciente y con tiempo de sobra para estar llena: sacarla no cambia nada para el cliente
+    boolean inactiva(long ahoraMillis, long inactividadMillis) {
+        return ahoraMillis - ultimoUsoMillis > Math.max(inactividadMillis, llenadoMillis);
+    }
+
+    long rechazos() {
+        return rechazos.sum();
+    }
+
+    private static long empaquetar(long tokensMili, long instante) {
+        return (tokensMili << BITS_TIEMPO) | (instante & MASCARA_TIEMPO);
+    }
+}
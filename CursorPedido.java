@@ -0,0 +1,34 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.Pedido;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posición dentro del historial de un cliente, ordenado por (fecha DESC, id DESC).
+ * Viaja al cliente como texto opaco en Base64 URL-safe.
+ */
+record CursorPedido(LocalDateTime fecha, Long id) {
+
+    static CursorPedido de(Pedido pedido) {
+        return new CursorPedido(pedido.getFecha(), pedido.getId());
+    }
+
+    static CursorPedido decodificar(String cursor) {
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = texto.lastIndexOf('|');
+            return new CursorPedido(LocalDateTime.parse(texto.substring(0, separador)),
+                    Long.valueOf(texto.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+
+    String codificar() {
+        String texto = fecha + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
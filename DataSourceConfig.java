@@ -0,0 +1,77 @@
+package com.hrk.tienda_b2b.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Dos pools: la primaria (spring.datasource.*) y, si hay hrk.datasource.replica.url, una réplica de lectura.
+ * JPA y JdbcTemplate usan el DataSource @Primary, que enruta cada transacción (ver DataSourceRuteado).
+ * Sin réplica configurada todo va a la primaria, igual que antes.
+ */
+@Slf4j
+@Configuration
+public class DataSourceConfig {
+
+    @Bean(name = "dataSourcePrimaria")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSourcePrimaria(DataSourceProperties propiedades) {
+        HikariDataSource primaria = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primaria.setPoolName("primaria");
+        return primaria;
+    }
+
+    @Bean(name = "dataSourceReplica")
+    @ConditionalOnExpression("!'${hrk.datasource.replica.url:}'.isEmpty()")
+    @ConfigurationProperties("hrk.datasource.replica.hikari")
+    public HikariDataSource dataSourceReplica(@Value("${hrk.datasource.replica.url}") String url,
+                                              @Value("${hrk.datasource.replica.username:${spring.datasource.username:}}") String usuario,
+                                              @Value("${hrk.datasource.replica.password:${spring.datasource.password:}}") String clave,
+                                              @Value("${hrk.datasource.replica.driver-class-name:${spring.datasource.driver-class-name:}}") String driver) {
+        DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(usuario).password(clave);
+        if (!driver.isBlank()) {
+            builder.driverClassName(driver);
+        }
+        HikariDataSource replica = builder.build();
+        replica.setPoolName("replica");
+        // Los proxies de la base suelen rechazar escrituras en la réplica; esto lo hace explícito del lado del pool
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    public DataSourceRuteado dataSourceRuteado(@Qualifier("dataSourcePrimaria") DataSource primaria,
+                                               @Qualifier("dataSourceReplica") ObjectProvider<DataSource> replica,
+                                               @Value("${hrk.datasource.replica.ventana-lectura-propia-ms:2000}") long ventanaLecturaPropiaMs,
+                                               @Value("${hrk.datasource.replica.max-retraso-segundos:5}") long maxRetrasoSegundos,
+                                               @Value("${hrk.datasource.replica.consulta-retraso:SHOW REPLICA STATUS}") String consultaRetraso) {
+        DataSource lectura = replica.getIfAvailable();
+        if (lectura == null) {
+            log.info("Sin hrk.datasource.replica.url: todas las transacciones van a la primaria");
+        } else {
+            log.info("Transacciones readOnly a la réplica (ventana de lectura propia {} ms, retraso máximo {} s)",
+                    ventanaLecturaPropiaMs, maxRetrasoSegundos);
+        }
+        return new DataSourceRuteado(primaria, lectura, ventanaLecturaPropiaMs, maxRetrasoSegundos, consultaRetraso);
+    }
+
+    // El proxy demora la conexión real hasta la primera sentencia, cuando la transacción ya sabe si es readOnly
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceRuteado dataSourceRuteado) {
+        return new LazyConnectionDataSourceProxy(dataSourceRuteado);
+    }
+}
@@ -0,0 +1,279 @@
+package com.hrk.tienda_b2b.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.sql.ResultSetMetaData;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Manda las transacciones de solo lectura a la réplica y todo lo demás a la primaria.
+ *
+ * La decisión se toma al pedir la conexión. Por eso DataSourceConfig lo envuelve en un
+ * LazyConnectionDataSourceProxy: JpaTransactionManager pide la conexión antes de marcar la transacción
+ * como readOnly, y el proxy no la saca del pool hasta la primera sentencia.
+ *
+ * Casos que van a la primaria aunque la transacción sea readOnly:
+ * - el mismo cliente (usuario autenticado o IP) hizo un commit hace menos de ventana-lectura-propia-ms;
+ * - la réplica está más atrasada que max-retraso-segundos, o la última medición de su retraso falló;
+ * - el código lo pidió con enPrimaria (reconstrucciones de caches justo después de un cambio).
+ */
+@Slf4j
+public class DataSourceRuteado extends AbstractRoutingDataSource {
+
+    public enum Destino {
+        PRIMARIA, REPLICA
+    }
+
+    private enum Motivo {
+        LECTURA_PROPIA, REPLICA_ATRASADA, FORZADO
+    }
+
+    private static final ThreadLocal<Boolean> FORZAR_PRIMARIA = new ThreadLocal<>();
+
+    private final DataSource replica;
+    private final long ventanaLecturaPropiaNanos;
+    private final long maxRetrasoSegundos;
+    private final String consultaRetraso;
+
+    // Cliente → System.nanoTime() de su último commit con escrituras
+    private final Map<String, Long> ultimasEscrituras = new ConcurrentHashMap<>();
+    private volatile Long retrasoSegundos;
+    private volatile boolean medicionFallida;
+
+    private final Map<Destino, LongAdder> conexiones = new EnumMap<>(Destino.class);
+    private final Map<Motivo, LongAdder> desviosAPrimaria = new EnumMap<>(Motivo.class);
+    private final LongAdder escriturasRegistradas = new LongAdder();
+    private final LongAdder medicionesFallidas = new LongAdder();
+    // "GET /api/pedidos/{id}" → conexiones por destino. Se usa el patrón del mapping, no la URI, para
+    // que los IDs no abran una clave por request
+    private final Map<String, Map<Destino, LongAdder>> conexionesPorRuta = new ConcurrentHashMap<>();
+
+    public DataSourceRuteado(DataSource primaria, DataSource replica, long ventanaLecturaPropiaMs,
+                             long maxRetrasoSegundos, String consultaRetraso) {
+        this.replica = replica;
+        this.ventanaLecturaPropiaNanos = ventanaLecturaPropiaMs * 1_000_000;
+        this.maxRetrasoSegundos = maxRetrasoSegundos;
+        this.consultaRetraso = consultaRetraso;
+        Map<Object, Object> destinos = new LinkedHashMap<>();
+        destinos.put(Destino.PRIMARIA, primaria);
+        if (replica != null) {
+            destinos.put(Destino.REPLICA, replica);
+        }
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primaria);
+        // Sin clave conocida no se cae a la primaria en silencio: sería un error de programación
+        setLenientFallback(false);
+        for (Destino destino : Destino.values()) {
+            conexiones.put(destino, new LongAdder());
+        }
+        for (Motivo motivo : Motivo.values()) {
+            desviosAPrimaria.put(motivo, new LongAdder());
+        }
+    }
+
+    /** Ejecuta la lectura contra la primaria aunque la transacción sea readOnly. */
+    public static <T> T enPrimaria(Supplier<T> lectura) {
+        Boolean anterior = FORZAR_PRIMARIA.get();
+        FORZAR_PRIMARIA.set(Boolean.TRUE);
+        try {
+            return lectura.get();
+        } finally {
+            if (anterior == null) {
+                FORZAR_PRIMARIA.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Destino destino = elegir();
+        conexiones.get(destino).increment();
+        conexionesPorRuta.computeIfAbsent(rutaActual(), ruta -> {
+            Map<Destino, LongAdder> porDestino = new EnumMap<>(Destino.class);
+            for (Destino d : Destino.values()) {
+                porDestino.put(d, new LongAdder());
+            }
+            return porDestino;
+        }).get(destino).increment();
+        return destino;
+    }
+
+    private Destino elegir() {
+        boolean soloLectura = TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!soloLectura) {
+            registrarEscritura();
+            return Destino.PRIMARIA;
+        }
+        if (replica == null) {
+            return Destino.PRIMARIA;
+        }
+        if (FORZAR_PRIMARIA.get() != null) {
+            desviosAPrimaria.get(Motivo.FORZADO).increment();
+            return Destino.PRIMARIA;
+        }
+        if (replicaAtrasada()) {
+            desviosAPrimaria.get(Motivo.REPLICA_ATRASADA).increment();
+            return Destino.PRIMARIA;
+        }
+        String cliente = clienteActual();
+        if (cliente != null) {
+            Long escritura = ultimasEscrituras.get(cliente);
+            if (escritura != null && System.nanoTime() - escritura < ventanaLecturaPropiaNanos) {
+                desviosAPrimaria.get(Motivo.LECTURA_PROPIA).increment();
+                return Destino.PRIMARIA;
+            }
+        }
+        return Destino.REPLICA;
+    }
+
+    // Al confirmar una transacción de escritura, las lecturas de ese cliente quedan en la primaria
+    // durante la ventana: la réplica puede no tener todavía lo que acaba de guardar
+    private void registrarEscritura() {
+        if (replica == null || ventanaLecturaPropiaNanos <= 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        String cliente = clienteActual();
+        if (cliente == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ultimasEscrituras.put(cliente, System.nanoTime());
+                escriturasRegistradas.increment();
+            }
+        });
+    }
+
+    private boolean replicaAtrasada() {
+        if (maxRetrasoSegundos <= 0) {
+            return false;
+        }
+        if (medicionFallida) {
+            return true;
+        }
+        Long retraso = retrasoSegundos;
+        return retraso == null || retraso > maxRetrasoSegundos;
+    }
+
+    // Usuario autenticado si lo hay; si no, la IP del request. Fuera de un request (jobs) no hay cliente
+    private static String clienteActual() {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion != null && autenticacion.isAuthenticated() && !(autenticacion instanceof AnonymousAuthenticationToken)) {
+            return "u:" + autenticacion.getName();
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes atributos) {
+            HttpServletRequest request = atributos.getRequest();
+            return "ip:" + request.getRemoteAddr();
+        }
+        return null;
+    }
+
+    // Patrón del handler ("GET /api/pedidos/{id}"). Antes del mapping (filtros) no hay patrón; fuera de
+    // un request (jobs) tampoco hay ruta
+    private static String rutaActual() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes atributos) {
+            HttpServletRequest request = atributos.getRequest();
+            Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            return request.getMethod() + " " + (patron != null ? patron : "(filtros)");
+        }
+        return "(sin request)";
+    }
+
+    /**
+     * Mide el retraso de la réplica con consulta-retraso. Toma la columna Seconds_Behind_Source (o
+     * Seconds_Behind_Master) si existe y si no la primera. Un null (replicación detenida) cuenta como
+     * atrasada. Si la consulta falla (réplica caída, consulta no soportada) la réplica también cuenta como
+     * atrasada hasta la próxima medición que funcione: se sigue reintentando en cada ciclo.
+     */
+    @Scheduled(fixedDelayString = "${hrk.datasource.replica.verificacion-ms:5000}")
+    public void medirRetraso() {
+        if (replica == null || maxRetrasoSegundos <= 0) {
+            return;
+        }
+        try {
+            retrasoSegundos = new JdbcTemplate(replica).query(consultaRetraso, rs -> {
+                if (!rs.next()) {
+                    return null;
+                }
+                ResultSetMetaData columnas = rs.getMetaData();
+                int indice = 1;
+                for (int i = 1; i <= columnas.getColumnCount(); i++) {
+                    String nombre = columnas.getColumnLabel(i);
+                    if ("Seconds_Behind_Source".equalsIgnoreCase(nombre) || "Seconds_Behind_Master".equalsIgnoreCase(nombre)) {
+                        indice = i;
+                        break;
+                    }
+                }
+                long valor = rs.getLong(indice);
+                return rs.wasNull() ? null : valor;
+            });
+            if (medicionFallida) {
+                medicionFallida = false;
+                log.info("Medición del retraso de la réplica recuperada");
+            }
+            if (retrasoSegundos == null || retrasoSegundos > maxRetrasoSegundos) {
+                log.warn("Réplica atrasada ({} s): las lecturas van a la primaria", retrasoSegundos);
+            }
+        } catch (RuntimeException e) {
+            medicionesFallidas.increment();
+            // Solo se avisa al empezar a fallar, no en cada reintento
+            if (!medicionFallida) {
+                medicionFallida = true;
+                log.warn("No se puede medir el retraso de la réplica con '{}' ({}): las lecturas van a la primaria hasta que se pueda",
+                        consultaRetraso, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hrk.datasource.replica.barrido-ms:60000}")
+    public void barrerEscrituras() {
+        long ahora = System.nanoTime();
+        ultimasEscrituras.values().removeIf(escritura -> ahora - escritura >= ventanaLecturaPropiaNanos);
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("replicaConfigurada", replica != null);
+        Map<String, Long> porDestino = new LinkedHashMap<>();
+        conexiones.forEach((destino, contador) -> porDestino.put(destino.name().toLowerCase(Locale.ROOT), contador.sum()));
+        estadisticas.put("conexionesPorDestino", porDestino);
+        Map<String, Long> porMotivo = new LinkedHashMap<>();
+        desviosAPrimaria.forEach((motivo, contador) -> porMotivo.put(motivo.name().toLowerCase(Locale.ROOT), contador.sum()));
+        estadisticas.put("lecturasEnPrimariaPorMotivo", porMotivo);
+        Map<String, Map<String, Long>> porRuta = new LinkedHashMap<>();
+        conexionesPorRuta.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entrada -> {
+                    Map<String, Long> destinos = new LinkedHashMap<>();
+                    entrada.getValue().forEach((destino, contador) -> destinos.put(destino.name().toLowerCase(Locale.ROOT), contador.sum()));
+                    porRuta.put(entrada.getKey(), destinos);
+                });
+        estadisticas.put("conexionesPorRuta", porRuta);
+        estadisticas.put("escriturasRegistradas", escriturasRegistradas.sum());
+        estadisticas.put("clientesEnVentana", ultimasEscrituras.size());
+        estadisticas.put("retrasoReplicaSegundos", medicionFallida ? "medición fallida" : retrasoSegundos);
+        estadisticas.put("medicionesFallidas", medicionesFallidas.sum());
+        return estadisticas;
+    }
+}
@@ -0,0 +1,184 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.EstadoEventoPedido;
+import com.hrk.tienda_b2b.model.EventoPedido;
+import com.hrk.tienda_b2b.repository.EventoPedidoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drena la outbox de pedidos (pedido_eventos) en segundo plano.
+ *
+ * Cada ronda lee un lote de IDs con solo la cabeza de la cola de cada pedido, los reparte entre
+ * un pool de hilos acotado y espera a que termine el lote antes de leer el siguiente:
+ * - Orden por pedido: nunca hay dos eventos del mismo pedido en vuelo.
+ * - Contrapresión: la cola del pool es finita y, si se llena, el propio hilo de sondeo procesa
+ *   (CallerRunsPolicy) en lugar de seguir leyendo; como máximo hay un lote en memoria.
+ * - Reintentos: si un manejador falla se hace rollback de su transacción y el evento vuelve a
+ *   quedar PENDIENTE con espera exponencial; después de max-intentos queda FALLIDO y frena los
+ *   eventos siguientes de ese pedido hasta que se lo resuelva a mano.
+ * - Varias instancias: el evento se toma con SELECT ... FOR UPDATE SKIP LOCKED.
+ */
+@Slf4j
+@Component
+public class DespachadorEventosPedido {
+    
+    private final EventoPedidoRepository eventoPedidoRepository;
+    private final List<ManejadorEventoPedido> manejadores;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor ejecutor;
+    
+    private final LongAdder procesados = new LongAdder();
+    private final LongAdder reintentos = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    
+    @Value("${hrk.pedidos.eventos.tamano-lote:100}")
+    private int tamanoLote;
+    
+    @Value("${hrk.pedidos.eventos.max-rondas:20}")
+    private int maxRondas;
+    
+    @Value("${hrk.pedidos.eventos.max-intentos:8}")
+    private int maxIntentos;
+    
+    @Value("${hrk.pedidos.eventos.espera-base-ms:1000}")
+    private long esperaBaseMs;
+    
+    @Value("${hrk.pedidos.eventos.espera-maxima-ms:600000}")
+    private long esperaMaximaMs;
+    
+    @Value("${hrk.pedidos.eventos.retencion-dias:7}")
+    private long retencionDias;
+    
+    public DespachadorEventosPedido(EventoPedidoRepository eventoPedidoRepository,
+                                    List<ManejadorEventoPedido> manejadores,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${hrk.pedidos.eventos.hilos:4}") int hilos,
+                                    @Value("${hrk.pedidos.eventos.capacidad-cola:200}") int capacidadCola) {
+        this.eventoPedidoRepository = eventoPedidoRepository;
+        this.manejadores = manejadores;
+        this.transactionTemplate = transactionTemplate;
+        AtomicInteger numero = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "eventos-pedido-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+    
+    @Scheduled(fixedDelayString = "${hrk.pedidos.eventos.intervalo-ms:1000}")
+    public void despachar() {
+        for (int ronda = 0; ronda < maxRondas; ronda++) {
+            List<Long> ids = eventoPedidoRepository.findIdsCabezaPendientes(
+                    LocalDateTime.now(), PageRequest.of(0, tamanoLote));
+            if (ids.isEmpty()) {
+                return;
+            }
+            List<Future<?>> enVuelo = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                enVuelo.add(ejecutor.submit(() -> procesar(id)));
+            }
+            for (Future<?> futuro : enVuelo) {
+                try {
+                    futuro.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    // procesar() ya registra sus propios errores
+                }
+            }
+        }
+    }
+    
+    private void procesar(Long eventoId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                EventoPedido evento = eventoPedidoRepository.findParaProcesar(eventoId).orElse(null);
+                if (evento == null || evento.getEstado() != EstadoEventoPedido.PENDIENTE) {
+                    return;
+                }
+                for (ManejadorEventoPedido manejador : manejadores) {
+                    if (manejador.aplicaA(evento)) {
+                        manejador.manejar(evento);
+                    }
+                }
+                evento.setEstado(EstadoEventoPedido.PROCESADO);
+                evento.setProcesadoEn(LocalDateTime.now());
+                procesados.increment();
+            });
+        } catch (Exception e) {
+            registrarFallo(eventoId, e);
+        }
+    }
+    
+    private void registrarFallo(Long eventoId, Exception error) {
+        transactionTemplate.executeWithoutResult(status -> {
+            EventoPedido evento = eventoPedidoRepository.findById(eventoId).orElse(null);
+            if (evento == null) {
+                return;
+            }
+            int intentos = evento.getIntentos() + 1;
+            evento.setIntentos(intentos);
+            evento.setUltimoError(recortar(error.getClass().getSimpleName() + ": " + error.getMessage()));
+            if (intentos >= maxIntentos) {
+                evento.setEstado(EstadoEventoPedido.FALLIDO);
+                fallidos.increment();
+                log.error("Evento {} del pedido {} FALLIDO después de {} intentos, la cola del pedido queda frenada: {}",
+                        eventoId, evento.getPedidoId(), intentos, evento.getUltimoError());
+            } else {
+                long espera = Math.min(esperaMaximaMs, esperaBaseMs << Math.min(intentos - 1, 20));
+                evento.setProximoIntento(LocalDateTime.now().plusNanos(espera * 1_000_000L));
+                reintentos.increment();
+            }
+        });
+    }
+    
+    // Los procesados solo sirven para auditoría; los FALLIDOS quedan para revisarlos a mano
+    @Scheduled(cron = "${hrk.pedidos.eventos.limpieza-cron:0 15 4 * * *}")
+    public void limpiarProcesados() {
+        transactionTemplate.executeWithoutResult(status ->
+                eventoPedidoRepository.borrarProcesadosAnterioresA(LocalDateTime.now().minusDays(retencionDias)));
+    }
+    
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendientes", eventoPedidoRepository.countByEstado(EstadoEventoPedido.PENDIENTE));
+        stats.put("fallidos", eventoPedidoRepository.countByEstado(EstadoEventoPedido.FALLIDO));
+        stats.put("procesados", procesados.sum());
+        stats.put("reintentos", reintentos.sum());
+        stats.put("descartados", fallidos.sum());
+        stats.put("colaEjecutor", ejecutor.getQueue().size());
+        stats.put("hilosActivos", ejecutor.getActiveCount());
+        return stats;
+    }
+    
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdown();
+    }
+    
+    private static String recortar(String texto) {
+        return texto.length() <= 500 ? texto : texto.substring(0, 500);
+    }
+}
@@ -0,0 +1,28 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Fila plana detalle + variante + producto, armada directamente por la consulta
+ * (sin entidades administradas). PedidoHistorialService la convierte al árbol de PedidoResponseDTO.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DetalleHistorialFila {
+    
+    private Long pedidoId;
+    private Long detalleId;
+    private Integer cantidad;
+    private Long precioUnitarioCentavos;
+    private Long varianteId;
+    private String sku;
+    private String color;
+    private String talle;
+    private Long precioCentavos;
+    private Integer stockDisponible;
+    private Long productoId;
+    private String productoNombre;
+}
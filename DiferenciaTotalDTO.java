@@ -0,0 +1,17 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiferenciaTotalDTO {
+    
+    private Long pedidoId;
+    private Long totalGuardadoCentavos;
+    private Integer lineasGuardadas;
+    private Long totalCalculadoCentavos;
+    private Long lineasCalculadas;
+}
@@ -0,0 +1,11 @@
+package com.hrk.tienda_b2b.model;
+
+// Ejes del rollup de ventas. La clave de cada fila es el id (CLIENTE, PRODUCTO, VARIANTE),
+// el nombre de la categoría (CATEGORIA) o "*" (TOTAL)
+public enum DimensionVenta {
+    TOTAL,
+    CLIENTE,
+    PRODUCTO,
+    VARIANTE,
+    CATEGORIA
+}
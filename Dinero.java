@@ -0,0 +1,29 @@
+package com.hrk.tienda_b2b.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Montos en centavos (long) para no arrastrar errores de redondeo de double.
+ * La API sigue exponiendo pesos con decimales: la conversión se hace solo en los bordes.
+ */
+public final class Dinero {
+
+    private Dinero() {
+    }
+
+    public static long aCentavos(double pesos) {
+        return BigDecimal.valueOf(pesos)
+                .setScale(2, RoundingMode.HALF_UP)
+                .movePointRight(2)
+                .longValueExact();
+    }
+
+    public static double aPesos(long centavos) {
+        return centavos / 100.0;
+    }
+
+    public static long subtotal(long precioUnitarioCentavos, int cantidad) {
+        return Math.multiplyExact(precioUnitarioCentavos, (long) cantidad);
+    }
+}
@@ -0,0 +1,244 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.DetalleHistorialFila;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.Usuario;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Escribe las listas de pedidos y usuarios directo de las entidades (y de las filas planas de
+ * detalle) al JsonGenerator, sin armar PedidoResponseDTO/UsuarioDTO ni pasar por la
+ * serialización por reflexión. El JSON tiene exactamente la forma de esos DTOs.
+ *
+ * El ?fields= se compila una vez por request a un PlanPedido/PlanUsuario de booleanos, así
+ * cada línea del pedido solo consulta flags.
+ */
+@Component
+@RequiredArgsConstructor
+public class EscritorJsonRespuestas {
+    
+    public static final Set<String> CAMPOS_USUARIO = Set.of("id", "nombreRazonSocial", "email", "tipoUsuario");
+    
+    public static final Set<String> CAMPOS_PEDIDO = Set.of(
+            "id", "clienteId", "fecha", "total", "cantidadLineas", "estado",
+            "usuario", "usuario.id", "usuario.nombreRazonSocial", "usuario.email", "usuario.tipoUsuario",
+            "detalles", "detalles.id", "detalles.cantidad", "detalles.precioUnitario",
+            "detalles.variante", "detalles.variante.id", "detalles.variante.sku", "detalles.variante.color",
+            "detalles.variante.talle", "detalles.variante.precio", "detalles.variante.stockDisponible",
+            "detalles.variante.producto", "detalles.variante.producto.id", "detalles.variante.producto.nombre");
+    
+    private final ObjectMapper objectMapper;
+    
+    public PlanPedido planPedido(String fields) {
+        return new PlanPedido(CamposRespuesta.parsear(fields, CAMPOS_PEDIDO));
+    }
+    
+    public PlanUsuario planUsuario(String fields) {
+        return new PlanUsuario(CamposRespuesta.parsear(fields, CAMPOS_USUARIO), "");
+    }
+    
+    public byte[] pedidos(List<Pedido> pedidos, Map<Long, List<DetalleHistorialFila>> detallesPorPedido, PlanPedido plan) {
+        return escribir(gen -> {
+            gen.writeStartArray();
+            for (Pedido pedido : pedidos) {
+                escribirPedido(gen, pedido, detallesPorPedido.getOrDefault(pedido.getId(), List.of()), plan);
+            }
+            gen.writeEndArray();
+        });
+    }
+    
+    public byte[] usuarios(List<Usuario> usuarios, PlanUsuario plan) {
+        return escribir(gen -> {
+            gen.writeStartArray();
+            for (Usuario usuario : usuarios) {
+                escribirUsuario(gen, usuario, plan);
+            }
+            gen.writeEndArray();
+        });
+    }
+    
+    private void escribirPedido(JsonGenerator gen, Pedido pedido, List<DetalleHistorialFila> detalles, PlanPedido p)
+            throws IOException {
+        gen.writeStartObject();
+        if (p.id) {
+            gen.writeNumberField("id", pedido.getId());
+        }
+        if (p.clienteId) {
+            gen.writeNumberField("clienteId", pedido.getClienteId());
+        }
+        if (p.fecha) {
+            gen.writeStringField("fecha", pedido.getFecha().toString());
+        }
+        if (p.total) {
+            gen.writeNumberField("total", Dinero.aPesos(pedido.getTotalCentavos()));
+        }
+        if (p.cantidadLineas) {
+            gen.writeNumberField("cantidadLineas", pedido.getCantidadLineas());
+        }
+        if (p.estado) {
+            gen.writeStringField("estado", pedido.getEstado().name());
+        }
+        if (p.usuario != null) {
+            gen.writeFieldName("usuario");
+            if (pedido.getUsuario() == null) {
+                gen.writeNull();
+            } else {
+                escribirUsuario(gen, pedido.getUsuario(), p.usuario);
+            }
+        }
+        if (p.detalles) {
+            gen.writeArrayFieldStart("detalles");
+            for (DetalleHistorialFila fila : detalles) {
+                escribirDetalle(gen, fila, p);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+    
+    private void escribirDetalle(JsonGenerator gen, DetalleHistorialFila fila, PlanPedido p) throws IOException {
+        gen.writeStartObject();
+        if (p.detalleId) {
+            gen.writeNumberField("id", fila.getDetalleId());
+        }
+        if (p.detalleCantidad) {
+            gen.writeNumberField("cantidad", fila.getCantidad());
+        }
+        if (p.detallePrecioUnitario) {
+            gen.writeNumberField("precioUnitario", Dinero.aPesos(fila.getPrecioUnitarioCentavos()));
+        }
+        if (p.variante) {
+            gen.writeObjectFieldStart("variante");
+            if (p.varianteId) {
+                gen.writeNumberField("id", fila.getVarianteId());
+            }
+            if (p.varianteSku) {
+                gen.writeStringField("sku", fila.getSku());
+            }
+            if (p.varianteColor) {
+                gen.writeStringField("color", fila.getColor());
+            }
+            if (p.varianteTalle) {
+                gen.writeStringField("talle", fila.getTalle());
+            }
+            if (p.variantePrecio) {
+                gen.writeNumberField("precio", Dinero.aPesos(fila.getPrecioCentavos()));
+            }
+            if (p.varianteStock) {
+                gen.writeFieldName("stockDisponible");
+                if (fila.getStockDisponible() == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeNumber(fila.getStockDisponible());
+                }
+            }
+            if (p.producto) {
+                gen.writeObjectFieldStart("producto");
+                if (p.productoId) {
+                    gen.writeNumberField("id", fila.getProductoId());
+                }
+                if (p.productoNombre) {
+                    gen.writeStringField("nombre", fila.getProductoNombre());
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+    }
+    
+    private void escribirUsuario(JsonGenerator gen, Usuario usuario, PlanUsuario p) throws IOException {
+        gen.writeStartObject();
+        if (p.id) {
+            gen.writeNumberField("id", usuario.getId());
+        }
+        if (p.nombreRazonSocial) {
+            gen.writeStringField("nombreRazonSocial", usuario.getNombreRazonSocial());
+        }
+        if (p.email) {
+            gen.writeStringField("email", usuario.getEmail());
+        }
+        if (p.tipoUsuario) {
+            gen.writeStringField("tipoUsuario", usuario.getTipoUsuario() != null ? usuario.getTipoUsuario().name() : null);
+        }
+        gen.writeEndObject();
+    }
+    
+    private byte[] escribir(Cuerpo cuerpo) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(4096);
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(salida, JsonEncoding.UTF8)) {
+            cuerpo.escribir(gen);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+    
+    @FunctionalInterface
+    private interface Cuerpo {
+        void escribir(JsonGenerator gen) throws IOException;
+    }
+    
+    public static final class PlanUsuario {
+        final boolean id;
+        final boolean nombreRazonSocial;
+        final boolean email;
+        final boolean tipoUsuario;
+        
+        PlanUsuario(CamposRespuesta campos, String prefijo) {
+            id = campos.incluye(prefijo + "id");
+            nombreRazonSocial = campos.incluye(prefijo + "nombreRazonSocial");
+            email = campos.incluye(prefijo + "email");
+            tipoUsuario = campos.incluye(prefijo + "tipoUsuario");
+        }
+    }
+    
+    public static final class PlanPedido {
+        final boolean id, clienteId, fecha, total, cantidadLineas, estado;
+        final PlanUsuario usuario;
+        final boolean detalles, detalleId, detalleCantidad, detallePrecioUnitario;
+        final boolean variante, varianteId, varianteSku, varianteColor, varianteTalle, variantePrecio, varianteStock;
+        final boolean producto, productoId, productoNombre;
+        
+        PlanPedido(CamposRespuesta c) {
+            id = c.incluye("id");
+            clienteId = c.incluye("clienteId");
+            fecha = c.incluye("fecha");
+            total = c.incluye("total");
+            cantidadLineas = c.incluye("cantidadLineas");
+            estado = c.incluye("estado");
+            usuario = c.incluye("usuario") ? new PlanUsuario(c, "usuario.") : null;
+            detalles = c.incluye("detalles");
+            detalleId = c.incluye("detalles.id");
+            detalleCantidad = c.incluye("detalles.cantidad");
+            detallePrecioUnitario = c.incluye("detalles.precioUnitario");
+            variante = c.incluye("detalles.variante");
+            varianteId = c.incluye("detalles.variante.id");
+            varianteSku = c.incluye("detalles.variante.sku");
+            varianteColor = c.incluye("detalles.variante.color");
+            varianteTalle = c.incluye("detalles.variante.talle");
+            variantePrecio = c.incluye("detalles.variante.precio");
+            varianteStock = c.incluye("detalles.variante.stockDisponible");
+            producto = c.incluye("detalles.variante.producto");
+            productoId = c.incluye("detalles.variante.producto.id");
+            productoNombre = c.incluye("detalles.variante.producto.nombre");
+        }
+        
+        // Sin detalles en la respuesta no hace falta la consulta de detalles
+        public boolean necesitaDetalles() {
+            return detalles;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.hrk.tienda_b2b.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aciertos, fallos y desalojos por región del cache de segundo nivel.
+ * Aciertos/fallos/puts salen de las estadísticas de Hibernate (hibernate.generate_statistics);
+ * los desalojos por tamaño o vencimiento solo los ve el proveedor, así que se leen del
+ * MBean de estadísticas de JCache (monitoring.statistics en caffeine.conf).
+ */
+@Component
+@RequiredArgsConstructor
+public class EstadisticasCacheSegundoNivel {
+    
+    private static final String[] REGIONES_ENTIDADES = {"variantes", "productos", "productos.variantes", "usuarios"};
+    private static final String[] REGIONES_CONSULTAS = {"usuarios.por-email", "default-query-results-region"};
+    
+    private final EntityManagerFactory entityManagerFactory;
+    
+    public Map<String, Object> estadisticas() {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<String, Object> regiones = new LinkedHashMap<>();
+        if (!stats.isStatisticsEnabled()) {
+            regiones.put("habilitadas", false);
+            return regiones;
+        }
+        for (String region : REGIONES_ENTIDADES) {
+            regiones.put(region, region(stats.getDomainDataRegionStatistics(region), region));
+        }
+        for (String region : REGIONES_CONSULTAS) {
+            regiones.put(region, region(stats.getQueryRegionStatistics(region), region));
+        }
+        return regiones;
+    }
+    
+    private Map<String, Object> region(CacheRegionStatistics region, String nombre) {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        if (region == null) {
+            datos.put("activa", false);
+            return datos;
+        }
+        long aciertos = region.getHitCount();
+        long fallos = region.getMissCount();
+        datos.put("aciertos", aciertos);
+        datos.put("fallos", fallos);
+        datos.put("puts", region.getPutCount());
+        datos.put("tasaAciertos", aciertos + fallos == 0 ? 0.0 : (double) aciertos / (aciertos + fallos));
+        datos.put("desalojos", desalojos(nombre));
+        return datos;
+    }
+    
+    // -1 si el proveedor no publica estadísticas para la región
+    private long desalojos(String region) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            Set<ObjectName> nombres = servidor.queryNames(
+                    new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + ObjectName.quote(region)), null);
+            if (nombres.isEmpty()) {
+                // Algunos proveedores registran el nombre sin comillas
+                nombres = servidor.queryNames(
+                        new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + region), null);
+            }
+            long total = 0;
+            for (ObjectName nombre : nombres) {
+                total += ((Number) servidor.getAttribute(nombre, "CacheEvictions")).longValue();
+            }
+            return nombres.isEmpty() ? -1 : total;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.hrk.tienda_b2b.model;
+
+public enum EstadoEventoPedido {
+    PENDIENTE,
+    PROCESADO,
+    FALLIDO
+}
@@ -1,11 +1,54 @@
 package com.hrk.tienda_b2b.model;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum EstadoPedido {
+    EN_ARMADO,
     BORRADOR,
     DOCUMENTADO,
     CONFIRMADO,
     ABONADO,
     ENVIADO,
     ENTREGADO,
-    CANCELADO
+    CANCELADO;
+    
+    // Circuito del pedido: BORRADOR → (DOCUMENTADO) → CONFIRMADO → ABONADO → ENVIADO → ENTREGADO.
+    // Se puede cancelar hasta que sale el envío; ENTREGADO y CANCELADO son finales.
+    // EN_ARMADO es el pedido que se arma línea por línea (POST /crear + /items) y todavía no se envió:
+    // es el único que vence solo (ExpiracionBorradoresJob). BORRADOR ya es un pedido enviado ("Pendiente").
+    public Set<EstadoPedido> siguientesPermitidos() {
+        return switch (this) {
+            case EN_ARMADO -> EnumSet.of(BORRADOR, DOCUMENTADO, CONFIRMADO, CANCELADO);
+            case BORRADOR -> EnumSet.of(DOCUMENTADO, CONFIRMADO, CANCELADO);
+            case DOCUMENTADO -> EnumSet.of(CONFIRMADO, CANCELADO);
+            case CONFIRMADO -> EnumSet.of(ABONADO, CANCELADO);
+            case ABONADO -> EnumSet.of(ENVIADO, CANCELADO);
+            case ENVIADO -> EnumSet.of(ENTREGADO);
+            case ENTREGADO, CANCELADO -> EnumSet.noneOf(EstadoPedido.class);
+        };
+    }
+    
+    public boolean puedeTransicionarA(EstadoPedido nuevo) {
+        return siguientesPermitidos().contains(nuevo);
+    }
+
+    // Estados en los que se pueden agregar, quitar o cambiar líneas
+    public boolean admiteCambiosDeLineas() {
+        return this == EN_ARMADO || this == BORRADOR;
+    }
+
+    // Sin más transiciones: el pedido ya no cambia y puede pasar al archivo (ArchivoPedidosJob)
+    public boolean esFinal() {
+        return siguientesPermitidos().isEmpty();
+    }
+    
+    // Estados que suman en los reportes de ventas (RollupVentasService): desde que se confirma
+    // hasta que se entrega. Un pedido que se cancela después de confirmado resta lo que había sumado.
+    public boolean cuentaComoVenta() {
+        return switch (this) {
+            case CONFIRMADO, ABONADO, ENVIADO, ENTREGADO -> true;
+            case EN_ARMADO, BORRADOR, DOCUMENTADO, CANCELADO -> false;
+        };
+    }
 }
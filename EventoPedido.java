@@ -0,0 +1,69 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de la outbox de pedidos: se inserta en la misma transacción que el cambio de estado
+ * y DespachadorEventosPedido la procesa después, fuera del request.
+ */
+@Entity
+@Table(name = "pedido_eventos", indexes = {
+        // Búsqueda de pendientes vencidos y de la cabeza de la cola de cada pedido
+        @Index(name = "idx_pedido_eventos_estado_proximo", columnList = "estado, proximo_intento, id"),
+        @Index(name = "idx_pedido_eventos_pedido_id", columnList = "pedido_id, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoPedido {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedido_eventos_seq")
+    @SequenceGenerator(name = "pedido_eventos_seq", sequenceName = "pedido_eventos_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(name = "pedido_id", nullable = false)
+    private Long pedidoId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_anterior", nullable = false)
+    private EstadoPedido estadoAnterior;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_nuevo", nullable = false)
+    private EstadoPedido estadoNuevo;
+    
+    @Column(name = "creado_en", nullable = false)
+    private LocalDateTime creadoEn;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false)
+    private EstadoEventoPedido estado = EstadoEventoPedido.PENDIENTE;
+    
+    @Column(name = "intentos", nullable = false)
+    private Integer intentos = 0;
+    
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+    
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+    
+    @Column(name = "procesado_en")
+    private LocalDateTime procesadoEn;
+    
+    public static EventoPedido transicion(Long pedidoId, EstadoPedido anterior, EstadoPedido nuevo) {
+        EventoPedido evento = new EventoPedido();
+        evento.setPedidoId(pedidoId);
+        evento.setEstadoAnterior(anterior);
+        evento.setEstadoNuevo(nuevo);
+        evento.setCreadoEn(LocalDateTime.now());
+        evento.setProximoIntento(evento.getCreadoEn());
+        return evento;
+    }
+}
@@ -0,0 +1,44 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.EstadoEventoPedido;
+import com.hrk.tienda_b2b.model.EventoPedido;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EventoPedidoRepository extends JpaRepository<EventoPedido, Long> {
+    
+    // Solo la cabeza de la cola de cada pedido (no hay otro pendiente ni fallido anterior del mismo pedido),
+    // así los eventos de un pedido se procesan en orden aunque se despachen en paralelo. Un FALLIDO traba
+    // la cola de su pedido hasta que se lo revise a mano: los siguientes no se adelantan
+    @Query("SELECT e.id FROM EventoPedido e WHERE e.estado = com.hrk.tienda_b2b.model.EstadoEventoPedido.PENDIENTE " +
+           "AND e.proximoIntento <= :ahora AND NOT EXISTS (SELECT a.id FROM EventoPedido a " +
+           "WHERE a.pedidoId = e.pedidoId AND a.estado IN (com.hrk.tienda_b2b.model.EstadoEventoPedido.PENDIENTE, " +
+           "com.hrk.tienda_b2b.model.EstadoEventoPedido.FALLIDO) AND a.id < e.id) ORDER BY e.id")
+    List<Long> findIdsCabezaPendientes(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+    
+    // Lock de fila con SKIP LOCKED (timeout -2): si otra instancia ya lo está procesando, devuelve vacío
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM EventoPedido e WHERE e.id = :id")
+    Optional<EventoPedido> findParaProcesar(@Param("id") Long id);
+    
+    long countByEstado(EstadoEventoPedido estado);
+    
+    @Modifying
+    @Query("DELETE FROM EventoPedido e WHERE e.estado = com.hrk.tienda_b2b.model.EstadoEventoPedido.PROCESADO " +
+           "AND e.procesadoEn < :limite")
+    int borrarProcesadosAnterioresA(@Param("limite") LocalDateTime limite);
+}
@@ -0,0 +1,68 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Cancela los pedidos EN_ARMADO abandonados (POST /crear sin enviar ni confirmar) para que su stock
+ * reservado vuelva a estar disponible. Los BORRADOR no se tocan: son pedidos ya enviados por el cliente
+ * (crear-completo, checkout del carrito) que esperan la confirmación de un administrador.
+ * Cada pedido se cancela en su propia transacción (PedidoService.cancelarPedido), así un
+ * pedido con problemas no frena al resto del lote.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExpiracionBorradoresJob {
+    
+    private final PedidoRepository pedidoRepository;
+    private final PedidoService pedidoService;
+    
+    @Value("${hrk.pedidos.borrador.ttl-minutos:120}")
+    private long ttlMinutos;
+    
+    @Value("${hrk.pedidos.borrador.tamano-lote:200}")
+    private int tamanoLote;
+    
+    @Scheduled(fixedDelayString = "${hrk.pedidos.borrador.intervalo-ms:300000}")
+    public void expirarBorradores() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(ttlMinutos);
+        int cancelados = 0;
+        
+        while (true) {
+            // Siempre la primera página: los cancelados salen del filtro por estado
+            List<Long> ids = pedidoRepository.findIdsPorEstadoAnterioresA(
+                    EstadoPedido.EN_ARMADO, limite, PageRequest.of(0, tamanoLote));
+            if (ids.isEmpty()) {
+                break;
+            }
+            int canceladosLote = 0;
+            for (Long id : ids) {
+                try {
+                    pedidoService.cancelarPedido(id);
+                    canceladosLote++;
+                } catch (Exception e) {
+                    log.warn("No se pudo cancelar el pedido {}: {}", id, e.getMessage());
+                }
+            }
+            cancelados += canceladosLote;
+            // Si ningún pedido del lote se pudo cancelar, la próxima consulta devolvería los mismos
+            if (canceladosLote == 0 || ids.size() < tamanoLote) {
+                break;
+            }
+        }
+        
+        if (cancelados > 0) {
+            log.info("Pedidos en armado vencidos cancelados: {}", cancelados);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.CreatePedidoRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Solo vencen los pedidos EN_ARMADO: un BORRADOR es un pedido ya enviado y no se cancela por antigüedad.
+ */
+@SpringBootTest(properties = {"hrk.carga.usuarios=50", "hrk.carga.productos=20"})
+@ActiveProfiles("carga")
+class ExpiracionBorradoresJobTest {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private ExpiracionBorradoresJob expiracionBorradoresJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void cancelaLosPedidosEnArmadoVencidosYNoLosEnviados() {
+        Long enArmado = pedidoService.crearPedido(new CreatePedidoRequest(2L, null, List.of())).getId();
+        pedidoService.agregarItem(enArmado, 10L, 2);
+        Long enviado = pedidoService.crearPedidoCompleto(new CreatePedidoRequest(3L, null,
+                List.of(new CreatePedidoRequest.ItemDTO(11L, 2)))).getId();
+        int stockAntes = stock(10L);
+
+        LocalDateTime haceUnDia = LocalDateTime.now().minusDays(1);
+        jdbcTemplate.update("UPDATE pedidos SET fecha = ? WHERE id IN (?, ?)", haceUnDia, enArmado, enviado);
+
+        expiracionBorradoresJob.expirarBorradores();
+
+        assertThat(estado(enArmado)).isEqualTo("CANCELADO");
+        assertThat(stock(10L)).as("stock devuelto por el pedido vencido").isEqualTo(stockAntes + 2);
+        assertThat(estado(enviado)).isEqualTo("BORRADOR");
+    }
+
+    private String estado(Long pedidoId) {
+        return jdbcTemplate.queryForObject("SELECT estado FROM pedidos WHERE id = ?", String.class, pedidoId);
+    }
+
+    private int stock(Long varianteId) {
+        return jdbcTemplate.queryForObject("SELECT stock_disponible FROM producto_variantes WHERE id = ?",
+                Integer.class, varianteId);
+    }
+}
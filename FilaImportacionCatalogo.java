@@ -0,0 +1,29 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Una fila de la importación masiva: una variante con los datos de su producto.
+ * Las filas con el mismo "producto" (nombre) son variantes del mismo producto; los datos del
+ * producto se toman de la primera fila que los trae. En NDJSON es un objeto por línea con estos campos;
+ * en CSV, una columna por campo con estos nombres en el encabezado (en cualquier orden).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilaImportacionCatalogo {
+    
+    private String producto;
+    private String descripcion;
+    private String tipo;
+    private String categoria;
+    private String imagenUrl;
+    private String sku;
+    private String color;
+    private String talle;
+    // En pesos, como el resto de la API
+    private Double precio;
+    private Integer stock;
+}
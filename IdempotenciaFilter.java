@@ -0,0 +1,311 @@
+package com.hrk.tienda_b2b.config;
+
+import com.hrk.tienda_b2b.service.AlmacenIdempotencia;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Soporte de Idempotency-Key para los POST de pedidos (hrk.idempotencia.rutas).
+ *
+ * - Primera vez que llega una clave: se ejecuta el request y se guarda la respuesta si es 2xx. Un 4xx o
+ *   5xx no se guarda y la clave se libera: un 409 por falta de stock o un 400 no quedan fijos todo el TTL
+ *   y el cliente puede reintentar con la misma clave.
+ * - La misma clave otra vez con el mismo método, ruta y cuerpo: se devuelve la respuesta guardada
+ *   con el header Idempotent-Replayed, sin pasar por el controller.
+ * - La misma clave con otro request: 422.
+ * - Repeticiones que llegan mientras la primera sigue ejecutándose en esta instancia esperan su
+ *   resultado en lugar de ejecutarse en paralelo. Si la está ejecutando otra instancia: 409 con Retry-After.
+ *
+ * Las claves son por usuario: dos clientes pueden mandar la misma clave sin pisarse.
+ * Corre antes de AdmisionFilter: las repeticiones no ocupan permisos de la base.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 5)
+public class IdempotenciaFilter extends OncePerRequestFilter {
+
+    public static final String HEADER_CLAVE = "Idempotency-Key";
+    public static final String HEADER_REPETIDA = "Idempotent-Replayed";
+
+    private final AlmacenIdempotencia almacen;
+    private final List<String> rutas;
+    private final int maxBytesCuerpo;
+    private final long esperaMaximaMs;
+
+    // Clave → resultado de la ejecución en curso en esta instancia (null si falló)
+    private final Map<String, CompletableFuture<AlmacenIdempotencia.RespuestaGuardada>> enCurso = new ConcurrentHashMap<>();
+
+    private final LongAdder ejecutadas = new LongAdder();
+    private final LongAdder repetidas = new LongAdder();
+    private final LongAdder colapsadas = new LongAdder();
+    private final LongAdder enCursoEnOtraInstancia = new LongAdder();
+    private final LongAdder huellaDistinta = new LongAdder();
+    private final LongAdder liberadas = new LongAdder();
+
+    public IdempotenciaFilter(AlmacenIdempotencia almacen,
+                              @Value("${hrk.idempotencia.rutas:/api/pedidos/}") List<String> rutas,
+                              @Value("${hrk.idempotencia.max-bytes-cuerpo:1048576}") int maxBytesCuerpo,
+                              @Value("${hrk.idempotencia.espera-maxima-ms:10000}") long esperaMaximaMs) {
+        this.almacen = almacen;
+        this.rutas = rutas;
+        this.maxBytesCuerpo = maxBytesCuerpo;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod()) || request.getHeader(HEADER_CLAVE) == null) {
+            return true;
+        }
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return rutas.stream().noneMatch(ruta::startsWith);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String claveCliente = request.getHeader(HEADER_CLAVE).trim();
+        if (claveCliente.isEmpty() || claveCliente.length() > 255) {
+            responderError(response, HttpStatus.BAD_REQUEST, HEADER_CLAVE + " debe tener entre 1 y 255 caracteres");
+            return;
+        }
+
+        byte[] cuerpo = request.getInputStream().readNBytes(maxBytesCuerpo + 1);
+        if (cuerpo.length > maxBytesCuerpo) {
+            responderError(response, HttpStatus.PAYLOAD_TOO_LARGE, "Cuerpo demasiado grande para un request con " + HEADER_CLAVE);
+            return;
+        }
+        Principal usuario = request.getUserPrincipal();
+        String clave = (usuario != null ? usuario.getName() : "anon") + ":" + claveCliente;
+        String huella = huella(request, cuerpo);
+        HttpServletRequest conCuerpo = new RequestConCuerpo(request, cuerpo);
+
+        // Segunda vuelta solo si la ejecución que esperábamos falló: entonces este request intenta ejecutarse
+        for (int intento = 0; intento < 2; intento++) {
+            CompletableFuture<AlmacenIdempotencia.RespuestaGuardada> propio = new CompletableFuture<>();
+            CompletableFuture<AlmacenIdempotencia.RespuestaGuardada> otro = enCurso.putIfAbsent(clave, propio);
+            if (otro != null) {
+                AlmacenIdempotencia.RespuestaGuardada resultado = esperar(otro);
+                if (resultado != null) {
+                    colapsadas.increment();
+                    repetir(resultado, huella, response);
+                    return;
+                }
+                if (otro.isDone()) {
+                    continue;
+                }
+                responderEnCurso(response);
+                return;
+            }
+            try {
+                ejecutar(clave, huella, conCuerpo, response, chain, propio);
+            } finally {
+                enCurso.remove(clave, propio);
+                propio.complete(null);
+            }
+            return;
+        }
+        responderEnCurso(response);
+    }
+
+    private void ejecutar(String clave, String huella, HttpServletRequest request, HttpServletResponse response,
+                          FilterChain chain, CompletableFuture<AlmacenIdempotencia.RespuestaGuardada> propio)
+            throws ServletException, IOException {
+        AlmacenIdempotencia.Reserva reserva = almacen.reservar(clave, huella);
+        switch (reserva.estado()) {
+            case REPETIDA -> {
+                propio.complete(reserva.respuesta());
+                repetir(reserva.respuesta(), huella, response);
+                return;
+            }
+            case EN_CURSO -> {
+                enCursoEnOtraInstancia.increment();
+                responderEnCurso(response);
+                return;
+            }
+            case NUEVA -> {
+            }
+        }
+
+        ejecutadas.increment();
+        ContentCachingResponseWrapper capturada = new ContentCachingResponseWrapper(response);
+        boolean guardada = false;
+        try {
+            chain.doFilter(request, capturada);
+            if (capturada.getStatus() / 100 == 2) {
+                propio.complete(almacen.completar(clave, huella, capturada.getStatus(), capturada.getContentType(),
+                        capturada.getContentAsByteArray()));
+                guardada = true;
+            }
+        } finally {
+            if (!guardada) {
+                liberadas.increment();
+                almacen.liberar(clave);
+            }
+            capturada.copyBodyToResponse();
+        }
+    }
+
+    private AlmacenIdempotencia.RespuestaGuardada esperar(CompletableFuture<AlmacenIdempotencia.RespuestaGuardada> otro) {
+        try {
+            return otro.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private void repetir(AlmacenIdempotencia.RespuestaGuardada respuesta, String huella, HttpServletResponse response) throws IOException {
+        if (!respuesta.huella().equals(huella)) {
+            huellaDistinta.increment();
+            responderError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "La " + HEADER_CLAVE + " ya se usó con otro request");
+            return;
+        }
+        repetidas.increment();
+        response.setStatus(respuesta.status());
+        if (respuesta.contentType() != null) {
+            response.setContentType(respuesta.contentType());
+        }
+        response.setHeader(HEADER_REPETIDA, "true");
+        byte[] cuerpo = respuesta.cuerpo() != null ? respuesta.cuerpo() : new byte[0];
+        response.setContentLength(cuerpo.length);
+        response.getOutputStream().write(cuerpo);
+    }
+
+    private void responderEnCurso(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        responderError(response, HttpStatus.CONFLICT, "Hay un request con la misma " + HEADER_CLAVE + " en curso");
+    }
+
+    private static void responderError(HttpServletResponse response, HttpStatus status, String mensaje) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"" + mensaje.replace("\"", "'") + "\"}");
+    }
+
+    private static String huella(HttpServletRequest request, byte[] cuerpo) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            sha256.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            if (request.getQueryString() != null) {
+                sha256.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+            }
+            sha256.update((byte) 0);
+            sha256.update(cuerpo);
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("ejecutadas", ejecutadas.sum());
+        estadisticas.put("repetidas", repetidas.sum());
+        estadisticas.put("colapsadasEnCurso", colapsadas.sum());
+        estadisticas.put("enCursoEnOtraInstancia", enCursoEnOtraInstancia.sum());
+        estadisticas.put("huellaDistinta", huellaDistinta.sum());
+        estadisticas.put("liberadasSinGuardar", liberadas.sum());
+        estadisticas.put("enCursoAhora", enCurso.size());
+        estadisticas.put("respuestasEnMemoria", almacen.enMemoria());
+        return estadisticas;
+    }
+
+    // El cuerpo ya se leyó para calcular la huella: el controller lo vuelve a leer de acá
+    private static class RequestConCuerpo extends HttpServletRequestWrapper {
+
+        private final byte[] cuerpo;
+
+        RequestConCuerpo(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String charset = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(cuerpo), Charset.forName(charset)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return cuerpo.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return cuerpo.length;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.hrk.tienda_b2b.controller;
+
+import com.hrk.tienda_b2b.service.AlmacenImagenesService;
+import com.hrk.tienda_b2b.service.MigracionImagenesService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Subida y entrega de imágenes de productos.
+ *
+ * POST /api/imagenes (multipart, campo "file") devuelve la URL de la imagen como texto: /imagenes/<sha256>.<ext>
+ * GET  /imagenes/<sha256>.<ext>            original
+ * GET  /imagenes/{miniatura|mediana}/<...> versión reducida
+ * POST /api/imagenes/migrar               pasa las imágenes viejas de ./uploads al almacén por hash
+ *
+ * Como el nombre es el hash del contenido, las respuestas se cachean un año con "immutable" y el ETag
+ * es el propio hash. Los archivos se mandan sin copiarlos a la memoria de la JVM: con sendfile de Tomcat
+ * si el conector lo soporta, y si no con FileChannel.transferTo.
+ */
+@Slf4j
+@RestController
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class ImagenesController {
+
+    private static final String CACHE_INMUTABLE = "public, max-age=31536000, immutable";
+    // Mientras la versión reducida no existe se sirve el original, pero por poco tiempo
+    private static final String CACHE_PROVISORIO = "public, max-age=60";
+
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    private final AlmacenImagenesService almacenImagenesService;
+    private final MigracionImagenesService migracionImagenesService;
+
+    @PostMapping("/api/imagenes")
+    public ResponseEntity<?> subir(@RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "El archivo está vacío"));
+        }
+        try (InputStream entrada = file.getInputStream()) {
+            return ResponseEntity.ok(almacenImagenesService.guardar(entrada));
+        } catch (IllegalArgumentException e) {
+            log.warn("Imagen rechazada ({}): {}", file.getOriginalFilename(), e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error al guardar la imagen {}", file.getOriginalFilename(), e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "No se pudo guardar la imagen"));
+        }
+    }
+
+    // Pasa las imágenes viejas de ./uploads al almacén por hash (ver MigracionImagenesService)
+    @PostMapping("/api/imagenes/migrar")
+    public ResponseEntity<?> migrarLegado() {
+        try {
+            return ResponseEntity.ok(migracionImagenesService.migrar());
+        } catch (Exception e) {
+            log.error("Error en la migración de imágenes", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "No se pudo migrar las imágenes"));
+        }
+    }
+
+    @RequestMapping(value = "/imagenes/{nombre}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void original(@PathVariable String nombre, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Path> archivo = almacenImagenesService.original(nombre);
+        if (archivo.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        enviar(archivo.get(), nombre, CACHE_INMUTABLE, request, response);
+    }
+
+    @RequestMapping(value = "/imagenes/{tamano}/{nombre}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void version(@PathVariable String tamano, @PathVariable String nombre,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AlmacenImagenesService.Tamano elegido;
+        try {
+            elegido = AlmacenImagenesService.Tamano.valueOf(tamano.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Optional<Path> version = almacenImagenesService.version(nombre, elegido);
+        if (version.isPresent()) {
+            enviar(version.get(), tamano + "-" + nombre, CACHE_INMUTABLE, request, response);
+            return;
+        }
+        Optional<Path> archivo = almacenImagenesService.original(nombre);
+        if (archivo.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        enviar(archivo.get(), nombre, CACHE_PROVISORIO, request, response);
+    }
+
+    private void enviar(Path archivo, String nombre, String cacheControl,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = "\"" + nombre + "\"";
+        long largo = Files.size(archivo);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(tipoContenido(archivo));
+
+        if (coincideEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long inicio = 0;
+        long fin = largo - 1;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // Con If-Range de otra versión (o una fecha, que acá no usamos) se manda el archivo completo
+        if (rango != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] pedido = parsearRango(rango, largo);
+            if (pedido == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + largo);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (pedido.length == 2) {
+                inicio = pedido[0];
+                fin = pedido[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fin + "/" + largo);
+            }
+        }
+
+        long cantidad = fin - inicio + 1;
+        response.setContentLengthLong(cantidad);
+        if ("HEAD".equals(request.getMethod()) || cantidad <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat manda el archivo con sendfile() después de que el controller vuelve
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin + 1);
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long posicion = inicio;
+            long restantes = cantidad;
+            while (restantes > 0) {
+                long enviados = canal.transferTo(posicion, restantes, salida);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicion += enviados;
+                restantes -= enviados;
+            }
+        }
+    }
+
+    private static boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String valor : ifNoneMatch.split(",")) {
+            String candidato = valor.trim();
+            if (candidato.startsWith("W/")) {
+                candidato = candidato.substring(2);
+            }
+            if (candidato.equals("*") || candidato.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {inicio, fin} para un único rango satisfacible, {} si el encabezado se ignora (mal formado o varios
+     * rangos: se responde el archivo completo) y null si el rango está fuera del archivo (416).
+     */
+    static long[] parsearRango(String rango, long largo) {
+        if (!rango.startsWith("bytes=") || rango.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String especificacion = rango.substring("bytes=".length()).trim();
+        int guion = especificacion.indexOf('-');
+        if (guion < 0) {
+            return new long[0];
+        }
+        try {
+            String desde = especificacion.substring(0, guion).trim();
+            String hasta = especificacion.substring(guion + 1).trim();
+            if (desde.isEmpty()) {
+                // "bytes=-500": los últimos 500 bytes
+                long sufijo = Long.parseLong(hasta);
+                if (sufijo <= 0 || largo == 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, largo - sufijo), largo - 1};
+            }
+            long inicio = Long.parseLong(desde);
+            long fin = hasta.isEmpty() ? largo - 1 : Math.min(Long.parseLong(hasta), largo - 1);
+            if (inicio >= largo || inicio > fin) {
+                return null;
+            }
+            return new long[]{inicio, fin};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static String tipoContenido(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        if (nombre.endsWith(".png")) {
+            return "image/png";
+        }
+        if (nombre.endsWith(".gif")) {
+            return "image/gif";
+        }
+        return "image/jpeg";
+    }
+}
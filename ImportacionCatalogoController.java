@@ -0,0 +1,69 @@
+package com.hrk.tienda_b2b.controller;
+
+import com.hrk.tienda_b2b.dto.ResultadoImportacionDTO;
+import com.hrk.tienda_b2b.service.ImportacionCatalogoService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Importación masiva del catálogo. El archivo va como cuerpo del request (no multipart) para
+ * leerlo en streaming:
+ *   curl -X POST -H "Content-Type: text/csv" --data-binary @temporada.csv .../api/importaciones/catalogo
+ *   curl -X POST -H "Content-Type: application/x-ndjson" --data-binary @temporada.ndjson .../api/importaciones/catalogo
+ * soloValidar=true revisa el archivo completo y devuelve el reporte sin escribir nada.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/importaciones")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class ImportacionCatalogoController {
+    
+    private final ImportacionCatalogoService importacionCatalogoService;
+    
+    @PostMapping("/catalogo")
+    public ResponseEntity<?> importarCatalogo(HttpServletRequest request,
+                                              @RequestParam(required = false) ImportacionCatalogoService.Formato formato,
+                                              @RequestParam(defaultValue = "false") boolean soloValidar) {
+        ImportacionCatalogoService.Formato elegido = formato != null ? formato : formatoSegun(request.getContentType());
+        if (elegido == null) {
+            return ResponseEntity.status(415).body(Map.of("error",
+                    "Content-Type debe ser text/csv o application/x-ndjson (o indicar ?formato=)"));
+        }
+        try {
+            ResultadoImportacionDTO resultado = importacionCatalogoService.importar(request.getInputStream(), elegido, soloValidar);
+            // Cortada a mitad: 400 con el resultado parcial (qué quedó guardado y dónde se cortó)
+            return resultado.isInterrumpida() ? ResponseEntity.badRequest().body(resultado) : ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            log.warn("Importación de catálogo rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            // Solo al abrir el cuerpo del request: un corte durante la lectura vuelve en el resultado
+            log.warn("No se pudo leer el archivo de importación: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "Archivo ilegible: " + e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error en la importación de catálogo", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Error interno en la importación"));
+        }
+    }
+    
+    private static ImportacionCatalogoService.Formato formatoSegun(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String tipo = contentType.toLowerCase();
+        if (tipo.startsWith("text/csv")) {
+            return ImportacionCatalogoService.Formato.CSV;
+        }
+        if (tipo.startsWith("application/x-ndjson") || tipo.startsWith("application/jsonl")) {
+            return ImportacionCatalogoService.Formato.NDJSON;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,477 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.FilaImportacionCatalogo;
+import com.hrk.tienda_b2b.dto.ResultadoImportacionDTO;
+import com.hrk.tienda_b2b.model.Categoria;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.model.TipoProducto;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Importación masiva de productos y variantes desde CSV o NDJSON.
+ *
+ * - Lectura en streaming: se procesa registro por registro y en memoria queda como mucho un lote,
+ *   más el conjunto de SKUs vistos y el mapa nombre → id de productos.
+ * - Validación antes de tocar la base: campos obligatorios, enums, precio/stock y SKU repetido
+ *   dentro del archivo. Una fila inválida se informa y no frena al resto.
+ * - Escritura por lotes de hrk.importacion.tamano-lote filas, cada lote en su propia transacción:
+ *   productos nuevos en un INSERT por lotes y variantes con INSERT ... ON DUPLICATE KEY UPDATE por sku.
+ *   El stock del archivo es la existencia física: en la misma sentencia se le resta lo que siguen
+ *   reservando los pedidos que todavía se pueden cancelar, igual que lo deja ReservaStockService.
+ *   Si un lote falla se reintenta fila por fila para aislar la que rompe.
+ * - Como escribe por JDBC, después de cada lote saca del cache de segundo nivel productos y variantes
+ *   y marca el catálogo en memoria como desactualizado.
+ * - Si la lectura se corta a mitad de archivo, se guardan las filas completas ya leídas y se devuelve el
+ *   resultado parcial con interrumpida=true y el registro donde se cortó.
+ */
+@Slf4j
+@Service
+public class ImportacionCatalogoService {
+
+    public enum Formato { CSV, NDJSON }
+
+    static final List<String> COLUMNAS = List.of("producto", "descripcion", "tipo", "categoria", "imagenurl",
+            "sku", "color", "talle", "precio", "stock");
+    private static final List<String> COLUMNAS_OBLIGATORIAS = List.of("producto", "sku", "precio", "stock");
+    private static final int MAX_LARGO_TEXTO = 255;
+    private static final int MAX_LARGO_DESCRIPCION = 1000;
+
+    private static final String UPSERT_VARIANTE =
+            "INSERT INTO producto_variantes (producto_id, sku, color, talle, precio_centavos, stock_disponible) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE producto_id = VALUES(producto_id), " +
+            "color = VALUES(color), talle = VALUES(talle), precio_centavos = VALUES(precio_centavos), " +
+            "stock_disponible = VALUES(stock_disponible) - (SELECT COALESCE(SUM(d.cantidad), 0) " +
+            "FROM pedido_detalles d JOIN pedidos p ON p.id = d.pedido_id " +
+            "WHERE d.variante_id = producto_variantes.id AND d.stock_reservado = TRUE " +
+            "AND p.estado IN (" + estadosConReserva() + "))";
+
+    // Estados desde los que una cancelación devuelve la reserva: sus unidades siguen en el depósito
+    private static String estadosConReserva() {
+        return Arrays.stream(EstadoPedido.values())
+                .filter(e -> e.puedeTransicionarA(EstadoPedido.CANCELADO))
+                .map(e -> "'" + e.name() + "'")
+                .collect(Collectors.joining(", "));
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final CatalogoSnapshotService catalogoSnapshotService;
+    private final int tamanoLote;
+    private final int maxErrores;
+
+    public ImportacionCatalogoService(JdbcTemplate jdbcTemplate,
+                                      ObjectMapper objectMapper,
+                                      PlatformTransactionManager transactionManager,
+                                      EntityManagerFactory entityManagerFactory,
+                                      CatalogoSnapshotService catalogoSnapshotService,
+                                      @Value("${hrk.importacion.tamano-lote:500}") int tamanoLote,
+                                      @Value("${hrk.importacion.max-errores:1000}") int maxErrores) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Cada sentencia ve lo último confirmado: después de esperar el lock de una variante, las
+        // reservas de los checkouts que lo tenían ya entran en la resta del stock
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.entityManagerFactory = entityManagerFactory;
+        this.catalogoSnapshotService = catalogoSnapshotService;
+        this.tamanoLote = tamanoLote;
+        this.maxErrores = maxErrores;
+    }
+
+    // Fila ya validada y normalizada, lista para escribir
+    private record FilaValida(long numero, String claveProducto, String producto, String descripcion,
+                              String tipo, String categoria, String imagenUrl, String sku, String color,
+                              String talle, long precioCentavos, int stock) {
+
+        boolean traeDatosDeProducto() {
+            return descripcion != null || tipo != null || categoria != null || imagenUrl != null;
+        }
+    }
+
+    public ResultadoImportacionDTO importar(InputStream entrada, Formato formato, boolean soloValidar) {
+        long inicio = System.nanoTime();
+        Importacion importacion = new Importacion(soloValidar);
+        ResultadoImportacionDTO resultado = importacion.resultado;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            if (formato == Formato.CSV) {
+                leerCsv(reader, importacion);
+            } else {
+                leerNdjson(reader, importacion);
+            }
+        } catch (IOException e) {
+            // Los lotes anteriores ya están confirmados: no se deshacen, se informa hasta dónde se llegó
+            resultado.setInterrumpida(true);
+            resultado.setFilaInterrupcion(importacion.ultimoRegistro + 1);
+            resultado.setErrorLectura(e.getMessage());
+            log.warn("Importación de catálogo interrumpida en el registro {}: {}",
+                    resultado.getFilaInterrupcion(), e.getMessage());
+        }
+        importacion.vaciarLote();
+
+        resultado.setMilisegundos((System.nanoTime() - inicio) / 1_000_000);
+        log.info("Importación de catálogo{}: {} filas, {} importadas, {} productos nuevos, {} errores en {} ms",
+                soloValidar ? " (solo validación)" : "", resultado.getFilasLeidas(), resultado.getFilasImportadas(),
+                resultado.getProductosCreados(), resultado.getTotalErrores(), resultado.getMilisegundos());
+        return resultado;
+    }
+
+    private void leerCsv(BufferedReader reader, Importacion importacion) throws IOException {
+        // El separador se deduce del encabezado: punto y coma si no hay ninguna coma (Excel en español)
+        reader.mark(8192);
+        String primeraLinea = reader.readLine();
+        if (primeraLinea == null) {
+            throw new IllegalArgumentException("El archivo está vacío");
+        }
+        reader.reset();
+        char separador = primeraLinea.indexOf(',') < 0 && primeraLinea.indexOf(';') >= 0 ? ';' : ',';
+
+        LectorCsv lector = new LectorCsv(reader, separador, MAX_LARGO_DESCRIPCION * 4);
+        List<String> encabezado = lector.leer();
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < encabezado.size(); i++) {
+            // Excel guarda el CSV en UTF-8 con BOM al principio
+            String nombre = encabezado.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            if (!COLUMNAS.contains(nombre)) {
+                throw new IllegalArgumentException("Columna desconocida: " + encabezado.get(i));
+            }
+            columnas.put(nombre, i);
+        }
+        for (String obligatoria : COLUMNAS_OBLIGATORIAS) {
+            if (!columnas.containsKey(obligatoria)) {
+                throw new IllegalArgumentException("Falta la columna " + obligatoria);
+            }
+        }
+
+        long numero = 0;
+        List<String> registro;
+        while ((registro = lector.leer()) != null) {
+            numero++;
+            importacion.ultimoRegistro = numero;
+            if (registro.size() != encabezado.size()) {
+                importacion.error(numero, null, "Tiene " + registro.size() + " columnas y el encabezado " + encabezado.size());
+                continue;
+            }
+            FilaImportacionCatalogo fila = new FilaImportacionCatalogo();
+            fila.setProducto(campo(registro, columnas, "producto"));
+            fila.setDescripcion(campo(registro, columnas, "descripcion"));
+            fila.setTipo(campo(registro, columnas, "tipo"));
+            fila.setCategoria(campo(registro, columnas, "categoria"));
+            fila.setImagenUrl(campo(registro, columnas, "imagenurl"));
+            fila.setSku(campo(registro, columnas, "sku"));
+            fila.setColor(campo(registro, columnas, "color"));
+            fila.setTalle(campo(registro, columnas, "talle"));
+            try {
+                String precio = campo(registro, columnas, "precio");
+                String stock = campo(registro, columnas, "stock");
+                // Acepta coma decimal ("1234,50") si no hay punto
+                fila.setPrecio(precio != null ? Double.valueOf(precio.indexOf('.') < 0 ? precio.replace(',', '.') : precio) : null);
+                fila.setStock(stock != null ? Integer.valueOf(stock) : null);
+            } catch (NumberFormatException e) {
+                importacion.error(numero, fila.getSku(), "precio o stock no es un número");
+                continue;
+            }
+            importacion.procesar(numero, fila);
+        }
+    }
+
+    private void leerNdjson(BufferedReader reader, Importacion importacion) throws IOException {
+        long numero = 0;
+        String linea;
+        while ((linea = reader.readLine()) != null) {
+            if (linea.isBlank()) {
+                continue;
+            }
+            numero++;
+            importacion.ultimoRegistro = numero;
+            FilaImportacionCatalogo fila;
+            try {
+                fila = objectMapper.readValue(linea, FilaImportacionCatalogo.class);
+            } catch (JsonProcessingException e) {
+                importacion.error(numero, null, "JSON inválido: " + e.getOriginalMessage());
+                continue;
+            }
+            importacion.procesar(numero, fila);
+        }
+    }
+
+    private static String campo(List<String> registro, Map<String, Integer> columnas, String nombre) {
+        Integer posicion = columnas.get(nombre);
+        if (posicion == null) {
+            return null;
+        }
+        String valor = registro.get(posicion).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    /**
+     * Estado de una importación: resultado, SKUs vistos, productos conocidos y el lote en curso.
+     */
+    private final class Importacion {
+
+        final ResultadoImportacionDTO resultado = new ResultadoImportacionDTO();
+        final Set<String> skusVistos = new HashSet<>();
+        // Nombre normalizado → id, de los productos que ya existen o que ya creó esta importación
+        final Map<String, Long> productos;
+        // Productos nuevos que ya aparecieron en el archivo (para no exigir tipo/categoría en cada fila)
+        final Set<String> productosNuevos = new HashSet<>();
+        // Productos existentes cuyos datos ya se actualizaron con la primera fila que los traía
+        final Set<String> productosActualizados = new HashSet<>();
+        final List<FilaValida> lote = new ArrayList<>(tamanoLote);
+        // Último registro leído entero (para informar dónde se cortó la lectura)
+        long ultimoRegistro;
+
+        Importacion(boolean soloValidar) {
+            resultado.setSoloValidacion(soloValidar);
+            productos = cargarProductos();
+        }
+
+        void procesar(long numero, FilaImportacionCatalogo fila) {
+            resultado.setFilasLeidas(resultado.getFilasLeidas() + 1);
+            FilaValida valida = validar(numero, fila);
+            if (valida == null) {
+                return;
+            }
+            if (resultado.isSoloValidacion()) {
+                resultado.setFilasImportadas(resultado.getFilasImportadas() + 1);
+                return;
+            }
+            lote.add(valida);
+            if (lote.size() >= tamanoLote) {
+                vaciarLote();
+            }
+        }
+
+        void error(long numero, String sku, String mensaje) {
+            resultado.setTotalErrores(resultado.getTotalErrores() + 1);
+            if (resultado.getErrores().size() < maxErrores) {
+                resultado.getErrores().add(new ResultadoImportacionDTO.ErrorFila(numero, sku, mensaje));
+            }
+        }
+
+        private FilaValida validar(long numero, FilaImportacionCatalogo fila) {
+            String sku = recortar(fila.getSku());
+            String producto = recortar(fila.getProducto());
+            if (sku == null) {
+                error(numero, null, "Falta el sku");
+                return null;
+            }
+            if (producto == null) {
+                error(numero, sku, "Falta el producto");
+                return null;
+            }
+            if (sku.length() > MAX_LARGO_TEXTO || producto.length() > MAX_LARGO_TEXTO) {
+                error(numero, sku, "sku o producto de más de " + MAX_LARGO_TEXTO + " caracteres");
+                return null;
+            }
+            String descripcion = recortar(fila.getDescripcion());
+            if (descripcion != null && descripcion.length() > MAX_LARGO_DESCRIPCION) {
+                error(numero, sku, "descripcion de más de " + MAX_LARGO_DESCRIPCION + " caracteres");
+                return null;
+            }
+            if (fila.getPrecio() == null || !(fila.getPrecio() > 0)) {
+                error(numero, sku, "precio debe ser mayor a 0");
+                return null;
+            }
+            if (fila.getStock() == null || fila.getStock() < 0) {
+                error(numero, sku, "stock debe ser 0 o más");
+                return null;
+            }
+            String tipo = recortar(fila.getTipo());
+            String categoria = recortar(fila.getCategoria());
+            try {
+                tipo = tipo != null ? TipoProducto.valueOf(tipo.toUpperCase(Locale.ROOT)).name() : null;
+                categoria = categoria != null ? Categoria.valueOf(categoria.toUpperCase(Locale.ROOT)).name() : null;
+            } catch (IllegalArgumentException e) {
+                error(numero, sku, "tipo o categoria inválidos");
+                return null;
+            }
+            String claveProducto = producto.toLowerCase(Locale.ROOT);
+            boolean existe = productos.containsKey(claveProducto) || productosNuevos.contains(claveProducto);
+            if (!existe && (tipo == null || categoria == null)) {
+                error(numero, sku, "Producto nuevo sin tipo o categoria");
+                return null;
+            }
+            // La base compara SKUs sin distinguir mayúsculas: el archivo también
+            if (!skusVistos.add(sku.toUpperCase(Locale.ROOT))) {
+                error(numero, sku, "sku repetido en el archivo");
+                return null;
+            }
+            if (!existe) {
+                productosNuevos.add(claveProducto);
+            }
+            return new FilaValida(numero, claveProducto, producto, descripcion, tipo, categoria,
+                    recortar(fila.getImagenUrl()), sku, recortar(fila.getColor()), recortar(fila.getTalle()),
+                    Dinero.aCentavos(fila.getPrecio()), fila.getStock());
+        }
+
+        void vaciarLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            List<FilaValida> filas = new ArrayList<>(lote);
+            lote.clear();
+            resultado.setLotes(resultado.getLotes() + 1);
+            try {
+                escribirEnTransaccion(filas);
+            } catch (RuntimeException e) {
+                log.warn("Falló un lote de {} filas de la importación, se reintenta fila por fila: {}",
+                        filas.size(), mensaje(e));
+                for (FilaValida fila : filas) {
+                    try {
+                        escribirEnTransaccion(List.of(fila));
+                    } catch (RuntimeException errorFila) {
+                        error(fila.numero(), fila.sku(), "No se pudo guardar: " + mensaje(errorFila));
+                    }
+                }
+            }
+            sacarDelCache();
+        }
+
+        private void escribirEnTransaccion(List<FilaValida> filas) {
+            Map<String, Long> creados = transactionTemplate.execute(status -> escribir(filas));
+            // Recién después del commit: si la transacción se deshace los ids no existen
+            productos.putAll(creados);
+            resultado.setProductosCreados(resultado.getProductosCreados() + creados.size());
+            resultado.setFilasImportadas(resultado.getFilasImportadas() + filas.size());
+            for (FilaValida fila : filas) {
+                if (fila.traeDatosDeProducto()) {
+                    productosActualizados.add(fila.claveProducto());
+                }
+            }
+        }
+
+        private Map<String, Long> escribir(List<FilaValida> filas) {
+            // Primera fila de cada producto nuevo, y de cada existente con datos para actualizar
+            Map<String, FilaValida> nuevos = new LinkedHashMap<>();
+            Map<String, FilaValida> aActualizar = new LinkedHashMap<>();
+            for (FilaValida fila : filas) {
+                if (!productos.containsKey(fila.claveProducto())) {
+                    nuevos.putIfAbsent(fila.claveProducto(), fila);
+                } else if (fila.traeDatosDeProducto() && !productosActualizados.contains(fila.claveProducto())) {
+                    aActualizar.putIfAbsent(fila.claveProducto(), fila);
+                }
+            }
+
+            Map<String, Long> creados = insertarProductos(nuevos);
+            if (!aActualizar.isEmpty()) {
+                List<Object[]> parametros = new ArrayList<>(aActualizar.size());
+                for (FilaValida fila : aActualizar.values()) {
+                    parametros.add(new Object[]{fila.descripcion(), fila.tipo(), fila.categoria(), fila.imagenUrl(),
+                            productos.get(fila.claveProducto())});
+                }
+                jdbcTemplate.batchUpdate("UPDATE productos SET descripcion = COALESCE(?, descripcion), " +
+                        "tipo = COALESCE(?, tipo), categoria = COALESCE(?, categoria), " +
+                        "imagen_url = COALESCE(?, imagen_url) WHERE id = ?", parametros);
+            }
+
+            // Bloquea las variantes existentes del lote: los checkouts y cancelaciones en curso sobre ellas
+            // terminan antes, y los nuevos esperan al commit y descuentan del stock ya importado
+            List<Object> skus = filas.stream().map(fila -> (Object) fila.sku()).toList();
+            jdbcTemplate.queryForList("SELECT id FROM producto_variantes WHERE sku IN ("
+                    + String.join(", ", Collections.nCopies(skus.size(), "?")) + ") ORDER BY id FOR UPDATE",
+                    Long.class, skus.toArray());
+
+            List<Object[]> variantes = new ArrayList<>(filas.size());
+            for (FilaValida fila : filas) {
+                Long productoId = productos.containsKey(fila.claveProducto())
+                        ? productos.get(fila.claveProducto())
+                        : creados.get(fila.claveProducto());
+                variantes.add(new Object[]{productoId, fila.sku(), fila.color(), fila.talle(),
+                        fila.precioCentavos(), fila.stock()});
+            }
+            jdbcTemplate.batchUpdate(UPSERT_VARIANTE, variantes);
+            return creados;
+        }
+
+        private Map<String, Long> insertarProductos(Map<String, FilaValida> nuevos) {
+            if (nuevos.isEmpty()) {
+                return Map.of();
+            }
+            List<Object[]> parametros = new ArrayList<>(nuevos.size());
+            for (FilaValida fila : nuevos.values()) {
+                parametros.add(new Object[]{fila.producto(), fila.descripcion(), fila.tipo(), fila.categoria(),
+                        fila.imagenUrl()});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO productos (nombre, descripcion, tipo, categoria, imagen_url) " +
+                    "VALUES (?, ?, ?, ?, ?)", parametros);
+
+            // Los ids los asigna la base (IDENTITY): se leen por nombre, el más nuevo de cada uno
+            Map<String, Long> creados = new HashMap<>();
+            String marcadores = String.join(", ", Collections.nCopies(nuevos.size(), "?"));
+            jdbcTemplate.query("SELECT id, nombre FROM productos WHERE nombre IN (" + marcadores + ") ORDER BY id",
+                    rs -> {
+                        String clave = rs.getString("nombre").trim().toLowerCase(Locale.ROOT);
+                        if (nuevos.containsKey(clave)) {
+                            creados.put(clave, rs.getLong("id"));
+                        }
+                    },
+                    nuevos.values().stream().map(FilaValida::producto).toArray());
+            return creados;
+        }
+    }
+
+    // Si hay nombres repetidos en la base se usa el producto más viejo
+    private Map<String, Long> cargarProductos() {
+        Map<String, Long> productos = new HashMap<>();
+        jdbcTemplate.query("SELECT id, nombre FROM productos ORDER BY id", rs -> {
+            productos.putIfAbsent(rs.getString("nombre").trim().toLowerCase(Locale.ROOT), rs.getLong("id"));
+        });
+        return productos;
+    }
+
+    // Los lotes se escriben por JDBC: Hibernate no se entera y hay que invalidar a mano
+    private void sacarDelCache() {
+        entityManagerFactory.getCache().evict(ProductoVariante.class);
+        entityManagerFactory.getCache().evict(Producto.class);
+        entityManagerFactory.unwrap(SessionFactory.class).getCache()
+                .evictCollectionData(Producto.class.getName() + ".variantes");
+        catalogoSnapshotService.marcarDesactualizado();
+    }
+
+    private static String recortar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String recortado = valor.trim();
+        return recortado.isEmpty() ? null : recortado;
+    }
+
+    private static String mensaje(RuntimeException e) {
+        Throwable causa = NestedExceptionUtils.getMostSpecificCause(e);
+        String mensaje = causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+        return mensaje.length() > 200 ? mensaje.substring(0, 200) : mensaje;
+    }
+}
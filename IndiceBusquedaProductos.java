@@ -0,0 +1,342 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.BusquedaProductosDTO;
+import com.hrk.tienda_b2b.dto.CatalogoProductoDTO;
+import com.hrk.tienda_b2b.model.Dinero;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda en memoria sobre el catálogo. Cada variante es un "documento" (posición 0..n-1)
+ * y cada término o valor de faceta tiene un BitSet con las variantes que lo contienen, así que
+ * filtrar es hacer AND de bitsets y contar facetas es contar bits, sin tocar MySQL.
+ *
+ * - Texto (nombre + descripción del producto): sin acentos, en minúsculas, por prefijo de palabra.
+ * - SKU: por prefijo, con búsqueda binaria sobre los SKUs ordenados.
+ * - Precio: rango, con búsqueda binaria sobre las variantes ordenadas por precio.
+ * - Stock: bitset de variantes con stock disponible.
+ *
+ * Se reconstruye entero cada vez que CatalogoSnapshotService publica una foto nueva del catálogo
+ * y se reemplaza de forma atómica: las búsquedas en curso siguen con el índice anterior.
+ */
+@Slf4j
+@Component
+public class IndiceBusquedaProductos {
+    
+    static final String TIPO = "tipo";
+    static final String CATEGORIA = "categoria";
+    static final String COLOR = "color";
+    static final String TALLE = "talle";
+    
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+    
+    private final AtomicReference<Indice> actual = new AtomicReference<>(Indice.vacio());
+    
+    @EventListener
+    public void onCatalogoActualizado(CatalogoSnapshot snapshot) {
+        Indice nuevo = Indice.construir(snapshot);
+        actual.set(nuevo);
+        log.info("Índice v{} listo: {} variantes, {} términos",
+                snapshot.getVersion(), nuevo.cantidad, nuevo.terminos.length);
+    }
+    
+    public BusquedaProductosDTO buscar(CriteriosBusqueda criterios) {
+        return actual.get().buscar(criterios);
+    }
+    
+    /** Filtros de búsqueda; los que quedan en null no filtran. */
+    public record CriteriosBusqueda(String texto, String skuPrefijo, String tipo, String categoria,
+                                    String color, String talle, Double precioMin, Double precioMax,
+                                    boolean soloConStock, int limite) {
+    }
+    
+    static String normalizar(String texto) {
+        String sinAcentos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinAcentos.toLowerCase(Locale.ROOT);
+    }
+    
+    static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        if (texto == null) {
+            return tokens;
+        }
+        for (String token : SEPARADORES.split(normalizar(texto))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+    
+    private static final class Indice {
+        
+        final long version;
+        final int cantidad;
+        // Por documento (variante)
+        final int[] productoDe;
+        final CatalogoProductoDTO[] productos;
+        final CatalogoProductoDTO.VarianteDTO[] variantes;
+        // Términos de texto ordenados, con su posting list
+        final String[] terminos;
+        final BitSet[] postings;
+        // SKUs normalizados ordenados y el documento de cada uno
+        final String[] skusOrdenados;
+        final int[] docPorSku;
+        // Precios ordenados y el documento de cada uno
+        final long[] preciosOrdenados;
+        final int[] docPorPrecio;
+        final BitSet conStock;
+        // faceta → valor normalizado → variantes, y por faceta el valor tal como se muestra
+        // (por faceta: un color y un talle con la misma clave no comparten etiqueta)
+        final Map<String, Map<String, BitSet>> facetas;
+        final Map<String, Map<String, String>> etiquetas;
+        
+        private Indice(long version, int cantidad, int[] productoDe, CatalogoProductoDTO[] productos,
+                       CatalogoProductoDTO.VarianteDTO[] variantes, String[] terminos, BitSet[] postings,
+                       String[] skusOrdenados, int[] docPorSku, long[] preciosOrdenados, int[] docPorPrecio,
+                       BitSet conStock, Map<String, Map<String, BitSet>> facetas, Map<String, Map<String, String>> etiquetas) {
+            this.version = version;
+            this.cantidad = cantidad;
+            this.productoDe = productoDe;
+            this.productos = productos;
+            this.variantes = variantes;
+            this.terminos = terminos;
+            this.postings = postings;
+            this.skusOrdenados = skusOrdenados;
+            this.docPorSku = docPorSku;
+            this.preciosOrdenados = preciosOrdenados;
+            this.docPorPrecio = docPorPrecio;
+            this.conStock = conStock;
+            this.facetas = facetas;
+            this.etiquetas = etiquetas;
+        }
+        
+        static Indice vacio() {
+            return new Indice(0, 0, new int[0], new CatalogoProductoDTO[0], new CatalogoProductoDTO.VarianteDTO[0],
+                    new String[0], new BitSet[0], new String[0], new int[0], new long[0], new int[0],
+                    new BitSet(), Map.of(), Map.of());
+        }
+        
+        static Indice construir(CatalogoSnapshot snapshot) {
+            List<CatalogoProductoDTO> lista = snapshot.getProductos();
+            int n = 0;
+            for (CatalogoProductoDTO p : lista) {
+                n += p.getVariantes() != null ? p.getVariantes().size() : 0;
+            }
+            
+            int[] productoDe = new int[n];
+            CatalogoProductoDTO[] productos = lista.toArray(new CatalogoProductoDTO[0]);
+            CatalogoProductoDTO.VarianteDTO[] variantes = new CatalogoProductoDTO.VarianteDTO[n];
+            TreeMap<String, BitSet> texto = new TreeMap<>();
+            Map<String, Map<String, BitSet>> facetas = new LinkedHashMap<>();
+            Map<String, Map<String, String>> etiquetas = new HashMap<>();
+            for (String faceta : List.of(TIPO, CATEGORIA, COLOR, TALLE)) {
+                facetas.put(faceta, new HashMap<>());
+                etiquetas.put(faceta, new HashMap<>());
+            }
+            BitSet conStock = new BitSet(n);
+            
+            int doc = 0;
+            for (int p = 0; p < productos.length; p++) {
+                CatalogoProductoDTO producto = productos[p];
+                if (producto.getVariantes() == null || producto.getVariantes().isEmpty()) {
+                    continue;
+                }
+                int primerDoc = doc;
+                for (CatalogoProductoDTO.VarianteDTO v : producto.getVariantes()) {
+                    productoDe[doc] = p;
+                    variantes[doc] = v;
+                    agregar(facetas.get(TIPO), etiquetas.get(TIPO), producto.getTipo(), doc);
+                    agregar(facetas.get(CATEGORIA), etiquetas.get(CATEGORIA), producto.getCategoria(), doc);
+                    agregar(facetas.get(COLOR), etiquetas.get(COLOR), v.getColor(), doc);
+                    agregar(facetas.get(TALLE), etiquetas.get(TALLE), v.getTalle(), doc);
+                    if (v.getStockDisponible() != null && v.getStockDisponible() > 0) {
+                        conStock.set(doc);
+                    }
+                    doc++;
+                }
+                // Los términos del producto aplican a todas sus variantes (rango contiguo de documentos)
+                List<String> tokens = tokenizar(producto.getNombre());
+                tokens.addAll(tokenizar(producto.getDescripcion()));
+                for (String token : tokens) {
+                    texto.computeIfAbsent(token, t -> new BitSet(variantes.length)).set(primerDoc, doc);
+                }
+            }
+            
+            String[] terminos = texto.keySet().toArray(new String[0]);
+            BitSet[] postings = texto.values().toArray(new BitSet[0]);
+            
+            Integer[] porSku = ordenDocs(n);
+            Arrays.sort(porSku, (a, b) -> normalizar(variantes[a].getSku()).compareTo(normalizar(variantes[b].getSku())));
+            String[] skusOrdenados = new String[n];
+            int[] docPorSku = new int[n];
+            for (int i = 0; i < n; i++) {
+                docPorSku[i] = porSku[i];
+                skusOrdenados[i] = normalizar(variantes[porSku[i]].getSku());
+            }
+            
+            Integer[] porPrecio = ordenDocs(n);
+            long[] precios = new long[n];
+            for (int i = 0; i < n; i++) {
+                precios[i] = variantes[i].getPrecio() != null ? Dinero.aCentavos(variantes[i].getPrecio()) : 0L;
+            }
+            Arrays.sort(porPrecio, (a, b) -> Long.compare(precios[a], precios[b]));
+            long[] preciosOrdenados = new long[n];
+            int[] docPorPrecio = new int[n];
+            for (int i = 0; i < n; i++) {
+                docPorPrecio[i] = porPrecio[i];
+                preciosOrdenados[i] = precios[porPrecio[i]];
+            }
+            
+            return new Indice(snapshot.getVersion(), n, productoDe, productos, variantes, terminos, postings,
+                    skusOrdenados, docPorSku, preciosOrdenados, docPorPrecio, conStock, facetas, etiquetas);
+        }
+        
+        BusquedaProductosDTO buscar(CriteriosBusqueda c) {
+            BitSet resultado = new BitSet(cantidad);
+            resultado.set(0, cantidad);
+            
+            for (String token : tokenizar(c.texto())) {
+                resultado.and(porPrefijoDeTermino(token));
+            }
+            if (c.skuPrefijo() != null && !c.skuPrefijo().isBlank()) {
+                resultado.and(porPrefijoDeSku(normalizar(c.skuPrefijo().trim())));
+            }
+            filtrarFaceta(resultado, TIPO, c.tipo());
+            filtrarFaceta(resultado, CATEGORIA, c.categoria());
+            filtrarFaceta(resultado, COLOR, c.color());
+            filtrarFaceta(resultado, TALLE, c.talle());
+            if (c.precioMin() != null || c.precioMax() != null) {
+                long min = c.precioMin() != null ? Dinero.aCentavos(c.precioMin()) : Long.MIN_VALUE;
+                long max = c.precioMax() != null ? Dinero.aCentavos(c.precioMax()) : Long.MAX_VALUE;
+                resultado.and(porRangoDePrecio(min, max));
+            }
+            if (c.soloConStock()) {
+                resultado.and(conStock);
+            }
+            
+            return armarResultado(resultado, c.limite());
+        }
+        
+        private BitSet porPrefijoDeTermino(String prefijo) {
+            BitSet union = new BitSet(cantidad);
+            for (int i = primeraPosicion(terminos, prefijo); i < terminos.length && terminos[i].startsWith(prefijo); i++) {
+                union.or(postings[i]);
+            }
+            return union;
+        }
+        
+        private BitSet porPrefijoDeSku(String prefijo) {
+            BitSet encontrados = new BitSet(cantidad);
+            for (int i = primeraPosicion(skusOrdenados, prefijo); i < skusOrdenados.length && skusOrdenados[i].startsWith(prefijo); i++) {
+                encontrados.set(docPorSku[i]);
+            }
+            return encontrados;
+        }
+        
+        private BitSet porRangoDePrecio(long min, long max) {
+            BitSet encontrados = new BitSet(cantidad);
+            int desde = Arrays.binarySearch(preciosOrdenados, min);
+            desde = desde < 0 ? -desde - 1 : desde;
+            // binarySearch devuelve cualquier posición con ese precio: retroceder hasta la primera
+            while (desde > 0 && preciosOrdenados[desde - 1] >= min) {
+                desde--;
+            }
+            for (int i = desde; i < preciosOrdenados.length && preciosOrdenados[i] <= max; i++) {
+                encontrados.set(docPorPrecio[i]);
+            }
+            return encontrados;
+        }
+        
+        private void filtrarFaceta(BitSet resultado, String faceta, String valor) {
+            if (valor == null || valor.isBlank()) {
+                return;
+            }
+            BitSet docs = facetas.get(faceta).get(normalizar(valor.trim()));
+            if (docs == null) {
+                resultado.clear();
+            } else {
+                resultado.and(docs);
+            }
+        }
+        
+        private BusquedaProductosDTO armarResultado(BitSet resultado, int limite) {
+            Map<String, Map<String, Integer>> conteos = new LinkedHashMap<>();
+            BitSet interseccion = new BitSet(cantidad);
+            for (Map.Entry<String, Map<String, BitSet>> faceta : facetas.entrySet()) {
+                Map<String, Integer> porValor = new TreeMap<>();
+                Map<String, String> etiquetasFaceta = etiquetas.get(faceta.getKey());
+                for (Map.Entry<String, BitSet> valor : faceta.getValue().entrySet()) {
+                    interseccion.clear();
+                    interseccion.or(valor.getValue());
+                    interseccion.and(resultado);
+                    int cuenta = interseccion.cardinality();
+                    if (cuenta > 0) {
+                        porValor.put(etiquetasFaceta.get(valor.getKey()), cuenta);
+                    }
+                }
+                conteos.put(faceta.getKey(), porValor);
+            }
+            
+            // Las variantes de un producto son documentos contiguos: se agrupan recorriendo en orden
+            List<CatalogoProductoDTO> encontrados = new ArrayList<>();
+            int totalProductos = 0;
+            int productoActual = -1;
+            List<CatalogoProductoDTO.VarianteDTO> variantesActuales = null;
+            for (int d = resultado.nextSetBit(0); d >= 0; d = resultado.nextSetBit(d + 1)) {
+                if (productoDe[d] != productoActual) {
+                    productoActual = productoDe[d];
+                    totalProductos++;
+                    variantesActuales = null;
+                    if (encontrados.size() < limite) {
+                        CatalogoProductoDTO p = productos[productoActual];
+                        variantesActuales = new ArrayList<>();
+                        encontrados.add(new CatalogoProductoDTO(p.getId(), p.getNombre(), p.getDescripcion(),
+                                p.getTipo(), p.getImagenUrl(), p.getCategoria(), variantesActuales));
+                    }
+                }
+                if (variantesActuales != null) {
+                    variantesActuales.add(variantes[d]);
+                }
+            }
+            
+            return new BusquedaProductosDTO(resultado.cardinality(), totalProductos, encontrados, conteos, version);
+        }
+        
+        private static void agregar(Map<String, BitSet> faceta, Map<String, String> etiquetas, String valor, int doc) {
+            if (valor != null && !valor.isBlank()) {
+                String clave = normalizar(valor.trim());
+                faceta.computeIfAbsent(clave, v -> new BitSet()).set(doc);
+                etiquetas.putIfAbsent(clave, valor.trim());
+            }
+        }
+        
+        private static int primeraPosicion(String[] ordenados, String clave) {
+            int pos = Arrays.binarySearch(ordenados, clave);
+            return pos < 0 ? -pos - 1 : pos;
+        }
+        
+        private static Integer[] ordenDocs(int n) {
+            Integer[] docs = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                docs[i] = i;
+            }
+            return docs;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.UsuarioDTO;
+import com.hrk.tienda_b2b.dto.UsuarioIndiceFila;
+import com.hrk.tienda_b2b.model.TipoUsuario;
+import com.hrk.tienda_b2b.repository.UsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice en memoria para las sugerencias del selector de clientes (typeahead).
+ *
+ * - Texto de 3 o más caracteres: trigramas. Cada trigrama del nombre o del email apunta a los ids
+ *   que lo contienen; se recorre la lista más corta de los trigramas buscados y se confirma cada
+ *   candidato con contains, así que encuentra subcadenas en cualquier posición.
+ * - Texto de 1 o 2 caracteres: prefijo de cualquier palabra del nombre o del email, sobre un mapa ordenado.
+ *
+ * Los resultados se ordenan: primero los que empiezan con el texto, después los que tienen una palabra
+ * que empieza con el texto, después el resto; a igualdad, por nombre.
+ *
+ * Se carga al iniciar y se actualiza con UsuarioModificadoEvent después de cada commit.
+ */
+@Slf4j
+@Component
+public class IndiceUsuarios {
+
+    private static final int N = 3;
+    private static final char FIN_CLAVE = '\u0000';
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private final UsuarioRepository usuarioRepository;
+    private final TransactionTemplate soloLectura;
+    private final int tamanoLote;
+
+    private final Map<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> trigramas = new ConcurrentHashMap<>();
+    // "inicio de palabra\0id" → id, ordenado para recorrer prefijos
+    private final ConcurrentSkipListMap<String, Long> prefijos = new ConcurrentSkipListMap<>();
+    // Bajas que llegan mientras corre la carga inicial, para que la carga no las vuelva a agregar
+    private Set<Long> eliminadosDuranteCarga;
+
+    public IndiceUsuarios(UsuarioRepository usuarioRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${hrk.usuarios.indice.tamano-lote:1000}") int tamanoLote) {
+        this.usuarioRepository = usuarioRepository;
+        this.soloLectura = new TransactionTemplate(transactionManager);
+        this.soloLectura.setReadOnly(true);
+        this.tamanoLote = tamanoLote;
+    }
+
+    private record Entrada(Long id, String nombre, String email, TipoUsuario tipo,
+                           String nombreNormalizado, String emailNormalizado) {
+    }
+
+    private record Candidato(Entrada entrada, int rango) {
+    }
+
+    private static final Comparator<Candidato> MEJOR_PRIMERO = Comparator
+            .comparingInt(Candidato::rango)
+            .thenComparing(c -> c.entrada().nombreNormalizado())
+            .thenComparing(c -> c.entrada().id());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        synchronized (this) {
+            eliminadosDuranteCarga = new HashSet<>();
+        }
+        long desdeId = 0;
+        int total = 0;
+        List<UsuarioIndiceFila> lote;
+        do {
+            long desde = desdeId;
+            lote = soloLectura.execute(status ->
+                    usuarioRepository.findFilasIndiceDesde(desde, PageRequest.of(0, tamanoLote)));
+            synchronized (this) {
+                for (UsuarioIndiceFila fila : lote) {
+                    // Si ya llegó un evento más nuevo (alta, cambio o baja) gana el evento
+                    if (!entradas.containsKey(fila.getId()) && !eliminadosDuranteCarga.contains(fila.getId())) {
+                        agregar(fila.getId(), fila.getNombreRazonSocial(), fila.getEmail(), fila.getTipoUsuario());
+                    }
+                }
+            }
+            if (!lote.isEmpty()) {
+                desdeId = lote.get(lote.size() - 1).getId();
+                total += lote.size();
+            }
+        } while (lote.size() == tamanoLote);
+        synchronized (this) {
+            eliminadosDuranteCarga = null;
+        }
+        log.info("Índice de usuarios listo: {} usuarios, {} trigramas", total, trigramas.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUsuarioModificado(UsuarioModificadoEvent evento) {
+        quitar(evento.getId());
+        if (evento.isEliminado()) {
+            if (eliminadosDuranteCarga != null) {
+                eliminadosDuranteCarga.add(evento.getId());
+            }
+        } else {
+            agregar(evento.getId(), evento.getNombreRazonSocial(), evento.getEmail(), evento.getTipoUsuario());
+        }
+    }
+
+    public List<UsuarioDTO> sugerir(String texto, TipoUsuario tipo, int limite) {
+        String buscado = normalizar(texto);
+        if (buscado.isEmpty()) {
+            return List.of();
+        }
+
+        // Los peores quedan arriba para descartarlos al pasarse del límite
+        PriorityQueue<Candidato> mejores = new PriorityQueue<>(limite + 1, MEJOR_PRIMERO.reversed());
+        for (Entrada entrada : candidatos(buscado)) {
+            if (tipo != null && entrada.tipo() != tipo) {
+                continue;
+            }
+            int rango = rango(entrada, buscado);
+            if (rango < 0) {
+                continue;
+            }
+            mejores.add(new Candidato(entrada, rango));
+            if (mejores.size() > limite) {
+                mejores.poll();
+            }
+        }
+
+        List<Candidato> ordenados = new ArrayList<>(mejores);
+        ordenados.sort(MEJOR_PRIMERO);
+        return ordenados.stream()
+                .map(c -> new UsuarioDTO(c.entrada().id(), c.entrada().nombre(), c.entrada().email(),
+                        c.entrada().tipo() != null ? c.entrada().tipo().toString() : null))
+                .toList();
+    }
+
+    public int cantidad() {
+        return entradas.size();
+    }
+
+    private Iterable<Entrada> candidatos(String buscado) {
+        if (buscado.length() < N) {
+            Set<Entrada> encontrados = new LinkedHashSet<>();
+            for (Long id : prefijos.subMap(buscado, true, buscado + Character.MAX_VALUE, true).values()) {
+                Entrada entrada = entradas.get(id);
+                if (entrada != null) {
+                    encontrados.add(entrada);
+                }
+            }
+            return encontrados;
+        }
+
+        // La lista más corta entre los trigramas del texto acota los candidatos
+        Set<Long> menor = null;
+        for (String trigrama : trigramasDe(buscado)) {
+            Set<Long> ids = trigramas.get(trigrama);
+            if (ids == null) {
+                return List.of();
+            }
+            if (menor == null || ids.size() < menor.size()) {
+                menor = ids;
+            }
+        }
+        List<Entrada> encontrados = new ArrayList<>();
+        for (Long id : menor) {
+            Entrada entrada = entradas.get(id);
+            if (entrada != null) {
+                encontrados.add(entrada);
+            }
+        }
+        return encontrados;
+    }
+
+    // 0: nombre o email empiezan con el texto; 1: alguna palabra empieza con el texto; 2: lo contiene; -1: no
+    private static int rango(Entrada entrada, String buscado) {
+        String nombre = entrada.nombreNormalizado();
+        String email = entrada.emailNormalizado();
+        if (nombre.startsWith(buscado) || email.startsWith(buscado)) {
+            return 0;
+        }
+        if (nombre.contains(" " + buscado)) {
+            return 1;
+        }
+        if (nombre.contains(buscado) || email.contains(buscado)) {
+            return 2;
+        }
+        return -1;
+    }
+
+    private void agregar(Long id, String nombre, String email, TipoUsuario tipo) {
+        Entrada entrada = new Entrada(id, nombre, email, tipo, normalizar(nombre), normalizar(email));
+        for (String trigrama : trigramasDe(entrada)) {
+            trigramas.computeIfAbsent(trigrama, t -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        for (String clave : clavesPrefijo(entrada)) {
+            prefijos.put(clave, id);
+        }
+        entradas.put(id, entrada);
+    }
+
+    private void quitar(Long id) {
+        Entrada entrada = entradas.remove(id);
+        if (entrada == null) {
+            return;
+        }
+        for (String trigrama : trigramasDe(entrada)) {
+            Set<Long> ids = trigramas.get(trigrama);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    trigramas.remove(trigrama);
+                }
+            }
+        }
+        for (String clave : clavesPrefijo(entrada)) {
+            prefijos.remove(clave);
+        }
+    }
+
+    private static Set<String> trigramasDe(Entrada entrada) {
+        Set<String> todos = trigramasDe(entrada.nombreNormalizado());
+        todos.addAll(trigramasDe(entrada.emailNormalizado()));
+        return todos;
+    }
+
+    private static Set<String> trigramasDe(String texto) {
+        Set<String> resultado = new HashSet<>();
+        for (int i = 0; i + N <= texto.length(); i++) {
+            resultado.add(texto.substring(i, i + N));
+        }
+        return resultado;
+    }
+
+    // Una clave por cada palabra del nombre (desde esa palabra hasta el final) y una por el email
+    private static List<String> clavesPrefijo(Entrada entrada) {
+        List<String> claves = new ArrayList<>();
+        String nombre = entrada.nombreNormalizado();
+        for (int i = 0; i < nombre.length(); i++) {
+            if (i == 0 || nombre.charAt(i - 1) == ' ') {
+                claves.add(nombre.substring(i) + FIN_CLAVE + entrada.id());
+            }
+        }
+        if (!entrada.emailNormalizado().isEmpty()) {
+            claves.add(entrada.emailNormalizado() + FIN_CLAVE + entrada.id());
+        }
+        return claves;
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return ESPACIOS.matcher(IndiceBusquedaProductos.normalizar(texto).trim()).replaceAll(" ");
+    }
+}
@@ -0,0 +1,18 @@
+package com.hrk.tienda_b2b.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    // Spring Boot registra todos los Module del contexto en el ObjectMapper. Blackbird reemplaza la
+    // invocación por reflexión de getters/setters por lambdas generadas (LambdaMetafactory) para
+    // todos los DTOs que siguen serializándose con Jackson (respuestas de un pedido, catálogo, etc.)
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
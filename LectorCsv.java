@@ -0,0 +1,102 @@
+package com.hrk.tienda_b2b.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de CSV registro por registro (RFC 4180): separador coma o punto y coma, comillas dobles
+ * para campos con separadores o saltos de línea y "" para una comilla dentro de un campo.
+ * Solo guarda el registro actual, así que la memoria no depende del tamaño del archivo.
+ */
+class LectorCsv {
+
+    private final Reader reader;
+    private final char separador;
+    private final int maxLargoCampo;
+    private int siguiente = -2;
+
+    LectorCsv(Reader reader, char separador, int maxLargoCampo) {
+        this.reader = reader;
+        this.separador = separador;
+        this.maxLargoCampo = maxLargoCampo;
+    }
+
+    // Próximo registro, o null al final del archivo. Las líneas vacías se saltean
+    List<String> leer() throws IOException {
+        while (true) {
+            int c = leerCaracter();
+            if (c == -1) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                continue;
+            }
+            devolver(c);
+            return leerRegistro();
+        }
+    }
+
+    private List<String> leerRegistro() throws IOException {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        while (true) {
+            int c = leerCaracter();
+            if (entreComillas) {
+                if (c == -1) {
+                    throw new IOException("Comillas sin cerrar al final del archivo");
+                }
+                if (c == '"') {
+                    int despues = leerCaracter();
+                    if (despues == '"') {
+                        agregar(campo, '"');
+                    } else {
+                        entreComillas = false;
+                        devolver(despues);
+                    }
+                } else {
+                    agregar(campo, (char) c);
+                }
+            } else if (c == '"' && campo.isEmpty()) {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int despues = leerCaracter();
+                    if (despues != '\n') {
+                        devolver(despues);
+                    }
+                }
+                campos.add(campo.toString());
+                return campos;
+            } else {
+                agregar(campo, (char) c);
+            }
+        }
+    }
+
+    // Un campo sin comilla de cierre no puede crecer hasta agotar la memoria
+    private void agregar(StringBuilder campo, char c) throws IOException {
+        if (campo.length() >= maxLargoCampo) {
+            throw new IOException("Campo de más de " + maxLargoCampo + " caracteres");
+        }
+        campo.append(c);
+    }
+
+    private int leerCaracter() throws IOException {
+        if (siguiente != -2) {
+            int c = siguiente;
+            siguiente = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void devolver(int c) {
+        siguiente = c;
+    }
+}
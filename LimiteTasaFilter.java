@@ -0,0 +1,255 @@
+package com.hrk.tienda_b2b.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Límite de requests por cliente y por IP para cada grupo de rutas de /api (token bucket).
+ *
+ * Va en la cadena de Spring Security justo antes de JwtRequestFilter (ver SecurityConfig), así que un
+ * cliente que se pasa del límite recibe 429 con Retry-After sin llegar a consultar la base, ni siquiera
+ * para cargar su usuario. El "cliente" es el token Bearer (su hash): identificarlo por el email del token
+ * exigiría verificar la firma antes, y sin verificarla cualquiera podría gastar la cubeta de otro.
+ *
+ * Primero se cobra la cubeta de la IP y solo si pasa se busca o se crea la del token: como el token todavía
+ * no está verificado, una IP que manda tokens inventados no puede crear más cubetas que requests le deja
+ * pasar su propio límite. Además el mapa tiene un tope (max-cubetas); lleno, los tokens que no tienen
+ * cubeta quedan limitados solo por IP hasta que el barrido haga lugar.
+ *
+ * Las cubetas viven en un ConcurrentHashMap y se actualizan con CAS (CubetaTokens); las que quedan sin uso
+ * se borran cada tanto. Límites por grupo en hrk.limite.<grupo>.<cliente|ip>.<por-minuto|rafaga>.
+ */
+@Slf4j
+@Component
+public class LimiteTasaFilter extends OncePerRequestFilter {
+
+    /** Grupos de rutas con límites propios. El primero cuyo prefijo coincide se lleva el request. */
+    public enum GrupoRutas {
+        AUTH(10, 20, 20, 40, "/api/auth/"),
+        PEDIDOS(120, 60, 600, 300, "/api/pedidos", "/api/carrito"),
+        CATALOGO(300, 100, 1500, 500, "/api/productos", "/api/catalogo"),
+        GENERAL(300, 100, 1500, 500, "/api/");
+
+        private final List<String> prefijos;
+        private final int clientePorMinuto;
+        private final int clienteRafaga;
+        private final int ipPorMinuto;
+        private final int ipRafaga;
+
+        GrupoRutas(int clientePorMinuto, int clienteRafaga, int ipPorMinuto, int ipRafaga, String... prefijos) {
+            this.prefijos = List.of(prefijos);
+            this.clientePorMinuto = clientePorMinuto;
+            this.clienteRafaga = clienteRafaga;
+            this.ipPorMinuto = ipPorMinuto;
+            this.ipRafaga = ipRafaga;
+        }
+
+        String propiedad() {
+            return "hrk.limite." + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private enum Dimension {
+        CLIENTE, IP
+    }
+
+    private record Limite(int porMinuto, int rafaga) {
+    }
+
+    private final boolean habilitado;
+    private final boolean confiarXForwardedFor;
+    private final long inactividadMillis;
+    private final int maxCubetas;
+    private final Map<GrupoRutas, Map<Dimension, Limite>> limites = new EnumMap<>(GrupoRutas.class);
+    private final Map<String, CubetaTokens> cubetas = new ConcurrentHashMap<>();
+    private final Map<GrupoRutas, Map<Dimension, LongAdder>> rechazos = new EnumMap<>(GrupoRutas.class);
+    private final LongAdder permitidos = new LongAdder();
+    private final LongAdder soloPorIp = new LongAdder();
+    private final long inicioNanos = System.nanoTime();
+
+    public LimiteTasaFilter(Environment environment,
+                            @Value("${hrk.limite.habilitado:true}") boolean habilitado,
+                            @Value("${hrk.limite.confiar-x-forwarded-for:false}") boolean confiarXForwardedFor,
+                            @Value("${hrk.limite.inactividad-ms:600000}") long inactividadMillis,
+                            @Value("${hrk.limite.max-cubetas:100000}") int maxCubetas) {
+        this.habilitado = habilitado;
+        this.confiarXForwardedFor = confiarXForwardedFor;
+        this.inactividadMillis = inactividadMillis;
+        this.maxCubetas = maxCubetas;
+        for (GrupoRutas grupo : GrupoRutas.values()) {
+            Map<Dimension, Limite> porDimension = new EnumMap<>(Dimension.class);
+            porDimension.put(Dimension.CLIENTE, new Limite(
+                    environment.getProperty(grupo.propiedad() + ".cliente.por-minuto", Integer.class, grupo.clientePorMinuto),
+                    environment.getProperty(grupo.propiedad() + ".cliente.rafaga", Integer.class, grupo.clienteRafaga)));
+            porDimension.put(Dimension.IP, new Limite(
+                    environment.getProperty(grupo.propiedad() + ".ip.por-minuto", Integer.class, grupo.ipPorMinuto),
+                    environment.getProperty(grupo.propiedad() + ".ip.rafaga", Integer.class, grupo.ipRafaga)));
+            for (Limite limite : porDimension.values()) {
+                if (limite.rafaga() < 1 || limite.rafaga() > CubetaTokens.MAX_CAPACIDAD || limite.porMinuto() < 1) {
+                    throw new IllegalStateException("Límite inválido para " + grupo.propiedad() + ": " + limite);
+                }
+            }
+            limites.put(grupo, porDimension);
+            Map<Dimension, LongAdder> contadores = new EnumMap<>(Dimension.class);
+            contadores.put(Dimension.CLIENTE, new LongAdder());
+            contadores.put(Dimension.IP, new LongAdder());
+            rechazos.put(grupo, contadores);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !habilitado || "OPTIONS".equals(request.getMethod())
+                || !request.getRequestURI().substring(request.getContextPath().length()).startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        GrupoRutas grupo = grupoDe(ruta);
+        long ahora = ahoraMillis();
+
+        long esperaMillis = tomar(grupo, Dimension.IP, ipDe(request), ahora);
+        Dimension limitada = esperaMillis > 0 ? Dimension.IP : null;
+        if (limitada == null) {
+            String cliente = clienteDe(request);
+            if (cliente != null) {
+                esperaMillis = tomar(grupo, Dimension.CLIENTE, cliente, ahora);
+                limitada = esperaMillis > 0 ? Dimension.CLIENTE : null;
+            }
+        }
+
+        if (limitada != null) {
+            rechazos.get(grupo).get(limitada).increment();
+            long segundos = Math.max(1, (esperaMillis + 999) / 1000);
+            log.debug("429 en {} para {} {} (reintentar en {} s)", ruta, limitada, limitada == Dimension.IP ? ipDe(request) : "token", segundos);
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", String.valueOf(segundos));
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("{\"error\":\"Demasiados requests, reintentar en " + segundos + " s\"}");
+            return;
+        }
+        permitidos.increment();
+        chain.doFilter(request, response);
+    }
+
+    private long tomar(GrupoRutas grupo, Dimension dimension, String id, long ahora) {
+        Limite limite = limites.get(grupo).get(dimension);
+        String clave = grupo.name() + "|" + dimension.name() + "|" + id;
+        CubetaTokens cubeta = cubetas.get(clave);
+        if (cubeta == null) {
+            // Mapa lleno: el token nuevo queda limitado solo por su IP (la cubeta de IP ya se cobró)
+            if (dimension == Dimension.CLIENTE && cubetas.size() >= maxCubetas) {
+                soloPorIp.increment();
+                return 0;
+            }
+            cubeta = cubetas.computeIfAbsent(clave, k -> new CubetaTokens(limite.rafaga(), limite.porMinuto(), ahora));
+        }
+        return cubeta.tomar(ahora);
+    }
+
+    // Si el barrido saca una cubeta justo cuando un request la está usando, ese request gasta un token
+    // en la cubeta vieja y el siguiente arranca con una llena: como mucho se regala un token
+    @Scheduled(fixedDelayString = "${hrk.limite.barrido-ms:60000}")
+    public void barrerInactivas() {
+        long ahora = ahoraMillis();
+        int antes = cubetas.size();
+        cubetas.values().removeIf(cubeta -> cubeta.inactiva(ahora, inactividadMillis));
+        int borradas = antes - cubetas.size();
+        if (borradas > 0) {
+            log.debug("Cubetas de límite inactivas borradas: {} (quedan {})", borradas, cubetas.size());
+        }
+    }
+
+    private static GrupoRutas grupoDe(String ruta) {
+        for (GrupoRutas grupo : GrupoRutas.values()) {
+            for (String prefijo : grupo.prefijos) {
+                if (ruta.startsWith(prefijo)) {
+                    return grupo;
+                }
+            }
+        }
+        return GrupoRutas.GENERAL;
+    }
+
+    // Primeros 16 caracteres del SHA-256 del token: alcanza para distinguir clientes y no guarda el token
+    private static String clienteDe(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ") || authorization.length() <= 7) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(authorization.substring(7).getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String ipDe(HttpServletRequest request) {
+        if (confiarXForwardedFor) {
+            String reenviada = request.getHeader("X-Forwarded-For");
+            if (reenviada != null && !reenviada.isBlank()) {
+                int coma = reenviada.indexOf(',');
+                return (coma >= 0 ? reenviada.substring(0, coma) : reenviada).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private long ahoraMillis() {
+        return (System.nanoTime() - inicioNanos) / 1_000_000;
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("permitidos", permitidos.sum());
+        estadisticas.put("cubetasActivas", cubetas.size());
+        estadisticas.put("maxCubetas", maxCubetas);
+        estadisticas.put("soloPorIpPorTope", soloPorIp.sum());
+        Map<String, Object> porGrupo = new LinkedHashMap<>();
+        rechazos.forEach((grupo, contadores) -> {
+            Map<String, Long> porDimension = new LinkedHashMap<>();
+            contadores.forEach((dimension, contador) -> porDimension.put(dimension.name().toLowerCase(Locale.ROOT), contador.sum()));
+            porGrupo.put(grupo.name().toLowerCase(Locale.ROOT), porDimension);
+        });
+        estadisticas.put("rechazosPorGrupo", porGrupo);
+        // Las cubetas con más rechazos: quién está pegando más fuerte contra el límite
+        List<Map.Entry<String, CubetaTokens>> masRechazadas = cubetas.entrySet().stream()
+                .filter(e -> e.getValue().rechazos() > 0)
+                .sorted(Comparator.comparingLong((Map.Entry<String, CubetaTokens> e) -> e.getValue().rechazos()).reversed())
+                .limit(20)
+                .toList();
+        Map<String, Long> top = new LinkedHashMap<>();
+        masRechazadas.forEach(e -> top.put(e.getKey(), e.getValue().rechazos()));
+        estadisticas.put("cubetasConMasRechazos", top);
+        return estadisticas;
+    }
+}
@@ -0,0 +1,17 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.EventoPedido;
+
+/**
+ * Trabajo posterior a un cambio de estado (notificaciones, reportes, facturación...).
+ * Cada implementación registrada como bean la invoca DespachadorEventosPedido dentro de la
+ * misma transacción que marca el evento como procesado: si el manejador escribe en la base,
+ * su cambio y la marca se confirman juntos. Si lanza una excepción el evento se reintenta,
+ * así que lo que haga fuera de la base (mails, APIs) tiene que tolerar repeticiones.
+ */
+public interface ManejadorEventoPedido {
+    
+    boolean aplicaA(EventoPedido evento);
+    
+    void manejar(EventoPedido evento);
+}
@@ -0,0 +1,23 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.EventoPedido;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+// Mantiene ventas_diarias al día con los pedidos que entran o salen de un estado que cuenta como venta
+@Component
+@RequiredArgsConstructor
+public class ManejadorRollupVentas implements ManejadorEventoPedido {
+    
+    private final RollupVentasService rollupVentasService;
+    
+    @Override
+    public boolean aplicaA(EventoPedido evento) {
+        return evento.getEstadoAnterior().cuentaComoVenta() != evento.getEstadoNuevo().cuentaComoVenta();
+    }
+    
+    @Override
+    public void manejar(EventoPedido evento) {
+        rollupVentasService.sincronizarPedido(evento.getPedidoId());
+    }
+}
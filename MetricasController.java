@@ -0,0 +1,52 @@
+package com.hrk.tienda_b2b.controller;
+
+import com.hrk.tienda_b2b.config.AdmisionFilter;
+import com.hrk.tienda_b2b.config.DataSourceRuteado;
+import com.hrk.tienda_b2b.config.EstadisticasCacheSegundoNivel;
+import com.hrk.tienda_b2b.config.IdempotenciaFilter;
+import com.hrk.tienda_b2b.config.LimiteTasaFilter;
+import com.hrk.tienda_b2b.security.CachePrincipales;
+import com.hrk.tienda_b2b.service.ArchivoPedidosJob;
+import com.hrk.tienda_b2b.service.CarritoService;
+import com.hrk.tienda_b2b.service.DespachadorEventosPedido;
+import com.hrk.tienda_b2b.service.MotorPrecios;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Contadores internos del backend (requiere autenticación: no está en los permitAll de SecurityConfig)
+@RestController
+@RequestMapping("/api/metricas")
+@RequiredArgsConstructor
+public class MetricasController {
+    
+    private final CachePrincipales cachePrincipales;
+    private final AdmisionFilter admisionFilter;
+    private final EstadisticasCacheSegundoNivel estadisticasCacheSegundoNivel;
+    private final DespachadorEventosPedido despachadorEventosPedido;
+    private final MotorPrecios motorPrecios;
+    private final IdempotenciaFilter idempotenciaFilter;
+    private final LimiteTasaFilter limiteTasaFilter;
+    private final DataSourceRuteado dataSourceRuteado;
+    private final CarritoService carritoService;
+    private final ArchivoPedidosJob archivoPedidosJob;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> obtenerMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("cachePrincipales", cachePrincipales.estadisticas());
+        metricas.put("eventosPedido", despachadorEventosPedido.estadisticas());
+        metricas.put("admision", admisionFilter.estadisticas());
+        metricas.put("cacheSegundoNivel", estadisticasCacheSegundoNivel.estadisticas());
+        metricas.put("precios", motorPrecios.estadisticas());
+        metricas.put("idempotencia", idempotenciaFilter.estadisticas());
+        metricas.put("limiteTasa", limiteTasaFilter.estadisticas());
+        metricas.put("datasources", dataSourceRuteado.estadisticas());
+        metricas.put("carritos", carritoService.estadisticas());
+        metricas.put("archivoPedidos", archivoPedidosJob.estadisticas());
+        return ResponseEntity.ok(metricas);
+    }
+}
@@ -0,0 +1,87 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.repository.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pasa las imágenes subidas antes de AlmacenImagenesService (./uploads/<nombre>) al almacén por hash
+ * y actualiza Producto.imagenUrl. Se puede correr varias veces: los productos que ya apuntan a
+ * /imagenes/ o a una imagen de categoría no se tocan.
+ */
+@Slf4j
+@Service
+public class MigracionImagenesService {
+
+    private final ProductoRepository productoRepository;
+    private final AlmacenImagenesService almacenImagenesService;
+    private final CatalogoSnapshotService catalogoSnapshotService;
+    private final Path directorioLegado;
+
+    public MigracionImagenesService(ProductoRepository productoRepository,
+                                    AlmacenImagenesService almacenImagenesService,
+                                    CatalogoSnapshotService catalogoSnapshotService,
+                                    @Value("${hrk.imagenes.directorio-legado:./uploads}") String directorioLegado) {
+        this.productoRepository = productoRepository;
+        this.almacenImagenesService = almacenImagenesService;
+        this.catalogoSnapshotService = catalogoSnapshotService;
+        this.directorioLegado = Path.of(directorioLegado).toAbsolutePath().normalize();
+    }
+
+    /** Devuelve cuántos productos se migraron y cuáles no se pudieron migrar (id → motivo). */
+    public Map<String, Object> migrar() {
+        int migrados = 0;
+        Map<Long, String> fallidos = new LinkedHashMap<>();
+        for (Producto producto : productoRepository.findAll()) {
+            String archivo = archivoLegado(producto.getImagenUrl());
+            if (archivo == null) {
+                continue;
+            }
+            Path origen = directorioLegado.resolve(archivo).normalize();
+            if (!origen.startsWith(directorioLegado) || !Files.isRegularFile(origen)) {
+                fallidos.put(producto.getId(), "No existe " + archivo);
+                continue;
+            }
+            try (InputStream entrada = Files.newInputStream(origen)) {
+                // save por producto: cada uno en su transacción, sin tener la base tomada mientras se lee el disco
+                producto.setImagenUrl(almacenImagenesService.guardar(entrada));
+                productoRepository.save(producto);
+                migrados++;
+            } catch (Exception e) {
+                fallidos.put(producto.getId(), e.getMessage());
+            }
+        }
+        if (migrados > 0) {
+            catalogoSnapshotService.marcarDesactualizado();
+        }
+        log.info("Migración de imágenes: {} productos migrados, {} con error", migrados, fallidos.size());
+        return Map.of("migrados", migrados, "fallidos", fallidos);
+    }
+
+    // Nombre del archivo en ./uploads para URLs como "/uploads/x.jpg", "http://host/uploads/x.jpg" o "x.jpg"
+    private static String archivoLegado(String imagenUrl) {
+        if (imagenUrl == null || imagenUrl.isBlank() || imagenUrl.contains(AlmacenImagenesService.PREFIJO_URL)) {
+            return null;
+        }
+        int uploads = imagenUrl.indexOf("/uploads/");
+        if (uploads >= 0) {
+            return imagenUrl.substring(uploads + "/uploads/".length());
+        }
+        if (imagenUrl.startsWith("uploads/")) {
+            return imagenUrl.substring("uploads/".length());
+        }
+        // Sin carpeta y con extensión: así guardaba el nombre el endpoint /uploads anterior
+        if (!imagenUrl.contains("/") && imagenUrl.contains(".")) {
+            return imagenUrl;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,161 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.config.DataSourceRuteado;
+import com.hrk.tienda_b2b.model.AlcanceReglaPrecio;
+import com.hrk.tienda_b2b.model.Categoria;
+import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.model.ReglaPrecio;
+import com.hrk.tienda_b2b.model.TipoProducto;
+import com.hrk.tienda_b2b.model.TipoReglaPrecio;
+import com.hrk.tienda_b2b.repository.ReglaPrecioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Precio de una línea de pedido para un cliente, una variante y una cantidad.
+ *
+ * Las reglas (reglas_precio) se compilan en una TablaPrecios en memoria al iniciar y después de cada
+ * cambio; resolver no toca la base. Se prueban las claves en orden y gana la primera que tenga un escalón
+ * alcanzado por la cantidad:
+ *   reglas del cliente:  variante → producto → categoría → tipo → todos
+ *   reglas generales:    variante → producto → categoría → tipo → todos
+ * Sin regla aplicable, el precio es el de lista de la variante.
+ */
+@Slf4j
+@Service
+public class MotorPrecios {
+
+    private static final AlcanceReglaPrecio[] ALCANCES = AlcanceReglaPrecio.values();
+
+    private final ReglaPrecioRepository reglaPrecioRepository;
+    private final TransactionTemplate soloLectura;
+
+    private final AtomicReference<TablaPrecios> actual = new AtomicReference<>(TablaPrecios.VACIA);
+    private final AtomicLong compilaciones = new AtomicLong();
+    private final AtomicLong ultimaCompilacionMillis = new AtomicLong();
+    private final AtomicLong resoluciones = new AtomicLong();
+    private final AtomicLong resolucionesConRegla = new AtomicLong();
+
+    public MotorPrecios(ReglaPrecioRepository reglaPrecioRepository, PlatformTransactionManager transactionManager) {
+        this.reglaPrecioRepository = reglaPrecioRepository;
+        this.soloLectura = new TransactionTemplate(transactionManager);
+        this.soloLectura.setReadOnly(true);
+    }
+
+    /**
+     * precioCentavos: lo que se cobra por unidad. precioListaCentavos: el precio de la variante en ese momento.
+     * reglaId: la regla que se aplicó, null si se cobró el precio de lista.
+     */
+    public record PrecioResuelto(long precioCentavos, long precioListaCentavos, Long reglaId) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compilarAlIniciar() {
+        compilar();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReglasModificadas(ReglasPrecioModificadasEvent evento) {
+        compilar();
+    }
+
+    // synchronized: si llegan dos cambios seguidos, la segunda compilación lee después del segundo commit
+    public synchronized void compilar() {
+        long inicio = System.nanoTime();
+        // Desde la primaria: se recompila justo después de un cambio y la réplica puede no tenerlo todavía
+        List<ReglaPrecio> reglas = DataSourceRuteado.enPrimaria(() ->
+                soloLectura.execute(status -> reglaPrecioRepository.findByActivaTrue()));
+        TablaPrecios tabla = TablaPrecios.compilar(reglas);
+        actual.set(tabla);
+        long millis = (System.nanoTime() - inicio) / 1_000_000;
+        compilaciones.incrementAndGet();
+        ultimaCompilacionMillis.set(millis);
+        log.info("Tabla de precios compilada: {} reglas en {} claves ({} ms)", tabla.cantidadReglas(), tabla.cantidadClaves(), millis);
+    }
+
+    /** La variante debe tener el producto accesible (join fetch o dentro de la transacción). */
+    public PrecioResuelto resolver(Long clienteId, ProductoVariante variante, int cantidad) {
+        // Sin reglas no hace falta el producto: si es lazy no se carga
+        if (actual.get().cantidadReglas() == 0) {
+            return resolver(clienteId, variante.getId(), variante.getPrecioCentavos(), null, null, null, cantidad);
+        }
+        Producto producto = variante.getProducto();
+        return resolver(clienteId, variante.getId(), variante.getPrecioCentavos(),
+                producto != null ? producto.getId() : null,
+                producto != null ? producto.getCategoria() : null,
+                producto != null ? producto.getTipo() : null,
+                cantidad);
+    }
+
+    /** Lo mismo sin la entidad: para quien tiene los datos de la variante en memoria (el carrito, desde el catálogo). */
+    public PrecioResuelto resolver(Long clienteId, long varianteId, long lista, Long productoId,
+                                   Categoria categoria, TipoProducto tipo, int cantidad) {
+        resoluciones.incrementAndGet();
+        TablaPrecios tabla = actual.get();
+        if (tabla.cantidadReglas() == 0) {
+            return new PrecioResuelto(lista, lista, null);
+        }
+
+        long[] objetivos = new long[ALCANCES.length];
+        for (AlcanceReglaPrecio alcance : ALCANCES) {
+            objetivos[alcance.ordinal()] = switch (alcance) {
+                case VARIANTE -> TablaPrecios.objetivo(alcance, varianteId);
+                case PRODUCTO -> productoId != null ? TablaPrecios.objetivo(alcance, productoId) : -1L;
+                case CATEGORIA -> categoria != null ? TablaPrecios.objetivo(alcance, categoria.ordinal()) : -1L;
+                case TIPO -> tipo != null ? TablaPrecios.objetivo(alcance, tipo.ordinal()) : -1L;
+                case TODOS -> TablaPrecios.objetivo(alcance, 0L);
+            };
+        }
+
+        long[] clientes = clienteId != null ? new long[]{clienteId, 0L} : new long[]{0L};
+        for (long cliente : clientes) {
+            for (long objetivo : objetivos) {
+                if (objetivo < 0) {
+                    continue;
+                }
+                TablaPrecios.Escalones escalones = tabla.buscar(cliente, objetivo);
+                if (escalones == null) {
+                    continue;
+                }
+                int i = escalones.buscar(cantidad);
+                if (i >= 0) {
+                    resolucionesConRegla.incrementAndGet();
+                    return new PrecioResuelto(aplicar(escalones.tipos[i], escalones.valores[i], lista), lista, escalones.reglas[i]);
+                }
+            }
+        }
+        return new PrecioResuelto(lista, lista, null);
+    }
+
+    // Descuento redondeado al centavo (mitad hacia arriba)
+    static long aplicar(TipoReglaPrecio tipo, long valor, long listaCentavos) {
+        if (tipo == TipoReglaPrecio.PRECIO_FIJO) {
+            return valor;
+        }
+        return (Math.multiplyExact(listaCentavos, 10_000L - valor) + 5_000L) / 10_000L;
+    }
+
+    public Map<String, Object> estadisticas() {
+        TablaPrecios tabla = actual.get();
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("reglasActivas", tabla.cantidadReglas());
+        estadisticas.put("claves", tabla.cantidadClaves());
+        estadisticas.put("compilaciones", compilaciones.get());
+        estadisticas.put("ultimaCompilacionMillis", ultimaCompilacionMillis.get());
+        estadisticas.put("resoluciones", resoluciones.get());
+        estadisticas.put("resolucionesConRegla", resolucionesConRegla.get());
+        return estadisticas;
+    }
+}
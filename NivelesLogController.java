@@ -0,0 +1,52 @@
+package com.hrk.tienda_b2b.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Cambio de nivel de log en caliente (requiere autenticación: no está en los permitAll de SecurityConfig)
+@RestController
+@RequestMapping("/api/logs/niveles")
+@RequiredArgsConstructor
+public class NivelesLogController {
+    
+    private final LoggingSystem loggingSystem;
+
+    // Niveles efectivos de las categorías del backend (y de las que se hayan configurado a mano)
+    @GetMapping
+    public ResponseEntity<Map<String, String>> obtenerNiveles() {
+        Map<String, String> niveles = new LinkedHashMap<>();
+        for (LoggerConfiguration config : loggingSystem.getLoggerConfigurations()) {
+            if (config.getName().startsWith("com.hrk") || config.getConfiguredLevel() != null) {
+                niveles.put(config.getName(), config.getEffectiveLevel().name());
+            }
+        }
+        return ResponseEntity.ok(niveles);
+    }
+
+    // Ej: PUT /api/logs/niveles/com.hrk.tienda_b2b.service.PedidoService?nivel=DEBUG
+    //     PUT /api/logs/niveles/org.hibernate.SQL?nivel=DEBUG (SQL generado)
+    // Sin "nivel" vuelve al heredado de la categoría padre
+    @PutMapping("/{categoria:.+}")
+    public ResponseEntity<Map<String, String>> cambiarNivel(@PathVariable String categoria,
+                                                           @RequestParam(required = false) String nivel) {
+        LogLevel nuevo;
+        try {
+            nuevo = nivel == null ? null : LogLevel.valueOf(nivel.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        loggingSystem.setLogLevel(categoria, nuevo);
+        
+        LoggerConfiguration config = loggingSystem.getLoggerConfiguration(categoria);
+        Map<String, String> respuesta = new LinkedHashMap<>();
+        respuesta.put(categoria, config != null ? config.getEffectiveLevel().name() : String.valueOf(nuevo));
+        return ResponseEntity.ok(respuesta);
+    }
+}
@@ -0,0 +1,18 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursorDTO<T> {
+    
+    private List<T> items;
+    // Se envía como ?cursor= para pedir la página siguiente (null si no hay más)
+    private String siguienteCursor;
+    private boolean hayMas;
+}
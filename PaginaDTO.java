@@ -0,0 +1,27 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaDTO<T> {
+    
+    private List<T> items;
+    // Número de página, desde 0
+    private int pagina;
+    private int tamano;
+    private long totalElementos;
+    private int totalPaginas;
+    
+    public static <E, T> PaginaDTO<T> de(Page<E> page, Function<E, T> mapper) {
+        return new PaginaDTO<>(page.getContent().stream().map(mapper).toList(),
+                page.getNumber(), page.getSize(), page.getTotalElements(), page.getTotalPages());
+    }
+}
@@ -10,14 +10,22 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "pedidos")
+@Table(name = "pedidos", indexes = {
+        // Historial por cliente paginado por (fecha, id)
+        @Index(name = "idx_pedidos_cliente_fecha_id", columnList = "cliente_id, fecha, id"),
+        // Rangos de fechas de la reconstrucción del rollup de ventas
+        @Index(name = "idx_pedidos_fecha", columnList = "fecha")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Pedido {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // SEQUENCE (emulada con tabla en MySQL) en lugar de IDENTITY: con IDENTITY Hibernate
+    // desactiva el batching de INSERTs porque necesita el ID de cada fila al insertarla
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedidos_seq")
+    @SequenceGenerator(name = "pedidos_seq", sequenceName = "pedidos_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "cliente_id", nullable = false)
@@ -34,9 +42,22 @@ public class Pedido {
     @Column(name = "estado", nullable = false)
     private EstadoPedido estado;
     
-    @Column(name = "total", nullable = false)
-    private Double total;
+    // Total acumulado: se ajusta en cada alta/baja/cambio de línea, sin recorrer los detalles
+    @Column(name = "total_centavos", nullable = false)
+    private Long totalCentavos = 0L;
+    
+    @Column(name = "cantidad_lineas", nullable = false)
+    private Integer cantidadLineas = 0;
     
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<PedidoDetalle> detalles = new ArrayList<>();
+    
+    public void sumarLinea(PedidoDetalle detalle) {
+        totalCentavos = Math.addExact(totalCentavos, detalle.getSubtotalCentavos());
+        cantidadLineas++;
+    }
+    
+    public Double getTotal() {
+        return Dinero.aPesos(totalCentavos);
+    }
 }
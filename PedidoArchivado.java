@@ -0,0 +1,58 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pedido cerrado (ENTREGADO o CANCELADO) que ArchivoPedidosJob sacó de pedidos y pedido_detalles.
+ * Conserva el id original. Los detalles van en una sola columna, con los datos de variante y producto
+ * que tenían al archivarse, en el formato binario comprimido de ArchivoPedidosService.
+ *
+ * Solo se usa para crear la tabla (ddl-auto): se lee y se escribe con JdbcTemplate.
+ */
+@Entity
+@Table(name = "pedidos_archivo", indexes = {
+        // Misma clave que idx_pedidos_cliente_fecha_id: el historial sigue en el archivo con el mismo cursor
+        @Index(name = "idx_pedidos_archivo_cliente_fecha_id", columnList = "cliente_id, fecha, id"),
+        // Chequeo de la reconstrucción del rollup de ventas
+        @Index(name = "idx_pedidos_archivo_fecha", columnList = "fecha")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoArchivado {
+
+    @Id
+    private Long id;
+
+    @Column(name = "cliente_id", nullable = false)
+    private Long clienteId;
+
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDateTime fecha;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false)
+    private EstadoPedido estado;
+
+    @Column(name = "total_centavos", nullable = false)
+    private Long totalCentavos;
+
+    @Column(name = "cantidad_lineas", nullable = false)
+    private Integer cantidadLineas;
+
+    // gzip de las líneas (MEDIUMBLOB en MySQL)
+    @Lob
+    @Column(name = "detalles", nullable = false, length = 16_777_215)
+    private byte[] detalles;
+
+    @Column(name = "archivado_en", nullable = false)
+    private LocalDateTime archivadoEn;
+}
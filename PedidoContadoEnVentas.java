@@ -0,0 +1,28 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Pedidos que hoy están sumados en ventas_diarias y el día en que se sumaron.
+ * Sumar y restar se decide comparando el estado actual del pedido con esta tabla, así que
+ * procesar dos veces el mismo evento, o un evento viejo después de una reconstrucción, no cambia nada.
+ */
+@Entity
+@Table(name = "ventas_pedidos_contados", indexes = @Index(name = "idx_ventas_pedidos_contados_dia", columnList = "dia"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoContadoEnVentas {
+    
+    @Id
+    @Column(name = "pedido_id")
+    private Long pedidoId;
+    
+    @Column(name = "dia", nullable = false)
+    private LocalDate dia;
+}
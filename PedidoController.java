@@ -1,14 +1,21 @@
 package com.hrk.tienda_b2b.controller;
 
 import com.hrk.tienda_b2b.dto.CreatePedidoRequest;
+import com.hrk.tienda_b2b.dto.PaginaCursorDTO;
 import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.service.PedidoHistorialService;
 import com.hrk.tienda_b2b.service.PedidoService;
+import com.hrk.tienda_b2b.service.StockInsuficienteException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
-
+@Slf4j
 @RestController
 @RequestMapping("/api/pedidos")
 @CrossOrigin(origins = "*")
@@ -16,19 +23,39 @@ import java.util.List;
 public class PedidoController {
     
     private final PedidoService pedidoService;
+    private final PedidoHistorialService pedidoHistorialService;
 
     @PostMapping("/crear")
     public ResponseEntity<PedidoResponseDTO> crearPedido(@RequestBody CreatePedidoRequest request) {
-        System.out.println("🔵 [PEDIDO CONTROLLER] Creando pedido para cliente: " + request.getClienteId());
-        System.out.println("🔵 [PEDIDO CONTROLLER] Usuario info: " + request.getUsuario());
+        log.debug("Creando pedido para cliente: {}", request.getClienteId());
+        log.debug("Usuario info: {}", request.getUsuario());
         
         try {
             PedidoResponseDTO pedido = pedidoService.crearPedido(request);
-            System.out.println("🔵 [PEDIDO CONTROLLER] Pedido creado exitosamente: " + pedido.getId());
+            log.debug("Pedido creado exitosamente: {}", pedido.getId());
             return ResponseEntity.ok(pedido);
         } catch (Exception e) {
-            System.err.println("🔴 [PEDIDO CONTROLLER] Error al crear pedido: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al crear pedido", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/crear-completo")
+    public ResponseEntity<PedidoResponseDTO> crearPedidoCompleto(@RequestBody CreatePedidoRequest request) {
+        log.debug("Creando pedido completo para cliente: {}", request.getClienteId());
+        
+        try {
+            PedidoResponseDTO pedido = pedidoService.crearPedidoCompleto(request);
+            log.debug("Pedido completo creado exitosamente: {}", pedido.getId());
+            return ResponseEntity.ok(pedido);
+        } catch (StockInsuficienteException e) {
+            log.warn("Sin stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Pedido inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error al crear pedido completo", e);
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -40,61 +67,176 @@ public class PedidoController {
             @RequestParam Integer cantidad,
             @RequestBody(required = false) Object body) {
         
-        System.out.println("🔵 [PEDIDO CONTROLLER] Agregando item al pedido " + pedidoId + 
-                          " - variante: " + varianteId + ", cantidad: " + cantidad);
+        log.debug("Agregando item al pedido {} - variante: {}, cantidad: {}", pedidoId, varianteId, cantidad);
         
         try {
             PedidoResponseDTO pedido = pedidoService.agregarItem(pedidoId, varianteId, cantidad);
-            System.out.println("🔵 [PEDIDO CONTROLLER] Item agregado exitosamente");
+            log.debug("Item agregado exitosamente");
             return ResponseEntity.ok(pedido);
+        } catch (StockInsuficienteException e) {
+            log.warn("Sin stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Item inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("Pedido no editable: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("Error al agregar item", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PutMapping("/{pedidoId}/items/{detalleId}")
+    public ResponseEntity<PedidoResponseDTO> actualizarCantidad(
+            @PathVariable Long pedidoId,
+            @PathVariable Long detalleId,
+            @RequestParam Integer cantidad) {
+        
+        log.debug("Cambiando cantidad del item {} del pedido {}", detalleId, pedidoId);
+        
+        try {
+            return ResponseEntity.ok(pedidoService.actualizarCantidad(pedidoId, detalleId, cantidad));
+        } catch (StockInsuficienteException e) {
+            log.warn("Sin stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Cambio de cantidad inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("Pedido no editable: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("Error al cambiar cantidad", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/{pedidoId}/items/{detalleId}")
+    public ResponseEntity<PedidoResponseDTO> eliminarItem(@PathVariable Long pedidoId, @PathVariable Long detalleId) {
+        log.debug("Eliminando item {} del pedido {}", detalleId, pedidoId);
+        
+        try {
+            return ResponseEntity.ok(pedidoService.eliminarItem(pedidoId, detalleId));
+        } catch (IllegalArgumentException e) {
+            log.warn("Item inexistente: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            log.warn("Pedido no editable: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
-            System.err.println("🔴 [PEDIDO CONTROLLER] Error al agregar item: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al eliminar item", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // fields= opcional (ej: id,fecha,total,estado) para pedir solo las columnas que muestra la pantalla
     @GetMapping
-    public ResponseEntity<List<PedidoResponseDTO>> obtenerPedidosPorCliente(@RequestParam Long clienteId) {
-        System.out.println("🔵 [PEDIDO CONTROLLER] Obteniendo pedidos para cliente: " + clienteId);
+    public ResponseEntity<byte[]> obtenerPedidosPorCliente(@RequestParam Long clienteId,
+                                                           @RequestParam(required = false) String fields) {
+        log.debug("Obteniendo pedidos para cliente: {} (fields: {})", clienteId, fields);
+        
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(pedidoHistorialService.obtenerPedidosPorClienteJson(clienteId, fields));
+        } catch (IllegalArgumentException e) {
+            log.warn("fields inválido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error al obtener pedidos", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // Historial paginado por cursor. resumen=true omite usuario y detalles (pantallas de listado)
+    @GetMapping("/pagina")
+    public ResponseEntity<PaginaCursorDTO<?>> obtenerPaginaPorCliente(
+            @RequestParam Long clienteId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(defaultValue = "false") boolean resumen) {
         
         try {
-            List<PedidoResponseDTO> pedidos = pedidoService.obtenerPedidosPorCliente(clienteId);
-            System.out.println("🔵 [PEDIDO CONTROLLER] Encontrados " + pedidos.size() + " pedidos");
-            return ResponseEntity.ok(pedidos);
+            PaginaCursorDTO<?> pagina = resumen
+                    ? pedidoHistorialService.obtenerPaginaResumen(clienteId, cursor, limite)
+                    : pedidoHistorialService.obtenerPagina(clienteId, cursor, limite);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            log.warn("Parámetros de página inválidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            System.err.println("🔴 [PEDIDO CONTROLLER] Error al obtener pedidos: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener página de pedidos", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // Historial completo como NDJSON (un pedido por línea), escrito a medida que se lee de la base
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamPedidosPorCliente(
+            @RequestParam Long clienteId,
+            @RequestParam(defaultValue = "true") boolean resumen) {
+        
+        StreamingResponseBody cuerpo = salida -> pedidoHistorialService.escribirNdjson(clienteId, resumen, salida);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(cuerpo);
+    }
+
     @PostMapping("/{pedidoId}/confirmar")
     public ResponseEntity<PedidoResponseDTO> confirmarPedido(@PathVariable Long pedidoId) {
-        System.out.println("🔵 [PEDIDO CONTROLLER] Confirmando pedido: " + pedidoId);
+        log.debug("Confirmando pedido: {}", pedidoId);
         
         try {
             PedidoResponseDTO pedido = pedidoService.confirmarPedido(pedidoId);
-            System.out.println("🔵 [PEDIDO CONTROLLER] Pedido confirmado exitosamente");
+            log.debug("Pedido confirmado exitosamente");
             return ResponseEntity.ok(pedido);
+        } catch (StockInsuficienteException e) {
+            log.warn("Sin stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalStateException e) {
+            log.warn("Operación rechazada por el estado del pedido: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
-            System.err.println("🔴 [PEDIDO CONTROLLER] Error al confirmar pedido: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al confirmar pedido", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
     @PostMapping("/{pedidoId}/cancelar")
     public ResponseEntity<PedidoResponseDTO> cancelarPedido(@PathVariable Long pedidoId) {
-        System.out.println("🔵 [PEDIDO CONTROLLER] Cancelando pedido: " + pedidoId);
+        log.debug("Cancelando pedido: {}", pedidoId);
         
         try {
             PedidoResponseDTO pedido = pedidoService.cancelarPedido(pedidoId);
-            System.out.println("🔵 [PEDIDO CONTROLLER] Pedido cancelado exitosamente");
+            log.debug("Pedido cancelado exitosamente");
             return ResponseEntity.ok(pedido);
+        } catch (IllegalStateException e) {
+            log.warn("Operación rechazada por el estado del pedido: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("Error al cancelar pedido", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // Transición genérica (DOCUMENTADO, ABONADO, ENVIADO, ENTREGADO...); 409 si el circuito no la permite
+    @PostMapping("/{pedidoId}/estado")
+    public ResponseEntity<PedidoResponseDTO> cambiarEstado(@PathVariable Long pedidoId,
+                                                           @RequestParam EstadoPedido estado) {
+        log.debug("Cambiando estado del pedido {} a {}", pedidoId, estado);
+        
+        try {
+            return ResponseEntity.ok(pedidoService.cambiarEstado(pedidoId, estado));
+        } catch (StockInsuficienteException e) {
+            log.warn("Sin stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalStateException e) {
+            log.warn("Operación rechazada por el estado del pedido: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
-            System.err.println("🔴 [PEDIDO CONTROLLER] Error al cancelar pedido: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al cambiar estado", e);
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -13,7 +13,10 @@ import lombok.AllArgsConstructor;
 public class PedidoDetalle {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // SEQUENCE (emulada con tabla en MySQL) en lugar de IDENTITY: con IDENTITY Hibernate
+    // desactiva el batching de INSERTs porque necesita el ID de cada fila al insertarla
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedido_detalles_seq")
+    @SequenceGenerator(name = "pedido_detalles_seq", sequenceName = "pedido_detalles_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -27,6 +30,27 @@ public class PedidoDetalle {
     @Column(name = "cantidad", nullable = false)
     private Integer cantidad;
     
-    @Column(name = "precio_unitario", nullable = false)
-    private Double precioUnitario;
+    // Precio cobrado por unidad, resuelto por MotorPrecios al cargar la línea
+    @Column(name = "precio_unitario_centavos", nullable = false)
+    private Long precioUnitarioCentavos;
+    
+    // Foto de cómo se llegó al precio: precio de lista de la variante y regla aplicada (null = precio de lista).
+    // Las líneas anteriores a las listas de precios tienen ambos en null
+    @Column(name = "precio_lista_centavos")
+    private Long precioListaCentavos;
+    
+    @Column(name = "regla_precio_id")
+    private Long reglaPrecioId;
+    
+    // true mientras las unidades de la línea están descontadas de stockDisponible
+    @Column(name = "stock_reservado", nullable = false)
+    private Boolean stockReservado = false;
+    
+    public long getSubtotalCentavos() {
+        return Dinero.subtotal(precioUnitarioCentavos, cantidad);
+    }
+    
+    public Double getPrecioUnitario() {
+        return precioUnitarioCentavos != null ? Dinero.aPesos(precioUnitarioCentavos) : null;
+    }
 }
@@ -0,0 +1,27 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.dto.DetalleHistorialFila;
+import com.hrk.tienda_b2b.model.PedidoDetalle;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PedidoDetalleRepository extends JpaRepository<PedidoDetalle, Long> {
+    
+    Optional<PedidoDetalle> findByIdAndPedidoId(Long id, Long pedidoId);
+    
+    List<PedidoDetalle> findByPedidoId(Long pedidoId);
+    
+    // Todos los detalles de varios pedidos, con variante y producto, en una sola consulta
+    @Query("SELECT new com.hrk.tienda_b2b.dto.DetalleHistorialFila(d.pedido.id, d.id, d.cantidad, d.precioUnitarioCentavos, " +
+           "v.id, v.sku, v.color, v.talle, v.precioCentavos, v.stockDisponible, pr.id, pr.nombre) " +
+           "FROM PedidoDetalle d JOIN d.variante v JOIN v.producto pr " +
+           "WHERE d.pedido.id IN :pedidoIds ORDER BY d.pedido.id, d.id")
+    List<DetalleHistorialFila> findFilasHistorialByPedidoIdIn(@Param("pedidoIds") Collection<Long> pedidoIds);
+}
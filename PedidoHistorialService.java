@@ -0,0 +1,313 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.hrk.tienda_b2b.dto.DetalleHistorialFila;
+import com.hrk.tienda_b2b.dto.PaginaCursorDTO;
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.dto.PedidoResumenDTO;
+import com.hrk.tienda_b2b.dto.UsuarioDTO;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.repository.PedidoDetalleRepository;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Lectura del historial de pedidos con una cantidad fija de consultas:
+ * una para los pedidos (con su usuario) y una por cada bloque de hasta
+ * TAMANO_BLOQUE pedidos para los detalles con variante y producto.
+ * El árbol de DTOs se arma en memoria, sin navegar relaciones lazy.
+ *
+ * Además ofrece el historial paginado por cursor (fecha, id) y un modo NDJSON
+ * que escribe los pedidos a medida que se leen, con memoria constante.
+ *
+ * Los pedidos cerrados viejos están en pedidos_archivo (ArchivoPedidosService) y se mezclan por
+ * (fecha, id) con los de pedidos, así el cliente ve un solo historial. Una página solo lee el archivo
+ * cuando podría tener algo de él: si las tablas calientes no alcanzan para llenarla, o si llegan hasta
+ * la fecha del pedido archivado más nuevo del cliente.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class PedidoHistorialService {
+    
+    // Límite de parámetros del IN por consulta
+    static final int TAMANO_BLOQUE = 500;
+    
+    private final PedidoRepository pedidoRepository;
+    private final PedidoDetalleRepository pedidoDetalleRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final EscritorJsonRespuestas escritorJson;
+    private final ArchivoPedidosService archivoPedidosService;
+    
+    @Value("${hrk.pedidos.pagina.por-defecto:20}")
+    private int limitePorDefecto;
+    
+    @Value("${hrk.pedidos.pagina.maximo:100}")
+    private int limiteMaximo;
+
+    public List<PedidoResponseDTO> obtenerPedidosPorCliente(Long clienteId) {
+        List<Pedido> pedidos = pedidoRepository.findConUsuarioByClienteId(clienteId);
+        if (archivoPedidosService.fechaMasNueva(clienteId).isEmpty()) {
+            return armarDTOs(pedidos);
+        }
+        ArchivoPedidosService.Archivados archivados = archivoPedidosService.todos(clienteId, true);
+        return armarDTOs(mezclar(pedidos, archivados.pedidos(), Integer.MAX_VALUE, Pedido::getFecha, Pedido::getId),
+                archivados.detalles());
+    }
+
+    /**
+     * Mismo historial que obtenerPedidosPorCliente, escrito directo a JSON desde las entidades y
+     * las filas de detalle (sin DTOs intermedios). Con fields= se escriben solo esos campos y, si
+     * no se piden detalles, no se consultan.
+     */
+    public byte[] obtenerPedidosPorClienteJson(Long clienteId, String fields) {
+        EscritorJsonRespuestas.PlanPedido plan = escritorJson.planPedido(fields);
+        List<Pedido> calientes = pedidoRepository.findConUsuarioByClienteId(clienteId);
+        List<Pedido> pedidos = calientes;
+        
+        Map<Long, List<DetalleHistorialFila>> detallesPorPedido = new HashMap<>(calientes.size() * 2);
+        if (archivoPedidosService.fechaMasNueva(clienteId).isPresent()) {
+            // Las líneas de los archivados vienen en el archivo: de la base solo se consultan las de los calientes
+            ArchivoPedidosService.Archivados archivados = archivoPedidosService.todos(clienteId, plan.necesitaDetalles());
+            detallesPorPedido.putAll(archivados.detalles());
+            pedidos = mezclar(calientes, archivados.pedidos(), Integer.MAX_VALUE, Pedido::getFecha, Pedido::getId);
+        }
+        if (plan.necesitaDetalles()) {
+            for (int desde = 0; desde < calientes.size(); desde += TAMANO_BLOQUE) {
+                List<Long> bloque = calientes.subList(desde, Math.min(desde + TAMANO_BLOQUE, calientes.size())).stream()
+                        .map(Pedido::getId)
+                        .toList();
+                for (DetalleHistorialFila fila : pedidoDetalleRepository.findFilasHistorialByPedidoIdIn(bloque)) {
+                    detallesPorPedido.computeIfAbsent(fila.getPedidoId(), id -> new ArrayList<>()).add(fila);
+                }
+            }
+        }
+        return escritorJson.pedidos(pedidos, detallesPorPedido, plan);
+    }
+
+    public PaginaCursorDTO<PedidoResponseDTO> obtenerPagina(Long clienteId, String cursor, Integer limite) {
+        int tamano = normalizarLimite(limite);
+        // Se pide uno más para saber si hay página siguiente sin hacer un COUNT
+        Pageable unoMas = PageRequest.of(0, tamano + 1);
+        
+        CursorPedido desde = cursor == null || cursor.isBlank() ? null : CursorPedido.decodificar(cursor);
+        List<Pedido> pedidos = desde == null
+                ? pedidoRepository.findPrimeraPagina(clienteId, unoMas)
+                : pedidoRepository.findPaginaDespuesDe(clienteId, desde.fecha(), desde.id(), unoMas);
+        
+        Map<Long, List<DetalleHistorialFila>> detallesArchivados = Map.of();
+        if (debeLeerArchivo(clienteId, pedidos, tamano + 1, Pedido::getFecha)) {
+            ArchivoPedidosService.Archivados archivados = archivoPedidosService.pagina(clienteId, desde, tamano + 1, true);
+            pedidos = mezclar(pedidos, archivados.pedidos(), tamano + 1, Pedido::getFecha, Pedido::getId);
+            detallesArchivados = archivados.detalles();
+        }
+        
+        boolean hayMas = pedidos.size() > tamano;
+        List<Pedido> pagina = hayMas ? pedidos.subList(0, tamano) : pedidos;
+        String siguiente = hayMas ? CursorPedido.de(pagina.get(pagina.size() - 1)).codificar() : null;
+        
+        return new PaginaCursorDTO<>(armarDTOs(pagina, detallesArchivados), siguiente, hayMas);
+    }
+
+    public PaginaCursorDTO<PedidoResumenDTO> obtenerPaginaResumen(Long clienteId, String cursor, Integer limite) {
+        int tamano = normalizarLimite(limite);
+        Pageable unoMas = PageRequest.of(0, tamano + 1);
+        
+        CursorPedido desde = cursor == null || cursor.isBlank() ? null : CursorPedido.decodificar(cursor);
+        List<PedidoResumenDTO> resumenes = desde == null
+                ? pedidoRepository.findPrimeraPaginaResumen(clienteId, unoMas)
+                : pedidoRepository.findPaginaResumenDespuesDe(clienteId, desde.fecha(), desde.id(), unoMas);
+        
+        if (debeLeerArchivo(clienteId, resumenes, tamano + 1, r -> LocalDateTime.parse(r.getFecha()))) {
+            List<PedidoResumenDTO> archivados = archivoPedidosService.pagina(clienteId, desde, tamano + 1, false)
+                    .pedidos().stream()
+                    .map(PedidoResumenDTO::fromEntity)
+                    .toList();
+            resumenes = mezclar(resumenes, archivados, tamano + 1,
+                    r -> LocalDateTime.parse(r.getFecha()), PedidoResumenDTO::getId);
+        }
+        
+        boolean hayMas = resumenes.size() > tamano;
+        List<PedidoResumenDTO> pagina = hayMas ? resumenes.subList(0, tamano) : resumenes;
+        String siguiente = null;
+        if (hayMas) {
+            PedidoResumenDTO ultimo = pagina.get(pagina.size() - 1);
+            siguiente = new CursorPedido(LocalDateTime.parse(ultimo.getFecha()), ultimo.getId()).codificar();
+        }
+        
+        return new PaginaCursorDTO<>(pagina, siguiente, hayMas);
+    }
+
+    /**
+     * Escribe todo el historial del cliente como NDJSON (un pedido por línea).
+     * En modo resumen recorre un Stream<Pedido> que el driver trae fila a fila y
+     * desacopla cada entidad después de escribirla; en modo completo, o si el cliente tiene
+     * pedidos archivados, avanza por páginas de cursor, así nunca hay más de una página en memoria.
+     */
+    public void escribirNdjson(Long clienteId, boolean resumen, OutputStream salida) {
+        try (SequenceWriter escritor = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(salida)) {
+            
+            if (resumen && archivoPedidosService.fechaMasNueva(clienteId).isEmpty()) {
+                try (Stream<Pedido> pedidos = pedidoRepository.streamByClienteId(clienteId)) {
+                    Iterator<Pedido> it = pedidos.iterator();
+                    while (it.hasNext()) {
+                        Pedido pedido = it.next();
+                        escritor.write(PedidoResumenDTO.fromEntity(pedido));
+                        entityManager.detach(pedido);
+                    }
+                }
+            } else if (resumen) {
+                // Con pedidos archivados el orden sale de mezclar las dos tablas: se avanza por páginas de cursor
+                String cursor = null;
+                do {
+                    PaginaCursorDTO<PedidoResumenDTO> pagina = obtenerPaginaResumen(clienteId, cursor, limiteMaximo);
+                    for (PedidoResumenDTO dto : pagina.getItems()) {
+                        escritor.write(dto);
+                    }
+                    escritor.flush();
+                    cursor = pagina.getSiguienteCursor();
+                } while (cursor != null);
+            } else {
+                String cursor = null;
+                do {
+                    PaginaCursorDTO<PedidoResponseDTO> pagina = obtenerPagina(clienteId, cursor, limiteMaximo);
+                    for (PedidoResponseDTO dto : pagina.getItems()) {
+                        escritor.write(dto);
+                    }
+                    escritor.flush();
+                    entityManager.clear();
+                    cursor = pagina.getSiguienteCursor();
+                } while (cursor != null);
+            }
+            escritor.flush();
+            salida.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int normalizarLimite(Integer limite) {
+        if (limite == null) {
+            return limitePorDefecto;
+        }
+        if (limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser mayor a 0");
+        }
+        return Math.min(limite, limiteMaximo);
+    }
+
+    /**
+     * ¿Puede el archivo aportar algo a esta página? Solo si el cliente tiene pedidos archivados y las
+     * tablas calientes no llenaron la página o su última fila no es más nueva que el archivado más nuevo.
+     */
+    private <T> boolean debeLeerArchivo(Long clienteId, List<T> calientes, int limite, Function<T, LocalDateTime> fecha) {
+        Optional<LocalDateTime> masNueva = archivoPedidosService.fechaMasNueva(clienteId);
+        if (masNueva.isEmpty()) {
+            return false;
+        }
+        return calientes.size() < limite || !fecha.apply(calientes.get(limite - 1)).isAfter(masNueva.get());
+    }
+
+    // Une dos listas ya ordenadas por (fecha DESC, id DESC) y se queda con las primeras limite
+    static <T> List<T> mezclar(List<T> calientes, List<T> archivados, int limite,
+                               Function<T, LocalDateTime> fecha, Function<T, Long> id) {
+        Comparator<T> orden = Comparator.comparing(fecha).thenComparing(id).reversed();
+        List<T> resultado = new ArrayList<>(Math.min(limite, calientes.size() + archivados.size()));
+        int i = 0;
+        int j = 0;
+        while (resultado.size() < limite && (i < calientes.size() || j < archivados.size())) {
+            if (j == archivados.size() || (i < calientes.size() && orden.compare(calientes.get(i), archivados.get(j)) <= 0)) {
+                resultado.add(calientes.get(i++));
+            } else {
+                resultado.add(archivados.get(j++));
+            }
+        }
+        return resultado;
+    }
+
+    List<PedidoResponseDTO> armarDTOs(List<Pedido> pedidos) {
+        return armarDTOs(pedidos, Map.of());
+    }
+
+    // Las líneas de los pedidos archivados llegan armadas; solo se consultan las de los demás
+    private List<PedidoResponseDTO> armarDTOs(List<Pedido> pedidos, Map<Long, List<DetalleHistorialFila>> detallesArchivados) {
+        Map<Long, PedidoResponseDTO> dtosPorId = new HashMap<>(pedidos.size() * 2);
+        Map<Long, UsuarioDTO> usuarios = new HashMap<>();
+        List<PedidoResponseDTO> resultado = new ArrayList<>(pedidos.size());
+        
+        for (Pedido pedido : pedidos) {
+            PedidoResponseDTO dto = new PedidoResponseDTO();
+            dto.setId(pedido.getId());
+            dto.setClienteId(pedido.getClienteId());
+            dto.setFecha(pedido.getFecha().toString());
+            dto.setTotal(pedido.getTotal());
+            dto.setCantidadLineas(pedido.getCantidadLineas());
+            dto.setEstado(pedido.getEstado().toString());
+            if (pedido.getUsuario() != null) {
+                dto.setUsuario(usuarios.computeIfAbsent(pedido.getUsuario().getId(),
+                        id -> UsuarioDTO.fromEntity(pedido.getUsuario())));
+            }
+            dto.setDetalles(new ArrayList<>(pedido.getCantidadLineas()));
+            
+            dtosPorId.put(pedido.getId(), dto);
+            resultado.add(dto);
+        }
+        
+        List<Long> ids = new ArrayList<>(dtosPorId.size());
+        for (Long id : dtosPorId.keySet()) {
+            List<DetalleHistorialFila> archivadas = detallesArchivados.get(id);
+            if (archivadas == null) {
+                ids.add(id);
+            } else {
+                archivadas.forEach(fila -> dtosPorId.get(id).getDetalles().add(convertirDetalle(fila)));
+            }
+        }
+        for (int desde = 0; desde < ids.size(); desde += TAMANO_BLOQUE) {
+            List<Long> bloque = ids.subList(desde, Math.min(desde + TAMANO_BLOQUE, ids.size()));
+            for (DetalleHistorialFila fila : pedidoDetalleRepository.findFilasHistorialByPedidoIdIn(bloque)) {
+                dtosPorId.get(fila.getPedidoId()).getDetalles().add(convertirDetalle(fila));
+            }
+        }
+        
+        return resultado;
+    }
+
+    private PedidoResponseDTO.DetalleDTO convertirDetalle(DetalleHistorialFila fila) {
+        PedidoResponseDTO.ProductoDTO productoDTO = new PedidoResponseDTO.ProductoDTO(
+                fila.getProductoId(), fila.getProductoNombre());
+        
+        PedidoResponseDTO.VarianteDTO varianteDTO = new PedidoResponseDTO.VarianteDTO(
+                fila.getVarianteId(), fila.getSku(), fila.getColor(), fila.getTalle(),
+                Dinero.aPesos(fila.getPrecioCentavos()), fila.getStockDisponible(), productoDTO);
+        
+        return new PedidoResponseDTO.DetalleDTO(
+                fila.getDetalleId(), fila.getCantidad(), Dinero.aPesos(fila.getPrecioUnitarioCentavos()), varianteDTO);
+    }
+}
@@ -0,0 +1,106 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.config.ContadorSentenciasSql;
+import com.hrk.tienda_b2b.dto.CreatePedidoRequest;
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.model.TipoUsuario;
+import com.hrk.tienda_b2b.model.Usuario;
+import com.hrk.tienda_b2b.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * El historial se lee con una cantidad fija de sentencias SQL: las mismas para 1 pedido de 1 línea que
+ * para N pedidos de M líneas. Cuenta con ContadorSentenciasSql (StatementInspector del perfil "carga"),
+ * que solo cuenta el hilo del test: las estadísticas globales de Hibernate también suman los jobs programados.
+ */
+@SpringBootTest(properties = {"hrk.carga.usuarios=50", "hrk.carga.productos=20"})
+@ActiveProfiles("carga")
+class PedidoHistorialServiceSentenciasTest {
+
+    private static final int PEDIDOS = 30;
+    private static final int LINEAS = 5;
+
+    @Autowired
+    private PedidoHistorialService pedidoHistorialService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Test
+    void elHistorialNoCreceEnSentenciasConLosPedidosNiLasLineas() {
+        Long clienteUno = crearCliente();
+        crearPedidos(clienteUno, 1, 1);
+        Long clienteMuchos = crearCliente();
+        crearPedidos(clienteMuchos, PEDIDOS, LINEAS);
+
+        List<PedidoResponseDTO> uno = new ArrayList<>();
+        int sentenciasUno = contar(() -> uno.addAll(pedidoHistorialService.obtenerPedidosPorCliente(clienteUno)));
+        List<PedidoResponseDTO> muchos = new ArrayList<>();
+        int sentenciasMuchos = contar(() -> muchos.addAll(pedidoHistorialService.obtenerPedidosPorCliente(clienteMuchos)));
+
+        assertThat(uno).hasSize(1);
+        assertThat(uno.get(0).getDetalles()).hasSize(1);
+        assertThat(muchos).hasSize(PEDIDOS);
+        assertThat(muchos).allSatisfy(pedido -> assertThat(pedido.getDetalles()).hasSize(LINEAS));
+        // Pedidos con su usuario + un bloque de detalles con variante y producto
+        assertThat(sentenciasUno).isLessThanOrEqualTo(2);
+        assertThat(sentenciasMuchos).isEqualTo(sentenciasUno);
+    }
+
+    @Test
+    void elHistorialEnJsonNoCreceEnSentenciasConLosPedidosNiLasLineas() {
+        Long clienteUno = crearCliente();
+        crearPedidos(clienteUno, 1, 1);
+        Long clienteMuchos = crearCliente();
+        crearPedidos(clienteMuchos, PEDIDOS, LINEAS);
+
+        int sentenciasUno = contar(() -> pedidoHistorialService.obtenerPedidosPorClienteJson(clienteUno, null));
+        int sentenciasMuchos = contar(() -> pedidoHistorialService.obtenerPedidosPorClienteJson(clienteMuchos, null));
+
+        assertThat(sentenciasUno).isLessThanOrEqualTo(2);
+        assertThat(sentenciasMuchos).isEqualTo(sentenciasUno);
+    }
+
+    private int contar(Supplier<?> lectura) {
+        int sentencias;
+        ContadorSentenciasSql.iniciar();
+        try {
+            lectura.get();
+        } finally {
+            sentencias = ContadorSentenciasSql.terminar();
+        }
+        return sentencias;
+    }
+
+    private Long crearCliente() {
+        Usuario usuario = new Usuario();
+        usuario.setNombreRazonSocial("Cliente historial");
+        usuario.setEmail("historial-" + UUID.randomUUID() + "@test.local");
+        usuario.setTipoUsuario(TipoUsuario.CLIENTE);
+        return usuarioRepository.save(usuario).getId();
+    }
+
+    // Variantes 20 en adelante: las primeras las usan los tests de stock
+    private void crearPedidos(Long clienteId, int pedidos, int lineas) {
+        for (int p = 0; p < pedidos; p++) {
+            List<CreatePedidoRequest.ItemDTO> items = new ArrayList<>(lineas);
+            for (int l = 0; l < lineas; l++) {
+                items.add(new CreatePedidoRequest.ItemDTO(20L + l, 1));
+            }
+            pedidoService.crearPedidoCompleto(new CreatePedidoRequest(clienteId, null, items));
+        }
+    }
+}
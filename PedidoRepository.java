@@ -1,13 +1,105 @@
 package com.hrk.tienda_b2b.repository;
 
+import com.hrk.tienda_b2b.dto.DiferenciaTotalDTO;
+import com.hrk.tienda_b2b.dto.PedidoResumenDTO;
+import com.hrk.tienda_b2b.model.EstadoPedido;
 import com.hrk.tienda_b2b.model.Pedido;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     
     List<Pedido> findByClienteIdOrderByFechaDesc(Long clienteId);
+    
+    // SELECT ... FOR UPDATE para todo cambio del pedido: dos cancelaciones, o una línea nueva contra una
+    // cancelación, se ejecutan de a una y la segunda ve el estado y las reservas que dejó la primera
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Pedido p WHERE p.id = :id")
+    Optional<Pedido> findByIdParaActualizar(@Param("id") Long id);
+    
+    // Historial con el usuario ya cargado (evita un SELECT por pedido al armar el DTO)
+    // Pedido con usuario, líneas, variante y producto en una sola consulta (respuesta de los cambios de línea)
+    @Query("SELECT p FROM Pedido p LEFT JOIN FETCH p.usuario LEFT JOIN FETCH p.detalles d " +
+           "LEFT JOIN FETCH d.variante v LEFT JOIN FETCH v.producto WHERE p.id = :id")
+    Optional<Pedido> findCompletoById(@Param("id") Long id);
+    
+    @Query("SELECT p FROM Pedido p LEFT JOIN FETCH p.usuario WHERE p.clienteId = :clienteId ORDER BY p.fecha DESC, p.id DESC")
+    List<Pedido> findConUsuarioByClienteId(@Param("clienteId") Long clienteId);
+    
+    // --- Historial paginado por cursor (fecha, id), usa idx_pedidos_cliente_fecha_id ---
+    
+    @Query("SELECT p FROM Pedido p LEFT JOIN FETCH p.usuario WHERE p.clienteId = :clienteId ORDER BY p.fecha DESC, p.id DESC")
+    List<Pedido> findPrimeraPagina(@Param("clienteId") Long clienteId, Pageable limite);
+    
+    @Query("SELECT p FROM Pedido p LEFT JOIN FETCH p.usuario WHERE p.clienteId = :clienteId " +
+           "AND (p.fecha < :fecha OR (p.fecha = :fecha AND p.id < :id)) ORDER BY p.fecha DESC, p.id DESC")
+    List<Pedido> findPaginaDespuesDe(@Param("clienteId") Long clienteId, @Param("fecha") LocalDateTime fecha,
+                                     @Param("id") Long id, Pageable limite);
+    
+    @Query("SELECT new com.hrk.tienda_b2b.dto.PedidoResumenDTO(p.id, p.clienteId, p.fecha, p.totalCentavos, p.cantidadLineas, p.estado) " +
+           "FROM Pedido p WHERE p.clienteId = :clienteId ORDER BY p.fecha DESC, p.id DESC")
+    List<PedidoResumenDTO> findPrimeraPaginaResumen(@Param("clienteId") Long clienteId, Pageable limite);
+    
+    @Query("SELECT new com.hrk.tienda_b2b.dto.PedidoResumenDTO(p.id, p.clienteId, p.fecha, p.totalCentavos, p.cantidadLineas, p.estado) " +
+           "FROM Pedido p WHERE p.clienteId = :clienteId " +
+           "AND (p.fecha < :fecha OR (p.fecha = :fecha AND p.id < :id)) ORDER BY p.fecha DESC, p.id DESC")
+    List<PedidoResumenDTO> findPaginaResumenDespuesDe(@Param("clienteId") Long clienteId, @Param("fecha") LocalDateTime fecha,
+                                                     @Param("id") Long id, Pageable limite);
+    
+    // Fetch size MIN_VALUE: el driver de MySQL trae las filas de a una en lugar de cargar todo el resultado
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT p FROM Pedido p WHERE p.clienteId = :clienteId ORDER BY p.fecha DESC, p.id DESC")
+    Stream<Pedido> streamByClienteId(@Param("clienteId") Long clienteId);
+    
+    // Ajuste atómico del total acumulado: no pierde actualizaciones si llegan dos líneas a la vez
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.totalCentavos = p.totalCentavos + :deltaCentavos, " +
+           "p.cantidadLineas = p.cantidadLineas + :deltaLineas WHERE p.id = :pedidoId")
+    int ajustarTotal(@Param("pedidoId") Long pedidoId,
+                     @Param("deltaCentavos") long deltaCentavos,
+                     @Param("deltaLineas") int deltaLineas);
+    
+    // Pedidos en un estado creados antes de la fecha límite (ExpiracionBorradoresJob, con EN_ARMADO)
+    @Query("SELECT p.id FROM Pedido p WHERE p.estado = :estado AND p.fecha < :limite ORDER BY p.fecha")
+    List<Long> findIdsPorEstadoAnterioresA(@Param("estado") EstadoPedido estado,
+                                          @Param("limite") LocalDateTime limite, Pageable pageable);
+    
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Pedido p")
+    Long findMaxId();
+    
+    // Pedidos del rango cuyo total o cantidad de líneas no coincide con la suma de sus detalles
+    @Query("SELECT new com.hrk.tienda_b2b.dto.DiferenciaTotalDTO(p.id, p.totalCentavos, p.cantidadLineas, " +
+           "COALESCE(SUM(d.cantidad * d.precioUnitarioCentavos), 0), COUNT(d)) " +
+           "FROM Pedido p LEFT JOIN p.detalles d " +
+           "WHERE p.id > :desdeId AND p.id <= :hastaId " +
+           "GROUP BY p.id, p.totalCentavos, p.cantidadLineas " +
+           "HAVING p.totalCentavos <> COALESCE(SUM(d.cantidad * d.precioUnitarioCentavos), 0) " +
+           "OR p.cantidadLineas <> COUNT(d)")
+    List<DiferenciaTotalDTO> findDiferenciasDeTotal(@Param("desdeId") Long desdeId, @Param("hastaId") Long hastaId);
+    
+    // Recalcula total y cantidad de líneas desde los detalles en la misma sentencia: no pisa con un
+    // valor leído antes un ajusteTotal concurrente (la fila queda bloqueada mientras se evalúa)
+    @Modifying
+    @Query(value = "UPDATE pedidos SET " +
+           "total_centavos = (SELECT COALESCE(SUM(d.cantidad * d.precio_unitario_centavos), 0) " +
+           "FROM pedido_detalles d WHERE d.pedido_id = pedidos.id), " +
+           "cantidad_lineas = (SELECT COUNT(*) FROM pedido_detalles d WHERE d.pedido_id = pedidos.id) " +
+           "WHERE id = :pedidoId", nativeQuery = true)
+    int corregirTotal(@Param("pedidoId") Long pedidoId);
 }
@@ -1,10 +1,12 @@
 package com.hrk.tienda_b2b.dto;
 
+import com.hrk.tienda_b2b.model.Pedido;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Data
 @NoArgsConstructor
@@ -15,10 +17,64 @@ public class PedidoResponseDTO {
     private Long clienteId;
     private String fecha;
     private Double total;
+    private Integer cantidadLineas;
     private String estado;
     private UsuarioDTO usuario;
     private List<DetalleDTO> detalles;
     
+    // Mapeo completo de un pedido ya cargado (usuario, detalles, variante y producto)
+    public static PedidoResponseDTO fromEntity(Pedido pedido) {
+        PedidoResponseDTO dto = new PedidoResponseDTO();
+        dto.setId(pedido.getId());
+        dto.setClienteId(pedido.getClienteId());
+        dto.setFecha(pedido.getFecha().toString());
+        dto.setTotal(pedido.getTotal());
+        dto.setCantidadLineas(pedido.getCantidadLineas());
+        dto.setEstado(pedido.getEstado().toString());
+        
+        // Agregar información del usuario si está disponible
+        if (pedido.getUsuario() != null) {
+            dto.setUsuario(UsuarioDTO.fromEntity(pedido.getUsuario()));
+        }
+        
+        // Convertir detalles
+        List<DetalleDTO> detallesDTO = pedido.getDetalles().stream()
+                .map(detalle -> {
+                    DetalleDTO detalleDTO = new DetalleDTO();
+                    detalleDTO.setId(detalle.getId());
+                    detalleDTO.setCantidad(detalle.getCantidad());
+                    detalleDTO.setPrecioUnitario(detalle.getPrecioUnitario());
+                    
+                    // Información de la variante
+                    if (detalle.getVariante() != null) {
+                        VarianteDTO varianteDTO = new VarianteDTO();
+                        varianteDTO.setId(detalle.getVariante().getId());
+                        varianteDTO.setSku(detalle.getVariante().getSku());
+                        varianteDTO.setColor(detalle.getVariante().getColor());
+                        varianteDTO.setTalle(detalle.getVariante().getTalle());
+                        varianteDTO.setPrecio(detalle.getVariante().getPrecio());
+                        varianteDTO.setStockDisponible(detalle.getVariante().getStockDisponible());
+                        
+                        // Información del producto
+                        if (detalle.getVariante().getProducto() != null) {
+                            ProductoDTO productoDTO = new ProductoDTO();
+                            productoDTO.setId(detalle.getVariante().getProducto().getId());
+                            productoDTO.setNombre(detalle.getVariante().getProducto().getNombre());
+                            varianteDTO.setProducto(productoDTO);
+                        }
+                        
+                        detalleDTO.setVariante(varianteDTO);
+                    }
+                    
+                    return detalleDTO;
+                })
+                .collect(Collectors.toList());
+        
+        dto.setDetalles(detallesDTO);
+        
+        return dto;
+    }
+    
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
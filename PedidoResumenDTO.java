@@ -0,0 +1,37 @@
+package com.hrk.tienda_b2b.dto;
+
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.Pedido;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Versión liviana de PedidoResponseDTO para listados: sin usuario ni detalles.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoResumenDTO {
+    
+    private Long id;
+    private Long clienteId;
+    private String fecha;
+    private Double total;
+    private Integer cantidadLineas;
+    private String estado;
+    
+    // Usado por las consultas "SELECT new" de PedidoRepository
+    public PedidoResumenDTO(Long id, Long clienteId, LocalDateTime fecha, Long totalCentavos,
+                            Integer cantidadLineas, EstadoPedido estado) {
+        this(id, clienteId, fecha.toString(), Dinero.aPesos(totalCentavos), cantidadLineas, estado.toString());
+    }
+    
+    public static PedidoResumenDTO fromEntity(Pedido pedido) {
+        return new PedidoResumenDTO(pedido.getId(), pedido.getClienteId(), pedido.getFecha(),
+                pedido.getTotalCentavos(), pedido.getCantidadLineas(), pedido.getEstado());
+    }
+}
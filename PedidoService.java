@@ -2,174 +2,280 @@ package com.hrk.tienda_b2b.service;
 
 import com.hrk.tienda_b2b.dto.CreatePedidoRequest;
 import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
-import com.hrk.tienda_b2b.dto.UsuarioDTO;
 import com.hrk.tienda_b2b.model.*;
+import com.hrk.tienda_b2b.repository.EventoPedidoRepository;
+import com.hrk.tienda_b2b.repository.PedidoDetalleRepository;
 import com.hrk.tienda_b2b.repository.PedidoRepository;
 import com.hrk.tienda_b2b.repository.UsuarioRepository;
 import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class PedidoService {
     
     private final PedidoRepository pedidoRepository;
+    private final PedidoDetalleRepository pedidoDetalleRepository;
     private final UsuarioRepository usuarioRepository;
     private final ProductoVarianteRepository productoVarianteRepository;
+    private final PedidoHistorialService pedidoHistorialService;
+    private final ReservaStockService reservaStockService;
+    private final EventoPedidoRepository eventoPedidoRepository;
+    private final MotorPrecios motorPrecios;
 
     public PedidoResponseDTO crearPedido(CreatePedidoRequest request) {
-        System.out.println("🔵 [PEDIDO SERVICE] Creando pedido para cliente: " + request.getClienteId());
+        log.debug("Creando pedido para cliente: {}", request.getClienteId());
         
         // Buscar el usuario/cliente
         Usuario cliente = usuarioRepository.findById(request.getClienteId())
                 .orElseThrow(() -> new RuntimeException("Cliente no encontrado con ID: " + request.getClienteId()));
         
-        System.out.println("🔵 [PEDIDO SERVICE] Cliente encontrado: " + cliente.getNombreRazonSocial());
+        log.debug("Cliente encontrado: {}", cliente.getNombreRazonSocial());
         
         // Crear el pedido
         Pedido pedido = new Pedido();
         pedido.setClienteId(request.getClienteId());
         pedido.setUsuario(cliente);
         pedido.setFecha(LocalDateTime.now());
-        pedido.setEstado(EstadoPedido.BORRADOR);
-        pedido.setTotal(0.0); // Se calculará cuando se agreguen items
+        pedido.setEstado(EstadoPedido.EN_ARMADO); // Total y cantidad de líneas arrancan en 0
         
         // Guardar el pedido
         Pedido pedidoGuardado = pedidoRepository.save(pedido);
-        System.out.println("🔵 [PEDIDO SERVICE] Pedido guardado con ID: " + pedidoGuardado.getId());
+        log.info("Pedido guardado con ID: {}", pedidoGuardado.getId());
         
         // Convertir a DTO y retornar
         return convertirADTO(pedidoGuardado);
     }
 
+    /**
+     * Crea el pedido con todas sus líneas en una sola transacción.
+     * Las variantes se resuelven con una única consulta y los detalles se insertan
+     * en batches JDBC (ver hibernate.jdbc.batch_size en application.properties).
+     */
+    public PedidoResponseDTO crearPedidoCompleto(CreatePedidoRequest request) {
+        log.debug("Creando pedido completo para cliente: {} con {} items", request.getClienteId(),
+                request.getItems() != null ? request.getItems().size() : 0);
+        
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new IllegalArgumentException("El pedido debe tener al menos un item");
+        }
+        
+        // Agrupar líneas repetidas de la misma variante (mantiene el orden del carrito)
+        Map<Long, Integer> cantidadesPorVariante = new LinkedHashMap<>();
+        for (CreatePedidoRequest.ItemDTO item : request.getItems()) {
+            if (item.getVarianteId() == null || item.getCantidad() == null || item.getCantidad() <= 0) {
+                throw new IllegalArgumentException("Item inválido: variante " + item.getVarianteId()
+                        + ", cantidad " + item.getCantidad());
+            }
+            cantidadesPorVariante.merge(item.getVarianteId(), item.getCantidad(), Integer::sum);
+        }
+        
+        Usuario cliente = usuarioRepository.findById(request.getClienteId())
+                .orElseThrow(() -> new RuntimeException("Cliente no encontrado con ID: " + request.getClienteId()));
+        
+        // Una sola consulta para todas las variantes
+        Map<Long, ProductoVariante> variantes = productoVarianteRepository
+                .findAllConProductoByIdIn(cantidadesPorVariante.keySet()).stream()
+                .collect(Collectors.toMap(ProductoVariante::getId, Function.identity()));
+        
+        Pedido pedido = new Pedido();
+        pedido.setClienteId(request.getClienteId());
+        pedido.setUsuario(cliente);
+        pedido.setFecha(LocalDateTime.now());
+        pedido.setEstado(EstadoPedido.BORRADOR);
+        
+        for (Map.Entry<Long, Integer> linea : cantidadesPorVariante.entrySet()) {
+            ProductoVariante variante = variantes.get(linea.getKey());
+            if (variante == null) {
+                throw new IllegalArgumentException("Variante no encontrada con ID: " + linea.getKey());
+            }
+            
+            PedidoDetalle detalle = new PedidoDetalle();
+            detalle.setPedido(pedido);
+            detalle.setVariante(variante);
+            detalle.setCantidad(linea.getValue());
+            asignarPrecio(detalle, request.getClienteId());
+            pedido.getDetalles().add(detalle);
+            pedido.sumarLinea(detalle);
+        }
+        
+        // Reserva todas las líneas; si alguna no tiene stock se lanza la excepción y no se guarda nada
+        reservaStockService.reservar(pedido.getDetalles());
+        
+        // El cascade inserta los detalles junto con el pedido, agrupados en batches
+        Pedido pedidoGuardado = pedidoRepository.save(pedido);
+        log.info("Pedido completo guardado con ID: {} - {} líneas, total: {}",
+                pedidoGuardado.getId(), pedidoGuardado.getCantidadLineas(), pedidoGuardado.getTotal());
+        
+        return convertirADTO(pedidoGuardado);
+    }
+
     public PedidoResponseDTO agregarItem(Long pedidoId, Long varianteId, Integer cantidad) {
-        System.out.println("🔵 [PEDIDO SERVICE] Agregando item al pedido " + pedidoId + 
-                          " - variante: " + varianteId + ", cantidad: " + cantidad);
+        log.debug("Agregando item al pedido {} - variante: {}, cantidad: {}", pedidoId, varianteId, cantidad);
         
-        // Buscar el pedido
-        Pedido pedido = pedidoRepository.findById(pedidoId)
-                .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+        if (cantidad == null || cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+        }
+        
+        // Buscar el pedido (con lock de fila hasta el commit)
+        Pedido pedido = buscarPedidoParaActualizar(pedidoId);
         
         // Buscar la variante
         ProductoVariante variante = productoVarianteRepository.findById(varianteId)
                 .orElseThrow(() -> new RuntimeException("Variante no encontrada con ID: " + varianteId));
         
-        // Crear el detalle del pedido
+        validarEditable(pedido);
+        
+        // Crear el detalle del pedido (sin cargar la colección de detalles)
         PedidoDetalle detalle = new PedidoDetalle();
         detalle.setPedido(pedido);
         detalle.setVariante(variante);
         detalle.setCantidad(cantidad);
-        detalle.setPrecioUnitario(variante.getPrecio());
+        asignarPrecio(detalle, pedido.getClienteId());
+        reservaStockService.reservar(List.of(detalle));
+        pedidoDetalleRepository.save(detalle);
         
-        // Agregar el detalle al pedido
-        pedido.getDetalles().add(detalle);
+        // Ajustar el total acumulado en lugar de recalcularlo sobre todas las líneas
+        pedidoRepository.ajustarTotal(pedidoId, detalle.getSubtotalCentavos(), 1);
         
-        // Recalcular el total
-        double nuevoTotal = pedido.getDetalles().stream()
-                .mapToDouble(d -> d.getCantidad() * d.getPrecioUnitario())
-                .sum();
-        pedido.setTotal(nuevoTotal);
-        
-        // Guardar los cambios
-        Pedido pedidoActualizado = pedidoRepository.save(pedido);
-        System.out.println("🔵 [PEDIDO SERVICE] Item agregado. Nuevo total: " + nuevoTotal);
+        Pedido pedidoActualizado = buscarPedidoCompleto(pedidoId);
+        log.debug("Item agregado. Nuevo total: {}", pedidoActualizado.getTotal());
         
         return convertirADTO(pedidoActualizado);
     }
 
-    public List<PedidoResponseDTO> obtenerPedidosPorCliente(Long clienteId) {
-        System.out.println("🔵 [PEDIDO SERVICE] Obteniendo pedidos para cliente: " + clienteId);
+    public PedidoResponseDTO eliminarItem(Long pedidoId, Long detalleId) {
+        log.debug("Eliminando item {} del pedido {}", detalleId, pedidoId);
+        
+        validarEditable(buscarPedidoParaActualizar(pedidoId));
+        PedidoDetalle detalle = buscarDetalle(pedidoId, detalleId);
         
-        List<Pedido> pedidos = pedidoRepository.findByClienteIdOrderByFechaDesc(clienteId);
-        System.out.println("🔵 [PEDIDO SERVICE] Encontrados " + pedidos.size() + " pedidos");
+        long subtotal = detalle.getSubtotalCentavos();
+        reservaStockService.liberar(List.of(detalle));
+        pedidoDetalleRepository.delete(detalle);
+        pedidoRepository.ajustarTotal(pedidoId, -subtotal, -1);
         
-        return pedidos.stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirADTO(buscarPedidoCompleto(pedidoId));
     }
 
-    public PedidoResponseDTO confirmarPedido(Long pedidoId) {
-        System.out.println("🔵 [PEDIDO SERVICE] Confirmando pedido: " + pedidoId);
+    public PedidoResponseDTO actualizarCantidad(Long pedidoId, Long detalleId, Integer cantidad) {
+        log.debug("Cambiando cantidad del item {} del pedido {} a {}", detalleId, pedidoId, cantidad);
         
-        Pedido pedido = pedidoRepository.findById(pedidoId)
-                .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+        if (cantidad == null || cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+        }
         
-        pedido.setEstado(EstadoPedido.CONFIRMADO);
-        Pedido pedidoActualizado = pedidoRepository.save(pedido);
+        Pedido pedido = buscarPedidoParaActualizar(pedidoId);
+        validarEditable(pedido);
+        PedidoDetalle detalle = buscarDetalle(pedidoId, detalleId);
         
-        System.out.println("🔵 [PEDIDO SERVICE] Pedido confirmado exitosamente");
-        return convertirADTO(pedidoActualizado);
+        long subtotalAnterior = detalle.getSubtotalCentavos();
+        reservaStockService.ajustar(detalle, cantidad);
+        detalle.setCantidad(cantidad);
+        // La cantidad puede cruzar un escalón por volumen: se vuelve a resolver el precio
+        asignarPrecio(detalle, pedido.getClienteId());
+        pedidoRepository.ajustarTotal(pedidoId, detalle.getSubtotalCentavos() - subtotalAnterior, 0);
+        
+        return convertirADTO(buscarPedidoCompleto(pedidoId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PedidoResponseDTO> obtenerPedidosPorCliente(Long clienteId) {
+        log.debug("Obteniendo pedidos para cliente: {}", clienteId);
+        
+        // Lectura con consultas fijas (ver PedidoHistorialService), sin N+1 sobre usuario/detalles/variantes
+        List<PedidoResponseDTO> pedidos = pedidoHistorialService.obtenerPedidosPorCliente(clienteId);
+        log.debug("Encontrados {} pedidos", pedidos.size());
+        
+        return pedidos;
+    }
+
+    public PedidoResponseDTO confirmarPedido(Long pedidoId) {
+        return cambiarEstado(pedidoId, EstadoPedido.CONFIRMADO);
     }
 
     public PedidoResponseDTO cancelarPedido(Long pedidoId) {
-        System.out.println("🔵 [PEDIDO SERVICE] Cancelando pedido: " + pedidoId);
+        return cambiarEstado(pedidoId, EstadoPedido.CANCELADO);
+    }
+
+    /**
+     * Único punto de cambio de estado. Valida la transición, mueve el stock que corresponda y
+     * deja un EventoPedido en la outbox dentro de la misma transacción; el resto del trabajo
+     * (notificaciones, reportes...) lo hace DespachadorEventosPedido fuera del request.
+     * La transición se valida con la fila del pedido bloqueada: dos cambios concurrentes desde el
+     * mismo estado se ejecutan de a uno y el segundo se rechaza, así la outbox nunca registra una
+     * transición que el estado guardado contradice ni se libera dos veces el mismo stock.
+     */
+    public PedidoResponseDTO cambiarEstado(Long pedidoId, EstadoPedido nuevoEstado) {
+        log.debug("Pedido {} → {}", pedidoId, nuevoEstado);
         
-        Pedido pedido = pedidoRepository.findById(pedidoId)
-                .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+        Pedido pedido = buscarPedidoParaActualizar(pedidoId);
+        EstadoPedido estadoAnterior = pedido.getEstado();
+        if (!estadoAnterior.puedeTransicionarA(nuevoEstado)) {
+            throw new TransicionInvalidaException(pedidoId, estadoAnterior, nuevoEstado);
+        }
         
-        pedido.setEstado(EstadoPedido.CANCELADO);
+        if (nuevoEstado == EstadoPedido.CONFIRMADO) {
+            // Las líneas ya reservadas no se tocan: la reserva pasa a ser el descuento definitivo.
+            // Las que no tengan reserva (pedidos anteriores a la reserva de stock) se reservan ahora.
+            reservaStockService.reservar(pedidoDetalleRepository.findByPedidoId(pedidoId));
+        } else if (nuevoEstado == EstadoPedido.CANCELADO) {
+            // Devuelve al stock las unidades reservadas por el pedido
+            reservaStockService.liberar(pedidoDetalleRepository.findByPedidoId(pedidoId));
+        }
+        
+        pedido.setEstado(nuevoEstado);
         Pedido pedidoActualizado = pedidoRepository.save(pedido);
+        eventoPedidoRepository.save(EventoPedido.transicion(pedidoId, estadoAnterior, nuevoEstado));
         
-        System.out.println("🔵 [PEDIDO SERVICE] Pedido cancelado exitosamente");
+        log.info("Pedido {} pasó de {} a {}", pedidoId, estadoAnterior, nuevoEstado);
         return convertirADTO(pedidoActualizado);
     }
 
-    private PedidoResponseDTO convertirADTO(Pedido pedido) {
-        PedidoResponseDTO dto = new PedidoResponseDTO();
-        dto.setId(pedido.getId());
-        dto.setClienteId(pedido.getClienteId());
-        dto.setFecha(pedido.getFecha().toString());
-        dto.setTotal(pedido.getTotal());
-        dto.setEstado(pedido.getEstado().toString());
-        
-        // Agregar información del usuario si está disponible
-        if (pedido.getUsuario() != null) {
-            UsuarioDTO usuarioDTO = UsuarioDTO.fromEntity(pedido.getUsuario());
-            dto.setUsuario(usuarioDTO);
+    // Después de ajustarTotal (que limpia el contexto): pedido, usuario y líneas con variante y producto en una consulta
+    private Pedido buscarPedidoCompleto(Long pedidoId) {
+        return pedidoRepository.findCompletoById(pedidoId)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+    }
+
+    private Pedido buscarPedidoParaActualizar(Long pedidoId) {
+        return pedidoRepository.findByIdParaActualizar(pedidoId)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado con ID: " + pedidoId));
+    }
+
+    private PedidoDetalle buscarDetalle(Long pedidoId, Long detalleId) {
+        return pedidoDetalleRepository.findByIdAndPedidoId(detalleId, pedidoId)
+                .orElseThrow(() -> new IllegalArgumentException("Item " + detalleId + " no encontrado en el pedido " + pedidoId));
+    }
+
+    // Precio según las listas del cliente (MotorPrecios), con la foto de precio de lista y regla en la línea
+    private void asignarPrecio(PedidoDetalle detalle, Long clienteId) {
+        MotorPrecios.PrecioResuelto precio = motorPrecios.resolver(clienteId, detalle.getVariante(), detalle.getCantidad());
+        detalle.setPrecioUnitarioCentavos(precio.precioCentavos());
+        detalle.setPrecioListaCentavos(precio.precioListaCentavos());
+        detalle.setReglaPrecioId(precio.reglaId());
+    }
+
+    private void validarEditable(Pedido pedido) {
+        if (!pedido.getEstado().admiteCambiosDeLineas()) {
+            throw new IllegalStateException("Solo se pueden modificar pedidos en EN_ARMADO o BORRADOR (pedido " + pedido.getId()
+                    + " está " + pedido.getEstado() + ")");
         }
-        
-        // Convertir detalles
-        List<PedidoResponseDTO.DetalleDTO> detallesDTO = pedido.getDetalles().stream()
-                .map(detalle -> {
-                    PedidoResponseDTO.DetalleDTO detalleDTO = new PedidoResponseDTO.DetalleDTO();
-                    detalleDTO.setId(detalle.getId());
-                    detalleDTO.setCantidad(detalle.getCantidad());
-                    detalleDTO.setPrecioUnitario(detalle.getPrecioUnitario());
-                    
-                    // Información de la variante
-                    if (detalle.getVariante() != null) {
-                        PedidoResponseDTO.VarianteDTO varianteDTO = new PedidoResponseDTO.VarianteDTO();
-                        varianteDTO.setId(detalle.getVariante().getId());
-                        varianteDTO.setSku(detalle.getVariante().getSku());
-                        varianteDTO.setColor(detalle.getVariante().getColor());
-                        varianteDTO.setTalle(detalle.getVariante().getTalle());
-                        varianteDTO.setPrecio(detalle.getVariante().getPrecio());
-                        varianteDTO.setStockDisponible(detalle.getVariante().getStockDisponible());
-                        
-                        // Información del producto
-                        if (detalle.getVariante().getProducto() != null) {
-                            PedidoResponseDTO.ProductoDTO productoDTO = new PedidoResponseDTO.ProductoDTO();
-                            productoDTO.setId(detalle.getVariante().getProducto().getId());
-                            productoDTO.setNombre(detalle.getVariante().getProducto().getNombre());
-                            varianteDTO.setProducto(productoDTO);
-                        }
-                        
-                        detalleDTO.setVariante(varianteDTO);
-                    }
-                    
-                    return detalleDTO;
-                })
-                .collect(Collectors.toList());
-        
-        dto.setDetalles(detallesDTO);
-        
-        return dto;
+    }
+
+    private PedidoResponseDTO convertirADTO(Pedido pedido) {
+        return PedidoResponseDTO.fromEntity(pedido);
     }
 }
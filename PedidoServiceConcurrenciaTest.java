@@ -0,0 +1,86 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.CreatePedidoRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cientos de checkouts en paralelo sobre la misma variante (perfil "carga": H2 con datos sembrados).
+ * El stock no puede quedar negativo y tiene que bajar exactamente lo que suman los pedidos guardados;
+ * los rechazados por StockInsuficienteException no descuentan nada.
+ */
+@SpringBootTest(properties = {"hrk.carga.usuarios=50", "hrk.carga.productos=20"})
+@ActiveProfiles("carga")
+class PedidoServiceConcurrenciaTest {
+
+    private static final long VARIANTE_ID = 1L;
+    private static final int STOCK_INICIAL = 100;
+    private static final int PEDIDOS = 500;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void checkoutsEnParaleloNoVendenMasQueElStock() throws InterruptedException {
+        jdbcTemplate.update("UPDATE producto_variantes SET stock_disponible = ? WHERE id = ?", STOCK_INICIAL, VARIANTE_ID);
+        long reservadoAntes = reservado();
+
+        LongAdder guardados = new LongAdder();
+        LongAdder sinStock = new LongAdder();
+        LongAdder errores = new LongAdder();
+        LongAdder cantidadVendida = new LongAdder();
+        CountDownLatch largada = new CountDownLatch(1);
+
+        // Todos arrancan juntos; la concurrencia real la limita el pool de conexiones
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < PEDIDOS; i++) {
+                long clienteId = 1 + i % 50;
+                int cantidad = 1 + i % 3;
+                hilos.execute(() -> {
+                    try {
+                        largada.await();
+                        pedidoService.crearPedidoCompleto(new CreatePedidoRequest(clienteId, null,
+                                List.of(new CreatePedidoRequest.ItemDTO(VARIANTE_ID, cantidad))));
+                        guardados.increment();
+                        cantidadVendida.add(cantidad);
+                    } catch (StockInsuficienteException e) {
+                        sinStock.increment();
+                    } catch (Exception e) {
+                        errores.increment();
+                    }
+                });
+            }
+            largada.countDown();
+        }
+
+        int stockFinal = jdbcTemplate.queryForObject(
+                "SELECT stock_disponible FROM producto_variantes WHERE id = ?", Integer.class, VARIANTE_ID);
+        long vendida = cantidadVendida.sum();
+
+        assertThat(errores.sum()).as("checkouts fallidos por otra causa que falta de stock").isZero();
+        assertThat(sinStock.sum()).as("pedidos rechazados por falta de stock").isPositive();
+        assertThat(guardados.sum() + sinStock.sum()).isEqualTo(PEDIDOS);
+        assertThat(stockFinal).isGreaterThanOrEqualTo(0);
+        assertThat(STOCK_INICIAL - stockFinal).as("unidades descontadas").isEqualTo(vendida);
+        assertThat(reservado() - reservadoAntes).as("unidades reservadas en las líneas").isEqualTo(vendida);
+    }
+
+    private long reservado() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(cantidad), 0) FROM pedido_detalles " +
+                "WHERE variante_id = ? AND stock_reservado = TRUE", Long.class, VARIANTE_ID);
+    }
+}
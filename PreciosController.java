@@ -0,0 +1,88 @@
+package com.hrk.tienda_b2b.controller;
+
+import com.hrk.tienda_b2b.dto.ReglaPrecioDTO;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.TipoUsuario;
+import com.hrk.tienda_b2b.model.Usuario;
+import com.hrk.tienda_b2b.service.MotorPrecios;
+import com.hrk.tienda_b2b.service.ReglaPrecioService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// Listas de precios mayoristas: reglas por cliente, escalones por cantidad y cotización de una línea
+@Slf4j
+@RestController
+@RequestMapping("/api/precios")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class PreciosController {
+
+    private final ReglaPrecioService reglaPrecioService;
+
+    @GetMapping("/reglas")
+    public ResponseEntity<List<ReglaPrecioDTO>> listar(@RequestParam(required = false) Long clienteId) {
+        return ResponseEntity.ok(reglaPrecioService.listar(clienteId));
+    }
+
+    @PostMapping("/reglas")
+    public ResponseEntity<?> crear(@RequestBody ReglaPrecioDTO regla) {
+        try {
+            return ResponseEntity.ok(reglaPrecioService.crear(regla));
+        } catch (IllegalArgumentException e) {
+            log.warn("Regla de precio rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PutMapping("/reglas/{id}")
+    public ResponseEntity<?> actualizar(@PathVariable Long id, @RequestBody ReglaPrecioDTO regla) {
+        try {
+            return ResponseEntity.ok(reglaPrecioService.actualizar(id, regla));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Regla de precio {} rechazada: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/reglas/{id}")
+    public ResponseEntity<Void> eliminar(@PathVariable Long id) {
+        try {
+            reglaPrecioService.eliminar(id);
+            return ResponseEntity.noContent().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Ej: /api/precios/cotizar?varianteId=120&cantidad=24. clienteId solo lo usa un ADMIN (cotizar para
+    // otro cliente); un cliente siempre cotiza con sus propias reglas
+    @GetMapping("/cotizar")
+    public ResponseEntity<?> cotizar(@AuthenticationPrincipal Usuario usuario,
+                                     @RequestParam(required = false) Long clienteId,
+                                     @RequestParam Long varianteId,
+                                     @RequestParam(defaultValue = "1") int cantidad) {
+        Long cliente = usuario.getTipoUsuario() == TipoUsuario.ADMIN ? clienteId : usuario.getId();
+        try {
+            MotorPrecios.PrecioResuelto precio = reglaPrecioService.cotizar(cliente, varianteId, cantidad);
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            respuesta.put("precioUnitario", Dinero.aPesos(precio.precioCentavos()));
+            respuesta.put("precioLista", Dinero.aPesos(precio.precioListaCentavos()));
+            respuesta.put("reglaId", precio.reglaId());
+            return ResponseEntity.ok(respuesta);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package com.hrk.tienda_b2b.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@EntityListeners(CatalogoEntityListener.class)
 @Table(name = "producto_variantes")
+// stockDisponible se modifica con UPDATE nativos (ReservaStockService) que sacan del cache solo las
+// variantes tocadas; las validaciones de stock siempre se hacen en la base, nunca contra el cache
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "variantes")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,9 +37,19 @@ public class ProductoVariante {
     @Column(name = "talle")
     private String talle;
     
-    @Column(name = "precio", nullable = false)
-    private Double precio;
+    @JsonIgnore
+    @Column(name = "precio_centavos", nullable = false)
+    private Long precioCentavos;
     
     @Column(name = "stock_disponible")
     private Integer stockDisponible;
+    
+    // El JSON y el resto del código siguen trabajando con el precio en pesos
+    public Double getPrecio() {
+        return precioCentavos != null ? Dinero.aPesos(precioCentavos) : null;
+    }
+    
+    public void setPrecio(Double precio) {
+        this.precioCentavos = precio != null ? Dinero.aCentavos(precio) : null;
+    }
 }
@@ -1,9 +1,42 @@
 package com.hrk.tienda_b2b.repository;
 
 import com.hrk.tienda_b2b.model.ProductoVariante;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+
 @Repository
 public interface ProductoVarianteRepository extends JpaRepository<ProductoVariante, Long> {
+    
+    // No coincide con ninguna tabla mapeada, así que Hibernate no invalida nada por su cuenta
+    // (por eso no hay consultas cacheadas sobre variantes: no se enterarían del cambio de stock)
+    String ESPACIO_STOCK = "stock_variantes";
+    
+    // Resuelve todas las variantes de un pedido en una sola consulta (con su producto)
+    @Query("SELECT v FROM ProductoVariante v JOIN FETCH v.producto WHERE v.id IN :ids")
+    List<ProductoVariante> findAllConProductoByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Descuento atómico: devuelve 0 si no hay stock suficiente (ver ReservaStockService).
+    // Nativos con un espacio de sincronización propio: un UPDATE masivo JPQL vaciaría toda la región
+    // "variantes" del cache de segundo nivel; así ReservaStockService saca solo las variantes tocadas
+    @Modifying
+    @Query(value = "UPDATE producto_variantes SET stock_disponible = stock_disponible - :cantidad " +
+                   "WHERE id = :id AND stock_disponible >= :cantidad", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = ESPACIO_STOCK))
+    int descontarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+    
+    @Modifying
+    @Query(value = "UPDATE producto_variantes SET stock_disponible = stock_disponible + :cantidad WHERE id = :id",
+           nativeQuery = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = ESPACIO_STOCK))
+    int devolverStock(@Param("id") Long id, @Param("cantidad") int cantidad);
 }
@@ -0,0 +1,69 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Regla de la lista de precios mayorista. clienteId null = vale para todos los clientes.
+ * Según el alcance se completa uno solo de varianteId, productoId, categoria o tipo (ninguno para TODOS).
+ * cantidadMinima arma los escalones por volumen: la regla aplica a líneas de esa cantidad o más.
+ *
+ * Las reglas no se leen al tomar pedidos: MotorPrecios las compila en una tabla en memoria.
+ */
+@Entity
+@Table(name = "reglas_precio", indexes = @Index(name = "idx_reglas_precio_cliente", columnList = "cliente_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReglaPrecio {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "cliente_id")
+    private Long clienteId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "alcance", nullable = false, length = 20)
+    private AlcanceReglaPrecio alcance;
+    
+    @Column(name = "variante_id")
+    private Long varianteId;
+    
+    @Column(name = "producto_id")
+    private Long productoId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "categoria", length = 30)
+    private Categoria categoria;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", length = 30)
+    private TipoProducto tipo;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_regla", nullable = false, length = 30)
+    private TipoReglaPrecio tipoRegla;
+    
+    // PRECIO_FIJO
+    @Column(name = "precio_centavos")
+    private Long precioCentavos;
+    
+    // DESCUENTO_PORCENTAJE, en centésimos de punto: 1250 = 12,50 %
+    @Column(name = "descuento_puntos_basicos")
+    private Integer descuentoPuntosBasicos;
+    
+    @Column(name = "cantidad_minima", nullable = false)
+    private Integer cantidadMinima = 1;
+    
+    @Column(name = "activa", nullable = false)
+    private Boolean activa = true;
+    
+    @Column(name = "actualizada_en", nullable = false)
+    private LocalDateTime actualizadaEn;
+}
@@ -0,0 +1,52 @@
+package com.hrk.tienda_b2b.dto;
+
+import com.hrk.tienda_b2b.model.AlcanceReglaPrecio;
+import com.hrk.tienda_b2b.model.Categoria;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.ReglaPrecio;
+import com.hrk.tienda_b2b.model.TipoProducto;
+import com.hrk.tienda_b2b.model.TipoReglaPrecio;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Regla de precio tal como la ve la API: precio en pesos y descuento en porcentaje (12.5 = 12,5 %)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReglaPrecioDTO {
+    
+    private Long id;
+    private Long clienteId;
+    private AlcanceReglaPrecio alcance;
+    private Long varianteId;
+    private Long productoId;
+    private Categoria categoria;
+    private TipoProducto tipo;
+    private TipoReglaPrecio tipoRegla;
+    private Double precio;
+    private Double descuentoPorcentaje;
+    private Integer cantidadMinima;
+    private Boolean activa;
+    private LocalDateTime actualizadaEn;
+    
+    public static ReglaPrecioDTO fromEntity(ReglaPrecio regla) {
+        ReglaPrecioDTO dto = new ReglaPrecioDTO();
+        dto.setId(regla.getId());
+        dto.setClienteId(regla.getClienteId());
+        dto.setAlcance(regla.getAlcance());
+        dto.setVarianteId(regla.getVarianteId());
+        dto.setProductoId(regla.getProductoId());
+        dto.setCategoria(regla.getCategoria());
+        dto.setTipo(regla.getTipo());
+        dto.setTipoRegla(regla.getTipoRegla());
+        dto.setPrecio(regla.getPrecioCentavos() != null ? Dinero.aPesos(regla.getPrecioCentavos()) : null);
+        dto.setDescuentoPorcentaje(regla.getDescuentoPuntosBasicos() != null ? regla.getDescuentoPuntosBasicos() / 100.0 : null);
+        dto.setCantidadMinima(regla.getCantidadMinima());
+        dto.setActiva(regla.getActiva());
+        dto.setActualizadaEn(regla.getActualizadaEn());
+        return dto;
+    }
+}
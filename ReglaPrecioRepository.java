@@ -0,0 +1,17 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.ReglaPrecio;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReglaPrecioRepository extends JpaRepository<ReglaPrecio, Long> {
+    
+    List<ReglaPrecio> findByActivaTrue();
+    
+    List<ReglaPrecio> findByClienteIdOrderByIdAsc(Long clienteId);
+    
+    List<ReglaPrecio> findAllByOrderByIdAsc();
+}
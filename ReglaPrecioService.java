@@ -0,0 +1,149 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.ReglaPrecioDTO;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.model.ReglaPrecio;
+import com.hrk.tienda_b2b.model.TipoReglaPrecio;
+import com.hrk.tienda_b2b.repository.ProductoRepository;
+import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
+import com.hrk.tienda_b2b.repository.ReglaPrecioRepository;
+import com.hrk.tienda_b2b.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Alta, baja y modificación de reglas de precio. Cada cambio recompila la tabla de MotorPrecios después del commit
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class ReglaPrecioService {
+
+    private final ReglaPrecioRepository reglaPrecioRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final ProductoRepository productoRepository;
+    private final ProductoVarianteRepository productoVarianteRepository;
+    private final ApplicationEventPublisher publisher;
+    private final MotorPrecios motorPrecios;
+
+    @Transactional(readOnly = true)
+    public List<ReglaPrecioDTO> listar(Long clienteId) {
+        List<ReglaPrecio> reglas = clienteId != null
+                ? reglaPrecioRepository.findByClienteIdOrderByIdAsc(clienteId)
+                : reglaPrecioRepository.findAllByOrderByIdAsc();
+        return reglas.stream().map(ReglaPrecioDTO::fromEntity).toList();
+    }
+
+    // Precio que se cobraría hoy a un cliente por una variante y cantidad (para revisar las reglas cargadas)
+    @Transactional(readOnly = true)
+    public MotorPrecios.PrecioResuelto cotizar(Long clienteId, Long varianteId, int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+        }
+        ProductoVariante variante = productoVarianteRepository.findAllConProductoByIdIn(List.of(varianteId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new NoSuchElementException("Variante no encontrada con ID: " + varianteId));
+        return motorPrecios.resolver(clienteId, variante, cantidad);
+    }
+
+    public ReglaPrecioDTO crear(ReglaPrecioDTO dto) {
+        ReglaPrecio regla = new ReglaPrecio();
+        copiar(dto, regla);
+        ReglaPrecio guardada = reglaPrecioRepository.save(regla);
+        log.info("Regla de precio {} creada: cliente {}, {} {}", guardada.getId(), guardada.getClienteId(),
+                guardada.getAlcance(), guardada.getTipoRegla());
+        publisher.publishEvent(new ReglasPrecioModificadasEvent(guardada.getId()));
+        return ReglaPrecioDTO.fromEntity(guardada);
+    }
+
+    public ReglaPrecioDTO actualizar(Long id, ReglaPrecioDTO dto) {
+        ReglaPrecio regla = reglaPrecioRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Regla de precio no encontrada con ID: " + id));
+        copiar(dto, regla);
+        publisher.publishEvent(new ReglasPrecioModificadasEvent(id));
+        return ReglaPrecioDTO.fromEntity(regla);
+    }
+
+    public void eliminar(Long id) {
+        if (!reglaPrecioRepository.existsById(id)) {
+            throw new NoSuchElementException("Regla de precio no encontrada con ID: " + id);
+        }
+        reglaPrecioRepository.deleteById(id);
+        log.info("Regla de precio {} eliminada", id);
+        publisher.publishEvent(new ReglasPrecioModificadasEvent(id));
+    }
+
+    // Valida y copia; los campos que no corresponden al alcance o al tipo de regla quedan en null
+    private void copiar(ReglaPrecioDTO dto, ReglaPrecio regla) {
+        if (dto.getAlcance() == null || dto.getTipoRegla() == null) {
+            throw new IllegalArgumentException("alcance y tipoRegla son obligatorios");
+        }
+        if (dto.getClienteId() != null && !usuarioRepository.existsById(dto.getClienteId())) {
+            throw new IllegalArgumentException("Cliente no encontrado con ID: " + dto.getClienteId());
+        }
+        int cantidadMinima = dto.getCantidadMinima() != null ? dto.getCantidadMinima() : 1;
+        if (cantidadMinima < 1) {
+            throw new IllegalArgumentException("cantidadMinima debe ser 1 o más");
+        }
+
+        regla.setClienteId(dto.getClienteId());
+        regla.setAlcance(dto.getAlcance());
+        regla.setVarianteId(null);
+        regla.setProductoId(null);
+        regla.setCategoria(null);
+        regla.setTipo(null);
+        switch (dto.getAlcance()) {
+            case VARIANTE -> {
+                if (dto.getVarianteId() == null || !productoVarianteRepository.existsById(dto.getVarianteId())) {
+                    throw new IllegalArgumentException("Variante no encontrada con ID: " + dto.getVarianteId());
+                }
+                regla.setVarianteId(dto.getVarianteId());
+            }
+            case PRODUCTO -> {
+                if (dto.getProductoId() == null || !productoRepository.existsById(dto.getProductoId())) {
+                    throw new IllegalArgumentException("Producto no encontrado con ID: " + dto.getProductoId());
+                }
+                regla.setProductoId(dto.getProductoId());
+            }
+            case CATEGORIA -> {
+                if (dto.getCategoria() == null) {
+                    throw new IllegalArgumentException("categoria es obligatoria para alcance CATEGORIA");
+                }
+                regla.setCategoria(dto.getCategoria());
+            }
+            case TIPO -> {
+                if (dto.getTipo() == null) {
+                    throw new IllegalArgumentException("tipo es obligatorio para alcance TIPO");
+                }
+                regla.setTipo(dto.getTipo());
+            }
+            case TODOS -> {
+            }
+        }
+
+        regla.setTipoRegla(dto.getTipoRegla());
+        if (dto.getTipoRegla() == TipoReglaPrecio.PRECIO_FIJO) {
+            if (dto.getPrecio() == null || dto.getPrecio() <= 0) {
+                throw new IllegalArgumentException("precio debe ser mayor a 0 para PRECIO_FIJO");
+            }
+            regla.setPrecioCentavos(Dinero.aCentavos(dto.getPrecio()));
+            regla.setDescuentoPuntosBasicos(null);
+        } else {
+            if (dto.getDescuentoPorcentaje() == null || dto.getDescuentoPorcentaje() <= 0 || dto.getDescuentoPorcentaje() >= 100) {
+                throw new IllegalArgumentException("descuentoPorcentaje debe estar entre 0 y 100");
+            }
+            regla.setDescuentoPuntosBasicos((int) Math.round(dto.getDescuentoPorcentaje() * 100));
+            regla.setPrecioCentavos(null);
+        }
+        regla.setCantidadMinima(cantidadMinima);
+        regla.setActiva(dto.getActiva() == null || dto.getActiva());
+        regla.setActualizadaEn(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,18 @@
+package com.hrk.tienda_b2b.service;
+
+/**
+ * Se publica al crear, modificar o borrar una regla de precio.
+ * MotorPrecios lo escucha después del commit y recompila la tabla de precios.
+ */
+public class ReglasPrecioModificadasEvent {
+    
+    private final Long reglaId;
+    
+    public ReglasPrecioModificadasEvent(Long reglaId) {
+        this.reglaId = reglaId;
+    }
+    
+    public Long getReglaId() {
+        return reglaId;
+    }
+}
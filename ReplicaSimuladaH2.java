@@ -0,0 +1,82 @@
+package com.hrk.tienda_b2b.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Perfil "dos-bases": hace de replicación entre las dos H2 en memoria. Al arrancar copia el esquema de la
+ * primaria a la réplica y después, cada hrk.datasource.replica.simulada.intervalo-ms, vuelve a copiar los
+ * datos en una sola transacción (las lecturas ven la copia anterior hasta el commit).
+ * El intervalo hace de retraso de replicación: sirve para ver la ventana de lectura propia en acción.
+ * Deja la hora de la última copia en replica_estado para que DataSourceRuteado mida el retraso.
+ */
+@Slf4j
+@Component
+@Profile("dos-bases")
+public class ReplicaSimuladaH2 {
+
+    private final JdbcTemplate primaria;
+    private final JdbcTemplate replica;
+    private final TransactionTemplate transaccionReplica;
+    private volatile boolean esquemaCopiado;
+
+    public ReplicaSimuladaH2(@Qualifier("dataSourcePrimaria") DataSource primaria,
+                             @Qualifier("dataSourceReplica") DataSource replica) {
+        this.primaria = new JdbcTemplate(primaria);
+        this.replica = new JdbcTemplate(replica);
+        this.transaccionReplica = new TransactionTemplate(new DataSourceTransactionManager(replica));
+        // Existe desde antes de la primera copia: hasta entonces la medición da "sin filas" y se lee de la primaria
+        this.replica.execute("CREATE TABLE IF NOT EXISTS replica_estado (id INT PRIMARY KEY, copiada_en TIMESTAMP)");
+    }
+
+    // Hibernate crea las tablas en la primaria antes de ApplicationReadyEvent
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void copiarEsquema() {
+        List<String> esquema = primaria.queryForList("SCRIPT NODATA", String.class);
+        for (String sentencia : esquema) {
+            // Se saltean los comentarios con conteos de filas y el usuario, que la réplica ya tiene
+            if (!sentencia.startsWith("--") && !sentencia.startsWith("CREATE USER")) {
+                replica.execute(sentencia);
+            }
+        }
+        // En H2 cambiar este SET confirma la transacción en curso: se apaga una vez y la copia borra
+        // e inserta las tablas en cualquier orden
+        replica.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        esquemaCopiado = true;
+        copiarDatos();
+    }
+
+    @Scheduled(fixedDelayString = "${hrk.datasource.replica.simulada.intervalo-ms:3000}")
+    public synchronized void copiarDatos() {
+        if (!esquemaCopiado) {
+            return;
+        }
+        List<String> tablas = primaria.queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE UPPER(table_schema) = 'PUBLIC' AND table_type IN ('BASE TABLE', 'TABLE')",
+                String.class);
+        List<String> datos = primaria.queryForList("SCRIPT SIMPLE", String.class).stream()
+                .filter(sentencia -> sentencia.startsWith("INSERT INTO"))
+                .toList();
+        transaccionReplica.executeWithoutResult(status -> {
+            for (String tabla : tablas) {
+                replica.execute("DELETE FROM \"" + tabla + "\"");
+            }
+            for (String sentencia : datos) {
+                replica.execute(sentencia);
+            }
+            replica.update("MERGE INTO replica_estado KEY (id) VALUES (1, CURRENT_TIMESTAMP)");
+        });
+        log.debug("Réplica simulada actualizada: {} tablas, {} sentencias", tablas.size(), datos.size());
+    }
+}
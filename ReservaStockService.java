@@ -0,0 +1,125 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.PedidoDetalle;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reserva de stock de las líneas de pedido.
+ *
+ * Reservar descuenta stockDisponible con un UPDATE condicional (stock >= cantidad) sobre la fila
+ * de la variante: la base lo resuelve con un lock de fila, sin leer-modificar-guardar, así que dos
+ * checkouts concurrentes nunca venden la misma unidad. Si alguna línea no alcanza se lanza
+ * StockInsuficienteException y el rollback de la transacción devuelve lo ya descontado.
+ *
+ * Liberar (baja de línea, cancelación o vencimiento del borrador) devuelve las unidades.
+ * Confirmar el pedido no mueve stock: la reserva pasa a ser el descuento definitivo.
+ *
+ * Cada variante tocada se saca del cache de segundo nivel en el momento y otra vez después del
+ * commit, por si un lector concurrente la volvió a cargar con el stock anterior mientras tanto.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class ReservaStockService {
+    
+    private final ProductoVarianteRepository productoVarianteRepository;
+    private final ApplicationEventPublisher publisher;
+    private final EntityManagerFactory entityManagerFactory;
+    
+    public void reservar(List<PedidoDetalle> lineas) {
+        boolean huboCambios = false;
+        // Siempre en el mismo orden (por variante) para que dos pedidos con las mismas variantes no se bloqueen mutuamente
+        for (PedidoDetalle linea : ordenadasPorVariante(lineas)) {
+            if (Boolean.TRUE.equals(linea.getStockReservado())) {
+                continue;
+            }
+            descontar(linea.getVariante().getId(), linea.getCantidad());
+            linea.setStockReservado(true);
+            huboCambios = true;
+        }
+        if (huboCambios) {
+            publisher.publishEvent(new CatalogoModificadoEvent("reserva de stock"));
+        }
+    }
+    
+    public void liberar(List<PedidoDetalle> lineas) {
+        boolean huboCambios = false;
+        for (PedidoDetalle linea : ordenadasPorVariante(lineas)) {
+            if (!Boolean.TRUE.equals(linea.getStockReservado())) {
+                continue;
+            }
+            devolver(linea.getVariante().getId(), linea.getCantidad());
+            linea.setStockReservado(false);
+            huboCambios = true;
+        }
+        if (huboCambios) {
+            publisher.publishEvent(new CatalogoModificadoEvent("liberación de stock"));
+        }
+    }
+    
+    // Cambio de cantidad de una línea ya reservada: solo se mueve la diferencia
+    public void ajustar(PedidoDetalle linea, int cantidadNueva) {
+        if (!Boolean.TRUE.equals(linea.getStockReservado())) {
+            return;
+        }
+        int diferencia = cantidadNueva - linea.getCantidad();
+        if (diferencia > 0) {
+            descontar(linea.getVariante().getId(), diferencia);
+        } else if (diferencia < 0) {
+            devolver(linea.getVariante().getId(), -diferencia);
+        }
+        if (diferencia != 0) {
+            publisher.publishEvent(new CatalogoModificadoEvent("ajuste de stock"));
+        }
+    }
+    
+    private void descontar(Long varianteId, int cantidad) {
+        validarCantidad(varianteId, cantidad);
+        if (productoVarianteRepository.descontarStock(varianteId, cantidad) == 0) {
+            throw new StockInsuficienteException(varianteId, cantidad);
+        }
+        sacarDelCache(varianteId);
+    }
+    
+    private void devolver(Long varianteId, int cantidad) {
+        validarCantidad(varianteId, cantidad);
+        productoVarianteRepository.devolverStock(varianteId, cantidad);
+        sacarDelCache(varianteId);
+    }
+    
+    // Con una cantidad negativa el UPDATE condicional pasaría y la reserva sumaría stock en lugar de restarlo
+    private static void validarCantidad(Long varianteId, int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("Cantidad inválida para mover stock de la variante " + varianteId + ": " + cantidad);
+        }
+    }
+    
+    private void sacarDelCache(Long varianteId) {
+        entityManagerFactory.getCache().evict(ProductoVariante.class, varianteId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    entityManagerFactory.getCache().evict(ProductoVariante.class, varianteId);
+                }
+            });
+        }
+    }
+    
+    private static List<PedidoDetalle> ordenadasPorVariante(List<PedidoDetalle> lineas) {
+        return lineas.stream()
+                .sorted(Comparator.comparing(linea -> linea.getVariante().getId()))
+                .toList();
+    }
+}
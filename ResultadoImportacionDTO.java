@@ -0,0 +1,40 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoImportacionDTO {
+    
+    private boolean soloValidacion;
+    private long filasLeidas;
+    // Variantes insertadas o actualizadas (en soloValidacion: las que se habrían importado)
+    private long filasImportadas;
+    private long productosCreados;
+    private long lotes;
+    private long totalErrores;
+    // Detalle de errores, hasta hrk.importacion.max-errores (totalErrores los cuenta a todos)
+    private List<ErrorFila> errores = new ArrayList<>();
+    private long milisegundos;
+    // Lectura cortada a mitad de archivo (conexión caída, archivo truncado): lo de filasImportadas ya quedó
+    // guardado y filaInterrupcion es el primer registro que no se llegó a leer
+    private boolean interrumpida;
+    private Long filaInterrupcion;
+    private String errorLectura;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ErrorFila {
+        // Número de registro en el archivo (1 = primer dato, sin contar el encabezado CSV)
+        private long fila;
+        private String sku;
+        private String mensaje;
+    }
+}
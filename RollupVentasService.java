@@ -0,0 +1,292 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.SerieVentasDTO;
+import com.hrk.tienda_b2b.dto.VentaAgregadaDTO;
+import com.hrk.tienda_b2b.model.DimensionVenta;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.VentaDiaria;
+import com.hrk.tienda_b2b.repository.VentaDiariaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Rollup de ventas por día: unidades, ingresos y pedidos para el total y por cliente, producto,
+ * variante y categoría (tabla ventas_diarias).
+ *
+ * - Incremental: ManejadorRollupVentas llama a sincronizarPedido desde la outbox cada vez que un pedido
+ *   entra o sale de un estado que cuenta como venta. Se suma o se resta solo lo de ese pedido.
+ * - Reconstrucción: reconstruir(desde, hasta) borra los días del rango y los vuelve a calcular desde
+ *   pedidos y detalles (carga inicial o corrección).
+ * - Consultas: una serie lee una fila por día del rango y una clave, sin importar cuántos pedidos hubo.
+ *
+ * Las dos escrituras bloquean primero la fila del pedido (SELECT ... FOR UPDATE), así que una
+ * reconstrucción y el evento de un pedido del mismo rango no pueden sumar el mismo pedido dos veces.
+ */
+@Slf4j
+@Service
+public class RollupVentasService {
+
+    public static final String CLAVE_TOTAL = "*";
+
+    private static final String UPSERT =
+            "INSERT INTO ventas_diarias (dimension, clave, dia, unidades, ingresos_centavos, pedidos) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE unidades = unidades + VALUES(unidades), " +
+            "ingresos_centavos = ingresos_centavos + VALUES(ingresos_centavos), pedidos = pedidos + VALUES(pedidos)";
+
+    // Líneas del pedido agrupadas por variante, con su producto y categoría
+    private static final String LINEAS_PEDIDO =
+            "SELECT d.variante_id, v.producto_id, pr.categoria, SUM(d.cantidad) AS unidades, " +
+            "SUM(d.cantidad * d.precio_unitario_centavos) AS ingresos " +
+            "FROM pedido_detalles d JOIN producto_variantes v ON v.id = d.variante_id " +
+            "JOIN productos pr ON pr.id = v.producto_id " +
+            "WHERE d.pedido_id = ? GROUP BY d.variante_id, v.producto_id, pr.categoria";
+
+    private static final String ESTADOS_VENTA = Arrays.stream(EstadoPedido.values())
+            .filter(EstadoPedido::cuentaComoVenta)
+            .map(e -> "'" + e.name() + "'")
+            .collect(Collectors.joining(", "));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VentaDiariaRepository ventaDiariaRepository;
+    private final ArchivoPedidosService archivoPedidosService;
+    private final int maxDiasReconstruccion;
+    private final int maxDiasConsulta;
+
+    public RollupVentasService(JdbcTemplate jdbcTemplate,
+                               VentaDiariaRepository ventaDiariaRepository,
+                               ArchivoPedidosService archivoPedidosService,
+                               @Value("${hrk.ventas.reconstruccion.max-dias:31}") int maxDiasReconstruccion,
+                               @Value("${hrk.ventas.consulta.max-dias:1830}") int maxDiasConsulta) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ventaDiariaRepository = ventaDiariaRepository;
+        this.archivoPedidosService = archivoPedidosService;
+        this.maxDiasReconstruccion = maxDiasReconstruccion;
+        this.maxDiasConsulta = maxDiasConsulta;
+    }
+
+    public enum Granularidad { DIA, SEMANA, MES }
+
+    // Clave de una fila del rollup; ordenada para que todos los UPSERT tomen los locks en el mismo orden
+    private record Fila(DimensionVenta dimension, String clave) implements Comparable<Fila> {
+        @Override
+        public int compareTo(Fila otra) {
+            int porDimension = dimension.compareTo(otra.dimension);
+            return porDimension != 0 ? porDimension : clave.compareTo(otra.clave);
+        }
+    }
+
+    private record EstadoActual(EstadoPedido estado, LocalDate dia, long clienteId) {
+    }
+
+    /**
+     * Deja el rollup de acuerdo con el estado actual del pedido: si cuenta como venta y todavía no está
+     * sumado, lo suma; si ya no cuenta y estaba sumado, lo resta del mismo día en que se sumó.
+     * En cualquier otro caso no hace nada. Corre dentro de la transacción del despachador.
+     */
+    public void sincronizarPedido(Long pedidoId) {
+        List<EstadoActual> pedido = jdbcTemplate.query(
+                "SELECT estado, fecha, cliente_id FROM pedidos WHERE id = ? FOR UPDATE",
+                (rs, i) -> new EstadoActual(EstadoPedido.valueOf(rs.getString("estado")),
+                        rs.getTimestamp("fecha").toLocalDateTime().toLocalDate(), rs.getLong("cliente_id")),
+                pedidoId);
+        if (pedido.isEmpty()) {
+            return;
+        }
+        EstadoActual actual = pedido.get(0);
+        boolean cuenta = actual.estado().cuentaComoVenta();
+        List<LocalDate> contado = jdbcTemplate.query(
+                "SELECT dia FROM ventas_pedidos_contados WHERE pedido_id = ?",
+                (rs, i) -> rs.getDate("dia").toLocalDate(), pedidoId);
+
+        if (cuenta && contado.isEmpty()) {
+            LocalDate dia = actual.dia();
+            aplicar(pedidoId, actual.clienteId(), dia, 1);
+            jdbcTemplate.update("INSERT INTO ventas_pedidos_contados (pedido_id, dia) VALUES (?, ?)",
+                    pedidoId, Date.valueOf(dia));
+            log.debug("Pedido {} sumado a las ventas del {}", pedidoId, dia);
+        } else if (!cuenta && !contado.isEmpty()) {
+            aplicar(pedidoId, actual.clienteId(), contado.get(0), -1);
+            jdbcTemplate.update("DELETE FROM ventas_pedidos_contados WHERE pedido_id = ?", pedidoId);
+            log.debug("Pedido {} restado de las ventas del {}", pedidoId, contado.get(0));
+        }
+    }
+
+    private void aplicar(Long pedidoId, long clienteId, LocalDate dia, int signo) {
+        Map<Fila, long[]> filas = new TreeMap<>();
+        jdbcTemplate.query(LINEAS_PEDIDO, rs -> {
+            long unidades = rs.getLong("unidades");
+            long ingresos = rs.getLong("ingresos");
+            sumar(filas, DimensionVenta.VARIANTE, Long.toString(rs.getLong("variante_id")), unidades, ingresos);
+            sumar(filas, DimensionVenta.PRODUCTO, Long.toString(rs.getLong("producto_id")), unidades, ingresos);
+            sumar(filas, DimensionVenta.CATEGORIA, rs.getString("categoria"), unidades, ingresos);
+            sumar(filas, DimensionVenta.CLIENTE, Long.toString(clienteId), unidades, ingresos);
+            sumar(filas, DimensionVenta.TOTAL, CLAVE_TOTAL, unidades, ingresos);
+        }, pedidoId);
+
+        // Cada fila suma 1 pedido aunque el pedido tenga varias líneas con esa clave
+        List<Object[]> parametros = new ArrayList<>(filas.size());
+        Date fecha = Date.valueOf(dia);
+        for (Map.Entry<Fila, long[]> fila : filas.entrySet()) {
+            parametros.add(new Object[]{fila.getKey().dimension().name(), fila.getKey().clave(), fecha,
+                    signo * fila.getValue()[0], signo * fila.getValue()[1], (long) signo});
+        }
+        jdbcTemplate.batchUpdate(UPSERT, parametros);
+    }
+
+    private static void sumar(Map<Fila, long[]> filas, DimensionVenta dimension, String clave, long unidades, long ingresos) {
+        long[] acumulado = filas.computeIfAbsent(new Fila(dimension, clave), f -> new long[2]);
+        acumulado[0] += unidades;
+        acumulado[1] += ingresos;
+    }
+
+    /**
+     * Recalcula los días [desde, hasta] desde cero. Mientras corre quedan bloqueados los pedidos del
+     * rango (sus cambios de estado esperan), por eso el rango está limitado a max-dias.
+     * No acepta rangos con pedidos archivados: sus líneas ya no están en pedido_detalles y el día
+     * quedaría sin esas ventas.
+     */
+    @Transactional
+    public Map<String, Object> reconstruir(LocalDate desde, LocalDate hasta) {
+        validarRango(desde, hasta, maxDiasReconstruccion);
+        Timestamp inicio = Timestamp.valueOf(desde.atStartOfDay());
+        Timestamp fin = Timestamp.valueOf(hasta.plusDays(1).atStartOfDay());
+        if (archivoPedidosService.hayArchivadosEntre(inicio.toLocalDateTime(), fin.toLocalDateTime())) {
+            throw new IllegalArgumentException("El rango tiene pedidos archivados: no se puede reconstruir desde pedidos");
+        }
+        Date diaDesde = Date.valueOf(desde);
+        Date diaHasta = Date.valueOf(hasta);
+
+        jdbcTemplate.queryForList("SELECT id FROM pedidos WHERE fecha >= ? AND fecha < ? FOR UPDATE", Long.class, inicio, fin);
+        jdbcTemplate.update("DELETE FROM ventas_diarias WHERE dia BETWEEN ? AND ?", diaDesde, diaHasta);
+        jdbcTemplate.update("DELETE FROM ventas_pedidos_contados WHERE dia BETWEEN ? AND ?", diaDesde, diaHasta);
+        int pedidos = jdbcTemplate.update(
+                "INSERT INTO ventas_pedidos_contados (pedido_id, dia) " +
+                "SELECT id, CAST(fecha AS DATE) FROM pedidos WHERE fecha >= ? AND fecha < ? AND estado IN (" + ESTADOS_VENTA + ")",
+                inicio, fin);
+
+        int filas = 0;
+        for (DimensionVenta dimension : DimensionVenta.values()) {
+            String clave = columnaClave(dimension);
+            filas += jdbcTemplate.update(
+                    "INSERT INTO ventas_diarias (dimension, clave, dia, unidades, ingresos_centavos, pedidos) " +
+                    "SELECT '" + dimension.name() + "', " + clave + ", c.dia, SUM(d.cantidad), " +
+                    "SUM(d.cantidad * d.precio_unitario_centavos), COUNT(DISTINCT p.id) " +
+                    "FROM ventas_pedidos_contados c JOIN pedidos p ON p.id = c.pedido_id " +
+                    "JOIN pedido_detalles d ON d.pedido_id = p.id " +
+                    "JOIN producto_variantes v ON v.id = d.variante_id JOIN productos pr ON pr.id = v.producto_id " +
+                    "WHERE c.dia BETWEEN ? AND ? GROUP BY " + clave + ", c.dia",
+                    diaDesde, diaHasta);
+        }
+
+        log.info("Rollup de ventas reconstruido del {} al {}: {} pedidos, {} filas", desde, hasta, pedidos, filas);
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("desde", desde.toString());
+        resultado.put("hasta", hasta.toString());
+        resultado.put("pedidosContados", pedidos);
+        resultado.put("filas", filas);
+        return resultado;
+    }
+
+    private static String columnaClave(DimensionVenta dimension) {
+        return switch (dimension) {
+            case TOTAL -> "'" + CLAVE_TOTAL + "'";
+            // CONCAT convierte el id a texto igual en MySQL y en H2 (perfil carga)
+            case CLIENTE -> "CONCAT(p.cliente_id, '')";
+            case PRODUCTO -> "CONCAT(v.producto_id, '')";
+            case VARIANTE -> "CONCAT(d.variante_id, '')";
+            case CATEGORIA -> "pr.categoria";
+        };
+    }
+
+    /**
+     * Serie de una clave entre dos días, agrupada por día, semana o mes.
+     * Lee como mucho una fila por día del rango; los períodos sin ventas vuelven en cero.
+     */
+    @Transactional(readOnly = true)
+    public SerieVentasDTO serie(DimensionVenta dimension, String clave, LocalDate desde, LocalDate hasta,
+                                Granularidad granularidad) {
+        validarRango(desde, hasta, maxDiasConsulta);
+        String claveSerie = dimension == DimensionVenta.TOTAL ? CLAVE_TOTAL : clave;
+        if (claveSerie == null || claveSerie.isBlank()) {
+            throw new IllegalArgumentException("Falta la clave para la dimensión " + dimension);
+        }
+
+        Map<LocalDate, long[]> periodos = new TreeMap<>();
+        for (LocalDate inicio = inicioPeriodo(desde, granularidad); !inicio.isAfter(hasta); inicio = siguiente(inicio, granularidad)) {
+            periodos.put(inicio, new long[3]);
+        }
+        long[] total = new long[3];
+        for (VentaDiaria dia : ventaDiariaRepository.findByDimensionAndClaveAndDiaBetweenOrderByDia(
+                dimension, claveSerie, desde, hasta)) {
+            long[] periodo = periodos.get(inicioPeriodo(dia.getDia(), granularidad));
+            periodo[0] += dia.getUnidades();
+            periodo[1] += dia.getIngresosCentavos();
+            periodo[2] += dia.getPedidos();
+            total[0] += dia.getUnidades();
+            total[1] += dia.getIngresosCentavos();
+            total[2] += dia.getPedidos();
+        }
+
+        List<VentaAgregadaDTO> lista = new ArrayList<>(periodos.size());
+        periodos.forEach((inicio, v) -> lista.add(new VentaAgregadaDTO(inicio.toString(), v[0], v[1], v[2])));
+        return new SerieVentasDTO(dimension.name(), claveSerie, desde.toString(), hasta.toString(), granularidad.name(),
+                lista, new VentaAgregadaDTO("total", total[0], total[1], total[2]));
+    }
+
+    // Las claves de una dimensión con más ingresos (o unidades) en el rango
+    @Transactional(readOnly = true)
+    public List<VentaAgregadaDTO> ranking(DimensionVenta dimension, LocalDate desde, LocalDate hasta,
+                                          boolean porUnidades, int limite) {
+        validarRango(desde, hasta, maxDiasConsulta);
+        if (limite < 1 || limite > 100) {
+            throw new IllegalArgumentException("limite debe estar entre 1 y 100");
+        }
+        PageRequest primeros = PageRequest.of(0, limite);
+        return porUnidades
+                ? ventaDiariaRepository.rankingPorUnidades(dimension, desde, hasta, primeros)
+                : ventaDiariaRepository.rankingPorIngresos(dimension, desde, hasta, primeros);
+    }
+
+    private static LocalDate inicioPeriodo(LocalDate dia, Granularidad granularidad) {
+        return switch (granularidad) {
+            case DIA -> dia;
+            case SEMANA -> dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MES -> dia.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate siguiente(LocalDate inicio, Granularidad granularidad) {
+        return switch (granularidad) {
+            case DIA -> inicio.plusDays(1);
+            case SEMANA -> inicio.plusWeeks(1);
+            case MES -> inicio.plusMonths(1);
+        };
+    }
+
+    private static void validarRango(LocalDate desde, LocalDate hasta, int maxDias) {
+        if (desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("desde es posterior a hasta");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) >= maxDias) {
+            throw new IllegalArgumentException("El rango no puede superar " + maxDias + " días");
+        }
+    }
+}
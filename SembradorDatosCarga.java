@@ -0,0 +1,94 @@
+package com.hrk.tienda_b2b.config;
+
+import com.hrk.tienda_b2b.model.*;
+import com.hrk.tienda_b2b.repository.ProductoRepository;
+import com.hrk.tienda_b2b.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perfil "carga": siembra usuarios, productos y variantes en la base embebida al arrancar.
+ * Los IDs quedan consecutivos desde 1 (usuarios 1..N, variantes 1..M) para que el script de carga
+ * pueda elegirlos sin consultar la API. El stock es alto para que la prueba no se corte por falta de stock.
+ */
+@Slf4j
+@Component
+@Profile("carga")
+@RequiredArgsConstructor
+public class SembradorDatosCarga {
+    
+    private static final String[] COLORES = {"Negro", "Blanco", "Gris", "Azul", "Verde", "Bordo"};
+    private static final String[] TALLES = {"XS", "S", "M", "L", "XL", "XXL"};
+    
+    private final UsuarioRepository usuarioRepository;
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${hrk.carga.usuarios:200}")
+    private int usuarios;
+    
+    @Value("${hrk.carga.productos:300}")
+    private int productos;
+    
+    @Value("${hrk.carga.variantes-por-producto:6}")
+    private int variantesPorProducto;
+    
+    @Value("${hrk.carga.stock-por-variante:1000000}")
+    private int stockPorVariante;
+    
+    // Antes que el armado del catálogo en memoria, para que el primer snapshot ya tenga los productos
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void sembrar() {
+        if (usuarioRepository.count() > 0) {
+            return;
+        }
+        long inicio = System.currentTimeMillis();
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Usuario> lista = new ArrayList<>(usuarios);
+            for (int i = 1; i <= usuarios; i++) {
+                Usuario usuario = new Usuario();
+                usuario.setNombreRazonSocial("Cliente de prueba " + i);
+                usuario.setEmail("cliente" + i + "@carga.local");
+                usuario.setTipoUsuario(TipoUsuario.CLIENTE);
+                lista.add(usuario);
+            }
+            usuarioRepository.saveAll(lista);
+        });
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            TipoProducto[] tipos = TipoProducto.values();
+            Categoria[] categorias = Categoria.values();
+            List<Producto> lista = new ArrayList<>(productos);
+            for (int i = 1; i <= productos; i++) {
+                Producto producto = new Producto("Producto de prueba " + i, "Sembrado para pruebas de carga",
+                        tipos[i % tipos.length], categorias[i % categorias.length]);
+                for (int v = 0; v < variantesPorProducto; v++) {
+                    ProductoVariante variante = new ProductoVariante();
+                    variante.setSku("CARGA-" + i + "-" + v);
+                    variante.setColor(COLORES[v % COLORES.length]);
+                    variante.setTalle(TALLES[v % TALLES.length]);
+                    variante.setPrecioCentavos(100_000L + (i % 50) * 2_500L);
+                    variante.setStockDisponible(stockPorVariante);
+                    producto.addVariante(variante);
+                }
+                lista.add(producto);
+            }
+            productoRepository.saveAll(lista);
+        });
+        
+        log.info("Datos de carga sembrados: {} usuarios, {} variantes en {} ms",
+                usuarios, productos * variantesPorProducto, System.currentTimeMillis() - inicio);
+    }
+}
@@ -0,0 +1,44 @@
+package com.hrk.tienda_b2b.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+
+/**
+ * Perfil "carga": agrega a cada respuesta de /api el header X-Sql-Sentencias con la cantidad de
+ * sentencias SQL que ejecutó el request. La respuesta se bufferiza para poder poner el header
+ * después de que el controller terminó (no usar fuera de las pruebas de carga).
+ */
+@Component
+@Profile("carga")
+public class SentenciasSqlFilter extends OncePerRequestFilter {
+    
+    public static final String HEADER = "X-Sql-Sentencias";
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !uri.startsWith("/api/") || uri.endsWith("/stream");
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        ContentCachingResponseWrapper respuesta = new ContentCachingResponseWrapper(response);
+        ContadorSentenciasSql.iniciar();
+        try {
+            filterChain.doFilter(request, respuesta);
+        } finally {
+            respuesta.setHeader(HEADER, String.valueOf(ContadorSentenciasSql.terminar()));
+            respuesta.copyBodyToResponse();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SerieVentasDTO {
+    
+    private String dimension;
+    private String clave;
+    private String desde;
+    private String hasta;
+    // DIA, SEMANA (empieza el lunes) o MES
+    private String granularidad;
+    // Un período por elemento, en orden, incluidos los que no tuvieron ventas
+    private List<VentaAgregadaDTO> periodos;
+    private VentaAgregadaDTO total;
+}
@@ -0,0 +1,21 @@
+package com.hrk.tienda_b2b.service;
+
+public class StockInsuficienteException extends RuntimeException {
+    
+    private final Long varianteId;
+    private final int cantidadPedida;
+    
+    public StockInsuficienteException(Long varianteId, int cantidadPedida) {
+        super("Stock insuficiente para la variante " + varianteId + " (cantidad pedida: " + cantidadPedida + ")");
+        this.varianteId = varianteId;
+        this.cantidadPedida = cantidadPedida;
+    }
+    
+    public Long getVarianteId() {
+        return varianteId;
+    }
+    
+    public int getCantidadPedida() {
+        return cantidadPedida;
+    }
+}
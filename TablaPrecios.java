@@ -0,0 +1,174 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.AlcanceReglaPrecio;
+import com.hrk.tienda_b2b.model.ReglaPrecio;
+import com.hrk.tienda_b2b.model.TipoReglaPrecio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reglas de precio compiladas. Inmutable: MotorPrecios arma una nueva y la reemplaza entera.
+ *
+ * Clave (cliente, alcance, id del objetivo) → escalones por cantidad. La tabla es un hash de direccionamiento
+ * abierto sobre arrays de long (sin boxing ni objetos por clave) y los escalones de cada clave son arrays
+ * ordenados por cantidad mínima, así que resolver una línea son unas pocas lecturas de arrays.
+ * Cliente 0 = reglas generales.
+ */
+final class TablaPrecios {
+
+    static final TablaPrecios VACIA = new TablaPrecios(new long[1], new long[1], new Escalones[1], 0, 0, 0);
+
+    private static final long LIBRE = -1L;
+
+    private final long[] clientes;
+    private final long[] objetivos;
+    private final Escalones[] escalones;
+    private final int mascara;
+    private final int cantidadReglas;
+    private final int cantidadClaves;
+
+    private TablaPrecios(long[] clientes, long[] objetivos, Escalones[] escalones, int mascara,
+                         int cantidadReglas, int cantidadClaves) {
+        this.clientes = clientes;
+        this.objetivos = objetivos;
+        this.escalones = escalones;
+        this.mascara = mascara;
+        this.cantidadReglas = cantidadReglas;
+        this.cantidadClaves = cantidadClaves;
+    }
+
+    /** Escalones de una regla compilada: arrays paralelos ordenados por cantidad mínima. */
+    static final class Escalones {
+        final int[] minimos;
+        final TipoReglaPrecio[] tipos;
+        final long[] valores;
+        final long[] reglas;
+
+        private Escalones(List<ReglaPrecio> ordenadas) {
+            int n = ordenadas.size();
+            minimos = new int[n];
+            tipos = new TipoReglaPrecio[n];
+            valores = new long[n];
+            reglas = new long[n];
+            for (int i = 0; i < n; i++) {
+                ReglaPrecio regla = ordenadas.get(i);
+                minimos[i] = regla.getCantidadMinima();
+                tipos[i] = regla.getTipoRegla();
+                valores[i] = regla.getTipoRegla() == TipoReglaPrecio.PRECIO_FIJO
+                        ? regla.getPrecioCentavos() : regla.getDescuentoPuntosBasicos();
+                reglas[i] = regla.getId();
+            }
+        }
+
+        // Índice del escalón con la mayor cantidad mínima <= cantidad, o -1 si la cantidad no llega al primero
+        int buscar(int cantidad) {
+            int bajo = 0;
+            int alto = minimos.length - 1;
+            int encontrado = -1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (minimos[medio] <= cantidad) {
+                    encontrado = medio;
+                    bajo = medio + 1;
+                } else {
+                    alto = medio - 1;
+                }
+            }
+            return encontrado;
+        }
+    }
+
+    static long objetivo(AlcanceReglaPrecio alcance, long id) {
+        return ((long) alcance.ordinal() << 56) | id;
+    }
+
+    Escalones buscar(long cliente, long objetivo) {
+        if (cantidadReglas == 0) {
+            return null;
+        }
+        int i = hash(cliente, objetivo) & mascara;
+        while (clientes[i] != LIBRE) {
+            if (clientes[i] == cliente && objetivos[i] == objetivo) {
+                return escalones[i];
+            }
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    int cantidadReglas() {
+        return cantidadReglas;
+    }
+
+    int cantidadClaves() {
+        return cantidadClaves;
+    }
+
+    private static int hash(long cliente, long objetivo) {
+        long h = cliente * 0x9E3779B97F4A7C15L ^ objetivo;
+        h ^= h >>> 33;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        return (int) h;
+    }
+
+    /** Compila las reglas activas. Si dos reglas tienen la misma clave y cantidad mínima gana la de id mayor. */
+    static TablaPrecios compilar(List<ReglaPrecio> reglas) {
+        if (reglas.isEmpty()) {
+            return VACIA;
+        }
+        record Clave(long cliente, long objetivo) {
+        }
+        Map<Clave, List<ReglaPrecio>> agrupadas = new HashMap<>();
+        for (ReglaPrecio regla : reglas) {
+            long cliente = regla.getClienteId() != null ? regla.getClienteId() : 0L;
+            agrupadas.computeIfAbsent(new Clave(cliente, objetivo(regla.getAlcance(), idObjetivo(regla))),
+                    c -> new ArrayList<>()).add(regla);
+        }
+
+        // Ocupación máxima del 50 %: las búsquedas fallidas (lo más común) cortan enseguida
+        int capacidad = Integer.highestOneBit(Math.max(2, agrupadas.size() * 2 - 1)) << 1;
+        long[] clientes = new long[capacidad];
+        long[] objetivos = new long[capacidad];
+        Escalones[] escalones = new Escalones[capacidad];
+        Arrays.fill(clientes, LIBRE);
+        int mascara = capacidad - 1;
+
+        for (Map.Entry<Clave, List<ReglaPrecio>> entrada : agrupadas.entrySet()) {
+            List<ReglaPrecio> ordenadas = new ArrayList<>(entrada.getValue());
+            ordenadas.sort(Comparator.comparing(ReglaPrecio::getCantidadMinima).thenComparing(ReglaPrecio::getId));
+            List<ReglaPrecio> unicas = new ArrayList<>(ordenadas.size());
+            for (ReglaPrecio regla : ordenadas) {
+                if (!unicas.isEmpty() && unicas.get(unicas.size() - 1).getCantidadMinima().equals(regla.getCantidadMinima())) {
+                    unicas.set(unicas.size() - 1, regla);
+                } else {
+                    unicas.add(regla);
+                }
+            }
+            Clave clave = entrada.getKey();
+            int i = hash(clave.cliente(), clave.objetivo()) & mascara;
+            while (clientes[i] != LIBRE) {
+                i = (i + 1) & mascara;
+            }
+            clientes[i] = clave.cliente();
+            objetivos[i] = clave.objetivo();
+            escalones[i] = new Escalones(unicas);
+        }
+        return new TablaPrecios(clientes, objetivos, escalones, mascara, reglas.size(), agrupadas.size());
+    }
+
+    static long idObjetivo(ReglaPrecio regla) {
+        return switch (regla.getAlcance()) {
+            case VARIANTE -> regla.getVarianteId();
+            case PRODUCTO -> regla.getProductoId();
+            case CATEGORIA -> regla.getCategoria().ordinal();
+            case TIPO -> regla.getTipo().ordinal();
+            case TODOS -> 0L;
+        };
+    }
+}
@@ -1,7 +1,9 @@
 package com.hrk.tienda_b2b.controller;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/test")
 @CrossOrigin(origins = "*")
@@ -9,13 +11,13 @@ public class TestController {
 
     @GetMapping("/ping")
     public String ping() {
-        System.out.println("🔵 [TEST] Endpoint ping llamado");
+        log.debug("Endpoint ping llamado");
         return "Pong - Backend funcionando";
     }
 
     @PostMapping("/echo")
     public String echo(@RequestBody String data) {
-        System.out.println("🔵 [TEST] Endpoint echo llamado con datos: " + data);
+        log.debug("Endpoint echo llamado con datos: {}", data);
         return "Echo: " + data;
     }
 }
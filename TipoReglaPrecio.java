@@ -0,0 +1,6 @@
+package com.hrk.tienda_b2b.model;
+
+public enum TipoReglaPrecio {
+    PRECIO_FIJO,          // reemplaza el precio de lista
+    DESCUENTO_PORCENTAJE  // descuento sobre el precio de lista de la variante
+}
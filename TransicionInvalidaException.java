@@ -0,0 +1,25 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.EstadoPedido;
+
+// Extiende IllegalStateException para que los controllers la respondan como 409, igual que validarEditable
+public class TransicionInvalidaException extends IllegalStateException {
+    
+    private final EstadoPedido estadoActual;
+    private final EstadoPedido estadoPedido;
+    
+    public TransicionInvalidaException(Long pedidoId, EstadoPedido estadoActual, EstadoPedido estadoPedido) {
+        super("El pedido " + pedidoId + " no puede pasar de " + estadoActual + " a " + estadoPedido
+                + " (permitidos: " + estadoActual.siguientesPermitidos() + ")");
+        this.estadoActual = estadoActual;
+        this.estadoPedido = estadoPedido;
+    }
+    
+    public EstadoPedido getEstadoActual() {
+        return estadoActual;
+    }
+    
+    public EstadoPedido getEstadoPedido() {
+        return estadoPedido;
+    }
+}
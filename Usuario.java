@@ -4,9 +4,19 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
-@Table(name = "usuarios")
+@EntityListeners(UsuarioEntityListener.class)
+// email ya tiene índice por ser unique; estos cubren el directorio (búsqueda por prefijo y orden por nombre)
+@Table(name = "usuarios", indexes = {
+        @Index(name = "idx_usuarios_nombre", columnList = "nombre_razon_social"),
+        @Index(name = "idx_usuarios_tipo_nombre", columnList = "tipo_usuario, nombre_razon_social")
+})
+// Cache de segundo nivel: lo leen crearPedido, el login y JwtRequestFilter en cada cache miss de token
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "usuarios")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,29 @@
+package com.hrk.tienda_b2b.model;
+
+import com.hrk.tienda_b2b.service.UsuarioModificadoEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// Mantiene al día el índice de sugerencias de usuarios ante altas, bajas y modificaciones
+@Component
+@RequiredArgsConstructor
+public class UsuarioEntityListener {
+    
+    private final ApplicationEventPublisher publisher;
+    
+    @PostPersist
+    @PostUpdate
+    public void usuarioGuardado(Usuario usuario) {
+        publisher.publishEvent(new UsuarioModificadoEvent(usuario.getId(), usuario.getNombreRazonSocial(),
+                usuario.getEmail(), usuario.getTipoUsuario(), false));
+    }
+    
+    @PostRemove
+    public void usuarioEliminado(Usuario usuario) {
+        publisher.publishEvent(new UsuarioModificadoEvent(usuario.getId(), null, null, null, true));
+    }
+}
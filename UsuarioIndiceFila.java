@@ -0,0 +1,21 @@
+package com.hrk.tienda_b2b.dto;
+
+import com.hrk.tienda_b2b.model.TipoUsuario;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Campos de un usuario que usa IndiceUsuarios, leídos por la consulta sin pasar por entidades
+ * (la carga inicial no llena el cache de segundo nivel con todos los usuarios).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsuarioIndiceFila {
+    
+    private Long id;
+    private String nombreRazonSocial;
+    private String email;
+    private TipoUsuario tipoUsuario;
+}
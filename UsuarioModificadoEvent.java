@@ -0,0 +1,45 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.TipoUsuario;
+
+/**
+ * Se publica cuando se crea, modifica o elimina un usuario. Lleva una copia de los campos
+ * que indexa IndiceUsuarios, que lo aplica después del commit.
+ */
+public class UsuarioModificadoEvent {
+    
+    private final Long id;
+    private final String nombreRazonSocial;
+    private final String email;
+    private final TipoUsuario tipoUsuario;
+    private final boolean eliminado;
+    
+    public UsuarioModificadoEvent(Long id, String nombreRazonSocial, String email,
+                                  TipoUsuario tipoUsuario, boolean eliminado) {
+        this.id = id;
+        this.nombreRazonSocial = nombreRazonSocial;
+        this.email = email;
+        this.tipoUsuario = tipoUsuario;
+        this.eliminado = eliminado;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public String getNombreRazonSocial() {
+        return nombreRazonSocial;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public TipoUsuario getTipoUsuario() {
+        return tipoUsuario;
+    }
+    
+    public boolean isEliminado() {
+        return eliminado;
+    }
+}
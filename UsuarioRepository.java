@@ -1,13 +1,41 @@
 package com.hrk.tienda_b2b.repository;
 
+import com.hrk.tienda_b2b.dto.UsuarioIndiceFila;
+import com.hrk.tienda_b2b.model.TipoUsuario;
 import com.hrk.tienda_b2b.model.Usuario;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+
 @Repository
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     
+    // Cache de consultas: el resultado (el id) se invalida solo si cambia la tabla usuarios,
+    // y la entidad sale de la región "usuarios"
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = "usuarios.por-email")
+    })
     Optional<Usuario> findByEmail(String email);
+    
+    // Directorio: patron ya viene armado y escapado ("abc%" usa los índices, "%abc%" recorre la tabla)
+    @Query("SELECT u FROM Usuario u WHERE (:tipo IS NULL OR u.tipoUsuario = :tipo) " +
+           "AND (:patron IS NULL OR u.nombreRazonSocial LIKE :patron ESCAPE '\\' OR u.email LIKE :patron ESCAPE '\\')")
+    Page<Usuario> buscarDirectorio(@Param("patron") String patron, @Param("tipo") TipoUsuario tipo, Pageable pageable);
+    
+    // Carga del índice de sugerencias por tandas, paginando por id
+    @Query("SELECT new com.hrk.tienda_b2b.dto.UsuarioIndiceFila(u.id, u.nombreRazonSocial, u.email, u.tipoUsuario) " +
+           "FROM Usuario u WHERE u.id > :desdeId ORDER BY u.id")
+    List<UsuarioIndiceFila> findFilasIndiceDesde(@Param("desdeId") Long desdeId, Pageable limite);
 }
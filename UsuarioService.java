@@ -1,32 +1,109 @@
 package com.hrk.tienda_b2b.service;
 
+import com.hrk.tienda_b2b.config.DataSourceRuteado;
+import com.hrk.tienda_b2b.dto.PaginaDTO;
+import com.hrk.tienda_b2b.dto.UsuarioDTO;
+import com.hrk.tienda_b2b.model.TipoUsuario;
 import com.hrk.tienda_b2b.model.Usuario;
 import com.hrk.tienda_b2b.repository.UsuarioRepository;
+import com.hrk.tienda_b2b.security.CachePrincipales;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class UsuarioService {
     
     private final UsuarioRepository usuarioRepository;
+    private final CachePrincipales cachePrincipales;
+    private final IndiceUsuarios indiceUsuarios;
     
+    private static final Set<String> ORDENES_VALIDOS = Set.of("nombreRazonSocial", "email", "id");
+    private static final int TAMANO_MAXIMO = 100;
+    
+    @Transactional(readOnly = true)
     public List<Usuario> obtenerTodos() {
         return usuarioRepository.findAll();
     }
     
+    /**
+     * Página del directorio. texto busca por prefijo en nombre y email (usa los índices);
+     * con contiene=true busca en cualquier posición (recorre la tabla). orden: campo[,asc|desc].
+     */
+    @Transactional(readOnly = true)
+    public PaginaDTO<UsuarioDTO> directorio(String texto, boolean contiene, TipoUsuario tipo,
+                                            int pagina, int tamano, String orden) {
+        if (pagina < 0 || tamano < 1 || tamano > TAMANO_MAXIMO) {
+            throw new IllegalArgumentException("Página o tamaño inválidos");
+        }
+        String patron = null;
+        if (texto != null && !texto.isBlank()) {
+            String escapado = texto.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            patron = contiene ? "%" + escapado + "%" : escapado + "%";
+        }
+        // El id desempata para que las páginas no repitan ni salteen filas con el mismo nombre
+        Sort sort = parsearOrden(orden);
+        if (sort.getOrderFor("id") == null) {
+            sort = sort.and(Sort.by("id"));
+        }
+        return PaginaDTO.de(usuarioRepository.buscarDirectorio(patron, tipo, PageRequest.of(pagina, tamano, sort)),
+                UsuarioDTO::fromEntity);
+    }
+    
+    // Sugerencias para el selector de clientes, desde el índice en memoria
+    public List<UsuarioDTO> sugerencias(String texto, TipoUsuario tipo, int limite) {
+        if (limite < 1 || limite > 50) {
+            throw new IllegalArgumentException("limite debe estar entre 1 y 50");
+        }
+        return indiceUsuarios.sugerir(texto, tipo, limite);
+    }
+    
+    private static Sort parsearOrden(String orden) {
+        if (orden == null || orden.isBlank()) {
+            return Sort.by("nombreRazonSocial");
+        }
+        String[] partes = orden.split(",");
+        String campo = partes[0].trim();
+        if (!ORDENES_VALIDOS.contains(campo) || partes.length > 2) {
+            throw new IllegalArgumentException("Orden inválido: " + orden);
+        }
+        Sort.Direction direccion = Sort.Direction.ASC;
+        if (partes.length == 2) {
+            direccion = Sort.Direction.fromOptionalString(partes[1].trim())
+                    .orElseThrow(() -> new IllegalArgumentException("Dirección inválida: " + orden));
+        }
+        return Sort.by(direccion, campo);
+    }
+    
+    @Transactional(readOnly = true)
     public Optional<Usuario> obtenerPorId(Long id) {
         return usuarioRepository.findById(id);
     }
     
+    // Siempre de la primaria: JwtRequestFilter carga el principal con esto y CachePrincipales lo guarda
+    // todo el TTL; leído de una réplica atrasada, un rol viejo o un usuario dado de baja volvería al cache
+    // justo después de invalidarlo. Sigue readOnly para no marcar una escritura del cliente en DataSourceRuteado
+    @Transactional(readOnly = true)
+    public Optional<Usuario> obtenerPorEmail(String email) {
+        return DataSourceRuteado.enPrimaria(() -> usuarioRepository.findByEmail(email));
+    }
+    
+    // Cambios de rol/datos y bajas invalidan los tokens cacheados del usuario en el acto
     public Usuario actualizar(Usuario usuario) {
-        return usuarioRepository.save(usuario);
+        Usuario actualizado = usuarioRepository.save(usuario);
+        cachePrincipales.invalidarUsuario(actualizado.getId());
+        return actualizado;
     }
     
     public void eliminar(Long id) {
         usuarioRepository.deleteById(id);
+        cachePrincipales.invalidarUsuario(id);
     }
 }
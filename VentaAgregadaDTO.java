@@ -0,0 +1,26 @@
+package com.hrk.tienda_b2b.dto;
+
+import com.hrk.tienda_b2b.model.Dinero;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Unidades, ingresos y pedidos de un período (serie) o de una clave (ranking).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaAgregadaDTO {
+    
+    // Día de inicio del período (serie) o clave de la dimensión (ranking)
+    private String etiqueta;
+    private long unidades;
+    private Double ingresos;
+    private long pedidos;
+    
+    // Usado por la consulta "SELECT new" de VentaDiariaRepository
+    public VentaAgregadaDTO(String etiqueta, Long unidades, Long ingresosCentavos, Long pedidos) {
+        this(etiqueta, unidades, Dinero.aPesos(ingresosCentavos), pedidos);
+    }
+}
@@ -0,0 +1,58 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Ventas de un día para una clave de una dimensión (un producto, un cliente...), ya sumadas.
+ * RollupVentasService las mantiene con UPSERTs a medida que los pedidos entran o salen de
+ * los estados que cuentan como venta; las consultas leen una fila por día sin tocar pedidos.
+ */
+@Entity
+@Table(name = "ventas_diarias", indexes = {
+        // Rankings: todas las claves de una dimensión en un rango de días
+        @Index(name = "idx_ventas_diarias_dimension_dia", columnList = "dimension, dia")
+})
+@IdClass(VentaDiaria.Clave.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaDiaria {
+    
+    // PK (dimension, clave, dia): una serie de días de una clave es un rango contiguo de la PK
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dimension", length = 16)
+    private DimensionVenta dimension;
+    
+    @Id
+    @Column(name = "clave", length = 64)
+    private String clave;
+    
+    @Id
+    @Column(name = "dia")
+    private LocalDate dia;
+    
+    @Column(name = "unidades", nullable = false)
+    private Long unidades;
+    
+    @Column(name = "ingresos_centavos", nullable = false)
+    private Long ingresosCentavos;
+    
+    @Column(name = "pedidos", nullable = false)
+    private Long pedidos;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private DimensionVenta dimension;
+        private String clave;
+        private LocalDate dia;
+    }
+}
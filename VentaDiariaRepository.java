@@ -0,0 +1,33 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.dto.VentaAgregadaDTO;
+import com.hrk.tienda_b2b.model.DimensionVenta;
+import com.hrk.tienda_b2b.model.VentaDiaria;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface VentaDiariaRepository extends JpaRepository<VentaDiaria, VentaDiaria.Clave> {
+    
+    // Serie de una clave: rango de la PK, una fila por día con ventas
+    List<VentaDiaria> findByDimensionAndClaveAndDiaBetweenOrderByDia(DimensionVenta dimension, String clave,
+                                                                     LocalDate desde, LocalDate hasta);
+    
+    @Query("SELECT new com.hrk.tienda_b2b.dto.VentaAgregadaDTO(v.clave, SUM(v.unidades), SUM(v.ingresosCentavos), SUM(v.pedidos)) " +
+           "FROM VentaDiaria v WHERE v.dimension = :dimension AND v.dia BETWEEN :desde AND :hasta " +
+           "GROUP BY v.clave HAVING SUM(v.pedidos) > 0 ORDER BY SUM(v.ingresosCentavos) DESC, v.clave")
+    List<VentaAgregadaDTO> rankingPorIngresos(@Param("dimension") DimensionVenta dimension, @Param("desde") LocalDate desde,
+                                              @Param("hasta") LocalDate hasta, Pageable limite);
+    
+    @Query("SELECT new com.hrk.tienda_b2b.dto.VentaAgregadaDTO(v.clave, SUM(v.unidades), SUM(v.ingresosCentavos), SUM(v.pedidos)) " +
+           "FROM VentaDiaria v WHERE v.dimension = :dimension AND v.dia BETWEEN :desde AND :hasta " +
+           "GROUP BY v.clave HAVING SUM(v.pedidos) > 0 ORDER BY SUM(v.unidades) DESC, v.clave")
+    List<VentaAgregadaDTO> rankingPorUnidades(@Param("dimension") DimensionVenta dimension, @Param("desde") LocalDate desde,
+                                              @Param("hasta") LocalDate hasta, Pageable limite);
+}
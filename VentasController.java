@@ -0,0 +1,77 @@
+package com.hrk.tienda_b2b.controller;
+
+import com.hrk.tienda_b2b.dto.SerieVentasDTO;
+import com.hrk.tienda_b2b.dto.VentaAgregadaDTO;
+import com.hrk.tienda_b2b.model.DimensionVenta;
+import com.hrk.tienda_b2b.service.RollupVentasService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Reportes de ventas leídos del rollup diario (ventas_diarias), sin recorrer pedidos
+@Slf4j
+@RestController
+@RequestMapping("/api/ventas")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class VentasController {
+    
+    private final RollupVentasService rollupVentasService;
+    
+    // Ej: /api/ventas/serie?dimension=PRODUCTO&clave=12&desde=2024-01-01&hasta=2024-03-31&granularidad=SEMANA
+    @GetMapping("/serie")
+    public ResponseEntity<SerieVentasDTO> serie(
+            @RequestParam DimensionVenta dimension,
+            @RequestParam(required = false) String clave,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "DIA") RollupVentasService.Granularidad granularidad) {
+        try {
+            return ResponseEntity.ok(rollupVentasService.serie(dimension, clave, desde, hasta, granularidad));
+        } catch (IllegalArgumentException e) {
+            log.warn("Serie de ventas rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    // Ej: /api/ventas/ranking?dimension=CATEGORIA&desde=2024-01-01&hasta=2024-12-31&por=unidades&limite=10
+    @GetMapping("/ranking")
+    public ResponseEntity<List<VentaAgregadaDTO>> ranking(
+            @RequestParam DimensionVenta dimension,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "ingresos") String por,
+            @RequestParam(defaultValue = "10") int limite) {
+        if (!por.equals("ingresos") && !por.equals("unidades")) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(rollupVentasService.ranking(dimension, desde, hasta, por.equals("unidades"), limite));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ranking de ventas rechazado: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    // Recalcula el rollup de un rango desde los pedidos (carga inicial o corrección), de a un mes como máximo
+    @PostMapping("/reconstruir")
+    public ResponseEntity<Map<String, Object>> reconstruir(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        try {
+            return ResponseEntity.ok(rollupVentasService.reconstruir(desde, hasta));
+        } catch (IllegalArgumentException e) {
+            log.warn("Reconstrucción de ventas rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error al reconstruir el rollup de ventas del {} al {}", desde, hasta, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.hrk.tienda_b2b.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compara dos corridas de JMH guardadas con -rf json (por ejemplo la de main y la del branch).
+ *
+ *   java -cp target/benchmarks.jar com.hrk.tienda_b2b.benchmark.CompararResultados base.json nuevo.json [umbral%]
+ *
+ * Imprime throughput y bytes asignados por operación de cada benchmark/parámetro con la variación,
+ * y termina con código 1 si algún throughput empeoró más que el umbral (10% por defecto).
+ */
+public final class CompararResultados {
+    
+    private static final String ASIGNACION = "gc.alloc.rate.norm";
+    
+    private CompararResultados() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: CompararResultados base.json nuevo.json [umbral%]");
+            System.exit(2);
+        }
+        double umbral = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        
+        Map<String, double[]> base = leer(new File(args[0]));
+        Map<String, double[]> nuevo = leer(new File(args[1]));
+        
+        boolean empeoro = false;
+        System.out.printf("%-70s %14s %14s %8s %12s %12s%n",
+                "benchmark", "base ops/ms", "nuevo ops/ms", "Δ%", "base B/op", "nuevo B/op");
+        for (Map.Entry<String, double[]> entrada : nuevo.entrySet()) {
+            double[] antes = base.get(entrada.getKey());
+            double[] ahora = entrada.getValue();
+            if (antes == null) {
+                System.out.printf("%-70s %14s %14.2f %8s%n", entrada.getKey(), "-", ahora[0], "nuevo");
+                continue;
+            }
+            double variacion = (ahora[0] - antes[0]) / antes[0] * 100.0;
+            if (variacion < -umbral) {
+                empeoro = true;
+            }
+            System.out.printf("%-70s %14.2f %14.2f %+7.1f%% %12.0f %12.0f%s%n", entrada.getKey(),
+                    antes[0], ahora[0], variacion, antes[1], ahora[1], variacion < -umbral ? "  ⚠" : "");
+        }
+        System.exit(empeoro ? 1 : 0);
+    }
+    
+    // clave "Clase.metodo{param=valor}" → {score, bytes por operación (NaN sin -prof gc)}
+    private static Map<String, double[]> leer(File archivo) throws Exception {
+        Map<String, double[]> resultados = new LinkedHashMap<>();
+        for (JsonNode corrida : new ObjectMapper().readTree(archivo)) {
+            StringBuilder clave = new StringBuilder(corrida.get("benchmark").asText()
+                    .replace("com.hrk.tienda_b2b.benchmark.", ""));
+            JsonNode params = corrida.get("params");
+            if (params != null) {
+                clave.append(params.toString().replace("\"", ""));
+            }
+            double bytes = Double.NaN;
+            JsonNode secundarias = corrida.get("secondaryMetrics");
+            if (secundarias != null) {
+                for (Iterator<String> nombres = secundarias.fieldNames(); nombres.hasNext(); ) {
+                    String nombre = nombres.next();
+                    if (nombre.endsWith(ASIGNACION)) {
+                        bytes = secundarias.get(nombre).get("score").asDouble();
+                    }
+                }
+            }
+            resultados.put(clave.toString(), new double[]{corrida.get("primaryMetric").get("score").asDouble(), bytes});
+        }
+        return resultados;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hrk.tienda_b2b.benchmark;
+
+import com.hrk.tienda_b2b.model.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pedidos armados en memoria, con la misma forma que devuelve la base (usuario, detalles,
+ * variante y producto cargados). Los datos son fijos para que los resultados sean comparables.
+ */
+final class FixturesPedido {
+    
+    private static final String[] COLORES = {"Negro", "Blanco", "Gris melange", "Azul marino", "Verde oliva"};
+    private static final String[] TALLES = {"XS", "S", "M", "L", "XL", "XXL"};
+    
+    private FixturesPedido() {
+    }
+    
+    static Pedido pedidoConLineas(int lineas) {
+        Usuario cliente = new Usuario();
+        cliente.setId(42L);
+        cliente.setNombreRazonSocial("Distribuidora Textil del Sur S.R.L.");
+        cliente.setEmail("compras@textildelsur.com.ar");
+        cliente.setTipoUsuario(TipoUsuario.CLIENTE);
+        
+        Pedido pedido = new Pedido();
+        pedido.setId(1_000L + lineas);
+        pedido.setClienteId(cliente.getId());
+        pedido.setUsuario(cliente);
+        pedido.setFecha(LocalDateTime.of(2025, 3, 14, 10, 30));
+        pedido.setEstado(EstadoPedido.BORRADOR);
+        
+        for (int i = 0; i < lineas; i++) {
+            Producto producto = Producto.builder()
+                    .id((long) (i / TALLES.length) + 1)
+                    .nombre("Remera algodón peinado modelo " + (i / TALLES.length))
+                    .build();
+            
+            ProductoVariante variante = new ProductoVariante();
+            variante.setId((long) i + 1);
+            variante.setProducto(producto);
+            variante.setSku("REM-" + (i / TALLES.length) + "-" + TALLES[i % TALLES.length]);
+            variante.setColor(COLORES[i % COLORES.length]);
+            variante.setTalle(TALLES[i % TALLES.length]);
+            variante.setPrecioCentavos(450_000L + (i % 7) * 12_550L);
+            variante.setStockDisponible(100 + i);
+            
+            PedidoDetalle detalle = new PedidoDetalle();
+            detalle.setId((long) i + 1);
+            detalle.setPedido(pedido);
+            detalle.setVariante(variante);
+            detalle.setCantidad(1 + i % 24);
+            detalle.setPrecioUnitarioCentavos(variante.getPrecioCentavos());
+            
+            pedido.getDetalles().add(detalle);
+            pedido.sumarLinea(detalle);
+        }
+        return pedido;
+    }
+}
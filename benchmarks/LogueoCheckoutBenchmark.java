@@ -0,0 +1,140 @@
+package com.hrk.tienda_b2b.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.hrk.tienda_b2b.model.Dinero;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput de un checkout (crear-completo + 3 items + confirmar) con el logueo de antes y el de ahora.
+ *
+ * El trabajo de negocio es el mismo en los tres casos (cálculo de subtotales); solo cambia cómo se
+ * escriben las ~12 líneas de log que el controller y el service emitían por checkout:
+ * - systemOut: println con concatenación sobre un PrintStream (sincronizado, como System.out).
+ * - slf4jDebugApagado: mismas llamadas en DEBUG con la categoría en INFO (nivel por defecto).
+ * - slf4jAsync: las llamadas de INFO/WARN entrando a un AsyncAppender con neverBlock.
+ *
+ * Ambas salidas escriben a un OutputStream nulo para medir el costo del camino de logueo y no el de la terminal.
+ * Se corre con 8 hilos para que se vea la contención del PrintStream compartido.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LogueoCheckoutBenchmark {
+    
+    private static final long[] PRECIOS = {125_000L, 89_999L, 1_500_000L};
+    private static final int[] CANTIDADES = {3, 12, 1};
+    
+    private PrintStream salidaSincronizada;
+    private LoggerContext contexto;
+    private Logger logController;
+    private Logger logService;
+    
+    @Setup
+    public void preparar() {
+        salidaSincronizada = new PrintStream(OutputStream.nullOutputStream(), true);
+        
+        contexto = (LoggerContext) LoggerFactory.getILoggerFactory();
+        contexto.reset();
+        
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(contexto);
+        encoder.setPattern("%d %5p [%t] %logger{36} : %m%n");
+        encoder.start();
+        
+        OutputStreamAppender<ILoggingEvent> nulo = new OutputStreamAppender<>();
+        nulo.setContext(contexto);
+        nulo.setEncoder(encoder);
+        nulo.setOutputStream(OutputStream.nullOutputStream());
+        nulo.start();
+        
+        // Misma configuración que logback-spring.xml
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(contexto);
+        async.setQueueSize(8192);
+        async.setDiscardingThreshold(1638);
+        async.setNeverBlock(true);
+        async.setIncludeCallerData(false);
+        async.addAppender(nulo);
+        async.start();
+        
+        ch.qos.logback.classic.Logger raiz = contexto.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        raiz.setLevel(Level.INFO);
+        raiz.addAppender(async);
+        
+        logController = LoggerFactory.getLogger("com.hrk.tienda_b2b.controller.PedidoController");
+        logService = LoggerFactory.getLogger("com.hrk.tienda_b2b.service.PedidoService");
+    }
+    
+    @TearDown
+    public void cerrar() {
+        contexto.stop();
+    }
+    
+    @Benchmark
+    public void systemOut(Blackhole bh) {
+        long pedidoId = Thread.currentThread().getId();
+        salidaSincronizada.println("🔵 [PEDIDO CONTROLLER] Creando pedido completo para cliente: " + pedidoId);
+        salidaSincronizada.println("🔵 [PEDIDO SERVICE] Creando pedido completo para cliente: " + pedidoId + " con " + 1 + " items");
+        long total = 0;
+        for (int i = 0; i < PRECIOS.length; i++) {
+            salidaSincronizada.println("🔵 [PEDIDO CONTROLLER] Agregando item al pedido " + pedidoId
+                    + " - variante: " + i + ", cantidad: " + CANTIDADES[i]);
+            salidaSincronizada.println("🔵 [PEDIDO SERVICE] Agregando item al pedido " + pedidoId
+                    + " - variante: " + i + ", cantidad: " + CANTIDADES[i]);
+            total += Dinero.subtotal(PRECIOS[i], CANTIDADES[i]);
+            salidaSincronizada.println("🔵 [PEDIDO SERVICE] Item agregado. Nuevo total: " + Dinero.aPesos(total));
+        }
+        salidaSincronizada.println("🔵 [PEDIDO CONTROLLER] Confirmando pedido: " + pedidoId);
+        salidaSincronizada.println("🔵 [PEDIDO SERVICE] Pedido " + pedidoId + " pasó de BORRADOR a CONFIRMADO");
+        salidaSincronizada.println("🔵 [PEDIDO CONTROLLER] Pedido confirmado exitosamente");
+        bh.consume(total);
+    }
+    
+    @Benchmark
+    public void slf4jDebugApagado(Blackhole bh) {
+        long pedidoId = Thread.currentThread().getId();
+        logController.debug("Creando pedido completo para cliente: {}", pedidoId);
+        logService.debug("Creando pedido completo para cliente: {} con {} items", pedidoId, 1);
+        long total = 0;
+        for (int i = 0; i < PRECIOS.length; i++) {
+            logController.debug("Agregando item al pedido {} - variante: {}, cantidad: {}", pedidoId, i, CANTIDADES[i]);
+            logService.debug("Agregando item al pedido {} - variante: {}, cantidad: {}", pedidoId, i, CANTIDADES[i]);
+            total += Dinero.subtotal(PRECIOS[i], CANTIDADES[i]);
+            logService.debug("Item agregado. Nuevo total: {}", total);
+        }
+        logController.debug("Confirmando pedido: {}", pedidoId);
+        logService.debug("Pedido {} pasó de {} a {}", pedidoId, "BORRADOR", "CONFIRMADO");
+        logController.debug("Pedido confirmado exitosamente");
+        bh.consume(total);
+    }
+    
+    @Benchmark
+    public void slf4jAsync(Blackhole bh) {
+        // Lo que queda en INFO en producción: una línea al crear y otra al confirmar
+        long pedidoId = Thread.currentThread().getId();
+        long total = 0;
+        for (int i = 0; i < PRECIOS.length; i++) {
+            logService.debug("Agregando item al pedido {} - variante: {}, cantidad: {}", pedidoId, i, CANTIDADES[i]);
+            total += Dinero.subtotal(PRECIOS[i], CANTIDADES[i]);
+        }
+        logService.info("Pedido completo guardado con ID: {} - {} líneas, total: {}", pedidoId, PRECIOS.length, total);
+        logService.info("Pedido {} pasó de {} a {}", pedidoId, "BORRADOR", "CONFIRMADO");
+        bh.consume(total);
+    }
+}
@@ -0,0 +1,113 @@
+package com.hrk.tienda_b2b.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.DetalleHistorialFila;
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.dto.UsuarioDTO;
+import com.hrk.tienda_b2b.model.Dinero;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.PedidoDetalle;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.service.EscritorJsonRespuestas;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo por request de los caminos calientes de pedidos, con pedidos de 1, 50 y 500 líneas.
+ *
+ * - convertirADTO: PedidoResponseDTO.fromEntity (lo que hace PedidoService.convertirADTO).
+ * - usuarioFromEntity: UsuarioDTO.fromEntity.
+ * - totalRecorriendoDetalles / totalIncremental: el recálculo de agregarItem antes (sumar
+ *   todas las líneas) y ahora (sumar solo la línea nueva, como Pedido.sumarLinea).
+ * - serializarRespuesta: Jackson del DTO anidado (DetalleDTO → VarianteDTO → ProductoDTO).
+ * - escritorDirecto / escritorDirectoResumen: EscritorJsonRespuestas desde entidad + filas de
+ *   detalle, completo y con fields=id,fecha,total,estado (lo que usa GET /api/pedidos).
+ *
+ * Correr con -prof gc para ver la asignación por operación (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class PedidoHotPathsBenchmark {
+    
+    @Param({"1", "50", "500"})
+    public int lineas;
+    
+    private Pedido pedido;
+    private PedidoDetalle lineaNueva;
+    private PedidoResponseDTO dto;
+    private ObjectMapper objectMapper;
+    private EscritorJsonRespuestas escritor;
+    private Map<Long, List<DetalleHistorialFila>> filas;
+    private EscritorJsonRespuestas.PlanPedido planCompleto;
+    private EscritorJsonRespuestas.PlanPedido planResumen;
+    
+    @Setup
+    public void preparar() {
+        pedido = FixturesPedido.pedidoConLineas(lineas);
+        lineaNueva = pedido.getDetalles().get(pedido.getDetalles().size() - 1);
+        dto = PedidoResponseDTO.fromEntity(pedido);
+        // Mismo mapper que arma Spring Boot por defecto (sin módulos extra)
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        
+        escritor = new EscritorJsonRespuestas(objectMapper);
+        planCompleto = escritor.planPedido(null);
+        planResumen = escritor.planPedido("id,fecha,total,estado");
+        filas = Map.of(pedido.getId(), pedido.getDetalles().stream().map(d -> {
+            ProductoVariante v = d.getVariante();
+            return new DetalleHistorialFila(pedido.getId(), d.getId(), d.getCantidad(), d.getPrecioUnitarioCentavos(),
+                    v.getId(), v.getSku(), v.getColor(), v.getTalle(), v.getPrecioCentavos(), v.getStockDisponible(),
+                    v.getProducto().getId(), v.getProducto().getNombre());
+        }).toList());
+    }
+    
+    @Benchmark
+    public PedidoResponseDTO convertirADTO() {
+        return PedidoResponseDTO.fromEntity(pedido);
+    }
+    
+    @Benchmark
+    public UsuarioDTO usuarioFromEntity() {
+        return UsuarioDTO.fromEntity(pedido.getUsuario());
+    }
+    
+    @Benchmark
+    public double totalRecorriendoDetalles() {
+        // Versión anterior de agregarItem: suma de cantidad * precio en double sobre todas las líneas
+        return pedido.getDetalles().stream()
+                .mapToDouble(detalle -> detalle.getCantidad() * detalle.getPrecioUnitario())
+                .sum();
+    }
+    
+    @Benchmark
+    public long totalIncremental() {
+        return Math.addExact(pedido.getTotalCentavos(),
+                Dinero.subtotal(lineaNueva.getPrecioUnitarioCentavos(), lineaNueva.getCantidad()));
+    }
+    
+    @Benchmark
+    public byte[] serializarRespuesta() throws Exception {
+        return objectMapper.writeValueAsBytes(dto);
+    }
+    
+    @Benchmark
+    public byte[] mapearYSerializar() throws Exception {
+        return objectMapper.writeValueAsBytes(PedidoResponseDTO.fromEntity(pedido));
+    }
+    
+    @Benchmark
+    public byte[] escritorDirecto() {
+        return escritor.pedidos(List.of(pedido), filas, planCompleto);
+    }
+    
+    @Benchmark
+    public byte[] escritorDirectoResumen() {
+        return escritor.pedidos(List.of(pedido), Map.of(), planResumen);
+    }
+}
@@ -0,0 +1,332 @@
+package com.hrk.tienda_b2b.carga;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Prueba de carga del checkout completo contra el backend con el perfil "carga" (H2 + datos sembrados).
+ *
+ * Cada usuario virtual repite la secuencia del frontend:
+ *   POST /api/pedidos/crear-completo  (o POST /crear + N × POST /{id}/items, según proporcion-completo)
+ *   POST /api/pedidos/{id}/confirmar
+ *   GET  /api/pedidos?clienteId=      (según proporcion-historial)
+ *
+ * Informa por paso p50/p95/p99, throughput, % de errores y sentencias SQL por request
+ * (header X-Sql-Sentencias que agrega SentenciasSqlFilter en el perfil "carga").
+ *
+ * Solo usa el JDK (21+), se corre sin compilar:
+ *   java carga/PruebaCargaCheckout.java --concurrencia=64 --duracion-s=60
+ *   java carga/PruebaCargaCheckout.java --app-jar=target/tienda_b2b.jar   (levanta el backend y lo apaga al final)
+ */
+public class PruebaCargaCheckout {
+    
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final String SQL_HEADER = "X-Sql-Sentencias";
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = leerOpciones(args);
+        Configuracion config = new Configuracion(opciones);
+        
+        Process backend = null;
+        if (opciones.containsKey("app-jar")) {
+            backend = levantarBackend(opciones.get("app-jar"), config);
+        }
+        try {
+            esperarBackend(config);
+            Resultado resultado = correr(config);
+            resultado.imprimir(System.out, config);
+            if (opciones.containsKey("salida-json")) {
+                Files.writeString(Path.of(opciones.get("salida-json")), resultado.aJson(config));
+            }
+        } finally {
+            if (backend != null) {
+                backend.destroy();
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------ ejecución
+    
+    private static Resultado correr(Configuracion config) throws Exception {
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        
+        long inicioMedicion = System.nanoTime() + config.calentamientoS * 1_000_000_000L;
+        long fin = inicioMedicion + config.duracionS * 1_000_000_000L;
+        
+        List<Future<Registro>> usuarios = new ArrayList<>();
+        try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < config.concurrencia; i++) {
+                usuarios.add(ejecutor.submit(() -> usuarioVirtual(cliente, config, inicioMedicion, fin)));
+            }
+        }
+        
+        Resultado resultado = new Resultado();
+        for (Future<Registro> usuario : usuarios) {
+            resultado.sumar(usuario.get());
+        }
+        return resultado;
+    }
+    
+    private static Registro usuarioVirtual(HttpClient cliente, Configuracion config, long inicioMedicion, long fin) {
+        Registro registro = new Registro();
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        
+        while (System.nanoTime() < fin) {
+            boolean medir = System.nanoTime() >= inicioMedicion;
+            Registro destino = medir ? registro : new Registro();
+            long clienteId = 1 + azar.nextInt(config.usuarios);
+            long inicioCheckout = System.nanoTime();
+            
+            Long pedidoId;
+            if (azar.nextDouble() < config.proporcionCompleto) {
+                StringBuilder items = new StringBuilder();
+                for (int i = 0; i < config.items; i++) {
+                    items.append(i == 0 ? "" : ",")
+                            .append("{\"varianteId\":").append(1 + azar.nextInt(config.variantes))
+                            .append(",\"cantidad\":").append(1 + azar.nextInt(5)).append('}');
+                }
+                pedidoId = enviar(cliente, destino, "crear-completo", post(config, "/api/pedidos/crear-completo",
+                        "{\"clienteId\":" + clienteId + ",\"items\":[" + items + "]}"));
+            } else {
+                pedidoId = enviar(cliente, destino, "crear", post(config, "/api/pedidos/crear",
+                        "{\"clienteId\":" + clienteId + "}"));
+                for (int i = 0; i < config.items && pedidoId != null; i++) {
+                    String ruta = "/api/pedidos/" + pedidoId + "/items?varianteId=" + (1 + azar.nextInt(config.variantes))
+                            + "&cantidad=" + (1 + azar.nextInt(5));
+                    if (enviar(cliente, destino, "items", post(config, ruta, "{}")) == null) {
+                        pedidoId = null;
+                    }
+                }
+            }
+            if (pedidoId == null) {
+                // Checkout fallido antes de confirmar: cuenta como error del paso completo
+                destino.registrar("checkout", System.nanoTime() - inicioCheckout, false, -1);
+                continue;
+            }
+            
+            boolean confirmado = enviar(cliente, destino, "confirmar",
+                    post(config, "/api/pedidos/" + pedidoId + "/confirmar", "{}")) != null;
+            destino.registrar("checkout", System.nanoTime() - inicioCheckout, confirmado, -1);
+            
+            if (azar.nextDouble() < config.proporcionHistorial) {
+                enviar(cliente, destino, "historial", HttpRequest.newBuilder(
+                        URI.create(config.url + "/api/pedidos?clienteId=" + clienteId)).GET().build());
+            }
+        }
+        return registro;
+    }
+    
+    private static HttpRequest post(Configuracion config, String ruta, String json) {
+        return HttpRequest.newBuilder(URI.create(config.url + ruta))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+    
+    // Devuelve el id del pedido de la respuesta (o 0 si no tiene), null si falló
+    private static Long enviar(HttpClient cliente, Registro registro, String paso, HttpRequest request) {
+        long inicio = System.nanoTime();
+        try {
+            HttpResponse<String> respuesta = cliente.send(request, HttpResponse.BodyHandlers.ofString());
+            boolean ok = respuesta.statusCode() / 100 == 2;
+            int sentencias = respuesta.headers().firstValue(SQL_HEADER).map(Integer::parseInt).orElse(-1);
+            registro.registrar(paso, System.nanoTime() - inicio, ok, sentencias);
+            if (!ok) {
+                registro.contarEstado(paso, respuesta.statusCode());
+                return null;
+            }
+            Matcher m = ID.matcher(respuesta.body());
+            return m.find() ? Long.parseLong(m.group(1)) : 0L;
+        } catch (IOException e) {
+            registro.registrar(paso, System.nanoTime() - inicio, false, -1);
+            registro.contarEstado(paso, 0);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+    
+    // ------------------------------------------------------------------ backend
+    
+    private static Process levantarBackend(String jar, Configuracion config) throws IOException {
+        String puerto = URI.create(config.url).getPort() > 0 ? String.valueOf(URI.create(config.url).getPort()) : "8081";
+        System.out.println("Levantando backend con perfil carga (" + jar + ")...");
+        return new ProcessBuilder("java", "-jar", jar, "--spring.profiles.active=carga", "--server.port=" + puerto)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new java.io.File("carga-backend.log")))
+                .redirectErrorStream(true)
+                .start();
+    }
+    
+    private static void esperarBackend(Configuracion config) throws InterruptedException {
+        HttpClient cliente = HttpClient.newHttpClient();
+        HttpRequest ping = HttpRequest.newBuilder(URI.create(config.url + "/api/test/ping")).GET().build();
+        long limite = System.currentTimeMillis() + 120_000;
+        while (System.currentTimeMillis() < limite) {
+            try {
+                if (cliente.send(ping, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    // Margen para que termine la siembra de datos (corre en ApplicationReadyEvent)
+                    Thread.sleep(2_000);
+                    return;
+                }
+            } catch (IOException e) {
+                // todavía no levantó
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("El backend no respondió en " + config.url + " después de 2 minutos");
+    }
+    
+    // ------------------------------------------------------------------ configuración
+    
+    private static Map<String, String> leerOpciones(String[] args) {
+        Map<String, String> opciones = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Opción inválida: " + arg + " (formato --clave=valor)");
+            }
+            int igual = arg.indexOf('=');
+            opciones.put(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+        return opciones;
+    }
+    
+    private static final class Configuracion {
+        final String url;
+        final int concurrencia;
+        final int duracionS;
+        final int calentamientoS;
+        final int items;
+        final double proporcionCompleto;
+        final double proporcionHistorial;
+        final int usuarios;
+        final int variantes;
+        
+        Configuracion(Map<String, String> o) {
+            url = o.getOrDefault("url", "http://localhost:8081");
+            concurrencia = Integer.parseInt(o.getOrDefault("concurrencia", "32"));
+            duracionS = Integer.parseInt(o.getOrDefault("duracion-s", "60"));
+            calentamientoS = Integer.parseInt(o.getOrDefault("calentamiento-s", "10"));
+            items = Integer.parseInt(o.getOrDefault("items", "5"));
+            // El frontend actual usa crear-completo; 0 reproduce el flujo anterior (crear + items)
+            proporcionCompleto = Double.parseDouble(o.getOrDefault("proporcion-completo", "1.0"));
+            proporcionHistorial = Double.parseDouble(o.getOrDefault("proporcion-historial", "1.0"));
+            // Tienen que coincidir con hrk.carga.* de application-carga.properties
+            usuarios = Integer.parseInt(o.getOrDefault("usuarios", "200"));
+            variantes = Integer.parseInt(o.getOrDefault("variantes", "1800"));
+        }
+    }
+    
+    // ------------------------------------------------------------------ resultados
+    
+    private static final class Registro {
+        final Map<String, List<Long>> latencias = new TreeMap<>();
+        final Map<String, long[]> contadores = new TreeMap<>();   // {total, errores, sentencias, con header}
+        final Map<String, Map<Integer, Integer>> estados = new TreeMap<>();
+        
+        void registrar(String paso, long nanos, boolean ok, int sentencias) {
+            latencias.computeIfAbsent(paso, p -> new ArrayList<>()).add(nanos);
+            long[] c = contadores.computeIfAbsent(paso, p -> new long[4]);
+            c[0]++;
+            if (!ok) {
+                c[1]++;
+            }
+            if (sentencias >= 0) {
+                c[2] += sentencias;
+                c[3]++;
+            }
+        }
+        
+        void contarEstado(String paso, int estado) {
+            estados.computeIfAbsent(paso, p -> new TreeMap<>()).merge(estado, 1, Integer::sum);
+        }
+    }
+    
+    private static final class Resultado {
+        final Registro total = new Registro();
+        
+        void sumar(Registro r) {
+            r.latencias.forEach((paso, lista) -> total.latencias.computeIfAbsent(paso, p -> new ArrayList<>()).addAll(lista));
+            r.contadores.forEach((paso, c) -> {
+                long[] t = total.contadores.computeIfAbsent(paso, p -> new long[4]);
+                for (int i = 0; i < t.length; i++) {
+                    t[i] += c[i];
+                }
+            });
+            r.estados.forEach((paso, m) -> m.forEach((estado, n) ->
+                    total.estados.computeIfAbsent(paso, p -> new TreeMap<>()).merge(estado, n, Integer::sum)));
+        }
+        
+        void imprimir(PrintStream out, Configuracion config) {
+            out.printf("%nConcurrencia %d, %d s medidos (%d s de calentamiento), %d items por pedido%n%n",
+                    config.concurrencia, config.duracionS, config.calentamientoS, config.items);
+            out.printf("%-15s %9s %9s %9s %9s %9s %8s %9s%n",
+                    "paso", "req", "req/s", "p50 ms", "p95 ms", "p99 ms", "error %", "SQL/req");
+            for (String paso : total.latencias.keySet()) {
+                long[] c = total.contadores.get(paso);
+                long[] ordenadas = ordenar(total.latencias.get(paso));
+                out.printf("%-15s %9d %9.1f %9.2f %9.2f %9.2f %8.2f %9s%n", paso, c[0],
+                        c[0] / (double) config.duracionS,
+                        percentil(ordenadas, 50), percentil(ordenadas, 95), percentil(ordenadas, 99),
+                        100.0 * c[1] / c[0], c[3] > 0 ? String.format("%.1f", c[2] / (double) c[3]) : "-");
+            }
+            if (!total.estados.isEmpty()) {
+                out.println("\nErrores por paso (estado HTTP, 0 = error de conexión): " + total.estados);
+            }
+        }
+        
+        String aJson(Configuracion config) {
+            StringBuilder json = new StringBuilder("{\"concurrencia\":").append(config.concurrencia)
+                    .append(",\"duracionS\":").append(config.duracionS)
+                    .append(",\"items\":").append(config.items).append(",\"pasos\":{");
+            boolean primero = true;
+            for (String paso : total.latencias.keySet()) {
+                long[] c = total.contadores.get(paso);
+                long[] ordenadas = ordenar(total.latencias.get(paso));
+                json.append(primero ? "" : ",").append('"').append(paso).append("\":{")
+                        .append("\"requests\":").append(c[0])
+                        .append(",\"porSegundo\":").append(c[0] / (double) config.duracionS)
+                        .append(",\"p50Ms\":").append(percentil(ordenadas, 50))
+                        .append(",\"p95Ms\":").append(percentil(ordenadas, 95))
+                        .append(",\"p99Ms\":").append(percentil(ordenadas, 99))
+                        .append(",\"errores\":").append(c[1])
+                        .append(",\"sqlPorRequest\":").append(c[3] > 0 ? c[2] / (double) c[3] : -1)
+                        .append('}');
+                primero = false;
+            }
+            return json.append("}}").toString();
+        }
+        
+        private static long[] ordenar(List<Long> lista) {
+            long[] valores = lista.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(valores);
+            return valores;
+        }
+        
+        private static double percentil(long[] ordenadas, double p) {
+            if (ordenadas.length == 0) {
+                return 0;
+            }
+            int indice = (int) Math.ceil(p / 100.0 * ordenadas.length) - 1;
+            return ordenadas[Math.max(0, Math.min(indice, ordenadas.length - 1))] / 1_000_000.0;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.hrk.tienda_b2b.controller;
 
+import com.hrk.tienda_b2b.dto.PaginaDTO;
 import com.hrk.tienda_b2b.dto.UsuarioDTO;
 import com.hrk.tienda_b2b.model.Usuario;
 import com.hrk.tienda_b2b.model.TipoUsuario;
+import com.hrk.tienda_b2b.service.EscritorJsonRespuestas;
 import com.hrk.tienda_b2b.service.UsuarioService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,14 +21,54 @@ import java.util.Map;
 public class UsuarioController {
     
     private final UsuarioService usuarioService;
+    private final EscritorJsonRespuestas escritorJson;
 
+    // Lista completa: solo para exportaciones. Las pantallas usan /directorio o /sugerencias.
+    // Se escribe directo desde las entidades; fields= opcional (ej: id,nombreRazonSocial)
     @GetMapping
-    public ResponseEntity<List<UsuarioDTO>> obtenerTodos() {
+    public ResponseEntity<byte[]> obtenerTodos(@RequestParam(required = false) String fields) {
+        EscritorJsonRespuestas.PlanUsuario plan;
+        try {
+            plan = escritorJson.planUsuario(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
         List<Usuario> usuarios = usuarioService.obtenerTodos();
-        List<UsuarioDTO> usuariosDTO = usuarios.stream()
-                .map(UsuarioDTO::fromEntity)
-                .toList();
-        return ResponseEntity.ok(usuariosDTO);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(escritorJson.usuarios(usuarios, plan));
+    }
+
+    /**
+     * Directorio paginado: q busca por prefijo en nombre y email (contiene=true, en cualquier posición),
+     * tipo filtra por CLIENTE/ADMIN y orden es campo[,asc|desc] sobre nombreRazonSocial, email o id.
+     */
+    @GetMapping("/directorio")
+    public ResponseEntity<PaginaDTO<UsuarioDTO>> directorio(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "false") boolean contiene,
+            @RequestParam(required = false) TipoUsuario tipo,
+            @RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "20") int tamano,
+            @RequestParam(required = false) String orden) {
+        try {
+            return ResponseEntity.ok(usuarioService.directorio(q, contiene, tipo, pagina, tamano, orden));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Typeahead: los mejores "limite" usuarios cuyo nombre o email contienen q, desde el índice en memoria
+    @GetMapping("/sugerencias")
+    public ResponseEntity<List<UsuarioDTO>> sugerencias(
+            @RequestParam String q,
+            @RequestParam(required = false) TipoUsuario tipo,
+            @RequestParam(defaultValue = "10") int limite) {
+        try {
+            return ResponseEntity.ok(usuarioService.sugerencias(q, tipo, limite));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/{id}")
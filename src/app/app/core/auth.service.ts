@@ -188,8 +188,27 @@ export class AuthService {
   }
 
   // Métodos para selección de cliente (solo para vendedores)
+  // Sin texto: primera página del directorio. Con texto: sugerencias del índice del backend
+  buscarClientes(texto: string, limite = 20): Observable<Cliente[]> {
+    const q = texto.trim();
+    const aCliente = (u: { id: number; nombreRazonSocial: string; email: string }): Cliente =>
+      ({ id: u.id, nombre: u.nombreRazonSocial, email: u.email, activo: true });
+
+    if (!q) {
+      const params = { tipo: 'CLIENTE', pagina: '0', tamano: String(limite), orden: 'nombreRazonSocial,asc' };
+      return this.http.get<{ items: Usuario[] }>(`${this.API_URL}/usuarios/directorio`,
+        { headers: this.getAuthHeaders(), params }
+      ).pipe(map(pagina => pagina.items.map(aCliente)));
+    }
+
+    const params = { q, tipo: 'CLIENTE', limite: String(limite) };
+    return this.http.get<Usuario[]>(`${this.API_URL}/usuarios/sugerencias`,
+      { headers: this.getAuthHeaders(), params }
+    ).pipe(map(usuarios => usuarios.map(aCliente)));
+  }
+
   getClientes(): Observable<Cliente[]> {
-    return of(this.mockClients);
+    return this.buscarClientes('');
   }
 
   selectClient(cliente: Cliente): void {
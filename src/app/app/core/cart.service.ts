@@ -1,6 +1,7 @@
 import { Injectable } from '@angular/core';
-import { Observable } from 'rxjs';
-import { HttpClient } from '@angular/common/http';
+import { Observable, of } from 'rxjs';
+import { HttpClient, HttpHeaders } from '@angular/common/http';
+import { catchError, map } from 'rxjs/operators';
 import { OrdersService, ItemPedido } from './orders.service';
 
 export interface PedidoDetalleDTO {
@@ -19,9 +20,20 @@ export interface CarritoItemDTO {
   productoNombre: string;
   subtotal: number;
 }
+// GET /api/carrito (CarritoDTO del backend, del usuario del token)
+interface CarritoServidorDTO {
+  clienteId: number;
+  items: {
+    varianteId: number; cantidad: number; precioUnitario: number; subtotal: number;
+    sku: string; color: string; talle: string; productoNombre: string; disponible: boolean;
+  }[];
+  cantidadItems: number;
+  total: number;
+}
+
 export interface PedidoDTO {
   id: number; clienteId: number; fecha: string;
-  estado: 'BORRADOR'|'DOCUMENTADO'|'CONFIRMADO'|'ABONADO'|'ENVIADO'|'ENTREGADO'|'CANCELADO';
+  estado: 'EN_ARMADO'|'BORRADOR'|'DOCUMENTADO'|'CONFIRMADO'|'ABONADO'|'ENVIADO'|'ENTREGADO'|'CANCELADO';
   total: number;
   detalles: PedidoDetalleDTO[];
   usuario?: {
@@ -33,9 +45,12 @@ export interface PedidoDTO {
 
 @Injectable({ providedIn: 'root' })
 export class CartService {
-  private base = '/api/carrito';
+  private readonly API_URL = 'http://localhost:8081/api';
   private carritoItems: CarritoItemDTO[] = [];
   private carritoId?: number;
+  // El carrito vive en el servidor: localStorage queda como copia para mostrarlo al instante
+  private clienteId?: number;
+  private sincronizadoConServidor = false;
   private readonly CART_STORAGE_KEY = 'cart_items';
   private readonly CART_ID_STORAGE_KEY = 'carrito_id';
   
@@ -86,32 +101,68 @@ export class CartService {
   }
 
   crear(clienteId: number): Observable<number> {
-    // Solo crear un nuevo carrito si no existe uno
-    if (this.carritoId) {
-      console.log('🔵 [CART SERVICE] Carrito ya existe:', this.carritoId);
-      return new Observable(observer => {
-        observer.next(this.carritoId!);
-        observer.complete();
-      });
+    // El carrito del servidor es uno por cliente: su id es el del cliente
+    this.carritoId = clienteId;
+    this.clienteId = clienteId;
+    this.saveCarritoToStorage();
+    if (this.sincronizadoConServidor) {
+      return of(clienteId);
     }
 
-    // Mock: simular creación de carrito
-    return new Observable(observer => {
-      setTimeout(() => {
-        this.carritoId = Math.floor(Math.random() * 1000) + 1;
-        // No limpiar items existentes, mantener el carrito persistente
-        console.log('🔵 [CART SERVICE] Nuevo carrito creado:', this.carritoId);
-        this.saveCarritoToStorage();
-        observer.next(this.carritoId);
-        observer.complete();
-      }, 300);
-    });
+    return this.http.get<CarritoServidorDTO>(`${this.API_URL}/carrito`, { headers: this.headersAuth() }).pipe(
+      map(carrito => {
+        this.sincronizadoConServidor = true;
+        if (carrito.items.length > 0) {
+          console.log('🔵 [CART SERVICE] Carrito cargado desde el servidor:', carrito);
+          this.carritoItems = carrito.items
+            .filter(item => item.disponible)
+            .map((item, i) => ({
+              id: i + 1,
+              varianteId: item.varianteId,
+              cantidad: item.cantidad,
+              precioUnitario: item.precioUnitario,
+              sku: item.sku,
+              color: item.color,
+              talle: item.talle,
+              productoNombre: item.productoNombre,
+              subtotal: item.subtotal
+            }));
+          // Las variantes que salieron del catálogo no se pueden pedir: se sacan también del servidor
+          carrito.items.filter(item => !item.disponible)
+            .forEach(item => this.sincronizarLinea(item.varianteId, 0));
+          this.saveCarritoToStorage();
+        } else {
+          // Carrito armado antes de que existiera el del servidor: se sube
+          this.carritoItems.forEach(item => this.sincronizarLinea(item.varianteId, item.cantidad));
+        }
+        return clienteId;
+      }),
+      catchError(error => {
+        console.error('🔴 [CART SERVICE] No se pudo cargar el carrito del servidor, se usa el local:', error);
+        return of(clienteId);
+      })
+    );
   }
-  
+
+  // El backend toma el cliente del token, no de la URL
+  private headersAuth(): HttpHeaders {
+    const token = typeof window !== 'undefined' && window.localStorage ? localStorage.getItem('token') : null;
+    return new HttpHeaders({ 'Authorization': token ? `Bearer ${token}` : '' });
+  }
+
+  // PUT con la cantidad absoluta: si se repite por un reintento el resultado es el mismo
+  private sincronizarLinea(varianteId: number, cantidad: number): void {
+    if (!this.clienteId) return;
+    this.http.put(`${this.API_URL}/carrito/items/${varianteId}`, null, { headers: this.headersAuth(), params: { cantidad } })
+      .subscribe({
+        error: (error) => console.error('🔴 [CART SERVICE] No se pudo actualizar el carrito en el servidor:', error)
+      });
+  }
+
   agregarItem(carritoId: number, varianteId: number, cantidad: number): Observable<void> {
     return new Observable(observer => {
       // Obtener datos reales de la variante del backend
-      this.http.get<any>(`http://localhost:8081/api/productos`).subscribe({
+      this.http.get<any>(`${this.API_URL}/catalogo`).subscribe({
         next: (productos) => {
           // Buscar la variante en todos los productos
           let varianteEncontrada = null;
@@ -141,6 +192,7 @@ export class CartService {
           if (existingItem) {
             existingItem.cantidad += cantidad;
             existingItem.subtotal = existingItem.cantidad * existingItem.precioUnitario;
+            this.sincronizarLinea(varianteId, existingItem.cantidad);
           } else {
             // Generar ID único para el item
             const newId = Math.max(0, ...this.carritoItems.map(item => item.id)) + 1;
@@ -156,6 +208,7 @@ export class CartService {
               subtotal: cantidad * varianteEncontrada.precio
             };
             this.carritoItems.push(newItem);
+            this.sincronizarLinea(varianteId, cantidad);
           }
           
           console.log(`Agregando ${cantidad} unidades de variante ${varianteId} al carrito ${carritoId}`);
@@ -217,11 +270,20 @@ export class CartService {
   limpiarCarrito(): void {
     this.carritoItems = [];
     this.saveCarritoToStorage();
+    if (this.clienteId) {
+      this.http.delete(`${this.API_URL}/carrito`, { headers: this.headersAuth() }).subscribe({
+        error: (error) => console.error('🔴 [CART SERVICE] No se pudo vaciar el carrito en el servidor:', error)
+      });
+    }
     console.log('🔵 [CART SERVICE] Carrito limpiado y guardado');
   }
 
   // Remover item específico del carrito
   removerItem(itemId: number): void {
+    const removido = this.carritoItems.find(item => item.id === itemId);
+    if (removido) {
+      this.sincronizarLinea(removido.varianteId, 0);
+    }
     this.carritoItems = this.carritoItems.filter(item => item.id !== itemId);
     this.saveCarritoToStorage();
     console.log('🔵 [CART SERVICE] Item removido del carrito:', itemId);
@@ -236,6 +298,7 @@ export class CartService {
       } else {
         item.cantidad = nuevaCantidad;
         item.subtotal = item.cantidad * item.precioUnitario;
+        this.sincronizarLinea(item.varianteId, nuevaCantidad);
         this.saveCarritoToStorage();
         console.log('🔵 [CART SERVICE] Cantidad actualizada para item:', itemId, 'Nueva cantidad:', nuevaCantidad);
       }
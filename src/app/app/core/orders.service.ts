@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
-import { Observable, of, forkJoin, from } from 'rxjs';
-import { HttpClient, HttpErrorResponse } from '@angular/common/http';
-import { tap, catchError, map, switchMap, concatMap, toArray } from 'rxjs/operators';
+import { Observable, of, forkJoin, timer, throwError, MonoTypeOperatorFunction } from 'rxjs';
+import { HttpClient, HttpErrorResponse, HttpHeaders } from '@angular/common/http';
+import { tap, catchError, map, retry } from 'rxjs/operators';
 
 export enum EstadoPedido {
   PENDIENTE = 'Pendiente',
@@ -128,6 +128,7 @@ export class OrdersService {
     if (typeof dto.estado === 'string') {
       // Mapear estados del backend a nuestros enums
       switch (dto.estado.toUpperCase()) {
+        case 'EN_ARMADO':
         case 'BORRADOR':
         case 'PENDIENTE':
           estadoMapeado = EstadoPedido.PENDIENTE;
@@ -238,74 +239,51 @@ export class OrdersService {
     this.nextId = 7;
   }
 
+  // Header Idempotency-Key para los POST de pedidos (ver IdempotenciaFilter en el backend)
+  private headersIdempotentes(): HttpHeaders {
+    const clave = typeof crypto !== 'undefined' && 'randomUUID' in crypto
+      ? crypto.randomUUID()
+      : `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+    return new HttpHeaders({ 'Idempotency-Key': clave });
+  }
+
+  // Reintenta (con la misma clave) solo si no hubo respuesta, el backend estaba saturado o la misma clave seguía en curso
+  private reintentarFallasTransitorias<T>(): MonoTypeOperatorFunction<T> {
+    return retry({
+      count: 2,
+      delay: (error: HttpErrorResponse, intento: number) =>
+        [0, 409, 502, 503, 504].includes(error.status) ? timer(500 * intento) : throwError(() => error)
+    });
+  }
+
   // Crear un nuevo pedido desde el carrito
   crearPedido(clienteId: number, items: ItemPedido[], metodoPago?: string, usuarioInfo?: {nombreRazonSocial: string, email: string}): Observable<Pedido> {
     console.log('🔵 [ORDERS SERVICE] Creando pedido para cliente:', clienteId, 'items:', items, 'método de pago:', metodoPago, 'usuario:', usuarioInfo);
 
-    // Paso 1: Crear pedido básico con información del usuario
-    const requestBody = usuarioInfo ? {
+    // Pedido y todas sus líneas en una sola llamada (el backend inserta los detalles en batch)
+    const requestBody = {
       clienteId: clienteId,
       metodoPago: metodoPago, // ⭐ INCLUIR MÉTODO DE PAGO
-      usuario: {
+      usuario: usuarioInfo ? {
         nombreRazonSocial: usuarioInfo.nombreRazonSocial,
         email: usuarioInfo.email
-      }
-    } : { 
-      clienteId: clienteId,
-      metodoPago: metodoPago // ⭐ INCLUIR MÉTODO DE PAGO
+      } : undefined,
+      items: items.map(item => ({
+        varianteId: item.varianteId,
+        cantidad: item.cantidad
+      }))
     };
     
     console.log('🔵 [ORDERS SERVICE] Request body que se envía al backend:', requestBody);
     
-    return this.http.post<any>(`${this.API_URL}/pedidos/crear`, requestBody).pipe(
-      switchMap((pedidoCreado: any) => {
-        console.log('🔵 [ORDERS SERVICE] Pedido básico creado:', pedidoCreado);
-        
-        // Paso 2: Agregar items SECUENCIALMENTE para evitar deadlocks
-        let ultimaRespuestaPedido: any = null;
-        
-        // Crear un stream secuencial de operaciones usando from y concatMap
-        return from(items).pipe(
-          concatMap(item => 
-            this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/${pedidoCreado.id}/items?varianteId=${item.varianteId}&cantidad=${item.cantidad}`, {}).pipe(
-              map((response: PedidoResponseDTO) => {
-                console.log('🔵 [ORDERS SERVICE] Item agregado:', item.varianteId, 'cantidad:', item.cantidad, 'response:', response);
-                ultimaRespuestaPedido = response; // Guardar la última respuesta exitosa
-                return { success: true, pedidoResponse: response, item };
-              }),
-              catchError((error: HttpErrorResponse) => {
-                console.error('🔴 [ORDERS SERVICE] Error al agregar item:', item.varianteId, 'error:', error);
-                return of({ success: false, error: error, item });
-              })
-            )
-          ),
-          // Recopilar todos los resultados al final
-          toArray(),
-          map((resultados: any[]) => {
-            const itemsExitosos = resultados.filter(r => r && r.success);
-            console.log('🔵 [ORDERS SERVICE] Items agregados exitosamente:', itemsExitosos.length, 'de', items.length);
-            
-            // Si tenemos una respuesta exitosa guardada, usar esos datos del backend
-            if (ultimaRespuestaPedido) {
-              const pedidoFinal = this.mapToPedido(ultimaRespuestaPedido);
-              console.log('🔵 [ORDERS SERVICE] Pedido final desde backend:', pedidoFinal);
-              return pedidoFinal;
-            }
-            
-            // Fallback si no hay respuestas exitosas
-            console.log('🟡 [ORDERS SERVICE] No hay respuesta exitosa guardada, usando pedido básico');
-            const pedidoFinal: Pedido = {
-              id: pedidoCreado.id,
-              clienteId: clienteId,
-              fecha: new Date(pedidoCreado.fecha || new Date()),
-              montoTotal: pedidoCreado.total || 0,
-              estado: EstadoPedido.PENDIENTE,
-              tipo: TipoPedido.PEDIDO,
-              items: items
-            };
-            return pedidoFinal;
-          })
-        );
+    // Una clave por checkout: los reintentos la repiten y el backend devuelve el mismo pedido en lugar de crear otro
+    const headers = this.headersIdempotentes();
+    return this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/crear-completo`, requestBody, { headers }).pipe(
+      this.reintentarFallasTransitorias(),
+      map((response: PedidoResponseDTO) => {
+        const pedidoFinal = this.mapToPedido(response);
+        console.log('🔵 [ORDERS SERVICE] Pedido final desde backend:', pedidoFinal);
+        return pedidoFinal;
       }),
       catchError((error): Observable<Pedido> => {
         console.error('🔴 [ORDERS SERVICE] Error al crear pedido:', error);
@@ -314,7 +292,7 @@ export class OrdersService {
         
         if (error.status === 500) {
           console.error('🔴 [ORDERS SERVICE] Error 500: Problema interno del servidor al crear pedido');
-          console.error('🔴 [ORDERS SERVICE] Verificar que el endpoint POST /api/pedidos/crear esté implementado correctamente');
+          console.error('🔴 [ORDERS SERVICE] Verificar que el endpoint POST /api/pedidos/crear-completo esté implementado correctamente');
         } else if (error.status === 404) {
           console.error('🔴 [ORDERS SERVICE] Error 404: Endpoint no encontrado');
         }
@@ -499,7 +477,8 @@ export class OrdersService {
     
     if (nuevoEstado === EstadoPedido.ENTREGADO) {
       // Usar endpoint confirmar para marcar como entregado
-      return this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/${pedidoId}/confirmar`, {}).pipe(
+      return this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/${pedidoId}/confirmar`, {}, { headers: this.headersIdempotentes() }).pipe(
+        this.reintentarFallasTransitorias(),
         tap(response => {
           console.log('🔵 [ORDERS SERVICE] Pedido confirmado:', response);
         }),
@@ -510,7 +489,8 @@ export class OrdersService {
       );
     } else if (nuevoEstado === EstadoPedido.PENDIENTE) {
       // Para cancelar, necesitaríamos un endpoint específico o usar el existente de cancelar
-      return this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/${pedidoId}/cancelar`, {}).pipe(
+      return this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/${pedidoId}/cancelar`, {}, { headers: this.headersIdempotentes() }).pipe(
+        this.reintentarFallasTransitorias(),
         tap(response => {
           console.log('🔵 [ORDERS SERVICE] Pedido cancelado:', response);
         }),
@@ -522,7 +502,8 @@ export class OrdersService {
     } else {
       // Para otros estados, por ahora usar confirmar por defecto
       console.log('🟡 [ORDERS SERVICE] Estado no específico, usando confirmar por defecto');
-      return this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/${pedidoId}/confirmar`, {}).pipe(
+      return this.http.post<PedidoResponseDTO>(`${this.API_URL}/pedidos/${pedidoId}/confirmar`, {}, { headers: this.headersIdempotentes() }).pipe(
+        this.reintentarFallasTransitorias(),
         catchError((error: HttpErrorResponse) => {
           console.error('🔴 [ORDERS SERVICE] Error al cambiar estado:', error);
           throw error;
@@ -13,6 +13,17 @@ export interface VarianteDTO {
   stockDisponible: number;
 }
 
+export interface ResultadoImportacion {
+  soloValidacion: boolean;
+  filasLeidas: number;
+  filasImportadas: number;
+  productosCreados: number;
+  lotes: number;
+  totalErrores: number;
+  errores: { fila: number; sku: string | null; mensaje: string }[];
+  milisegundos: number;
+}
+
 export interface CategoriaDTO { 
   id: number; 
   nombre: string; 
@@ -63,6 +74,11 @@ export class ProductsService {
       return categoryImageUrl;
     }
     
+    // Imagen guardada por hash de contenido (AlmacenImagenesService): se sirve desde el backend
+    if (imageUrl.startsWith('/imagenes/')) {
+      return `${this.BASE_URL}${imageUrl}`;
+    }
+    
     // Si es una imagen subida al backend, usar URL directa al backend
     if (imageUrl.startsWith('/uploads/') || imageUrl.startsWith('uploads/')) {
       const normalizedUrl = imageUrl.startsWith('/') ? imageUrl : `/${imageUrl}`;
@@ -93,13 +109,44 @@ export class ProductsService {
     return imageUrl;
   }
 
+  // Versión reducida de una imagen guardada por hash (miniatura ~240px, mediana ~800px).
+  // Las demás URLs (categorías, /uploads viejos) no tienen versiones y se devuelven sin cambios
+  imagenVariante(imageUrl: string | undefined, tamano: 'miniatura' | 'mediana'): string {
+    if (!imageUrl) {
+      return '';
+    }
+    const marca = '/imagenes/';
+    const posicion = imageUrl.indexOf(marca);
+    if (posicion < 0) {
+      return imageUrl;
+    }
+    const nombre = imageUrl.substring(posicion + marca.length);
+    if (nombre.includes('/')) {
+      return imageUrl;
+    }
+    return `${imageUrl.substring(0, posicion)}${marca}${tamano}/${nombre}`;
+  }
+
+  // Importación masiva: el archivo va como cuerpo crudo (no multipart) para que el backend lo lea en streaming
+  importarCatalogo(file: File, soloValidar: boolean): Observable<ResultadoImportacion> {
+    const esCsv = file.name.toLowerCase().endsWith('.csv');
+    const token = typeof window !== 'undefined' && window.localStorage ? localStorage.getItem('token') : null;
+    const headers = new HttpHeaders({
+      'Content-Type': esCsv ? 'text/csv' : 'application/x-ndjson',
+      'Authorization': token ? `Bearer ${token}` : ''
+    });
+    return this.http.post<ResultadoImportacion>(`${this.API_URL}/importaciones/catalogo`, file,
+      { headers, params: { soloValidar: String(soloValidar) } });
+  }
+
   // Método para subir imagen
   uploadImage(file: File): Observable<string> {
     const formData = new FormData();
     formData.append('file', file);
     
-    // URL para subir imágenes - usar URL directa temporalmente
-    const uploadUrl = 'http://localhost:8081/uploads';
+    // Las imágenes se guardan por hash de contenido; la respuesta es la URL /imagenes/<sha256>.<ext>
+    const uploadUrl = `${this.API_URL}/imagenes`;
+    const token = typeof window !== 'undefined' && window.localStorage ? localStorage.getItem('token') : null;
     
     console.log('🔵 [FRONTEND] Subiendo imagen:', file.name, 'Tamaño:', file.size);
     console.log('🔵 [FRONTEND] URL de subida (URL directa):', uploadUrl);
@@ -107,6 +154,7 @@ export class ProductsService {
     return this.http.post<string>(uploadUrl, formData, {
       headers: {
         // No especificar Content-Type para que Angular lo maneje automáticamente con multipart/form-data
+        'Authorization': token ? `Bearer ${token}` : ''
       },
       responseType: 'text' as 'json'
     }).pipe(
@@ -152,7 +200,8 @@ export class ProductsService {
   
   list(): Observable<ProductoDTO[]> {
     console.log('🔵 [FRONTEND] Obteniendo productos desde la API...');
-    return this.http.get<ProductoDTO[]>(`${this.API_URL}/productos`).pipe(
+    // Catálogo en memoria del backend: con ETag, si no cambió el navegador recibe 304 y reusa su copia
+    return this.http.get<ProductoDTO[]>(`${this.API_URL}/catalogo`).pipe(
       tap(products => {
         console.log('🔵 [FRONTEND] Productos recibidos:', products.length, 'productos');
         
@@ -4,7 +4,7 @@ import { FormsModule } from '@angular/forms';
 import { Router } from '@angular/router';
 import { AuthService } from '../../../core/auth.service';
 import { CartService } from '../../../core/cart.service';
-import { ProductsService } from '../../../core/products.service';
+import { ProductsService, ResultadoImportacion } from '../../../core/products.service';
 
 export interface ProductFormData {
   nombre: string;
@@ -113,6 +113,12 @@ export class AddProductPageComponent implements OnInit {
   searchTerm = '';
   searchResults: any[] = [];
 
+  // Importación masiva (CSV o NDJSON)
+  archivoImportacion: File | null = null;
+  importando = false;
+  resultadoImportacion: ResultadoImportacion | null = null;
+  errorImportacion = '';
+
   constructor(
     private authService: AuthService,
     private cartService: CartService,
@@ -473,4 +479,30 @@ export class AddProductPageComponent implements OnInit {
       }, 2000);
     }
   }
-}
\ No newline at end of file
+
+  onArchivoImportacion(event: Event): void {
+    const input = event.target as HTMLInputElement;
+    this.archivoImportacion = input.files && input.files.length > 0 ? input.files[0] : null;
+    this.resultadoImportacion = null;
+    this.errorImportacion = '';
+  }
+
+  // soloValidar=true revisa el archivo completo sin guardar nada
+  importarCatalogo(soloValidar: boolean): void {
+    if (!this.archivoImportacion) return;
+
+    this.importando = true;
+    this.resultadoImportacion = null;
+    this.errorImportacion = '';
+    this.productsService.importarCatalogo(this.archivoImportacion, soloValidar).subscribe({
+      next: (resultado) => {
+        this.resultadoImportacion = resultado;
+        this.importando = false;
+      },
+      error: (err) => {
+        this.errorImportacion = err.error?.error || 'Error al importar el catálogo';
+        this.importando = false;
+      }
+    });
+  }
+}
@@ -1,7 +1,9 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { CommonModule } from '@angular/common';
 import { FormsModule } from '@angular/forms';
 import { Router } from '@angular/router';
+import { of, Subject, Subscription } from 'rxjs';
+import { catchError, debounceTime, distinctUntilChanged, switchMap, tap } from 'rxjs/operators';
 import { AuthService, Cliente } from '../../../core/auth.service';
 
 @Component({
@@ -11,51 +13,55 @@ import { AuthService, Cliente } from '../../../core/auth.service';
   templateUrl: './select-client-page.component.html',
   styleUrls: ['./select-client-page.component.scss']
 })
-export class SelectClientPageComponent implements OnInit {
-  clientes: Cliente[] = [];
+export class SelectClientPageComponent implements OnInit, OnDestroy {
   filteredClients: Cliente[] = [];
   selectedClient: Cliente | null = null;
   searchTerm = '';
   loading = false;
   error = '';
 
+  // Cada tecla entra acá; se consulta al backend cuando el usuario deja de escribir
+  private busqueda$ = new Subject<string>();
+  private busquedaSub?: Subscription;
+
   constructor(
     private authService: AuthService,
     private router: Router
   ) {}
 
   ngOnInit(): void {
+    this.busquedaSub = this.busqueda$.pipe(
+      debounceTime(200),
+      distinctUntilChanged(),
+      tap(() => {
+        this.loading = true;
+        this.error = '';
+      }),
+      // switchMap descarta la respuesta de una búsqueda anterior si ya se escribió otra cosa.
+      // El error se maneja adentro para que una falla no corte las búsquedas siguientes
+      switchMap(texto => this.authService.buscarClientes(texto).pipe(
+        catchError(() => {
+          this.error = 'Error al cargar la lista de clientes';
+          return of([] as Cliente[]);
+        })
+      ))
+    ).subscribe(clientes => {
+      this.filteredClients = clientes;
+      this.loading = false;
+    });
     this.loadClients();
   }
 
-  loadClients(): void {
-    this.loading = true;
-    this.error = '';
+  ngOnDestroy(): void {
+    this.busquedaSub?.unsubscribe();
+  }
 
-    this.authService.getClientes().subscribe({
-      next: (clientes) => {
-        this.clientes = clientes;
-        this.filteredClients = clientes;
-        this.loading = false;
-      },
-      error: (err) => {
-        this.error = 'Error al cargar la lista de clientes';
-        this.loading = false;
-      }
-    });
+  loadClients(): void {
+    this.busqueda$.next(this.searchTerm);
   }
 
   filterClients(): void {
-    if (!this.searchTerm.trim()) {
-      this.filteredClients = this.clientes;
-      return;
-    }
-
-    const term = this.searchTerm.toLowerCase();
-    this.filteredClients = this.clientes.filter(cliente =>
-      cliente.nombre.toLowerCase().includes(term) ||
-      cliente.email.toLowerCase().includes(term)
-    );
+    this.busqueda$.next(this.searchTerm);
   }
 
   selectClient(cliente: Cliente): void {
@@ -31,6 +31,11 @@ export class ProductListComponent implements OnInit {
     private router: Router
   ) {}
 
+  // La tabla muestra la imagen a 100px: alcanza con la miniatura
+  miniatura(imagenUrl: string | undefined): string {
+    return this.products.imagenVariante(imagenUrl, 'miniatura');
+  }
+
   ngOnInit(): void {
     // Determinar el cliente ID basado en el tipo de usuario
     const currentUser = this.authService.getCurrentUser();
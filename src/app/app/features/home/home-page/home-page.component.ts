@@ -137,6 +137,11 @@ export class HomePageComponent implements OnInit {
     }
   }
 
+  // Las tarjetas del carrusel usan la versión mediana; el detalle sigue con el original
+  imagenTarjeta(imagenUrl: string | undefined): string {
+    return this.productsService.imagenVariante(imagenUrl, 'mediana');
+  }
+
   getTalles(): string[] {
     if (!this.selectedProduct) return [];
     